@@ -5,12 +5,33 @@ package com.ZhangRuo.pkm.cli;
 import com.ZhangRuo.pkm.cli.command.*; // 导入所有命令类
 import com.ZhangRuo.pkm.controller.NoteController;
 import com.ZhangRuo.pkm.controller.TagController;
+import com.ZhangRuo.pkm.enums.StorageEngine;
+import com.ZhangRuo.pkm.repository.BinaryStorageService;
+import com.ZhangRuo.pkm.repository.CachingStorageService;
+import com.ZhangRuo.pkm.repository.Compactable;
+import com.ZhangRuo.pkm.repository.IndexedStorageService;
 import com.ZhangRuo.pkm.repository.JsonStorageService;
+import com.ZhangRuo.pkm.repository.LogStructuredStorageService;
+import com.ZhangRuo.pkm.repository.SegmentedStorageService;
+import com.ZhangRuo.pkm.repository.ShardedStorageService;
 import com.ZhangRuo.pkm.repository.StorageService;
+import com.ZhangRuo.pkm.service.AdvancedSearchService;
 import com.ZhangRuo.pkm.service.ExportService;
 import com.ZhangRuo.pkm.service.NoteService;
+import com.ZhangRuo.pkm.service.QueryCache;
+import com.ZhangRuo.pkm.service.QueryService;
 import com.ZhangRuo.pkm.service.TagService;
+import com.ZhangRuo.pkm.service.index.CjkAnalyzer;
+import com.ZhangRuo.pkm.service.index.NoteIndex;
+import com.ZhangRuo.pkm.service.maintenance.BackupRotationJob;
+import com.ZhangRuo.pkm.service.maintenance.ChecksumScrubJob;
+import com.ZhangRuo.pkm.service.maintenance.CompactionJob;
+import com.ZhangRuo.pkm.service.maintenance.IndexSnapshotJob;
+import com.ZhangRuo.pkm.service.maintenance.IoThrottle;
+import com.ZhangRuo.pkm.service.maintenance.MaintenanceScheduler;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -30,6 +51,19 @@ public class CommandParser {
     private final Scanner scanner;
     private boolean isRunning;
     private final CommandRegistry commandRegistry;
+    private MaintenanceScheduler maintenanceScheduler;
+    private NoteIndex noteIndex;
+    private StorageService storageService;
+
+    // --- 后台维护任务的默认配置 ---
+    private static final long MAINTENANCE_BYTES_PER_SECOND = 4L * 1024 * 1024;
+    private static final long COMPACTION_INTERVAL_MILLIS = 10 * 60 * 1000L;
+    private static final long SCRUB_INTERVAL_MILLIS = 60 * 60 * 1000L;
+    private static final long BACKUP_INTERVAL_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final int BACKUPS_TO_KEEP = 5;
+    private static final long INDEX_SNAPSHOT_INTERVAL_MILLIS = 5 * 60 * 1000L;
+    // 查询结果缓存最多保留的结果数
+    private static final int QUERY_CACHE_CAPACITY = 256;
 
     /**
      * 终极版构造函数。
@@ -54,11 +88,23 @@ public class CommandParser {
      */
     private void setupCommandDependencies() {
         // --- 1. 创建 Service 和 Controller 实例 (只创建一次) ---
-        StorageService storageService = new JsonStorageService();
-        NoteService noteService = new NoteService(storageService);
-        TagService tagService = new TagService(storageService);
+        // 用常驻内存的缓存层包装底层存储，整个会话只完整加载一次笔记库
+        StorageEngine engine = resolveStorageEngine();
+        StorageService storageEngine = createStorageEngine(engine);
+        this.storageService = new CachingStorageService(storageEngine);
+        // NoteService 与 TagService 共享同一个内存索引，任何一方的写入都会增量更新它；
+        // 索引快照按存储引擎分别保存在笔记库旁边，下次启动时直接装入
+        this.noteIndex = new NoteIndex(storageService, new CjkAnalyzer(),
+                Path.of("notes." + engine.name().toLowerCase() + ".idx"));
+        this.maintenanceScheduler = createMaintenanceScheduler(storageEngine, noteIndex);
+        // 搜索、按标签列出、结构化查询和标签云共享一个以索引版本号为准的结果缓存，任何写入都会使其失效
+        QueryCache queryCache = new QueryCache(noteIndex, QUERY_CACHE_CAPACITY);
+        NoteService noteService = new NoteService(storageService, noteIndex, queryCache);
+        TagService tagService = new TagService(storageService, noteIndex);
+        AdvancedSearchService advancedSearchService = new AdvancedSearchService(noteIndex, queryCache);
         ExportService exportService = new ExportService();
-        NoteController noteController = new NoteController(noteService, exportService);
+        QueryService queryService = new QueryService(noteIndex, queryCache);
+        NoteController noteController = new NoteController(noteService, exportService, queryService);
         TagController tagController = new TagController(tagService);
 
         // --- 2. 遍历所有已自动注册的命令，按需注入依赖 ---
@@ -86,6 +132,12 @@ public class CommandParser {
             } else if (command instanceof StatisticsCommand) {
                 ((StatisticsCommand) command).setNoteService(noteService);
                 ((StatisticsCommand) command).setTagService(tagService);
+                ((StatisticsCommand) command).setAdvancedSearchService(advancedSearchService);
+                ((StatisticsCommand) command).setQueryCache(queryCache);
+            } else if (command instanceof TagsCommand) {
+                ((TagsCommand) command).setAdvancedSearchService(advancedSearchService);
+            } else if (command instanceof MaintenanceCommand) {
+                ((MaintenanceCommand) command).setMaintenanceScheduler(maintenanceScheduler);
             } else if (command instanceof HelpCommand) {
                 // 注入 CommandRegistry 自身
                 ((HelpCommand) command).setCommandRegistry(commandRegistry);
@@ -96,6 +148,53 @@ public class CommandParser {
         }
     }
 
+    /**
+     * 根据系统属性 pkm.storage（json / log / binary / sharded / indexed / segmented）选择底层存储引擎，默认使用 JSON 文件。
+     */
+    private StorageEngine resolveStorageEngine() {
+        String engineName = System.getProperty("pkm.storage", StorageEngine.JSON.name());
+        try {
+            return StorageEngine.valueOf(engineName.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ 未知的存储引擎 '" + engineName + "'，已回退到 JSON。");
+            return StorageEngine.JSON;
+        }
+    }
+
+    private StorageService createStorageEngine(StorageEngine engine) {
+        switch (engine) {
+            case LOG:
+                return new LogStructuredStorageService();
+            case BINARY:
+                return new BinaryStorageService();
+            case SHARDED:
+                return new ShardedStorageService();
+            case INDEXED:
+                return new IndexedStorageService();
+            case SEGMENTED:
+                return new SegmentedStorageService();
+            case JSON:
+            default:
+                return new JsonStorageService();
+        }
+    }
+
+    /**
+     * 为底层存储引擎登记后台维护任务。
+     * 压缩只对可压缩的引擎登记；校验和备份都直接读取底层引擎，不经过前台共享的缓存层。
+     * 索引快照任务把会话中的增量写入定期持久化。
+     */
+    private MaintenanceScheduler createMaintenanceScheduler(StorageService storageEngine, NoteIndex noteIndex) {
+        MaintenanceScheduler scheduler = new MaintenanceScheduler(new IoThrottle(MAINTENANCE_BYTES_PER_SECOND));
+        if (storageEngine instanceof Compactable) {
+            scheduler.register(new CompactionJob((Compactable) storageEngine, COMPACTION_INTERVAL_MILLIS));
+        }
+        scheduler.register(new ChecksumScrubJob(storageEngine, SCRUB_INTERVAL_MILLIS));
+        scheduler.register(new BackupRotationJob(storageEngine, "backups", BACKUPS_TO_KEEP, BACKUP_INTERVAL_MILLIS));
+        scheduler.register(new IndexSnapshotJob(noteIndex, INDEX_SNAPSHOT_INTERVAL_MILLIS));
+        return scheduler;
+    }
+
     // ... parseArgs, startInteractiveMode, executeCommand, parseCommandLine 等方法保持不变 ...
 
     public void parseArgs(String[] args) {
@@ -109,6 +208,8 @@ public class CommandParser {
     private void startInteractiveMode() {
         System.out.println("\n> 欢迎使用个人知识管理系统 (CLI版)");
         System.out.println("> 输入 'help' 查看可用命令\n");
+        // 只有交互模式才启动后台维护，单条命令模式执行完就退出
+        maintenanceScheduler.start();
         while (isRunning) {
             System.out.print("pkm> ");
             String input = scanner.nextLine().trim();
@@ -128,11 +229,15 @@ public class CommandParser {
         Command command = commandRegistry.getCommand(commandName);
 
         if (command != null) {
+            // 命令执行期间暂停后台维护，把磁盘让给前台
+            maintenanceScheduler.pause();
             try {
                 command.execute(args);
             } catch (Exception e) {
                 System.err.println("❌ 执行命令时出错: " + e.getMessage());
                 command.printUsage();
+            } finally {
+                maintenanceScheduler.resume();
             }
         } else {
             System.err.println("❌ 未知命令: '" + commandName + "'。输入 'help' 查看可用命令。");
@@ -156,5 +261,24 @@ public class CommandParser {
     // --- 辅助方法 ---
     public void setRunning(boolean running) { this.isRunning = running; }
     public CommandRegistry getCommandRegistry() { return commandRegistry; }
-    public void close() { if (scanner != null) scanner.close(); }
+    public void close() {
+        if (maintenanceScheduler != null) maintenanceScheduler.shutdown(5000);
+        if (noteIndex != null) {
+            // 退出前写出会话中尚未持久化的索引变化，下次启动无需追赶
+            try {
+                noteIndex.flushSnapshot();
+            } catch (IOException e) {
+                System.err.println("⚠️ 写入索引快照失败: " + e.getMessage());
+            }
+        }
+        // 后台任务停止之后才关闭存储引擎：日志、二进制等引擎持有打开的文件通道
+        if (storageService != null) {
+            try {
+                storageService.close();
+            } catch (RuntimeException e) {
+                System.err.println("⚠️ 关闭存储引擎失败: " + e.getMessage());
+            }
+        }
+        if (scanner != null) scanner.close();
+    }
 }
\ No newline at end of file
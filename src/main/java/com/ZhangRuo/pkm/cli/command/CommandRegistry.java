@@ -31,7 +31,7 @@ public class CommandRegistry {
      */
     private void autoRegisterCommands() {
         // 1. 设置要扫描的包路径
-        Reflections reflections = new Reflections("com.yourname.pkm.cli.command");
+        Reflections reflections = new Reflections("com.ZhangRuo.pkm.cli.command");
 
         // 2. 获取所有被 @CliCommand 注解标记的类
         Set<Class<?>> commandClasses = reflections.getTypesAnnotatedWith(CliCommand.class);
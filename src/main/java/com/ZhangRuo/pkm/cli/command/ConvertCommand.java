@@ -0,0 +1,68 @@
+package com.ZhangRuo.pkm.cli.command;
+
+
+import com.ZhangRuo.pkm.repository.VaultConverter;
+
+
+/**
+ * [命令模式] 笔记库格式转换命令。
+ * 负责解析 "convert" 命令的参数，在 notes.json 与二进制笔记库之间互相转换。
+ */
+@CliCommand("convert")
+public class ConvertCommand extends AbstractCommand {
+
+    /**
+     * 无参数的构造函数，供 CommandRegistry 自动注册使用。
+     * 该命令直接操作文件，不需要注入任何依赖。
+     */
+    public ConvertCommand() {
+        super("convert", "在 JSON 笔记库与二进制笔记库之间转换");
+    }
+
+    /**
+     * 执行 "convert" 命令的核心逻辑。
+     *
+     * @param args 传递给 "convert" 命令的参数数组，期望包含 [方向, 源文件, 目标文件]。
+     */
+    @Override
+    public void execute(String[] args) {
+        // 1. 参数校验
+        if (args.length != 3) {
+            printUsage();
+            return;
+        }
+
+        String direction = args[0].toLowerCase();
+        String source = args[1];
+        String target = args[2];
+
+        // 2. 根据方向调用转换工具
+        try {
+            int count;
+            switch (direction) {
+                case "to-binary":
+                    count = VaultConverter.jsonToBinary(source, target);
+                    break;
+                case "to-json":
+                    count = VaultConverter.binaryToJson(source, target);
+                    break;
+                default:
+                    System.err.println("❌ 错误: 未知的转换方向 '" + args[0] + "'，应为 to-binary 或 to-json。");
+                    return;
+            }
+            System.out.println("✅ 已转换 " + count + " 篇笔记: " + source + " -> " + target);
+        } catch (IllegalStateException e) {
+            System.err.println("❌ 错误: 转换失败 - " + e.getMessage());
+        }
+    }
+
+    /**
+     * 重写 printUsage 方法，提供更详细的用法说明。
+     */
+    @Override
+    public void printUsage() {
+        System.out.println("用法: convert <to-binary|to-json> <源文件> <目标文件>");
+        System.out.println("描述: " + getDescription());
+        System.out.println("示例: convert to-binary notes.json notes.pkm");
+    }
+}
@@ -3,14 +3,23 @@ package com.ZhangRuo.pkm.cli.command;
 
 
 import com.ZhangRuo.pkm.controller.NoteController;
+import com.ZhangRuo.pkm.enums.DateField;
+import com.ZhangRuo.pkm.enums.TagMatchMode;
 
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * [命令模式] 列出笔记的具体命令实现。
- * 负责解析 "list" 命令的参数 (如 --tag)，并调用 NoteController 来执行列表展示。
+ * 负责解析 "list" 命令的参数 (如 --tag、--since)，并调用 NoteController 来执行列表展示。
  */
 @CliCommand({"list", "ls"}) // 1. 添加注解，并支持别名 "ls"
 public class ListCommand extends AbstractCommand {
@@ -22,7 +31,7 @@ public class ListCommand extends AbstractCommand {
      * 3. 提供一个无参数的构造函数。
      */
     public ListCommand() {
-        super("list", "列出所有笔记，或按标签过滤");
+        super("list", "列出所有笔记，或按标签、修改时间过滤");
     }
 
     /**
@@ -49,21 +58,68 @@ public class ListCommand extends AbstractCommand {
 
         // 6. 将 CommandParser 中 handleListCommand 的逻辑“搬家”到这里
 
+        // 不以 "--" 开头的参数是结构化查询，与 search 共用同一个解析器和查询规划器
+        if (args.length > 0 && !args[0].startsWith("--")) {
+            noteController.searchByQuery(Arrays.asList(args), Integer.MAX_VALUE, false);
+            return;
+        }
+
         // 解析选项参数
         Map<String, String> options = parseOptions(args);
 
-        String tagName = null;
-        if (options.containsKey("tag")) {
-            tagName = options.get("tag");
-        } else if (!options.isEmpty()) {
-            // 如果包含了除 "tag" 以外的其他未知选项，则视为错误
-            System.err.println("❌ 参数错误! 'list' 命令只支持 '--tag' 选项。");
-            printUsage();
+        for (String key : options.keySet()) {
+            if (!key.equals("tag") && !key.equals("mode") && !key.equals("not")
+                    && !key.equals("since") && !key.equals("until") && !key.equals("sort")) {
+                // 如果包含了未知选项，则视为错误
+                System.err.println("❌ 参数错误! 'list' 命令只支持 '--tag'、'--mode'、'--not'、'--since'、'--until' 和 '--sort' 选项。");
+                printUsage();
+                return;
+            }
+        }
+
+        List<String> tagNames = splitTags(options.get("tag"));
+        List<String> excludedTagNames = splitTags(options.get("not"));
+        TagMatchMode mode = TagMatchMode.AND;
+        if (options.containsKey("mode")) {
+            try {
+                mode = TagMatchMode.valueOf(options.get("mode").toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.err.println("❌ 参数错误! '--mode' 只支持 and 或 or: " + options.get("mode"));
+                return;
+            }
+        }
+
+        // 按时间过滤或排序：修改时间的范围和排序都在时间索引上完成
+        if (options.containsKey("since") || options.containsKey("until") || options.containsKey("sort")) {
+            LocalDateTime since;
+            LocalDateTime until;
+            DateField sortBy = null;
+            try {
+                since = parseTime("since", options.get("since"), false);
+                until = parseTime("until", options.get("until"), true);
+            } catch (IllegalArgumentException e) {
+                System.err.println("❌ 参数错误! " + e.getMessage());
+                return;
+            }
+            if (options.containsKey("sort")) {
+                String sort = options.get("sort").toLowerCase();
+                if (!sort.equals("updated") && !sort.equals("created")) {
+                    System.err.println("❌ 参数错误! '--sort' 只支持 updated 或 created: " + options.get("sort"));
+                    return;
+                }
+                sortBy = sort.equals("updated") ? DateField.UPDATED : DateField.CREATED;
+            }
+            noteController.listNotes(tagNames, mode, excludedTagNames, since, until, sortBy);
             return;
         }
 
         // 7. 调用 Controller 完成工作
-        noteController.listNotes(tagName);
+        if (tagNames.size() <= 1 && excludedTagNames.isEmpty()) {
+            // 单个标签或不过滤，保持原来的查询方式
+            noteController.listNotes(tagNames.isEmpty() ? null : tagNames.get(0));
+        } else {
+            noteController.listNotes(tagNames, mode, excludedTagNames);
+        }
     }
 
     /**
@@ -71,11 +127,61 @@ public class ListCommand extends AbstractCommand {
      */
     @Override
     public void printUsage() {
-        System.out.println("用法: list [--tag <标签名>]");
+        System.out.println("用法: list [--tag <标签名>[,<标签名>...]] [--mode and|or] [--not <标签名>[,<标签名>...]]");
+        System.out.println("           [--since <时间>] [--until <时间>] [--sort updated|created]");
+        System.out.println("      list <查询语句>  (语法同 search)");
         System.out.println("描述: " + getDescription());
+        System.out.println("      --since/--until 按修改时间过滤，时间为 yyyy-MM-dd（--until 包含当天）或 <天数>d（如 7d 表示 7 天前）");
+        System.out.println("      --sort 按修改时间或创建时间从新到旧排列");
         System.out.println("别名: ls");
         System.out.println("示例: list");
         System.out.println("      list --tag java");
+        System.out.println("      list --tag java,设计模式 --mode and");
+        System.out.println("      list --tag java,python --mode or --not draft");
+        System.out.println("      list tag:java -tag:draft created:>=2024-01-01");
+        System.out.println("      list --since 7d --sort updated");
+        System.out.println("      list --tag java --since 2024-01-01 --until 2024-06-30");
+    }
+
+    /**
+     * 解析 --since/--until 的值。
+     * @param option 选项名，用于错误提示。
+     * @param value  yyyy-MM-dd 或 "<天数>d"；为 null 时表示不限。
+     * @param end    是否作为上界：日期作为上界时包含当天，即换算为第二天的零点。
+     * @return 对应的时间；value 为 null 时返回 null。
+     * @throws IllegalArgumentException 格式不正确时抛出。
+     */
+    private LocalDateTime parseTime(String option, String value, boolean end) {
+        if (value == null) {
+            return null;
+        }
+        if (value.matches("\\d+[dD]")) {
+            // 相对时间：精确到毫秒，与时间索引的精度一致
+            long days = Long.parseLong(value.substring(0, value.length() - 1));
+            return LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS).minusDays(days);
+        }
+        try {
+            LocalDate date = LocalDate.parse(value);
+            return end ? date.plusDays(1).atStartOfDay() : date.atStartOfDay();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("'--" + option + "' 需要 yyyy-MM-dd 或 <天数>d（如 7d）: " + value);
+        }
+    }
+
+    /**
+     * 把逗号分隔的标签列表拆分为标签名，忽略空白项。
+     */
+    private List<String> splitTags(String value) {
+        List<String> tags = new ArrayList<>();
+        if (value == null) {
+            return tags;
+        }
+        for (String tag : value.split(",")) {
+            if (!tag.isBlank()) {
+                tags.add(tag.trim());
+            }
+        }
+        return tags;
     }
 
     /**
@@ -0,0 +1,87 @@
+package com.ZhangRuo.pkm.cli.command;
+
+
+import com.ZhangRuo.pkm.service.maintenance.MaintenanceScheduler;
+
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+
+/**
+ * [命令模式] 后台维护任务命令。
+ * 不带参数时显示各维护任务的状态和最近一次运行情况；"maintenance run <任务名>" 立即安排执行某个任务。
+ */
+@CliCommand("maintenance")
+public class MaintenanceCommand extends AbstractCommand {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private MaintenanceScheduler maintenanceScheduler;
+
+    public MaintenanceCommand() {
+        super("maintenance", "查看后台维护任务的状态，或立即执行某个任务");
+    }
+
+    /**
+     * Setter 方法，用于依赖注入。
+     *
+     * @param maintenanceScheduler 后台维护任务调度器。
+     */
+    public void setMaintenanceScheduler(MaintenanceScheduler maintenanceScheduler) {
+        this.maintenanceScheduler = maintenanceScheduler;
+    }
+
+    @Override
+    public void execute(String[] args) {
+        if (maintenanceScheduler == null) {
+            System.err.println("❌ 内部错误: MaintenanceScheduler 未初始化，无法执行 'maintenance' 命令。");
+            return;
+        }
+
+        if (args.length == 0) {
+            printStatus();
+        } else if (args.length == 2 && "run".equalsIgnoreCase(args[0])) {
+            if (maintenanceScheduler.runNow(args[1])) {
+                System.out.println("✅ 任务 '" + args[1] + "' 已安排在后台立即执行，稍后可用 'maintenance' 查看结果。");
+            } else {
+                System.err.println("❌ 错误: 未找到名为 '" + args[1] + "' 的维护任务。");
+            }
+        } else {
+            printUsage();
+        }
+    }
+
+    private void printStatus() {
+        List<MaintenanceScheduler.JobStatus> statuses = maintenanceScheduler.getStatuses();
+
+        System.out.println("\n--- 后台维护任务 ---");
+        System.out.println("  调度器: " + (maintenanceScheduler.isRunning() ? "运行中" : "未启动")
+                + "，I/O 预算: " + maintenanceScheduler.getThrottle().getBytesPerSecond() / 1024 + " KB/s"
+                + "，累计限流等待: " + maintenanceScheduler.getThrottle().getThrottledMillis() + " ms");
+        if (statuses.isEmpty()) {
+            System.out.println("ℹ️  当前存储引擎没有需要执行的维护任务。");
+        }
+        for (MaintenanceScheduler.JobStatus status : statuses) {
+            System.out.println("------------------------------------");
+            System.out.println("  [" + status.getName() + "] " + status.getDescription() + " - " + status.getState().getDisplayName());
+            if (status.getLastRun() == null) {
+                System.out.println("    上次运行: 从未运行");
+            } else {
+                System.out.println("    上次运行: " + status.getLastRun().format(TIME_FORMAT)
+                        + "（耗时 " + status.getLastDurationMillis() + " ms）"
+                        + (status.isLastFailed() ? " ❌ " : " ✅ ") + status.getLastResult());
+            }
+            System.out.println("    下次运行: " + status.getNextRun().format(TIME_FORMAT)
+                    + "，累计运行 " + status.getRunCount() + " 次，失败 " + status.getFailureCount() + " 次");
+        }
+        System.out.println("------------------------------------");
+    }
+
+    @Override
+    public void printUsage() {
+        System.out.println("用法: maintenance [run <任务名>]");
+        System.out.println("描述: " + getDescription());
+        System.out.println("示例: maintenance");
+        System.out.println("      maintenance run backup");
+    }
+}
@@ -1,6 +1,10 @@
 package com.ZhangRuo.pkm.cli.command;
 
 import com.ZhangRuo.pkm.controller.NoteController;
+import com.ZhangRuo.pkm.service.query.QueryParser;
+
+import java.util.ArrayList;
+import java.util.List;
 
 
 
@@ -14,6 +18,9 @@ public class SearchCommand extends AbstractCommand {
     // 2. 依赖声明：移除 final
     private NoteController noteController;
 
+    // 模糊搜索没有指定 --limit 时最多显示的结果数量
+    private static final int DEFAULT_FUZZY_LIMIT = 20;
+
     /**
      * 3. 提供一个无参数的构造函数。
      */
@@ -45,17 +52,52 @@ public class SearchCommand extends AbstractCommand {
         }
 
         // 6. 参数校验
-        // "search" 命令的参数由 CommandParser 的特殊解析逻辑处理，
-        // 最终应该得到 [关键词] 一个参数。
-        if (args.length != 1) {
+        // 解析选项 "--limit <数量>"、"--explain" 和 "--fuzzy"，其余参数是关键词或结构化查询。
+        List<String> queryArgs = new ArrayList<>();
+        Integer limit = null;
+        boolean explain = false;
+        boolean fuzzy = false;
+        for (int i = 0; i < args.length; i++) {
+            if ("--limit".equals(args[i])) {
+                if (i + 1 >= args.length || limit != null) {
+                    printUsage();
+                    return;
+                }
+                try {
+                    limit = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    System.err.println("❌ 参数错误! '--limit' 需要一个正整数: " + args[i]);
+                    return;
+                }
+            } else if ("--explain".equals(args[i])) {
+                explain = true;
+            } else if ("--fuzzy".equals(args[i])) {
+                fuzzy = true;
+            } else {
+                queryArgs.add(args[i]); // 假设引号已由 CommandParser 去除
+            }
+        }
+        if (queryArgs.isEmpty()) {
             printUsage();
             return;
         }
 
-        String keyword = args[0]; // 假设引号已由 CommandParser 去除
-
         // 7. 调用 Controller 完成工作
-        noteController.searchNote(keyword);
+        if (fuzzy) {
+            // 模糊搜索只针对关键词，不与结构化查询组合
+            if (explain || queryArgs.size() > 1) {
+                System.err.println("❌ 参数错误! '--fuzzy' 只能用于单个关键词搜索，不能与 '--explain' 或查询语句一起使用。");
+                return;
+            }
+            noteController.searchNoteFuzzy(queryArgs.get(0), limit == null ? DEFAULT_FUZZY_LIMIT : limit);
+        } else if (explain || QueryParser.isStructured(queryArgs)) {
+            // 结构化查询：由查询规划器为每个条件选择访问路径
+            noteController.searchByQuery(queryArgs, limit == null ? Integer.MAX_VALUE : limit, explain);
+        } else if (limit == null) {
+            noteController.searchNote(queryArgs.get(0));
+        } else {
+            noteController.searchNote(queryArgs.get(0), limit);
+        }
     }
 
     /**
@@ -63,9 +105,21 @@ public class SearchCommand extends AbstractCommand {
      */
     @Override
     public void printUsage() {
-        System.out.println("用法: search \"<关键词>\"");
-        System.out.println("描述: " + getDescription());
+        System.out.println("用法: search \"<关键词>\" [--limit <数量>]");
+        System.out.println("      search <查询语句> [--limit <数量>] [--explain]");
+        System.out.println("      search \"<关键词>\" --fuzzy [--limit <数量>]");
+        System.out.println("描述: " + getDescription() + "，结果按相关度排序");
+        System.out.println("      查询语句支持 tag:<标签>、created:/updated:[>|>=|<|<=]<yyyy-MM-dd>、re:<正则>、");
+        System.out.println("      AND/OR/NOT、'-' 否定和括号，相邻条件默认为 AND");
+        System.out.println("      查询语句中含空格的 \"短语\" 要求词语按顺序相邻出现；A NEAR/k B 要求两者相隔不超过 k 个词");
+        System.out.println("      单独一个含空格的关键词仍按子串搜索，需要短语时连同引号一起传入: search '\"event sourcing\"'");
+        System.out.println("      --fuzzy 容忍拼写错误，按完整的词匹配：3 到 5 个字符的词允许错 1 处，更长的词允许错 2 处");
         System.out.println("示例: search \"设计模式\"");
+        System.out.println("      search \"java\" --limit 10");
+        System.out.println("      search tag:java AND \"设计模式\" created:>2024-01-01 -tag:draft --explain");
+        System.out.println("      search re:\"单例|工厂\" tag:java");
+        System.out.println("      search \"event sourcing\" OR cqrs NEAR/3 \"read model\"");
+        System.out.println("      search \"pyhton\" --fuzzy");
         System.out.println("      (注意: 关键词必须用双引号包围)");
     }
 }
\ No newline at end of file
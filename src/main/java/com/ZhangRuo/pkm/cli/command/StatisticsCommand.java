@@ -1,8 +1,11 @@
 package com.ZhangRuo.pkm.cli.command;
 
+import com.ZhangRuo.pkm.service.AdvancedSearchService;
 import com.ZhangRuo.pkm.service.NoteService;
+import com.ZhangRuo.pkm.service.QueryCache;
 import com.ZhangRuo.pkm.service.TagService; // 假设我们需要 TagService
 import java.util.List;
+import java.util.Map;
 import com.ZhangRuo.pkm.entity.Note;
 
 
@@ -12,6 +15,11 @@ public class StatisticsCommand extends AbstractCommand {
 
     private NoteService noteService;
     private TagService tagService;
+    private AdvancedSearchService advancedSearchService;
+    private QueryCache queryCache;
+
+    // 标签云中最多展示的标签数量
+    private static final int TOP_TAGS = 10;
 
     public StatisticsCommand() {
         super("stats", "显示系统统计信息");
@@ -25,6 +33,14 @@ public class StatisticsCommand extends AbstractCommand {
         this.tagService = tagService;
     }
 
+    public void setAdvancedSearchService(AdvancedSearchService advancedSearchService) {
+        this.advancedSearchService = advancedSearchService;
+    }
+
+    public void setQueryCache(QueryCache queryCache) {
+        this.queryCache = queryCache;
+    }
+
     @Override
     public void execute(String[] args) {
         if (noteService == null || tagService == null) {
@@ -32,17 +48,33 @@ public class StatisticsCommand extends AbstractCommand {
             return;
         }
 
-        List<Note> allNotes = noteService.getAllNotes();
-        int noteCount = allNotes.size();
-
-        long tagCount = allNotes.stream()
-                .flatMap(note -> note.getTags().stream())
-                .distinct()
-                .count();
+        // 笔记数直接读取索引；标签云读取索引中随打标签/去标签维护的计数器，没有注入时退回到逐篇统计
+        int noteCount;
+        Map<String, Long> tagCloud;
+        if (advancedSearchService != null) {
+            noteCount = noteService.countNotes();
+            tagCloud = advancedSearchService.generateTagCloud();
+        } else {
+            List<Note> allNotes = noteService.getAllNotes();
+            noteCount = allNotes.size();
+            tagCloud = new AdvancedSearchService().generateTagCloud(allNotes);
+        }
 
         System.out.println("\n--- 系统统计信息 ---");
         System.out.println("  总笔记数: " + noteCount);
-        System.out.println("  总标签数: " + tagCount);
+        System.out.println("  总标签数: " + tagCloud.size());
+        if (!tagCloud.isEmpty()) {
+            System.out.println("  常用标签:");
+            tagCloud.entrySet().stream()
+                    .limit(TOP_TAGS)
+                    .forEach(entry -> System.out.printf("    %s (%d)%n", entry.getKey(), entry.getValue()));
+        }
+        if (queryCache != null) {
+            QueryCache.Stats cache = queryCache.stats();
+            System.out.printf("  查询缓存: 命中 %d 次，未命中 %d 次 (命中率 %.1f%%)，已缓存 %d/%d 条，淘汰 %d 条，失效 %d 次%n",
+                    cache.getHits(), cache.getMisses(), cache.getHitRate() * 100,
+                    cache.getSize(), cache.getCapacity(), cache.getEvictions(), cache.getInvalidations());
+        }
         System.out.println("--------------------");
     }
 
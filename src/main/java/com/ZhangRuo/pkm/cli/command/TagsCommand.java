@@ -0,0 +1,70 @@
+package com.ZhangRuo.pkm.cli.command;
+
+
+import com.ZhangRuo.pkm.service.AdvancedSearchService;
+
+import java.util.Map;
+
+
+/**
+ * [命令模式] 标签补全命令。
+ * "tags" 按字典顺序列出标签；"tags <前缀>" 列出以该前缀开头的标签（不区分大小写），用于补全标签名。
+ */
+@CliCommand("tags")
+public class TagsCommand extends AbstractCommand {
+
+    // 最多列出的标签数量
+    private static final int MAX_COMPLETIONS = 20;
+
+    private AdvancedSearchService advancedSearchService;
+
+    public TagsCommand() {
+        super("tags", "按前缀查找已有的标签，用于补全标签名");
+    }
+
+    /**
+     * Setter 方法，用于依赖注入。
+     *
+     * @param advancedSearchService 绑定了笔记索引的高级检索服务。
+     */
+    public void setAdvancedSearchService(AdvancedSearchService advancedSearchService) {
+        this.advancedSearchService = advancedSearchService;
+    }
+
+    @Override
+    public void execute(String[] args) {
+        if (advancedSearchService == null) {
+            System.err.println("❌ 内部错误: AdvancedSearchService 未初始化，无法执行 'tags' 命令。");
+            return;
+        }
+        if (args.length > 1) {
+            printUsage();
+            return;
+        }
+
+        String prefix = args.length == 1 ? args[0] : "";
+        // 多取一个，用来判断是否还有更多匹配的标签
+        Map<String, Integer> completions = advancedSearchService.completeTags(prefix, MAX_COMPLETIONS + 1);
+
+        if (completions.isEmpty()) {
+            System.out.println("ℹ️  没有找到以 '" + prefix + "' 开头的标签。");
+            return;
+        }
+        System.out.println(prefix.isEmpty() ? "--- 标签列表 ---" : "--- 以 '" + prefix + "' 开头的标签 ---");
+        completions.entrySet().stream()
+                .limit(MAX_COMPLETIONS)
+                .forEach(entry -> System.out.printf("  %s (%d)%n", entry.getKey(), entry.getValue()));
+        if (completions.size() > MAX_COMPLETIONS) {
+            System.out.println("  ... 更多标签请输入更长的前缀");
+        }
+        System.out.println("---------------------");
+    }
+
+    @Override
+    public void printUsage() {
+        System.out.println("用法: tags [前缀]");
+        System.out.println("描述: " + getDescription());
+        System.out.println("示例: tags");
+        System.out.println("      tags ja");
+    }
+}
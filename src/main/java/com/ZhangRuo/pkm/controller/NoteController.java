@@ -3,8 +3,15 @@ package com.ZhangRuo.pkm.controller;
 import com.ZhangRuo.pkm.entity.Note;
 import com.ZhangRuo.pkm.service.ExportService;
 import com.ZhangRuo.pkm.service.NoteService;
+import com.ZhangRuo.pkm.service.QueryService;
+import com.ZhangRuo.pkm.service.QueryService.QueryResult;
+import com.ZhangRuo.pkm.service.query.QueryNode;
+import com.ZhangRuo.pkm.service.query.QueryParser;
+import com.ZhangRuo.pkm.enums.DateField;
 import com.ZhangRuo.pkm.enums.ExportFormat;
+import com.ZhangRuo.pkm.enums.TagMatchMode;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.io.IOException;
 import java.util.Optional;
@@ -21,13 +28,22 @@ public class NoteController {
 
     private final NoteService noteService;
     private final ExportService exportService;
+    private final QueryService queryService;
 
     /*
     * 构造函数，用于接收外部传入的NoteService实例（依赖注入）
     * */
     public NoteController(NoteService noteService , ExportService exportService) {
+        this(noteService, exportService, null);
+    }
+
+    /*
+    * 构造函数，额外接收执行结构化查询的QueryService
+    * */
+    public NoteController(NoteService noteService, ExportService exportService, QueryService queryService) {
         this.noteService = noteService;
         this.exportService = exportService;
+        this.queryService = queryService;
     }
 
     /*
@@ -62,7 +78,79 @@ public class NoteController {
             notes = noteService.getAllNotes();
             System.out.println("--- 所有笔记列表 ---");
         }
+        return printNoteList(notes);
+    }
+
+    /**
+     * [交互逻辑] 处理按多个标签组合过滤笔记的请求。
+     * @param tagNames         要匹配的标签。
+     * @param mode             标签之间的组合方式（AND/OR）。
+     * @param excludedTagNames 要排除的标签。
+     * @return 查询到的笔记列表，用于上层缓存。
+     */
+    public List<Note> listNotes(List<String> tagNames, TagMatchMode mode, List<String> excludedTagNames) {
+        List<Note> notes = noteService.findNotesByTags(tagNames, mode, excludedTagNames);
+
+        StringBuilder header = new StringBuilder("--- 标签");
+        if (!tagNames.isEmpty()) {
+            header.append(mode == TagMatchMode.OR ? "包含任一 '" : "同时包含 '")
+                    .append(String.join(", ", tagNames)).append("'");
+        }
+        if (!excludedTagNames.isEmpty()) {
+            header.append(tagNames.isEmpty() ? "" : "，").append("不含 '")
+                    .append(String.join(", ", excludedTagNames)).append("'");
+        }
+        System.out.println(header.append(" 的笔记列表 ---"));
+        return printNoteList(notes);
+    }
+
+    /**
+     * [交互逻辑] 处理按修改时间范围过滤、按时间排序列出笔记的请求，可以同时按标签过滤。
+     * @param tagNames         要匹配的标签。
+     * @param mode             标签之间的组合方式（AND/OR）。
+     * @param excludedTagNames 要排除的标签。
+     * @param since            修改时间的下界（含），为 null 时不限。
+     * @param until            修改时间的上界（不含），为 null 时不限。
+     * @param sortBy           按哪个时间从新到旧排序，为 null 时按存储顺序。
+     * @return 查询到的笔记列表，用于上层缓存。
+     */
+    public List<Note> listNotes(List<String> tagNames, TagMatchMode mode, List<String> excludedTagNames,
+                                LocalDateTime since, LocalDateTime until, DateField sortBy) {
+        List<Note> notes = noteService.findNotesByTime(tagNames, mode, excludedTagNames, since, until, sortBy);
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+        StringBuilder header = new StringBuilder("--- ");
+        if (!tagNames.isEmpty()) {
+            header.append("标签").append(mode == TagMatchMode.OR ? "包含任一 '" : "同时包含 '")
+                    .append(String.join(", ", tagNames)).append("'，");
+        }
+        if (!excludedTagNames.isEmpty()) {
+            header.append("不含标签 '").append(String.join(", ", excludedTagNames)).append("'，");
+        }
+        if (since != null) {
+            header.append("修改于 ").append(since.format(formatter)).append(" 之后，");
+        }
+        if (until != null) {
+            header.append("修改于 ").append(until.format(formatter)).append(" 之前，");
+        }
+        if (sortBy != null) {
+            header.append("按").append(sortBy == DateField.UPDATED ? "修改" : "创建").append("时间从新到旧排列的");
+        } else if (header.charAt(header.length() - 1) == '，') {
+            header.setLength(header.length() - 1);
+            header.append("的");
+        }
+        System.out.println(header.append("笔记列表 ---"));
+        return printNoteList(notes, sortBy == DateField.UPDATED ? DateField.UPDATED : DateField.CREATED);
+    }
 
+    private List<Note> printNoteList(List<Note> notes) {
+        return printNoteList(notes, DateField.CREATED);
+    }
+
+    /**
+     * @param shownDate 每行显示的日期：按修改时间排序时显示修改日期，否则显示创建日期。
+     */
+    private List<Note> printNoteList(List<Note> notes, DateField shownDate) {
         if (notes.isEmpty()) {
             System.out.println("ℹ️  没有找到符合条件的笔记。");
             return notes; // 2. 在这里也要返回 notes 列表
@@ -74,11 +162,12 @@ public class NoteController {
             int displayId = i + 1; // 用户的“短ID”
 
             String tags = String.join(", ", note.getTags());
+            LocalDateTime date = shownDate == DateField.UPDATED ? note.getUpdatedAt() : note.getCreatedAt();
             // 使用短ID进行打印
             System.out.printf("[%d] %s (%s) [%s]%n",
                     displayId,
                     note.getTitle(),
-                    note.getCreatedAt().toLocalDate().toString(),
+                    date == null ? "-" : date.toLocalDate().toString(),
                     tags);
         }
         System.out.println("------------------------------------");
@@ -145,13 +234,112 @@ public class NoteController {
     }
 
     /*
-    * [交互逻辑] 处理根据关键词搜索笔记的请求
+    * [交互逻辑] 处理根据关键词搜索笔记的请求，结果按相关度从高到低排列
     *
     * @param keyword 搜索关键词
     * */
     public List<Note> searchNote(String keyword) {
-        List<Note>notes = noteService.searchNotesByKeyword(keyword);
+        return printSearchResults(keyword, noteService.searchNotesByKeyword(keyword), -1);
+    }
+
+    /*
+    * [交互逻辑] 处理根据关键词搜索笔记的请求，只显示相关度最高的 limit 条
+    *
+    * @param keyword 搜索关键词
+    * @param limit 最多显示的结果数量
+    * */
+    public List<Note> searchNote(String keyword, int limit) {
+        List<Note> notes;
+        try {
+            notes = noteService.searchNotesByKeyword(keyword, limit);
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ 错误: " + e.getMessage());
+            return List.of();
+        }
+        return printSearchResults(keyword, notes, limit);
+    }
 
+    /*
+    * [交互逻辑] 处理容忍拼写错误的搜索请求，结果按相关度从高到低排列
+    *
+    * @param keyword 搜索关键词，可以有拼写错误
+    * @param limit 最多显示的结果数量
+    * */
+    public List<Note> searchNoteFuzzy(String keyword, int limit) {
+        List<Note> notes;
+        try {
+            notes = noteService.searchNotesFuzzy(keyword, limit);
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ 错误: " + e.getMessage());
+            return List.of();
+        }
+        System.out.println("--- 关键词为 ‘" + keyword + "’ 的模糊搜索结果 ---");
+        if (notes.isEmpty()) {
+            System.out.println("ℹ️  没有找到拼写相近的笔记。");
+            return notes;
+        }
+        for (Note note : notes) {
+            String tags = String.join(", ", note.getTags());
+            System.out.printf("[%s] %s (%s) [%s] %n",
+                    note.getId(),
+                    note.getTitle(),
+                    note.getCreatedAt().toLocalDate().toString(),
+                    tags);
+        }
+        if (notes.size() == limit) {
+            System.out.println("ℹ️  仅显示相关度最高的 " + limit + " 条结果。");
+        }
+        System.out.println("---------------------");
+        return notes;
+    }
+
+    /*
+    * [交互逻辑] 处理结构化查询，例如 tag:java AND "设计模式" created:>2024-01-01 -tag:draft
+    *
+    * @param queryArgs 命令行切分好的查询参数
+    * @param limit 最多显示的结果数量
+    * @param explain 是否打印查询规划器选择的执行计划
+    * */
+    public List<Note> searchByQuery(List<String> queryArgs, int limit, boolean explain) {
+        if (queryService == null) {
+            System.err.println("❌ 内部错误: QueryService 未初始化，无法执行结构化查询。");
+            return List.of();
+        }
+        QueryResult result;
+        try {
+            QueryNode query = QueryParser.parse(queryArgs);
+            result = queryService.search(query, limit, explain);
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ 查询语法错误: " + e.getMessage());
+            return List.of();
+        }
+
+        if (explain) {
+            System.out.println("--- 执行计划 ---");
+            result.getPlan().forEach(line -> System.out.println("  " + line));
+        }
+        List<Note> notes = result.getNotes();
+        System.out.println("--- 查询 ‘" + String.join(" ", queryArgs) + "’ 的结果 (共 " + result.getTotalMatches() + " 条) ---");
+        if (notes.isEmpty()) {
+            System.out.println("ℹ️  没有找到符合条件的笔记。");
+            return notes;
+        }
+        for (Note note : notes) {
+            String tags = String.join(", ", note.getTags());
+            System.out.printf("[%s] %s (%s) [%s] %n",
+                    note.getId(),
+                    note.getTitle(),
+                    note.getCreatedAt().toLocalDate().toString(),
+                    tags);
+        }
+        if (result.getTotalMatches() > notes.size()) {
+            System.out.println("ℹ️  仅显示前 " + notes.size() + " 条结果。");
+        }
+        System.out.println("---------------------");
+        return notes;
+    }
+
+    private List<Note> printSearchResults(String keyword, List<Note> notes, int limit) {
         System.out.println("--- 关键词为 ‘"+keyword+"’ 的搜索结果 ---");
 
         if (notes.isEmpty()){
@@ -168,6 +356,9 @@ public class NoteController {
                     note.getCreatedAt().toLocalDate().toString(),
                     tags);
         }
+        if (limit > 0 && notes.size() == limit) {
+            System.out.println("ℹ️  仅显示相关度最高的 " + limit + " 条结果。");
+        }
         System.out.println("---------------------");
 
         return notes;
@@ -1,10 +1,14 @@
 package com.ZhangRuo.pkm.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -18,7 +22,8 @@ public class Note implements Serializable {//实现Serializable接口
 
     private String id;
     private String title;
-    private String content;
+    /** volatile：正文可能由后台任务或并行扫描的线程触发加载，加载结果要对其他线程立即可见。 */
+    private volatile String content;
 
     /**
      * 内部标签集合，根据指导书要求，使用 List<String> 存储标签名。
@@ -29,6 +34,14 @@ public class Note implements Serializable {//实现Serializable接口
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
+    /**
+     * 内容的延迟加载句柄。
+     * 存储引擎可以只加载元数据（ID、标题、标签、时间戳），正文在第一次调用 getContent() 时才真正读取。
+     * 不参与序列化：序列化时会通过 getContent() 读到真实的正文。
+     * 只在持有本对象的锁时修改；读取正文成功后才清空，读取失败时保留句柄，下次访问再重试。
+     */
+    private transient volatile Supplier<String> contentLoader;
+
     /*
     * 为Jackson反序列化提供的无参数构造方法
     * 框架（如Jackson）需要这个构造方法来创建对象的空实例，然后再填充属性
@@ -38,6 +51,13 @@ public class Note implements Serializable {//实现Serializable接口
         //构造方法体可以是空的
     }
 
+    /**
+     * 能在不读取正文的情况下给出正文签名的延迟加载句柄，签名必须与 contentSignature 对同一正文的计算结果一致。
+     */
+    public interface SignedContentLoader extends Supplier<String> {
+        long signature();
+    }
+
 
     public Note(String title, String content) {
         this.title = title;
@@ -131,8 +151,91 @@ public class Note implements Serializable {//实现Serializable接口
     public void setId(String id) { this.id = id; }
     public String getTitle() { return title; }
     public void setTitle(String title) { this.title = title; this.updatedAt = LocalDateTime.now(); }
-    public String getContent() { return content; }
-    public void setContent(String content) { this.content = content; this.updatedAt = LocalDateTime.now(); }
+    public String getContent() {
+        if (contentLoader != null) {
+            //第一次访问时才读取正文，之后直接使用已加载的内容
+            loadContent();
+        }
+        return content;
+    }
+    public synchronized void setContent(String content) { this.contentLoader = null; this.content = content; this.updatedAt = LocalDateTime.now(); }
+
+    /**
+     * 双重检查：多个线程同时第一次访问正文时只读取一次，其余线程等待并直接使用读到的结果。
+     * 先写入正文、再清空句柄，其他线程看到句柄为 null 时一定也能看到正文；
+     * loader 抛出异常时句柄保持不变，异常原样抛给调用方。
+     */
+    private synchronized void loadContent() {
+        Supplier<String> loader = contentLoader;
+        if (loader != null) {
+            content = loader.get();
+            contentLoader = null;
+        }
+    }
+
+    /**
+     * 由存储引擎调用：不立即设置正文，而是挂上一个延迟加载句柄。
+     * 与 setContent 不同，它不会刷新更新时间。
+     *
+     * @param loader 第一次调用 getContent() 时用来读取正文的句柄。
+     */
+    public synchronized void attachContentLoader(Supplier<String> loader) {
+        this.content = null;
+        this.contentLoader = loader;
+    }
+
+    /**
+     * 复制一份与本笔记互不影响的副本，供后台任务在前台继续修改本笔记的同时读取。
+     * 标签列表是新的列表；正文尚未加载时复制加载句柄而不触发它，副本读取的正文只保存在副本中。
+     *
+     * @return 普通 Note 类型的副本，ID、标题、标签、正文和时间戳与本笔记相同。
+     */
+    public synchronized Note detachedCopy() {
+        Note copy = new Note();
+        copy.id = this.id;
+        copy.title = this.title;
+        copy.tags = this.tags != null ? new ArrayList<>(this.tags) : new ArrayList<>();
+        copy.content = this.content;
+        copy.contentLoader = this.contentLoader;
+        copy.createdAt = this.createdAt;
+        copy.updatedAt = this.updatedAt;
+        return copy;
+    }
+
+    /**
+     * @return 尚未触发的延迟加载句柄；正文已经加载（或从未延迟）时返回 null。
+     */
+    @JsonIgnore
+    public Supplier<String> getContentLoader() { return contentLoader; }
+
+    /**
+     * 正文的廉价签名，用来判断正文在两次读取之间是否被修改过（例如被外部程序直接编辑）。
+     * 正文尚未加载且句柄能直接给出签名时不读取正文；否则对正文计算。
+     */
+    public long contentSignature() {
+        Supplier<String> loader = contentLoader;
+        if (loader instanceof SignedContentLoader) {
+            return ((SignedContentLoader) loader).signature();
+        }
+        String text = getContent();
+        if (text == null) {
+            return signatureOf(-1, 0L);
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return signatureOf(bytes.length, hash);
+    }
+
+    /**
+     * 由正文的 UTF-8 字节数和它的 64 位 FNV-1a 哈希组合出签名，存储引擎的元数据中已有这两项时可以直接使用。
+     */
+    public static long signatureOf(int length, long hash) {
+        return hash * 31 + length;
+    }
     public void setTags(List<String> tags) { this.tags = tags; }
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
@@ -0,0 +1,17 @@
+package com.ZhangRuo.pkm.enums;
+
+/*
+* 定义了笔记上可以按时间过滤和排序的字段
+* */
+
+public enum DateField {
+    /*
+    * 创建时间 createdAt
+    * */
+    CREATED,
+
+    /*
+    * 最后修改时间 updatedAt
+    * */
+    UPDATED
+}
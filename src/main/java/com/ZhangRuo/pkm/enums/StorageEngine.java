@@ -0,0 +1,38 @@
+package com.ZhangRuo.pkm.enums;
+
+/*
+* 定义了支持的笔记存储引擎
+* 通过系统属性 pkm.storage 选择，默认使用 JSON
+* */
+
+public enum StorageEngine {
+    /*
+    * 单个 JSON 数组文件（notes.json），每次保存重写整个文件
+    * */
+    JSON,
+
+    /*
+    * 追加日志文件（notes.log），每次修改只追加单篇笔记的记录
+    * */
+    LOG,
+
+    /*
+    * 按位置读取的二进制笔记库（notes.pkm），按ID查找只解码命中的那一条记录
+    * */
+    BINARY,
+
+    /*
+    * 按ID前缀分片的目录（notes/），每篇笔记一个文件，修改单篇笔记只重写它自己的文件
+    * */
+    SHARDED,
+
+    /*
+    * 元数据索引（notes.idx）与正文文件（notes.body.N）分离，正文在第一次访问时才读取
+    * */
+    INDEXED,
+
+    /*
+    * 分成多个带校验和的段文件（notes.segments/），冷启动时在多个核上并行加载
+    * */
+    SEGMENTED
+}
@@ -0,0 +1,17 @@
+package com.ZhangRuo.pkm.enums;
+
+/*
+* 定义了按多个标签过滤笔记时的组合方式
+* */
+
+public enum TagMatchMode {
+    /*
+    * 笔记必须同时包含所有指定的标签
+    * */
+    AND,
+
+    /*
+    * 笔记只要包含任意一个指定的标签即可
+    * */
+    OR
+}
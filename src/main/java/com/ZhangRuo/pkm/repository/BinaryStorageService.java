@@ -0,0 +1,537 @@
+package com.ZhangRuo.pkm.repository;
+
+import com.ZhangRuo.pkm.entity.Note;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * [数据访问层] 通过 FileChannel 按位置读取的紧凑二进制笔记库。
+ *
+ * 文件布局：
+ * <pre>
+ * [头部 32 字节] magic | version | 保留 | 笔记数 | 索引项宽度 | 数据区偏移 | 版本代数
+ * [索引区]      每篇笔记一个定宽索引项：ID(64字节, UTF-8, 0填充) | 记录偏移(long) | 记录长度(int)，按ID字节序排序
+ * [数据区]      按存储顺序排列的记录：长度(int) + 各字段（每个字符串都是 长度(int) + UTF-8字节，null 记为 -1）
+ * </pre>
+ *
+ * 打开笔记库只需读取 32 字节的头部，与笔记数量无关；按ID查找在定宽索引上二分（每一步读取一个索引项），
+ * 只读取并解码命中的那一条记录，而不是像 JsonStorageService 那样解析整个文件。
+ * 写入仍是整库重写（临时文件 + fsync + 原子重命名），适合读多写少的大型笔记库。
+ *
+ * 读取不使用 MappedByteBuffer：映射只有在被垃圾回收时才会解除，Windows 不允许替换仍被映射的文件，
+ * 原子重命名会失败。改用普通的文件通道后，保存前关闭通道即可替换文件；
+ * scan() 使用自己的通道，遍历期间文件被替换时仍然读到遍历开始时的那一份。
+ */
+public class BinaryStorageService implements StorageService, Closeable {
+
+    /** 文件魔数 "PKMB"。 */
+    private static final int MAGIC = 0x504B4D42;
+    private static final short FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    /** 索引项中ID字段的固定宽度（字节）。 */
+    public static final int ID_WIDTH = 64;
+    private static final int INDEX_ENTRY_SIZE = ID_WIDTH + Long.BYTES + Integer.BYTES;
+
+    private final Path filePath;
+
+    /** 当前文件的只读通道；文件不存在时为 null。 */
+    private FileChannel channel;
+    private int noteCount;
+    private long dataOffset;
+    private long storedGeneration;
+    private Object openedFileKey;
+    private long openedModifiedMillis;
+
+    /**
+     * 默认构造方法，使用 "notes.pkm" 作为文件名。
+     */
+    public BinaryStorageService() {
+        this("notes.pkm");
+    }
+
+    /**
+     * @param filePath 二进制笔记库文件的路径。
+     */
+    public BinaryStorageService(String filePath) {
+        this.filePath = Path.of(filePath).toAbsolutePath();
+        open();
+    }
+
+    // --- 读取 ---
+
+    @Override
+    public synchronized List<Note> load() {
+        refreshIfChanged();
+        List<Note> notes = new ArrayList<>(noteCount);
+        if (channel == null) {
+            return notes;
+        }
+        try {
+            // 整库加载一次读入整个数据区，再逐条解码
+            ByteBuffer data = readAt(channel, dataOffset, (int) (channel.size() - dataOffset));
+            for (int i = 0; i < noteCount; i++) {
+                notes.add(readRecord(data));
+            }
+            return notes;
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("读取二进制笔记库", filePath.toString(), e);
+        }
+    }
+
+    /**
+     * 在定宽索引上按ID二分查找，只解码命中的那一条记录。
+     */
+    @Override
+    public synchronized Optional<Note> findById(String id) {
+        refreshIfChanged();
+        if (id == null || noteCount == 0) {
+            return Optional.empty();
+        }
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        if (key.length > ID_WIDTH) {
+            return Optional.empty();
+        }
+
+        try {
+            int low = 0;
+            int high = noteCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                ByteBuffer entry = readAt(channel, HEADER_SIZE + (long) middle * INDEX_ENTRY_SIZE, INDEX_ENTRY_SIZE);
+                int comparison = compareId(entry, key);
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else if (comparison > 0) {
+                    high = middle - 1;
+                } else {
+                    long offset = entry.getLong(ID_WIDTH);
+                    int length = entry.getInt(ID_WIDTH + Long.BYTES);
+                    return Optional.of(readRecord(readAt(channel, offset, length)));
+                }
+            }
+            return Optional.empty();
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("读取二进制笔记库", filePath.toString(), e);
+        }
+    }
+
+    /**
+     * 按存储顺序惰性解码记录，流被消费到哪里才读取和解码到哪里。
+     * 流使用自己打开的通道（关闭流时关闭），不受之后的保存影响；头部也从这个通道重新读取，
+     * 保证笔记数与遍历的文件一致。
+     */
+    @Override
+    public synchronized Stream<Note> scan() {
+        if (!Files.exists(filePath)) {
+            return Stream.empty();
+        }
+        FileChannel source;
+        int count;
+        long start;
+        try {
+            source = FileChannel.open(filePath, StandardOpenOption.READ);
+            try {
+                ByteBuffer header = readHeader(source);
+                count = header.getInt(8);
+                start = header.getLong(16);
+            } catch (IOException e) {
+                source.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("读取二进制笔记库", filePath.toString(), e);
+        }
+
+        Iterator<Note> iterator = new Iterator<>() {
+            private int decoded = 0;
+            private long position = start;
+
+            @Override
+            public boolean hasNext() {
+                return decoded < count;
+            }
+
+            @Override
+            public Note next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    int length = readAt(source, position, Integer.BYTES).getInt();
+                    ByteBuffer record = readAt(source, position, Integer.BYTES + length);
+                    position += Integer.BYTES + length;
+                    decoded++;
+                    return readRecord(record);
+                } catch (IOException e) {
+                    throw StorageErrors.fileOperation("读取二进制笔记库", filePath.toString(), e);
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliterator(iterator, count,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(() -> {
+            try {
+                source.close();
+            } catch (IOException e) {
+                System.err.println("⚠️ 关闭二进制笔记库失败: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 头部中记录的版本代数，每次保存加一，跨进程持久。
+     * 新建文件时从一个随机值开始，而不是从 1 开始：转换或重建后的新文件与旧文件的代数不会碰巧相同，
+     * 索引快照（NoteIndex 在代数相同时跳过指纹比对）不会把旧文件的快照当成新文件的。
+     */
+    @Override
+    public synchronized long generation() {
+        refreshIfChanged();
+        return storedGeneration;
+    }
+
+    /**
+     * @return 笔记库中的笔记数量（直接读取头部，无需解码任何记录）。
+     */
+    public synchronized int size() {
+        refreshIfChanged();
+        return noteCount;
+    }
+
+    // --- 写入 ---
+
+    /**
+     * 以新的版本代数重写整个文件：写入临时文件并 fsync，关闭当前的读取通道后原子替换，再重新打开读取头部。
+     */
+    @Override
+    public synchronized void save(List<Note> notes) {
+        List<byte[]> records = new ArrayList<>(notes.size());
+        IndexEntry[] entries = new IndexEntry[notes.size()];
+        long offset = HEADER_SIZE + (long) notes.size() * INDEX_ENTRY_SIZE;
+        long firstRecord = offset;
+
+        for (int i = 0; i < notes.size(); i++) {
+            Note note = notes.get(i);
+            Objects.requireNonNull(note.getId(), "二进制笔记库中的笔记ID不能为空");
+            byte[] id = note.getId().getBytes(StandardCharsets.UTF_8);
+            if (id.length > ID_WIDTH) {
+                throw StorageErrors.serialization("写入二进制笔记库: 笔记ID超过 " + ID_WIDTH + " 字节",
+                        new IllegalArgumentException(note.getId()));
+            }
+            byte[] record = encodeRecord(note);
+            records.add(record);
+            entries[i] = new IndexEntry(id, offset, record.length);
+            offset += record.length;
+        }
+        if (offset > Integer.MAX_VALUE) {
+            throw StorageErrors.fileOperation("保存二进制笔记库（单个文件不能超过2GB）", filePath.toString(),
+                    new IOException("文件过大: " + offset + " 字节"));
+        }
+        Arrays.sort(entries, (a, b) -> Arrays.compareUnsigned(a.id, b.id));
+
+        Path temp = null;
+        try {
+            temp = JsonStorageService.createReplacementFile(filePath);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC)
+                        .putShort(FORMAT_VERSION)
+                        .putShort((short) 0)
+                        .putInt(notes.size())
+                        .putInt(INDEX_ENTRY_SIZE)
+                        .putLong(firstRecord)
+                        .putLong(nextGeneration())
+                        .flip();
+                writeFully(channel, header);
+
+                ByteBuffer index = ByteBuffer.allocate(entries.length * INDEX_ENTRY_SIZE);
+                for (IndexEntry entry : entries) {
+                    index.put(entry.id);
+                    index.put(new byte[ID_WIDTH - entry.id.length]);
+                    index.putLong(entry.offset);
+                    index.putInt(entry.length);
+                }
+                writeFully(channel, index.flip());
+
+                for (byte[] record : records) {
+                    writeFully(channel, ByteBuffer.wrap(record));
+                }
+                channel.force(true);
+            }
+            // 先关闭旧文件的通道，再用新文件原子替换（Windows 不允许替换仍被本进程打开的文件）
+            closeChannel();
+            Files.move(temp, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("保存二进制笔记库", filePath.toString(), e);
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // 临时文件清理失败不影响原文件
+                }
+            }
+            open();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closeChannel();
+    }
+
+    // --- 通道与头部 ---
+
+    /**
+     * 打开文件并读取头部，O(1)，与笔记数量无关。
+     */
+    private void open() {
+        closeChannel();
+        noteCount = 0;
+        dataOffset = HEADER_SIZE;
+        storedGeneration = 0L;
+        openedFileKey = null;
+        openedModifiedMillis = 0L;
+        if (!Files.exists(filePath)) {
+            return;
+        }
+        FileChannel opened = null;
+        try {
+            opened = FileChannel.open(filePath, StandardOpenOption.READ);
+            ByteBuffer header = readHeader(opened);
+            noteCount = header.getInt(8);
+            dataOffset = header.getLong(16);
+            storedGeneration = header.getLong(24);
+
+            BasicFileAttributes attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
+            openedFileKey = attrs.fileKey();
+            openedModifiedMillis = attrs.lastModifiedTime().toMillis();
+            channel = opened;
+            opened = null;
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("打开二进制笔记库", filePath.toString(), e);
+        } finally {
+            if (opened != null) {
+                try {
+                    opened.close();
+                } catch (IOException ignored) {
+                    // 打开失败时的清理，忽略即可
+                }
+            }
+        }
+    }
+
+    /**
+     * 已有文件的代数加一；还没有文件时随机选取一个起点，留出足够的空间继续递增且保持非负。
+     */
+    private long nextGeneration() {
+        if (channel != null && storedGeneration > 0) {
+            return storedGeneration + 1;
+        }
+        return ThreadLocalRandom.current().nextLong(1L << 32, 1L << 62);
+    }
+
+    /**
+     * 读取并校验头部。
+     */
+    private static ByteBuffer readHeader(FileChannel source) throws IOException {
+        if (source.size() > Integer.MAX_VALUE) {
+            throw new IOException("文件过大，单个二进制笔记库不能超过2GB");
+        }
+        if (source.size() < HEADER_SIZE) {
+            throw new IOException("文件过短，不是有效的二进制笔记库");
+        }
+        ByteBuffer header = readAt(source, 0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("文件魔数不匹配，不是二进制笔记库");
+        }
+        if (header.getShort(4) != FORMAT_VERSION) {
+            throw new IOException("不支持的二进制笔记库版本: " + header.getShort(4));
+        }
+        if (header.getInt(12) != INDEX_ENTRY_SIZE) {
+            throw new IOException("索引项宽度不匹配: " + header.getInt(12));
+        }
+        return header;
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("⚠️ 关闭二进制笔记库失败: " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * 文件被其他进程替换或修改时重新打开。
+     */
+    private void refreshIfChanged() {
+        try {
+            if (!Files.exists(filePath)) {
+                if (channel != null) {
+                    open();
+                }
+                return;
+            }
+            BasicFileAttributes attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
+            if (channel == null || !Objects.equals(attrs.fileKey(), openedFileKey)
+                    || attrs.lastModifiedTime().toMillis() != openedModifiedMillis) {
+                open();
+            }
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("检查二进制笔记库", filePath.toString(), e);
+        }
+    }
+
+    /**
+     * 从 position 开始读取 length 字节。
+     * @return 已翻转、可直接读取的缓冲区。
+     */
+    private static ByteBuffer readAt(FileChannel source, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (source.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("二进制笔记库被截断");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static int compareId(ByteBuffer entry, byte[] key) {
+        for (int i = 0; i < ID_WIDTH; i++) {
+            int stored = entry.get(i) & 0xff;
+            int wanted = i < key.length ? key[i] & 0xff : 0;
+            if (stored != wanted) {
+                return stored - wanted;
+            }
+        }
+        return 0;
+    }
+
+    // --- 记录编解码 ---
+
+    private static class IndexEntry {
+        final byte[] id;
+        final long offset;
+        final int length;
+
+        IndexEntry(byte[] id, long offset, int length) {
+            this.id = id;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private byte[] encodeRecord(Note note) {
+        List<byte[]> fields = new ArrayList<>();
+        fields.add(utf8(note.getId()));
+        fields.add(utf8(note.getTitle()));
+        fields.add(utf8(note.getContent()));
+        fields.add(utf8(note.getCreatedAt() != null ? note.getCreatedAt().toString() : null));
+        fields.add(utf8(note.getUpdatedAt() != null ? note.getUpdatedAt().toString() : null));
+
+        int size = Integer.BYTES * (fields.size() + 2);
+        for (byte[] field : fields) {
+            size += field != null ? field.length : 0;
+        }
+        List<byte[]> tags = new ArrayList<>();
+        for (String tag : note.getTags()) {
+            byte[] bytes = utf8(tag);
+            tags.add(bytes);
+            size += Integer.BYTES + bytes.length;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(size);
+        record.putInt(size - Integer.BYTES);
+        for (byte[] field : fields) {
+            putString(record, field);
+        }
+        record.putInt(tags.size());
+        for (byte[] tag : tags) {
+            putString(record, tag);
+        }
+        return record.array();
+    }
+
+    /**
+     * 从 buffer 的当前位置解码一条记录，并把位置推进到下一条记录的开头。
+     */
+    private Note readRecord(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        int end = buffer.position() + length;
+
+        Note note = new Note();
+        note.setId(getString(buffer));
+        note.setTitle(getString(buffer));
+        note.setContent(getString(buffer));
+        String createdAt = getString(buffer);
+        String updatedAt = getString(buffer);
+        int tagCount = buffer.getInt();
+        List<String> tags = new ArrayList<>(tagCount);
+        for (int i = 0; i < tagCount; i++) {
+            tags.add(getString(buffer));
+        }
+        note.setTags(tags);
+        // setTitle/setContent 会刷新更新时间，所以时间戳最后再设置
+        note.setCreatedAt(createdAt != null ? LocalDateTime.parse(createdAt) : null);
+        note.setUpdatedAt(updatedAt != null ? LocalDateTime.parse(updatedAt) : null);
+
+        buffer.position(end);
+        return note;
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.ZhangRuo.pkm.repository;
+
+import com.ZhangRuo.pkm.entity.Note;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * [数据访问层] 常驻内存的笔记仓库。
+ * 以装饰器的形式包在任意 StorageService 外面：整个进程只在第一次访问时完整加载一次笔记库，
+ * 之后所有读取都直接命中内存中以笔记ID为键的 Map。
+ * 只有写入操作，或者检测到底层存储被外部修改（版本戳变化）时，才会再次访问被装饰的存储服务。
+ *
+ * 缓存中的笔记对象从不交给调用方：读取返回的是副本（见 Note.detachedCopy），写入时保存的也是副本。
+ * 上层先修改笔记（setContent、addTag）再调用 upsert，写入失败时缓存仍与磁盘一致，不会领先于磁盘。
+ * 正文尚未加载的笔记复制的是未触发的加载句柄，复制本身不读取正文。
+ */
+public class CachingStorageService implements StorageService {
+
+    private final StorageService delegate;
+
+    /**
+     * 以笔记ID为键、保持存储顺序的内存副本。
+     * 没有ID的笔记（例如直接通过 save 写入的临时对象）使用各自独立的占位键，保证不会互相覆盖。
+     */
+    private final Map<Object, Note> notesById = new LinkedHashMap<>();
+
+    private boolean loaded = false;
+    private long loadedGeneration = -1L;
+
+    /**
+     * 构造函数。
+     * @param delegate 真正负责持久化的存储服务（如 JsonStorageService）。
+     */
+    public CachingStorageService(StorageService delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * 底层存储写入成功后才更新缓存。
+     */
+    @Override
+    public synchronized void save(List<Note> notes) {
+        delegate.save(notes);
+        replaceAll(notes);
+    }
+
+    /**
+     * 返回缓存中每篇笔记的副本组成的新列表。
+     * 调用方可以自由增删这个列表、修改其中的笔记，都不会影响缓存本身。
+     */
+    @Override
+    public synchronized List<Note> load() {
+        ensureFresh();
+        return copyOf(notesById.values());
+    }
+
+    /**
+     * 直接在内存 Map 中按ID查找，O(1)，返回笔记的副本。
+     */
+    @Override
+    public synchronized Optional<Note> findById(String id) {
+        ensureFresh();
+        return id == null ? Optional.empty() : Optional.ofNullable(notesById.get(id)).map(Note::detachedCopy);
+    }
+
+    /**
+     * 底层存储支持增量写入时直接转交给它；否则由缓存层用内存中的完整列表调用 save，
+     * 避免底层的默认实现再从磁盘加载一遍整个笔记库。
+     */
+    @Override
+    public synchronized void upsert(Note note) {
+        Objects.requireNonNull(note.getId(), "笔记ID不能为空");
+        ensureFresh();
+        if (delegate.supportsIncrementalWrites()) {
+            delegate.upsert(note);
+            notesById.put(note.getId(), note.detachedCopy());
+            markWritten();
+        } else {
+            Map<Object, Note> updated = new LinkedHashMap<>(notesById);
+            updated.put(note.getId(), note);
+            save(new ArrayList<>(updated.values()));
+        }
+    }
+
+    @Override
+    public synchronized boolean delete(String id) {
+        ensureFresh();
+        if (id == null || !notesById.containsKey(id)) {
+            return false;
+        }
+        if (delegate.supportsIncrementalWrites()) {
+            delegate.delete(id);
+            notesById.remove(id);
+            markWritten();
+        } else {
+            Map<Object, Note> updated = new LinkedHashMap<>(notesById);
+            updated.remove(id);
+            save(new ArrayList<>(updated.values()));
+        }
+        return true;
+    }
+
+    /**
+     * 遍历内存副本的一个快照（每篇笔记都是副本），遍历期间的写入不会影响本次遍历。
+     */
+    @Override
+    public synchronized Stream<Note> scan() {
+        ensureFresh();
+        return copyOf(notesById.values()).stream();
+    }
+
+    /**
+     * 缓存层的单篇写入不会触发额外的整库加载，对上层而言等价于增量写入。
+     */
+    @Override
+    public boolean supportsIncrementalWrites() {
+        return true;
+    }
+
+    /**
+     * 缓存层的版本戳直接沿用底层存储的版本戳；
+     * 底层不支持变更检测时，退化为一个在每次写入后递增的计数器。
+     */
+    @Override
+    public synchronized long generation() {
+        ensureFresh();
+        return loadedGeneration;
+    }
+
+    /**
+     * 关闭被装饰的存储服务。
+     */
+    @Override
+    public synchronized void close() {
+        delegate.close();
+    }
+
+    /**
+     * 丢弃内存副本，下一次访问时重新从底层存储加载。
+     */
+    public synchronized void invalidate() {
+        loaded = false;
+    }
+
+    /**
+     * 确保内存副本与底层存储一致。
+     * 第一次访问时加载；之后仅当底层版本戳发生变化时重新加载。
+     */
+    private void ensureFresh() {
+        if (loaded) {
+            long current = delegate.generation();
+            if (current < 0 || current == loadedGeneration) {
+                return;
+            }
+        }
+        List<Note> notes = delegate.load();
+        replaceAll(notes);
+    }
+
+    /**
+     * 用给定列表的副本整体替换内存副本，并记录对应的版本戳。
+     */
+    private void replaceAll(List<Note> notes) {
+        notesById.clear();
+        for (Note note : notes) {
+            notesById.put(keyOf(note), note.detachedCopy());
+        }
+        loaded = true;
+        markWritten();
+    }
+
+    /**
+     * 内存副本已与底层存储同步，记录对应的版本戳。
+     */
+    private void markWritten() {
+        long current = delegate.generation();
+        loadedGeneration = current >= 0 ? current : loadedGeneration + 1;
+    }
+
+    private static List<Note> copyOf(Collection<Note> notes) {
+        List<Note> copies = new ArrayList<>(notes.size());
+        for (Note note : notes) {
+            copies.add(note.detachedCopy());
+        }
+        return copies;
+    }
+
+    private Object keyOf(Note note) {
+        return note.getId() != null ? note.getId() : new Object();
+    }
+}
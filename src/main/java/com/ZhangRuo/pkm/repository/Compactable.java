@@ -0,0 +1,36 @@
+package com.ZhangRuo.pkm.repository;
+
+/*
+* 可以回收失效空间的存储引擎（追加日志、只追加的正文文件等）
+* 后台维护任务通过这个接口触发压缩，而不需要关心具体是哪一种存储引擎
+* */
+
+public interface Compactable {
+    /*
+    * 估算一次压缩需要读写的字节数，供维护任务申请 I/O 预算
+    * @return 预计的字节数；返回 0 表示当前没有可回收的空间
+    * */
+    long estimateCompactionBytes();
+
+    /*
+    * 立即在调用线程上执行一次不限速的压缩
+    * @return 如果另一次压缩正在进行而本次被跳过，返回 false
+    * */
+    default boolean compactNow() {
+        try {
+            return compactNow(IoBudget.UNLIMITED);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /*
+    * 立即在调用线程上执行一次压缩，每读写一块数据之前向 budget 申请预算
+    * 实现只能在不持有存储锁的阶段等待预算，前台的读写不会被暂停中的压缩挡住
+    * @param budget 读写每一块数据之前申请的预算
+    * @return 如果另一次压缩正在进行而本次被跳过，返回 false
+    * @throws InterruptedException 等待预算时线程被中断，此时压缩被放弃，原文件保持不变
+    * */
+    boolean compactNow(IoBudget budget) throws InterruptedException;
+}
@@ -0,0 +1,683 @@
+package com.ZhangRuo.pkm.repository;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.ZhangRuo.pkm.entity.Note;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * [数据访问层] 元数据索引与正文分离存储的引擎。
+ *
+ * 由两类文件组成：
+ * <pre>
+ * notes.idx        元数据索引：每篇笔记的ID、标题、标签、时间戳，以及正文在正文文件中的位置
+ * notes.body.N     正文文件：所有正文的 UTF-8 字节首尾相接，只追加；N 为压缩代数
+ * </pre>
+ *
+ * load/scan/findById 只解析很小的元数据索引，返回的笔记挂着延迟加载句柄，
+ * 正文在第一次调用 Note.getContent() 时按偏移量从正文文件中定位读取。
+ * 列表、按标签过滤、统计这类只需要元数据的操作因此不必读取占绝大部分字节的正文。
+ *
+ * 写入时正文未变化的笔记复用原有位置，只有新正文追加到正文文件末尾，随后原子地替换索引；
+ * 当正文文件中的失效字节超过存活字节时，把存活正文复制到下一代正文文件并切换索引。
+ */
+public class IndexedStorageService implements StorageService, Compactable, Closeable {
+
+    private static final int FORMAT_VERSION = 1;
+    /** 失效字节至少达到这个数量才考虑压缩正文文件，避免小笔记库频繁压缩。 */
+    private static final long MIN_COMPACTION_BYTES = 1L << 20;
+
+    private final Path indexFile;
+    private final String bodyFilePrefix;
+    private final ObjectMapper objectMapper;
+
+    /** 当前索引中的元数据，按存储顺序排列。 */
+    private final Map<String, NoteMeta> metas = new LinkedHashMap<>();
+    private long generation = 0L;
+    private long epoch = 0L;
+
+    private Object indexFileKey;
+    private long indexModifiedMillis = -1L;
+    private long indexSize = -1L;
+
+    /** 压缩正在进行：复制正文的阶段不持锁，期间由写入触发的压缩直接跳过。 */
+    private boolean compacting = false;
+
+    /** 当前代正文文件的只读通道，按位置读取，可被多个延迟加载句柄共享。 */
+    private FileChannel bodyReader;
+    private long bodyReaderEpoch = -1L;
+
+    /**
+     * 索引中一篇笔记的元数据。
+     * offset 为 -1 表示正文为 null。
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class NoteMeta {
+        private String id;
+        private String title;
+        private List<String> tags = new ArrayList<>();
+        private LocalDateTime createdAt;
+        private LocalDateTime updatedAt;
+        private long offset = -1L;
+        private int length;
+        private long hash;
+
+        public NoteMeta() {
+        }
+
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+        public String getTitle() { return title; }
+        public void setTitle(String title) { this.title = title; }
+        public List<String> getTags() { return tags; }
+        public void setTags(List<String> tags) { this.tags = tags; }
+        public LocalDateTime getCreatedAt() { return createdAt; }
+        public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+        public LocalDateTime getUpdatedAt() { return updatedAt; }
+        public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+        public long getOffset() { return offset; }
+        public void setOffset(long offset) { this.offset = offset; }
+        public int getLength() { return length; }
+        public void setLength(int length) { this.length = length; }
+        public long getHash() { return hash; }
+        public void setHash(long hash) { this.hash = hash; }
+    }
+
+    /**
+     * 索引文件的整体结构。
+     */
+    public static class IndexFile {
+        private int formatVersion = FORMAT_VERSION;
+        private long generation;
+        private long epoch;
+        private List<NoteMeta> notes = new ArrayList<>();
+
+        public IndexFile() {
+        }
+
+        public int getFormatVersion() { return formatVersion; }
+        public void setFormatVersion(int formatVersion) { this.formatVersion = formatVersion; }
+        public long getGeneration() { return generation; }
+        public void setGeneration(long generation) { this.generation = generation; }
+        public long getEpoch() { return epoch; }
+        public void setEpoch(long epoch) { this.epoch = epoch; }
+        public List<NoteMeta> getNotes() { return notes; }
+        public void setNotes(List<NoteMeta> notes) { this.notes = notes; }
+    }
+
+    /**
+     * 挂在笔记上的正文延迟加载句柄，记录它来自哪个存储、哪一代正文文件的哪个位置。
+     */
+    private class BodyHandle implements Note.SignedContentLoader {
+        final String id;
+        final long epoch;
+        final long offset;
+        final int length;
+        final long hash;
+
+        BodyHandle(String id, long epoch, long offset, int length, long hash) {
+            this.id = id;
+            this.epoch = epoch;
+            this.offset = offset;
+            this.length = length;
+            this.hash = hash;
+        }
+
+        @Override
+        public String get() {
+            return readBody(this);
+        }
+
+        /**
+         * 元数据中已有正文的字节数和 FNV-1a 哈希，计算签名不需要读取正文。
+         */
+        @Override
+        public long signature() {
+            return Note.signatureOf(length, hash);
+        }
+
+        IndexedStorageService owner() {
+            return IndexedStorageService.this;
+        }
+    }
+
+    /**
+     * 默认构造方法，使用 "notes.idx" 和 "notes.body.N"。
+     */
+    public IndexedStorageService() {
+        this("notes");
+    }
+
+    /**
+     * @param basePath 文件名前缀，索引为 basePath + ".idx"，正文为 basePath + ".body.N"。
+     */
+    public IndexedStorageService(String basePath) {
+        Path base = Path.of(basePath).toAbsolutePath();
+        this.indexFile = base.resolveSibling(base.getFileName() + ".idx");
+        this.bodyFilePrefix = base.getFileName() + ".body.";
+
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        refreshIndex();
+    }
+
+    // --- 读取：只接触元数据 ---
+
+    @Override
+    public synchronized List<Note> load() {
+        refreshIndex();
+        List<Note> notes = new ArrayList<>(metas.size());
+        for (NoteMeta meta : metas.values()) {
+            notes.add(toNote(meta));
+        }
+        return notes;
+    }
+
+    @Override
+    public synchronized Optional<Note> findById(String id) {
+        refreshIndex();
+        NoteMeta meta = id != null ? metas.get(id) : null;
+        return meta != null ? Optional.of(toNote(meta)) : Optional.empty();
+    }
+
+    @Override
+    public synchronized long generation() {
+        refreshIndex();
+        return generation;
+    }
+
+    /**
+     * @return 当前正文文件的路径。
+     */
+    public synchronized Path getBodyFile() {
+        return bodyFile(epoch);
+    }
+
+    // --- 写入 ---
+
+    /**
+     * 整库保存：正文未变化的笔记复用原有位置，只追加新的正文，最后原子地替换索引。
+     * 没有ID的笔记会被分配一个新的UUID，因为索引以ID为键。
+     */
+    @Override
+    public synchronized void save(List<Note> notes) {
+        refreshIndex();
+        Map<String, NoteMeta> updated = new LinkedHashMap<>();
+        List<NoteMeta> pending = new ArrayList<>();
+        List<byte[]> pendingBodies = new ArrayList<>();
+        for (Note note : notes) {
+            if (note.getId() == null) {
+                note.setId(UUID.randomUUID().toString());
+            }
+            updated.put(note.getId(), prepare(note, pending, pendingBodies));
+        }
+        appendBodies(pending, pendingBodies);
+        commit(updated);
+    }
+
+    /**
+     * 只追加这一篇笔记的正文（如果变化了），并重写很小的元数据索引。
+     */
+    @Override
+    public synchronized void upsert(Note note) {
+        Objects.requireNonNull(note.getId(), "笔记ID不能为空");
+        refreshIndex();
+        List<NoteMeta> pending = new ArrayList<>();
+        List<byte[]> pendingBodies = new ArrayList<>();
+        NoteMeta meta = prepare(note, pending, pendingBodies);
+        appendBodies(pending, pendingBodies);
+
+        Map<String, NoteMeta> updated = new LinkedHashMap<>(metas);
+        updated.put(note.getId(), meta);
+        commit(updated);
+    }
+
+    @Override
+    public synchronized boolean delete(String id) {
+        refreshIndex();
+        if (id == null || !metas.containsKey(id)) {
+            return false;
+        }
+        Map<String, NoteMeta> updated = new LinkedHashMap<>(metas);
+        updated.remove(id);
+        commit(updated);
+        return true;
+    }
+
+    @Override
+    public boolean supportsIncrementalWrites() {
+        return true;
+    }
+
+    /**
+     * 压缩需要读取全部存活正文并写入新文件；正文文件中没有失效字节时无需压缩。
+     */
+    @Override
+    public synchronized long estimateCompactionBytes() {
+        refreshIndex();
+        return deadBytes() > 0 ? liveBytes() * 2 : 0L;
+    }
+
+    /**
+     * 把存活的正文复制到下一代正文文件，并切换索引指向它：
+     * 1. 持锁拍下元数据的快照；
+     * 2. 不持锁地按块复制快照中的正文，每一块之前申请预算。正文文件只追加，快照中的位置在此期间一直有效，
+     *    前台照常读写（新正文追加到当前正文文件末尾）；
+     * 3. 再次持锁，补上第1步之后写入或修改的正文，原子地写入指向新文件的索引。
+     * 切换完成前旧文件保持不变，进程在中途崩溃时索引仍然指向完整的旧文件。
+     * @return 另一次压缩正在进行，或者压缩期间正文文件已被其他进程切换时返回 false。
+     */
+    @Override
+    public boolean compactNow(IoBudget budget) throws InterruptedException {
+        // 1. 拍下元数据快照
+        long sourceEpoch;
+        Map<String, NoteMeta> snapshot = new LinkedHashMap<>();
+        synchronized (this) {
+            if (compacting) {
+                return false;
+            }
+            refreshIndex();
+            compacting = true;
+            sourceEpoch = epoch;
+            for (NoteMeta meta : metas.values()) {
+                snapshot.put(meta.getId(), copyOf(meta));
+            }
+        }
+
+        Path source = bodyFile(sourceEpoch);
+        Path target = bodyFile(sourceEpoch + 1);
+        // 压缩结束后要删除的文件：成功时是旧正文文件，失败时是写了一半的新文件
+        Path obsolete = target;
+        try {
+            if (!Files.exists(source)) {
+                Files.createFile(source);// 还没有写入过任何正文
+            }
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                         StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                // 2. 不持锁地复制快照中的正文
+                Map<String, Long> copiedOffsets = new LinkedHashMap<>();
+                long position = 0L;
+                for (NoteMeta meta : snapshot.values()) {
+                    if (meta.getOffset() >= 0) {
+                        copiedOffsets.put(meta.getId(), position);
+                        position += copyBody(in, meta.getOffset(), meta.getLength(), out, budget);
+                    }
+                }
+
+                // 3. 持锁补上压缩期间的变化，并切换到新文件
+                synchronized (this) {
+                    refreshIndex();
+                    if (epoch != sourceEpoch) {
+                        // 其他进程已经压缩过；它的新正文文件可能正是 target，不能删除
+                        obsolete = epoch == sourceEpoch + 1 ? null : target;
+                        return false;
+                    }
+                    Map<String, NoteMeta> updated = new LinkedHashMap<>();
+                    for (NoteMeta meta : metas.values()) {
+                        NoteMeta copy = copyOf(meta);
+                        if (meta.getOffset() >= 0) {
+                            NoteMeta before = snapshot.get(meta.getId());
+                            Long copied = copiedOffsets.get(meta.getId());
+                            if (copied != null && before.getOffset() == meta.getOffset()
+                                    && before.getLength() == meta.getLength()) {
+                                copy.setOffset(copied);
+                            } else {
+                                copy.setOffset(position);
+                                position += copyBody(in, meta.getOffset(), meta.getLength(), out, IoBudget.UNLIMITED);
+                            }
+                        }
+                        updated.put(copy.getId(), copy);
+                    }
+                    out.force(true);
+
+                    epoch = sourceEpoch + 1;
+                    try {
+                        commit(updated);
+                    } catch (IllegalStateException e) {
+                        epoch = sourceEpoch;
+                        throw e;
+                    }
+                    closeBodyReader();
+                    obsolete = source;
+                }
+            }
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("压缩正文文件", target.toString(), e);
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+            // 两个文件的通道都已关闭，再删除不再被索引引用的那一个
+            try {
+                if (obsolete != null) {
+                    Files.deleteIfExists(obsolete);
+                }
+            } catch (IOException e) {
+                // 删除失败只会浪费一些磁盘空间
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void close() {
+        closeBodyReader();
+    }
+
+    // --- 内部实现 ---
+
+    private Note toNote(NoteMeta meta) {
+        Note note = new Note();
+        note.setId(meta.getId());
+        note.setTitle(meta.getTitle());
+        note.setTags(new ArrayList<>(meta.getTags()));
+        if (meta.getOffset() >= 0) {
+            note.attachContentLoader(new BodyHandle(meta.getId(), epoch, meta.getOffset(), meta.getLength(), meta.getHash()));
+        }
+        // setTitle 会刷新更新时间，所以时间戳最后再设置
+        note.setCreatedAt(meta.getCreatedAt());
+        note.setUpdatedAt(meta.getUpdatedAt());
+        return note;
+    }
+
+    /**
+     * 为一篇待写入的笔记生成元数据。
+     * 正文仍是本存储的未触发句柄，或者内容与已存储的正文相同时，直接复用原来的位置；
+     * 否则把正文加入待追加列表，位置在 appendBodies 中确定。
+     */
+    private NoteMeta prepare(Note note, List<NoteMeta> pending, List<byte[]> pendingBodies) {
+        NoteMeta meta = new NoteMeta();
+        meta.setId(note.getId());
+        meta.setTitle(note.getTitle());
+        meta.setTags(new ArrayList<>(note.getTags()));
+        meta.setCreatedAt(note.getCreatedAt());
+        meta.setUpdatedAt(note.getUpdatedAt());
+
+        NoteMeta previous = metas.get(note.getId());
+        Supplier<String> loader = note.getContentLoader();
+        if (previous != null && loader instanceof BodyHandle && ((BodyHandle) loader).owner() == this
+                && ((BodyHandle) loader).id.equals(note.getId())) {
+            copyBodyRef(previous, meta);
+            return meta;
+        }
+
+        String content = note.getContent();
+        if (content == null) {
+            return meta;
+        }
+        byte[] body = content.getBytes(StandardCharsets.UTF_8);
+        long hash = fingerprint(body);
+        if (previous != null && previous.getOffset() >= 0
+                && previous.getLength() == body.length && previous.getHash() == hash) {
+            copyBodyRef(previous, meta);
+            return meta;
+        }
+        meta.setLength(body.length);
+        meta.setHash(hash);
+        pending.add(meta);
+        pendingBodies.add(body);
+        return meta;
+    }
+
+    /**
+     * 把新的正文一次性追加到当前正文文件末尾并 fsync，然后回填它们的位置。
+     */
+    private void appendBodies(List<NoteMeta> pending, List<byte[]> bodies) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Path target = bodyFile(epoch);
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long position = out.size();
+            out.position(position);
+            for (int i = 0; i < pending.size(); i++) {
+                pending.get(i).setOffset(position);
+                position += writeFully(out, ByteBuffer.wrap(bodies.get(i)));
+            }
+            out.force(true);
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("追加正文", target.toString(), e);
+        }
+    }
+
+    /**
+     * 版本代数加一，原子地写入新的索引，并在失效字节过多时压缩正文文件。
+     */
+    private void commit(Map<String, NoteMeta> updated) {
+        IndexFile index = new IndexFile();
+        index.setGeneration(generation + 1);
+        index.setEpoch(epoch);
+        index.setNotes(new ArrayList<>(updated.values()));
+
+        Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                writeFully(out, ByteBuffer.wrap(objectMapper.writeValueAsBytes(index)));
+                out.force(true);
+            }
+            Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("保存元数据索引", indexFile.toString(), e);
+        }
+
+        metas.clear();
+        metas.putAll(updated);
+        generation = index.getGeneration();
+        rememberIndexAttributes();
+
+        if (shouldCompact()) {
+            compactNow();
+        }
+    }
+
+    private boolean shouldCompact() {
+        long deadBytes = deadBytes();
+        return deadBytes >= MIN_COMPACTION_BYTES && deadBytes > liveBytes();
+    }
+
+    private long liveBytes() {
+        long liveBytes = 0L;
+        for (NoteMeta meta : metas.values()) {
+            if (meta.getOffset() >= 0) {
+                liveBytes += meta.getLength();
+            }
+        }
+        return liveBytes;
+    }
+
+    /**
+     * @return 正文文件中已不被索引引用的字节数；无法读取文件大小时返回 0。
+     */
+    private long deadBytes() {
+        try {
+            Path body = bodyFile(epoch);
+            return Math.max(0L, (Files.exists(body) ? Files.size(body) : 0L) - liveBytes());
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * 延迟加载句柄的实际读取逻辑。
+     * 如果句柄创建之后正文文件已被压缩，则按ID在当前索引中重新定位。
+     */
+    private synchronized String readBody(BodyHandle handle) {
+        refreshIndex();
+        long offset = handle.offset;
+        int length = handle.length;
+        if (handle.epoch != epoch) {
+            NoteMeta meta = metas.get(handle.id);
+            if (meta == null || meta.getOffset() < 0) {
+                return null;
+            }
+            offset = meta.getOffset();
+            length = meta.getLength();
+        }
+        ByteBuffer body = readBytes(offset, length);
+        return StandardCharsets.UTF_8.decode(body).toString();
+    }
+
+    private ByteBuffer readBytes(long offset, int length) {
+        Path source = bodyFile(epoch);
+        try {
+            if (bodyReader == null || bodyReaderEpoch != epoch) {
+                closeBodyReader();
+                bodyReader = FileChannel.open(source, StandardOpenOption.READ);
+                bodyReaderEpoch = epoch;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (bodyReader.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("正文文件被截断");
+                }
+            }
+            return buffer.flip();
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("读取正文", source.toString(), e);
+        }
+    }
+
+    /**
+     * 索引文件被其他进程替换时重新读取它。
+     */
+    private void refreshIndex() {
+        try {
+            if (!Files.exists(indexFile)) {
+                return;
+            }
+            BasicFileAttributes attrs = Files.readAttributes(indexFile, BasicFileAttributes.class);
+            if (Objects.equals(attrs.fileKey(), indexFileKey)
+                    && attrs.lastModifiedTime().toMillis() == indexModifiedMillis
+                    && attrs.size() == indexSize) {
+                return;
+            }
+            IndexFile index = objectMapper.readValue(Files.readAllBytes(indexFile), IndexFile.class);
+            if (index.getFormatVersion() != FORMAT_VERSION) {
+                throw new IOException("不支持的索引版本: " + index.getFormatVersion());
+            }
+            metas.clear();
+            for (NoteMeta meta : index.getNotes()) {
+                metas.put(meta.getId(), meta);
+            }
+            generation = index.getGeneration();
+            epoch = index.getEpoch();
+            indexFileKey = attrs.fileKey();
+            indexModifiedMillis = attrs.lastModifiedTime().toMillis();
+            indexSize = attrs.size();
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("读取元数据索引", indexFile.toString(), e);
+        }
+    }
+
+    private void rememberIndexAttributes() {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(indexFile, BasicFileAttributes.class);
+            indexFileKey = attrs.fileKey();
+            indexModifiedMillis = attrs.lastModifiedTime().toMillis();
+            indexSize = attrs.size();
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("读取元数据索引", indexFile.toString(), e);
+        }
+    }
+
+    private void closeBodyReader() {
+        if (bodyReader != null) {
+            try {
+                bodyReader.close();
+            } catch (IOException ignored) {
+                // 只读通道关闭失败不影响数据
+            }
+            bodyReader = null;
+            bodyReaderEpoch = -1L;
+        }
+    }
+
+    private Path bodyFile(long bodyEpoch) {
+        return indexFile.resolveSibling(bodyFilePrefix + bodyEpoch);
+    }
+
+    private static NoteMeta copyOf(NoteMeta meta) {
+        NoteMeta copy = new NoteMeta();
+        copy.setId(meta.getId());
+        copy.setTitle(meta.getTitle());
+        copy.setTags(meta.getTags());
+        copy.setCreatedAt(meta.getCreatedAt());
+        copy.setUpdatedAt(meta.getUpdatedAt());
+        copyBodyRef(meta, copy);
+        return copy;
+    }
+
+    private static void copyBodyRef(NoteMeta from, NoteMeta to) {
+        to.setOffset(from.getOffset());
+        to.setLength(from.getLength());
+        to.setHash(from.getHash());
+    }
+
+    /**
+     * 把 in 中 [offset, offset + length) 的正文按块追加到 out 的当前位置，每一块之前为读和写各申请一次预算。
+     * @return 复制的字节数。
+     */
+    private static long copyBody(FileChannel in, long offset, int length, FileChannel out, IoBudget budget)
+            throws IOException, InterruptedException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(length, IoBudget.CHUNK_BYTES));
+        long copied = 0L;
+        while (copied < length) {
+            int chunk = (int) Math.min(length - copied, buffer.capacity());
+            budget.acquire(2L * chunk);
+            buffer.clear().limit(chunk);
+            while (buffer.hasRemaining()) {
+                if (in.read(buffer, offset + copied + buffer.position()) < 0) {
+                    throw new IOException("正文文件被截断");
+                }
+            }
+            buffer.flip();
+            copied += writeFully(out, buffer);
+        }
+        return copied;
+    }
+
+    private static long writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        long written = 0L;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+        return written;
+    }
+
+    /**
+     * 64 位 FNV-1a 指纹，用于判断正文是否与已存储的版本相同；与 Note.contentSignature 使用相同的算法。
+     */
+    private static long fingerprint(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,29 @@
+package com.ZhangRuo.pkm.repository;
+
+/*
+* 后台任务的 I/O 预算
+* 存储引擎和索引在长时间的读写循环中（压缩、备份、写快照），每读写一块数据之前调用 acquire；
+* 预算不足或前台命令正在执行时 acquire 会阻塞，后台任务因此停在两块数据之间，而不是一口气写完
+* 实现者（如 IoThrottle）在持有存储引擎的锁时不应被调用，否则暂停的后台任务会挡住前台命令
+* */
+
+@FunctionalInterface
+public interface IoBudget {
+
+    /*
+    * 每次申请预算的最大块大小（64 KiB）：调用方按这个粒度读写，并在每一块之前申请预算
+    * */
+    int CHUNK_BYTES = 64 * 1024;
+
+    /*
+    * 不做任何限制的预算，供前台直接执行压缩等操作时使用
+    * */
+    IoBudget UNLIMITED = bytes -> { };
+
+    /*
+    * 为即将读写的字节申请预算，必要时阻塞
+    * @param bytes 即将读写的字节数，调用方应保证不超过 CHUNK_BYTES
+    * @throws InterruptedException 等待期间线程被中断
+    * */
+    void acquire(long bytes) throws InterruptedException;
+}
@@ -1,28 +1,84 @@
 package com.ZhangRuo.pkm.repository;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.ZhangRuo.pkm.entity.Note;
+import com.ZhangRuo.pkm.exception.FileOperationException;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.security.SecureRandom;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /*
 * 使用JSON文件实现StorageService接口
 *负责将笔记对象序列化为JSON格式并存入文件，以及从文件中反序列化
 *
 * StorageService接口的具体实现者，它负责读写 notes.json 文件
+*
+* 写入采用"临时文件 + fsync + 原子重命名"的方式，进程在写入中途崩溃也不会留下被截断的笔记库；
+* 短时间内并发到达的多次保存会合并为一次组提交（group commit），整组只做一次 fsync
+* 读取基于 Jackson 的流式 JsonParser，scan() 逐篇产出笔记，遍历整个笔记库只需常数级内存
 * */
 
 public class JsonStorageService implements StorageService {
 
+    /** 第一次创建文件时临时文件名中的随机部分，与 createTempFile 的做法相同。 */
+    private static final SecureRandom TEMP_NAMES = new SecureRandom();
+
     private final String filePath;
     private final ObjectMapper objectMapper; //Jackon核心对象
 
+    /*
+    * 组提交的聚合窗口（毫秒）：领头的提交者会等待这么久，让同一时间段内到达的保存请求加入同一组
+    * 为0时只合并在上一次提交进行期间排队的请求
+    * */
+    private final long groupCommitWindowMillis;
+
+    //等待提交的保存请求，以及当前是否已有线程在执行提交
+    private final List<CommitRequest> pendingRequests = new ArrayList<>();
+    private boolean committing = false;
+    private long commitCount = 0;
+
+    /*
+    * 一次保存请求：携带要写入的快照，提交完成后由领头线程填入结果
+    * */
+    private static class CommitRequest {
+        final List<Note> notes;
+        boolean done = false;
+        FileOperationException failure;
+
+        CommitRequest(List<Note> notes) {
+            this.notes = notes;
+        }
+    }
+
     /*
     * 默认构造方法，使用"notes.json"作为文件名
     * */
@@ -35,7 +91,17 @@ public class JsonStorageService implements StorageService {
     * @param filepath JSON文件的路径
     * */
     public JsonStorageService(String filePath){
+        this(filePath, 0L);
+    }
+
+    /*
+    * 可指定组提交聚合窗口的构造方法
+    * @param filepath JSON文件的路径
+    * @param groupCommitWindowMillis 组提交的聚合窗口（毫秒）
+    * */
+    public JsonStorageService(String filePath, long groupCommitWindowMillis){
         this.filePath = filePath;
+        this.groupCommitWindowMillis = groupCommitWindowMillis;
         //初始化并配置ObjectMapper
         this.objectMapper = new ObjectMapper();
         //注册JavaTimeModel以支持LocalTimeModel
@@ -44,16 +110,217 @@ public class JsonStorageService implements StorageService {
         this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
         //配置特性：美化输出的JSON格式(带缩进)，便于阅读
         this.objectMapper.disable(SerializationFeature.INDENT_OUTPUT);
+        //配置特性：写完后不自动关闭输出流，由我们在fsync之后再关闭
+        this.objectMapper.getFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
 
+    /*
+    * StorageService 的保存方法不声明受检异常，
+    * 失败时抛出 IllegalStateException，并以 FileOperationException 作为 cause
+    * */
     @Override
     public void save(List<Note> notes){
         try {
-            //使用ObjectMapper将notes列表写入到指定的文件中
-            objectMapper.writeValue(new File(filePath),notes);
+            commit(notes);
+        }catch (FileOperationException e){
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /*
+    * 以组提交的方式持久化笔记列表
+    * 每次保存都是整库快照，所以同一组内只需写入最后到达的那份快照，整组共享一次写入和一次fsync
+    *
+    * @param notes 要保存的笔记列表
+    * @throws FileOperationException 写入、刷盘或重命名失败时抛出
+    * */
+    public void commit(List<Note> notes) throws FileOperationException {
+        CommitRequest request = new CommitRequest(new ArrayList<>(notes));
+        List<CommitRequest> group;
+
+        synchronized (pendingRequests) {
+            pendingRequests.add(request);
+            //已有线程在提交：等待它把我们的请求带上，或者等它结束后由我们来领头
+            while (committing && !request.done) {
+                awaitQuietly(pendingRequests, 0L);
+            }
+            if (request.done) {
+                if (request.failure != null) {
+                    throw request.failure;
+                }
+                return;
+            }
+            committing = true;
+        }
+
+        //领头线程：先等待一个聚合窗口，让同一时间段内的其他保存加入这一组
+        if (groupCommitWindowMillis > 0) {
+            synchronized (pendingRequests) {
+                awaitQuietly(pendingRequests, groupCommitWindowMillis);
+            }
+        }
+
+        synchronized (pendingRequests) {
+            group = new ArrayList<>(pendingRequests);
+            pendingRequests.clear();
+        }
+
+        FileOperationException failure = null;
+        try {
+            writeAtomically(group.get(group.size() - 1).notes, IoBudget.UNLIMITED);
+        }catch (FileOperationException e){
+            failure = e;
+        }catch (RuntimeException e){
+            //序列化等意外错误同样要通知组内所有成员，避免它们永远等待
+            failure = new FileOperationException("保存笔记数据", filePath, e);
+        }
+
+        synchronized (pendingRequests) {
+            for (CommitRequest member : group) {
+                member.failure = failure;
+                member.done = true;
+            }
+            commitCount++;
+            committing = false;
+            pendingRequests.notifyAll();
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /*
+    * 不经过组提交，按 I/O 预算把笔记列表写入JSON文件，格式与 save 相同，可以直接作为笔记库加载
+    * 供后台备份使用：序列化结果每写出一块之前申请预算，预算不足或前台命令执行期间会停在两块之间
+    * @param notes 要写入的笔记列表
+    * @param budget 写出每一块之前申请的预算
+    * @throws FileOperationException 写入、刷盘或重命名失败时抛出
+    * @throws InterruptedException 等待预算时被中断，原文件保持不变
+    * */
+    public void export(List<Note> notes, IoBudget budget) throws FileOperationException, InterruptedException {
+        try {
+            writeAtomically(notes, budget);
+        }catch (FileOperationException e){
+            if (e.getCause() instanceof InterruptedIOException) {
+                throw new InterruptedException(e.getCause().getMessage());
+            }
+            throw e;
+        }
+    }
+
+    /*
+    * 原子地替换JSON文件：写入同目录下的临时文件 -> fsync -> 原子重命名 -> fsync目录
+    * 任何一步失败，原文件都保持完整不变
+    * */
+    private void writeAtomically(List<Note> notes, IoBudget budget) throws FileOperationException {
+        Path target = Path.of(filePath).toAbsolutePath();
+        Path temp = null;
+        try {
+            temp = createReplacementFile(target);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+                 OutputStream out = new BufferedOutputStream(
+                         new ThrottledOutputStream(Channels.newOutputStream(channel), budget), IoBudget.CHUNK_BYTES)) {
+                //使用ObjectMapper将notes列表写入到临时文件中
+                objectMapper.writeValue(out, notes);
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+            syncDirectory(target.getParent());
+        }catch (IOException e){
+            throw new FileOperationException("保存笔记数据", filePath, e);
+        }finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                }catch (IOException ignored){
+                    //临时文件清理失败不影响原文件，忽略即可
+                }
+            }
+        }
+    }
+
+    /**
+     * 在 target 同目录下创建一个稍后原子替换 target 的临时文件，替换后 target 的权限保持不变：
+     * 1. target 已存在：createTempFile 创建的文件权限是 0600，再把原文件的权限复制过来；
+     * 2. target 不存在：用 createFile 按默认权限（受 umask 约束）创建，与直接新建 target 的权限相同。
+     * @param target 将被替换（或第一次创建）的文件。
+     * @return 新建的空临时文件。
+     */
+    static Path createReplacementFile(Path target) throws IOException {
+        String prefix = target.getFileName().toString() + ".";
+        if (Files.exists(target)) {
+            Path temp = Files.createTempFile(target.getParent(), prefix, ".tmp");
+            copyPermissions(target, temp);
+            return temp;
+        }
+        while (true) {
+            Path temp = target.resolveSibling(prefix + Long.toUnsignedString(TEMP_NAMES.nextLong()) + ".tmp");
+            try {
+                return Files.createFile(temp);
+            }catch (FileAlreadyExistsException e){
+                //名字碰巧被占用，换一个再试
+            }
+        }
+    }
+
+    /**
+     * 把原文件的权限（POSIX 权限位，或 Windows 上的 ACL）和属组复制到临时文件上。
+     * 复制失败不影响保存本身，只给出警告。
+     * @param source 将被替换的原文件。
+     * @param temp   即将替换它的临时文件。
+     */
+    private static void copyPermissions(Path source, Path temp) {
+        try {
+            PosixFileAttributeView posix = Files.getFileAttributeView(source, PosixFileAttributeView.class);
+            if (posix != null) {
+                PosixFileAttributes attrs = posix.readAttributes();
+                PosixFileAttributeView tempView = Files.getFileAttributeView(temp, PosixFileAttributeView.class);
+                tempView.setPermissions(attrs.permissions());
+                try {
+                    tempView.setGroup(attrs.group());
+                } catch (IOException | SecurityException ignored) {
+                    //当前用户不属于原文件的属组时无法设置，保留默认属组
+                }
+                return;
+            }
+            AclFileAttributeView acl = Files.getFileAttributeView(source, AclFileAttributeView.class);
+            if (acl != null) {
+                Files.getFileAttributeView(temp, AclFileAttributeView.class).setAcl(acl.getAcl());
+            }
+        }catch (IOException | UnsupportedOperationException | SecurityException e){
+            System.err.println("⚠️ 无法保留 " + source + " 的文件权限: " + e.getMessage());
+        }
+    }
+
+    /*
+    * 刷新目录项，保证重命名本身也已落盘
+    * 部分平台（如Windows）不支持打开目录，此时忽略即可
+    * */
+    private void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
         }catch (IOException e){
-            //在实际应用中，这里应该抛出我们自定义的FileOperationExpection
-            e.printStackTrace();
+            //不支持目录fsync的平台上，重命名依然是原子的
+        }
+    }
+
+    private static void awaitQuietly(Object monitor, long millis) {
+        try {
+            monitor.wait(millis);
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*
+    * @return 已完成的物理提交次数（每次提交对应一次fsync）
+    * */
+    public long getCommitCount(){
+        synchronized (pendingRequests) {
+            return commitCount;
         }
     }
 
@@ -63,16 +330,85 @@ public class JsonStorageService implements StorageService {
         if(!file.exists() || file.length() == 0){
             return new ArrayList<>(); //如果文件不存在或为空，返回空列表
         }
+        //逐篇流式读取并直接放入结果列表，避免先绑定成 Note[] 再复制一遍带来的双倍内存峰值
+        List<Note> notes = new ArrayList<>();
+        try (MappingIterator<Note> iterator = openNoteIterator(file)) {
+            while (iterator.hasNextValue()) {
+                notes.add(iterator.nextValue());
+            }
+            return notes;
+        }catch (JsonProcessingException e){
+            //不能当作空笔记库返回：下一次保存会用空列表覆盖用户的文件
+            throw StorageErrors.serialization("解析笔记数据 " + filePath, e);
+        }catch (IOException e){
+            throw StorageErrors.fileOperation("读取笔记数据", filePath, e);
+        }
+    }
+
+    /*
+    * 惰性地逐篇读取笔记：只有在流被消费时才解析下一篇，任一时刻内存中只有当前这一篇
+    * 返回的流持有打开的文件，调用方应使用 try-with-resources 关闭
+    * */
+    @Override
+    public Stream<Note> scan(){
+        File file = new File(filePath);
+        if(!file.exists() || file.length() == 0){
+            return Stream.empty();
+        }
+        try {
+            MappingIterator<Note> iterator = openNoteIterator(file);
+            Spliterator<Note> spliterator = Spliterators.spliteratorUnknownSize(
+                    iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+            return StreamSupport.stream(spliterator, false).onClose(() -> {
+                try {
+                    iterator.close();
+                }catch (IOException e){
+                    System.err.println("⚠️ 关闭笔记文件失败: " + e.getMessage());
+                }
+            });
+        }catch (IOException e){
+            throw StorageErrors.fileOperation("读取笔记数据", filePath, e);
+        }
+    }
+
+    /*
+    * 打开一个逐篇读取笔记的迭代器
+    * 先用 JsonParser 确认顶层是一个数组并越过开头的 '['，再交给 MappingIterator 逐个绑定数组元素
+    * */
+    private MappingIterator<Note> openNoteIterator(File file) throws IOException {
+        JsonParser parser = objectMapper.getFactory().createParser(file);
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            parser.close();
+            throw new IOException("笔记文件的顶层不是JSON数组: " + filePath);
+        }
+        parser.clearCurrentToken();
+        return objectMapper.readerFor(Note.class).readValues(parser);
+    }
+
+    /*
+    * 以文件的修改时间、大小和文件标识（inode）作为版本戳
+    * 每次保存都会通过重命名换上一个新文件，因此即使修改时间精度不足，文件标识也会改变
+    * 文件不存在时返回0，保证"从无到有"也能被识别为一次变化
+    * */
+    @Override
+    public long generation(){
         try {
-            //使用objectMpapper从文件中读取JSON数据，并将其转换为NOTE 对象的数组，再转为列表
-            Note[] notesArray =objectMapper.readValue(file,Note[].class);
-            return new ArrayList<>(Arrays.asList(notesArray));
+            BasicFileAttributes attrs = Files.readAttributes(Path.of(filePath), BasicFileAttributes.class);
+            long modifiedNanos = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+            long fileKey = attrs.fileKey() != null ? attrs.fileKey().hashCode() : 0L;
+            return (modifiedNanos * 31 + attrs.size()) * 31 + fileKey;
         }catch (IOException e){
-            e.printStackTrace();
-            return new ArrayList<>();//加载失败也返回空列表，保证程序健壮性
+            return 0L;
         }
     }
 
+    /*
+    * @return 该存储服务读写的JSON文件路径
+    * */
+    public String getFilePath(){
+        return filePath;
+    }
+
 }
 
 
@@ -0,0 +1,549 @@
+package com.ZhangRuo.pkm.repository;
+
+import com.ZhangRuo.pkm.entity.Note;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * [数据访问层] 基于追加日志（log-structured）的 StorageService 实现。
+ * 磁盘上只有一个 JSON Lines 格式的日志文件，每一行是一条针对单篇笔记的 PUT 或 DEL 记录。
+ * 修改一篇笔记只需在文件末尾追加一行，而不是像 JsonStorageService 那样重写整个笔记库。
+ * 启动时通过顺序重放日志重建内存状态；当被覆盖或删除的"死记录"超过阈值时，
+ * 在后台线程中把日志压缩为只包含存活笔记的新文件。
+ */
+public class LogStructuredStorageService implements StorageService, Compactable, Closeable {
+
+    /** 默认的压缩阈值：死记录达到该数量后触发后台压缩。 */
+    public static final int DEFAULT_COMPACTION_THRESHOLD = 1000;
+
+    private static final String OP_PUT = "PUT";
+    private static final String OP_DEL = "DEL";
+
+    private final File logFile;
+    private final File compactFile;
+    private final int compactionThreshold;
+    private final ObjectMapper objectMapper;
+
+    /** 当前存活的笔记，按首次写入的顺序排列。 */
+    private final Map<String, Note> liveNotes = new LinkedHashMap<>();
+    /** 每篇笔记最近一次写入日志时的内容指纹，用于在 save 时找出真正发生变化的笔记。 */
+    private final Map<String, Long> fingerprints = new HashMap<>();
+
+    private final ExecutorService compactor;
+
+    private OutputStream appender;
+    /** 追加流底层文件的通道，每批记录写完后用它强制刷盘。 */
+    private FileChannel appenderChannel;
+    private long sequence = 0L;
+    private long deadRecords = 0L;
+    private long logLength = 0L;
+    private boolean compacting = false;
+
+    /**
+     * 日志中的一行记录。
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class LogRecord {
+        private long seq;
+        private String op;
+        private String id;
+        private Note note;
+
+        public LogRecord() {
+        }
+
+        LogRecord(long seq, String op, String id, Note note) {
+            this.seq = seq;
+            this.op = op;
+            this.id = id;
+            this.note = note;
+        }
+
+        public long getSeq() { return seq; }
+        public void setSeq(long seq) { this.seq = seq; }
+        public String getOp() { return op; }
+        public void setOp(String op) { this.op = op; }
+        public String getId() { return id; }
+        public void setId(String id) { this.id = id; }
+        public Note getNote() { return note; }
+        public void setNote(Note note) { this.note = note; }
+    }
+
+    /**
+     * 默认构造方法，使用 "notes.log" 作为日志文件。
+     */
+    public LogStructuredStorageService() {
+        this("notes.log");
+    }
+
+    /**
+     * @param filePath 日志文件的路径。
+     */
+    public LogStructuredStorageService(String filePath) {
+        this(filePath, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * @param filePath            日志文件的路径。
+     * @param compactionThreshold 触发后台压缩所需的死记录数量。
+     */
+    public LogStructuredStorageService(String filePath, int compactionThreshold) {
+        this.logFile = new File(filePath);
+        this.compactFile = new File(filePath + ".compact");
+        this.compactionThreshold = compactionThreshold;
+
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pkm-log-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // 上一次进程在压缩过程中退出时会留下半成品，直接丢弃即可，原日志仍然完整
+        compactFile.delete();
+        replay();
+    }
+
+    /**
+     * 与当前内存状态做差异比较，只为新增或内容发生变化的笔记追加 PUT 记录，
+     * 为列表中已不存在的笔记追加 DEL 记录。
+     * 没有ID的笔记会被分配一个新的UUID，因为日志需要以ID作为记录的键。
+     */
+    @Override
+    public synchronized void save(List<Note> notes) {
+        List<LogRecord> records = new ArrayList<>();
+        Set<String> keptIds = new HashSet<>();
+
+        for (Note note : notes) {
+            if (note.getId() == null) {
+                note.setId(UUID.randomUUID().toString());
+            }
+            keptIds.add(note.getId());
+            Long previous = fingerprints.get(note.getId());
+            if (previous == null || previous != fingerprint(note)) {
+                records.add(new LogRecord(++sequence, OP_PUT, note.getId(), note));
+            } else {
+                // 内容没有变化，只需让内存状态指向调用方手中的对象，无需写盘
+                liveNotes.put(note.getId(), note);
+            }
+        }
+        for (String id : liveNotes.keySet()) {
+            if (!keptIds.contains(id)) {
+                records.add(new LogRecord(++sequence, OP_DEL, id, null));
+            }
+        }
+
+        append(records);
+    }
+
+    @Override
+    public synchronized List<Note> load() {
+        return new ArrayList<>(liveNotes.values());
+    }
+
+    @Override
+    public synchronized Optional<Note> findById(String id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(liveNotes.get(id));
+    }
+
+    /**
+     * 只有内容与上次写入时不同，才追加一条 PUT 记录。
+     */
+    @Override
+    public synchronized void upsert(Note note) {
+        Objects.requireNonNull(note.getId(), "笔记ID不能为空");
+        Long previous = fingerprints.get(note.getId());
+        if (previous != null && previous == fingerprint(note)) {
+            liveNotes.put(note.getId(), note);
+            return;
+        }
+        append(List.of(new LogRecord(++sequence, OP_PUT, note.getId(), note)));
+    }
+
+    @Override
+    public synchronized boolean delete(String id) {
+        if (id == null || !liveNotes.containsKey(id)) {
+            return false;
+        }
+        append(List.of(new LogRecord(++sequence, OP_DEL, id, null)));
+        return true;
+    }
+
+    @Override
+    public synchronized Stream<Note> scan() {
+        return new ArrayList<>(liveNotes.values()).stream();
+    }
+
+    @Override
+    public boolean supportsIncrementalWrites() {
+        return true;
+    }
+
+    /**
+     * 日志中最后一条记录的序号，跨进程单调递增。
+     */
+    @Override
+    public synchronized long generation() {
+        return sequence;
+    }
+
+    /**
+     * @return 当前日志中已被覆盖或删除、等待压缩回收的记录数。
+     */
+    public synchronized long getDeadRecordCount() {
+        return deadRecords;
+    }
+
+    /**
+     * @return 日志文件当前的字节长度。
+     */
+    public synchronized long getLogLength() {
+        return logLength;
+    }
+
+    /**
+     * 压缩需要重写整个日志；没有死记录时无需压缩。
+     */
+    @Override
+    public synchronized long estimateCompactionBytes() {
+        return deadRecords == 0 ? 0L : logLength;
+    }
+
+    /**
+     * 立即在调用线程上执行一次压缩（主要用于测试和维护任务）。
+     * 写临时文件的阶段不持锁，每写一块之前向 budget 申请预算。
+     * @return 如果后台压缩正在进行而本次被跳过，返回 false。
+     */
+    @Override
+    public boolean compactNow(IoBudget budget) throws InterruptedException {
+        synchronized (this) {
+            if (compacting) {
+                return false;
+            }
+            compacting = true;
+        }
+        compact(budget);
+        return true;
+    }
+
+    @Override
+    public synchronized void close() {
+        compactor.shutdown();
+        closeAppender();
+    }
+
+    // --- 日志写入 ---
+
+    /**
+     * 把一批记录追加到日志末尾并强制刷盘，之后才更新内存状态：
+     * 方法正常返回时这一批记录已经落盘，进程随后崩溃也不会丢失；写入失败时内存状态保持不变。
+     * 一次 save 产生的整批记录共享一次 fsync。
+     */
+    private void append(List<LogRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        long written = 0L;
+        try {
+            OutputStream out = appender();
+            for (LogRecord record : records) {
+                byte[] line = toLine(record);
+                out.write(line);
+                written += line.length;
+            }
+            out.flush();
+            appenderChannel.force(true);
+        } catch (IOException e) {
+            // 不确定有多少字节已经写入，丢弃追加流，下次写入时重新打开
+            closeAppender();
+            throw StorageErrors.fileOperation("追加笔记日志", logFile.getPath(), e);
+        }
+        for (LogRecord record : records) {
+            apply(record);
+        }
+        logLength += written;
+        scheduleCompactionIfNeeded();
+    }
+
+    /**
+     * 把一条记录应用到内存状态，同时维护死记录计数。
+     */
+    private void apply(LogRecord record) {
+        if (OP_PUT.equals(record.getOp()) && record.getNote() != null) {
+            Note note = record.getNote();
+            if (liveNotes.put(note.getId(), note) != null) {
+                deadRecords++;
+            }
+            fingerprints.put(note.getId(), fingerprint(note));
+        } else if (OP_DEL.equals(record.getOp())) {
+            // DEL 记录本身和它删除的那条 PUT 记录都成为死记录
+            deadRecords += liveNotes.remove(record.getId()) != null ? 2 : 1;
+            fingerprints.remove(record.getId());
+        }
+        sequence = Math.max(sequence, record.getSeq());
+    }
+
+    private OutputStream appender() throws IOException {
+        if (appender == null) {
+            FileOutputStream file = new FileOutputStream(logFile, true);
+            appenderChannel = file.getChannel();
+            appender = new BufferedOutputStream(file);
+        }
+        return appender;
+    }
+
+    private void closeAppender() {
+        if (appender != null) {
+            try {
+                appender.close();
+            } catch (IOException e) {
+                System.err.println("⚠️ 关闭笔记日志失败: " + e.getMessage());
+            }
+            appender = null;
+            appenderChannel = null;
+        }
+    }
+
+    // --- 日志重放 ---
+
+    /**
+     * 顺序重放整个日志文件，重建内存状态。
+     * 进程崩溃可能在文件末尾留下不完整的一行，这种情况下截断到最后一条完整记录。
+     * 最后一条记录完整、只缺少结尾的换行符时保留它并补上换行符，否则之后追加的记录会和它挤在同一行，
+     * 下次重放时这一行无法解析，它和之后的所有记录都会被截断。
+     */
+    private void replay() {
+        if (!logFile.exists()) {
+            return;
+        }
+        long validLength = 0L;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(logFile), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    validLength += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                    continue;
+                }
+                LogRecord record;
+                try {
+                    record = objectMapper.readValue(line, LogRecord.class);
+                } catch (JsonProcessingException e) {
+                    // 只有最后一行才可能是崩溃时没写完的记录；损坏的行之后还有记录时截断会丢掉有效数据，
+                    // 此时不修改日志，直接报错，由用户检查或修复文件
+                    if (hasMoreRecords(reader)) {
+                        throw StorageErrors.fileOperation("重放笔记日志（第 " + lineNumber
+                                + " 行记录已损坏，其后仍有记录，日志未做任何修改）", logFile.getPath(), e);
+                    }
+                    System.err.println("⚠️ 笔记日志末尾存在不完整的记录，已忽略: " + logFile.getPath());
+                    break;
+                }
+                apply(record);
+                validLength += line.getBytes(StandardCharsets.UTF_8).length + 1;
+            }
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("重放笔记日志", logFile.getPath(), e);
+        }
+
+        // 每条记录都按"内容 + 换行符"计入长度，最后一行缺少换行符时会比文件长度多 1
+        long fileLength = logFile.length();
+        if (validLength > fileLength) {
+            appendNewline();
+        } else if (validLength < fileLength) {
+            truncate(validLength);
+        }
+        logLength = validLength;
+    }
+
+    private static boolean hasMoreRecords(BufferedReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.isBlank()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void appendNewline() {
+        try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'\n'}));
+            channel.force(true);
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("修复笔记日志", logFile.getPath(), e);
+        }
+    }
+
+    private void truncate(long length) {
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+            file.setLength(length);
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("截断笔记日志", logFile.getPath(), e);
+        }
+    }
+
+    // --- 后台压缩 ---
+
+    private void scheduleCompactionIfNeeded() {
+        if (!compacting && deadRecords >= compactionThreshold) {
+            compacting = true;
+            compactor.submit(() -> {
+                try {
+                    compact(IoBudget.UNLIMITED);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+    }
+
+    /**
+     * 压缩日志：
+     * 1. 持锁拍下存活笔记的快照，并记下此刻的日志长度；
+     * 2. 不持锁地把快照写入临时文件（期间前台写入照常追加到旧日志），每写一块之前申请预算；
+     * 3. 再次持锁，把第1步之后追加到旧日志的尾部原样拷贝到临时文件，最后原子替换旧日志。
+     * 第3步持锁，不再申请预算：尾部只包含压缩期间的少量写入。
+     *
+     * @throws InterruptedException 等待预算时被中断，临时文件被丢弃，旧日志保持不变。
+     */
+    private void compact(IoBudget budget) throws InterruptedException {
+        try {
+            List<byte[]> snapshot = new ArrayList<>();
+            long snapshotLength;
+            synchronized (this) {
+                for (Note note : liveNotes.values()) {
+                    snapshot.add(toLine(new LogRecord(sequence, OP_PUT, note.getId(), note)));
+                }
+                if (appender != null) {
+                    appender.flush();
+                }
+                snapshotLength = logLength;
+            }
+
+            try (OutputStream out = new BufferedOutputStream(
+                    new ThrottledOutputStream(new FileOutputStream(compactFile), budget), IoBudget.CHUNK_BYTES)) {
+                for (byte[] line : snapshot) {
+                    out.write(line);
+                }
+            }
+
+            synchronized (this) {
+                if (appender != null) {
+                    appender.flush();
+                }
+                long tailRecords = copyTail(snapshotLength);
+                closeAppender();
+                Files.move(compactFile.toPath(), logFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                logLength = logFile.length();
+                deadRecords = tailRecords;
+            }
+        } catch (InterruptedIOException e) {
+            compactFile.delete();
+            throw new InterruptedException(e.getMessage());
+        } catch (IOException | IllegalStateException e) {
+            compactFile.delete();
+            System.err.println("⚠️ 笔记日志压缩失败: " + StorageErrors.fileOperation("压缩笔记日志", logFile.getPath(), e).getMessage());
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    /**
+     * 把旧日志中从 offset 开始的尾部追加到临时文件，并强制刷盘。
+     * @return 拷贝的记录条数（保守地全部视为死记录，下次压缩时回收）。
+     */
+    private long copyTail(long offset) throws IOException {
+        long copiedRecords = 0L;
+        try (FileChannel target = FileChannel.open(compactFile.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            if (logFile.length() > offset) {
+                try (InputStream in = new FileInputStream(logFile)) {
+                    in.skipNBytes(offset);
+                    byte[] tail = in.readAllBytes();
+                    for (byte b : tail) {
+                        if (b == '\n') {
+                            copiedRecords++;
+                        }
+                    }
+                    target.write(ByteBuffer.wrap(tail));
+                }
+            }
+            target.force(true);
+        }
+        return copiedRecords;
+    }
+
+    // --- 序列化辅助 ---
+
+    private byte[] toLine(LogRecord record) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(record);
+            byte[] line = new byte[json.length + 1];
+            System.arraycopy(json, 0, line, 0, json.length);
+            line[json.length] = '\n';
+            return line;
+        } catch (JsonProcessingException e) {
+            throw StorageErrors.serialization("序列化日志记录 " + record.getId(), e);
+        }
+    }
+
+    /**
+     * 以序列化结果的 64 位 FNV-1a 哈希作为笔记内容指纹。
+     */
+    private long fingerprint(Note note) {
+        try {
+            byte[] bytes = objectMapper.writeValueAsBytes(note);
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : bytes) {
+                hash ^= (b & 0xff);
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        } catch (JsonProcessingException e) {
+            throw StorageErrors.serialization("序列化笔记 " + note.getId(), e);
+        }
+    }
+}
@@ -0,0 +1,524 @@
+package com.ZhangRuo.pkm.repository;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.ZhangRuo.pkm.entity.Note;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32;
+
+/**
+ * [数据访问层] 分段并行加载的存储引擎。
+ *
+ * 笔记库被写成 N 个可以独立解析的段文件，每个段都在 manifest 中登记了 CRC32 校验和：
+ * <pre>
+ * notes.segments/
+ *   manifest.json            段数、版本代数、下一个顺序号，以及每个段的文件名、校验和、笔记数
+ *   segment-03.g17.json      第 3 段在第 17 代写入的内容：[{"seq": 顺序号, "note": {...}}, ...]
+ * </pre>
+ *
+ * 笔记按 ID 的哈希值固定分配到某一段，所以修改单篇笔记只重写它所在的那一段。
+ * 冷启动时在 ForkJoinPool 上并发地读取、校验、反序列化各段，再按顺序号合并，
+ * 耗时随核数近似线性下降；某一段校验失败时只跳过这一段并记录下来，其余笔记照常加载，
+ * 损坏的段文件在下次写入时被改名为 *.corrupt 保留，而不是被删除。
+ *
+ * 段文件名带有写入时的版本代数，manifest 原子替换后才删除旧的段文件，
+ * 进程在任何时刻崩溃，manifest 指向的都是一组完整且校验和匹配的段。
+ */
+public class SegmentedStorageService implements StorageService {
+
+    private static final String MANIFEST_FILE = "manifest.json";
+    private static final int FORMAT_VERSION = 1;
+    public static final int DEFAULT_SEGMENT_COUNT = 16;
+
+    private static final TypeReference<List<SegmentEntry>> SEGMENT_TYPE = new TypeReference<>() {
+    };
+
+    private final Path rootDir;
+    private final Path manifestFile;
+    private final ObjectMapper objectMapper;
+    private final ForkJoinPool loadPool;
+    private final int segmentCountForNewVault;
+
+    private Manifest manifest;
+    private Object manifestFileKey;
+    private long manifestModifiedMillis = -1L;
+    private long manifestSize = -1L;
+
+    /** 最近一次加载中校验失败或无法解析的段文件名。 */
+    private final Set<String> corruptSegments = new TreeSet<>();
+
+    /**
+     * 段文件中的一条记录。
+     */
+    public static class SegmentEntry {
+        private long seq;
+        private Note note;
+
+        public SegmentEntry() {
+        }
+
+        SegmentEntry(long seq, Note note) {
+            this.seq = seq;
+            this.note = note;
+        }
+
+        public long getSeq() { return seq; }
+        public void setSeq(long seq) { this.seq = seq; }
+        public Note getNote() { return note; }
+        public void setNote(Note note) { this.note = note; }
+    }
+
+    /**
+     * manifest 中登记的一个段。
+     */
+    public static class SegmentInfo {
+        private String file;
+        private long crc32;
+        private int count;
+
+        public SegmentInfo() {
+        }
+
+        SegmentInfo(String file, long crc32, int count) {
+            this.file = file;
+            this.crc32 = crc32;
+            this.count = count;
+        }
+
+        public String getFile() { return file; }
+        public void setFile(String file) { this.file = file; }
+        public long getCrc32() { return crc32; }
+        public void setCrc32(long crc32) { this.crc32 = crc32; }
+        public int getCount() { return count; }
+        public void setCount(int count) { this.count = count; }
+    }
+
+    /**
+     * 笔记库的 manifest。segments 的下标就是段号，没有笔记的段为 null。
+     */
+    public static class Manifest {
+        private int formatVersion = FORMAT_VERSION;
+        private int segmentCount;
+        private long generation;
+        private long nextSeq;
+        private List<SegmentInfo> segments = new ArrayList<>();
+
+        public Manifest() {
+        }
+
+        public int getFormatVersion() { return formatVersion; }
+        public void setFormatVersion(int formatVersion) { this.formatVersion = formatVersion; }
+        public int getSegmentCount() { return segmentCount; }
+        public void setSegmentCount(int segmentCount) { this.segmentCount = segmentCount; }
+        public long getGeneration() { return generation; }
+        public void setGeneration(long generation) { this.generation = generation; }
+        public long getNextSeq() { return nextSeq; }
+        public void setNextSeq(long nextSeq) { this.nextSeq = nextSeq; }
+        public List<SegmentInfo> getSegments() { return segments; }
+        public void setSegments(List<SegmentInfo> segments) { this.segments = segments; }
+    }
+
+    /**
+     * 默认构造方法，使用 "notes.segments" 目录和 16 个段。
+     */
+    public SegmentedStorageService() {
+        this("notes.segments");
+    }
+
+    /**
+     * @param rootDir 段文件所在目录。
+     */
+    public SegmentedStorageService(String rootDir) {
+        this(rootDir, DEFAULT_SEGMENT_COUNT, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param rootDir      段文件所在目录。
+     * @param segmentCount 新建笔记库时的段数；已有笔记库沿用 manifest 中记录的段数。
+     * @param parallelism  并行加载使用的线程数。
+     */
+    public SegmentedStorageService(String rootDir, int segmentCount, int parallelism) {
+        if (segmentCount <= 0) {
+            throw new IllegalArgumentException("段数必须大于0");
+        }
+        this.rootDir = Path.of(rootDir).toAbsolutePath();
+        this.manifestFile = this.rootDir.resolve(MANIFEST_FILE);
+        this.segmentCountForNewVault = segmentCount;
+        this.loadPool = new ForkJoinPool(Math.max(1, parallelism));
+
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        refreshManifest();
+    }
+
+    // --- 读取 ---
+
+    /**
+     * 在 ForkJoinPool 上并发加载所有段，再按顺序号合并。
+     */
+    @Override
+    public synchronized List<Note> load() {
+        refreshManifest();
+        List<Integer> present = new ArrayList<>();
+        for (int i = 0; i < manifest.getSegments().size(); i++) {
+            if (manifest.getSegments().get(i) != null) {
+                present.add(i);
+            }
+        }
+
+        corruptSegments.clear();
+        List<SegmentEntry> entries = loadPool.invoke(new LoadSegmentsTask(present, 0, present.size()));
+        entries.sort(Comparator.comparingLong(SegmentEntry::getSeq));
+
+        List<Note> notes = new ArrayList<>(entries.size());
+        for (SegmentEntry entry : entries) {
+            notes.add(entry.getNote());
+        }
+        return notes;
+    }
+
+    /**
+     * 只读取这篇笔记所在的那一段。
+     */
+    @Override
+    public synchronized Optional<Note> findById(String id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        refreshManifest();
+        for (SegmentEntry entry : readSegmentOrEmpty(segmentOf(id))) {
+            if (id.equals(entry.getNote().getId())) {
+                return Optional.of(entry.getNote());
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public synchronized long generation() {
+        refreshManifest();
+        return manifest.getGeneration();
+    }
+
+    /**
+     * @return 最近一次 load 中被隔离（校验失败或无法解析）的段文件名。
+     */
+    public synchronized List<String> getCorruptSegments() {
+        return new ArrayList<>(corruptSegments);
+    }
+
+    /**
+     * @return 当前笔记库的段数。
+     */
+    public synchronized int getSegmentCount() {
+        return manifest.getSegmentCount();
+    }
+
+    // --- 写入 ---
+
+    /**
+     * 整库保存：按ID把笔记分到各段，只重写内容真正发生变化的段。
+     * 没有ID的笔记会被分配一个新的UUID，因为分段依据ID的哈希值。
+     */
+    @Override
+    public synchronized void save(List<Note> notes) {
+        refreshManifest();
+        List<List<SegmentEntry>> segments = new ArrayList<>();
+        for (int i = 0; i < manifest.getSegmentCount(); i++) {
+            segments.add(new ArrayList<>());
+        }
+        for (int i = 0; i < notes.size(); i++) {
+            Note note = notes.get(i);
+            if (note.getId() == null) {
+                note.setId(UUID.randomUUID().toString());
+            }
+            segments.get(segmentOf(note.getId())).add(new SegmentEntry(i, note));
+        }
+
+        Map<Integer, List<SegmentEntry>> changed = new HashMap<>();
+        for (int i = 0; i < segments.size(); i++) {
+            changed.put(i, segments.get(i));
+        }
+        manifest.setNextSeq(Math.max(manifest.getNextSeq(), notes.size()));
+        commit(changed);
+    }
+
+    /**
+     * 只重写这篇笔记所在的那一段：已有笔记保留原来的顺序号，新笔记排在末尾。
+     */
+    @Override
+    public synchronized void upsert(Note note) {
+        Objects.requireNonNull(note.getId(), "笔记ID不能为空");
+        refreshManifest();
+        int segment = segmentOf(note.getId());
+        List<SegmentEntry> entries = new ArrayList<>(readSegmentOrEmpty(segment));
+        boolean replaced = false;
+        for (int i = 0; i < entries.size(); i++) {
+            if (note.getId().equals(entries.get(i).getNote().getId())) {
+                entries.set(i, new SegmentEntry(entries.get(i).getSeq(), note));
+                replaced = true;
+                break;
+            }
+        }
+        if (!replaced) {
+            entries.add(new SegmentEntry(manifest.getNextSeq(), note));
+            manifest.setNextSeq(manifest.getNextSeq() + 1);
+        }
+        commit(Collections.singletonMap(segment, entries));
+    }
+
+    @Override
+    public synchronized boolean delete(String id) {
+        if (id == null) {
+            return false;
+        }
+        refreshManifest();
+        int segment = segmentOf(id);
+        List<SegmentEntry> entries = new ArrayList<>(readSegmentOrEmpty(segment));
+        if (!entries.removeIf(entry -> id.equals(entry.getNote().getId()))) {
+            return false;
+        }
+        commit(Collections.singletonMap(segment, entries));
+        return true;
+    }
+
+    @Override
+    public boolean supportsIncrementalWrites() {
+        return true;
+    }
+
+    // --- 内部实现 ---
+
+    /**
+     * 把一组段并发地读取、校验并反序列化，区间足够小时直接在当前线程处理。
+     */
+    private class LoadSegmentsTask extends RecursiveTask<List<SegmentEntry>> {
+        private final List<Integer> segments;
+        private final int from;
+        private final int to;
+
+        LoadSegmentsTask(List<Integer> segments, int from, int to) {
+            this.segments = segments;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<SegmentEntry> compute() {
+            if (to - from <= 1) {
+                List<SegmentEntry> result = new ArrayList<>();
+                if (from < to) {
+                    int segment = segments.get(from);
+                    SegmentInfo info = manifest.getSegments().get(segment);
+                    try {
+                        result.addAll(readSegment(info));
+                    } catch (IOException | IllegalStateException e) {
+                        // 只隔离这一段，其余段照常加载
+                        synchronized (corruptSegments) {
+                            corruptSegments.add(info.getFile());
+                        }
+                        System.err.println("❌ 错误: 段文件 " + info.getFile() + " 已损坏，已跳过: " + e.getMessage());
+                    }
+                }
+                return result;
+            }
+            int middle = (from + to) >>> 1;
+            LoadSegmentsTask left = new LoadSegmentsTask(segments, from, middle);
+            left.fork();
+            List<SegmentEntry> right = new LoadSegmentsTask(segments, middle, to).compute();
+            List<SegmentEntry> merged = left.join();
+            merged.addAll(right);
+            return merged;
+        }
+    }
+
+    /**
+     * 读取并校验一个段文件。
+     * @throws IOException 文件无法读取、校验和不匹配或内容无法解析时抛出。
+     */
+    private List<SegmentEntry> readSegment(SegmentInfo info) throws IOException {
+        byte[] bytes = Files.readAllBytes(rootDir.resolve(info.getFile()));
+        long crc = crc32(bytes);
+        if (crc != info.getCrc32()) {
+            throw new IOException("校验和不匹配（期望 " + info.getCrc32() + "，实际 " + crc + "）");
+        }
+        return objectMapper.readValue(bytes, SEGMENT_TYPE);
+    }
+
+    /**
+     * 读取某一段用于单篇读写；该段不存在时返回空列表，已损坏时抛出异常而不是把它当作空段覆盖掉。
+     */
+    private List<SegmentEntry> readSegmentOrEmpty(int segment) {
+        SegmentInfo info = segment < manifest.getSegments().size() ? manifest.getSegments().get(segment) : null;
+        if (info == null) {
+            return Collections.emptyList();
+        }
+        try {
+            return readSegment(info);
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("读取段文件", rootDir.resolve(info.getFile()).toString(), e);
+        }
+    }
+
+    /**
+     * 写入发生变化的段（文件名带新的版本代数），原子地替换 manifest，最后清理旧的段文件。
+     * @param changed 段号 -> 该段的全部记录。
+     */
+    private void commit(Map<Integer, List<SegmentEntry>> changed) {
+        long nextGeneration = manifest.getGeneration() + 1;
+        List<SegmentInfo> segments = new ArrayList<>(manifest.getSegments());
+        while (segments.size() < manifest.getSegmentCount()) {
+            segments.add(null);
+        }
+        List<String> obsolete = new ArrayList<>();
+
+        try {
+            Files.createDirectories(rootDir);
+            for (Map.Entry<Integer, List<SegmentEntry>> entry : changed.entrySet()) {
+                int segment = entry.getKey();
+                List<SegmentEntry> entries = entry.getValue();
+                SegmentInfo previous = segments.get(segment);
+
+                if (entries.isEmpty()) {
+                    if (previous != null) {
+                        obsolete.add(previous.getFile());
+                        segments.set(segment, null);
+                    }
+                    continue;
+                }
+                byte[] bytes = objectMapper.writeValueAsBytes(entries);
+                long crc = crc32(bytes);
+                if (previous != null && previous.getCrc32() == crc && previous.getCount() == entries.size()
+                        && !corruptSegments.contains(previous.getFile())) {
+                    continue; // 内容没有变化，沿用原来的段文件
+                }
+                String file = String.format("segment-%02d.g%d.json", segment, nextGeneration);
+                writeDurably(rootDir.resolve(file), bytes);
+                segments.set(segment, new SegmentInfo(file, crc, entries.size()));
+                if (previous != null) {
+                    obsolete.add(previous.getFile());
+                }
+            }
+
+            Manifest updated = new Manifest();
+            updated.setSegmentCount(manifest.getSegmentCount());
+            updated.setGeneration(nextGeneration);
+            updated.setNextSeq(manifest.getNextSeq());
+            updated.setSegments(segments);
+            Path temp = rootDir.resolve(MANIFEST_FILE + ".tmp");
+            writeDurably(temp, objectMapper.writeValueAsBytes(updated));
+            Files.move(temp, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            manifest = updated;
+            rememberManifestAttributes();
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("保存分段笔记库", rootDir.toString(), e);
+        }
+
+        for (String file : obsolete) {
+            Path path = rootDir.resolve(file);
+            try {
+                if (corruptSegments.remove(file)) {
+                    Files.move(path, rootDir.resolve(file + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+                } else {
+                    Files.deleteIfExists(path);
+                }
+            } catch (IOException ignored) {
+                // 旧段文件已不再被 manifest 引用，清理失败只会浪费一些磁盘空间
+            }
+        }
+    }
+
+    private void writeDurably(Path target, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * manifest 被其他进程改写时重新读取；笔记库不存在时使用一个空的 manifest。
+     */
+    private void refreshManifest() {
+        try {
+            if (!Files.exists(manifestFile)) {
+                if (manifest == null) {
+                    manifest = new Manifest();
+                    manifest.setSegmentCount(segmentCountForNewVault);
+                }
+                return;
+            }
+            BasicFileAttributes attrs = Files.readAttributes(manifestFile, BasicFileAttributes.class);
+            if (manifest != null && Objects.equals(attrs.fileKey(), manifestFileKey)
+                    && attrs.lastModifiedTime().toMillis() == manifestModifiedMillis
+                    && attrs.size() == manifestSize) {
+                return;
+            }
+            Manifest loaded = objectMapper.readValue(Files.readAllBytes(manifestFile), Manifest.class);
+            if (loaded.getFormatVersion() != FORMAT_VERSION) {
+                throw new IOException("不支持的分段笔记库版本: " + loaded.getFormatVersion());
+            }
+            manifest = loaded;
+            manifestFileKey = attrs.fileKey();
+            manifestModifiedMillis = attrs.lastModifiedTime().toMillis();
+            manifestSize = attrs.size();
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("读取 manifest", manifestFile.toString(), e);
+        }
+    }
+
+    private void rememberManifestAttributes() throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(manifestFile, BasicFileAttributes.class);
+        manifestFileKey = attrs.fileKey();
+        manifestModifiedMillis = attrs.lastModifiedTime().toMillis();
+        manifestSize = attrs.size();
+    }
+
+    /**
+     * 笔记ID固定映射到某一段。使用 UTF-8 字节的 FNV 哈希而不是 String.hashCode，
+     * 保证段的划分不依赖于 JVM 实现。
+     */
+    private int segmentOf(String id) {
+        int hash = 0x811c9dc5;
+        for (byte b : id.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x01000193;
+        }
+        return Math.floorMod(hash, manifest.getSegmentCount());
+    }
+
+    private static long crc32(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,463 @@
+package com.ZhangRuo.pkm.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.ZhangRuo.pkm.entity.Note;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * [数据访问层] 按目录分片、每篇笔记一个文件的存储引擎。
+ *
+ * 目录结构：
+ * <pre>
+ * notes/
+ *   manifest.json          格式版本、分片前缀长度、版本代数、下一个顺序号
+ *   3f/3f2a...-....json    单篇笔记：{"seq": 顺序号, "note": {...}}
+ *   a0/a07c...-....json
+ * </pre>
+ *
+ * 修改一篇笔记（编辑内容、增删标签）只重写它自己的那个小文件和很小的 manifest，
+ * 而不是整个笔记库；完整加载时各个笔记文件相互独立，使用多个线程并行读取，
+ * 在 NVMe 这类并行小文件读取很便宜的设备上能充分利用多核。
+ * 笔记在 load 中按顺序号排列，与 JSON 文件中的存储顺序保持一致。
+ */
+public class ShardedStorageService implements StorageService {
+
+    private static final String MANIFEST_FILE = "manifest.json";
+    private static final String NOTE_SUFFIX = ".json";
+    private static final int FORMAT_VERSION = 1;
+    private static final int DEFAULT_PREFIX_LENGTH = 2;
+
+    private final Path rootDir;
+    private final Path manifestFile;
+    private final ObjectMapper objectMapper;
+    private final ForkJoinPool readPool;
+
+    private Manifest manifest;
+    /** 最近一次读取 manifest 时它的文件属性，用于发现其他进程的写入。 */
+    private Object manifestFileKey;
+    private long manifestModifiedMillis = -1L;
+    private long manifestSize = -1L;
+
+    /**
+     * 笔记库的 manifest，只保存少量全局信息。
+     */
+    public static class Manifest {
+        private int formatVersion = FORMAT_VERSION;
+        private int prefixLength = DEFAULT_PREFIX_LENGTH;
+        private long generation;
+        private long nextSeq;
+
+        public Manifest() {
+        }
+
+        public int getFormatVersion() { return formatVersion; }
+        public void setFormatVersion(int formatVersion) { this.formatVersion = formatVersion; }
+        public int getPrefixLength() { return prefixLength; }
+        public void setPrefixLength(int prefixLength) { this.prefixLength = prefixLength; }
+        public long getGeneration() { return generation; }
+        public void setGeneration(long generation) { this.generation = generation; }
+        public long getNextSeq() { return nextSeq; }
+        public void setNextSeq(long nextSeq) { this.nextSeq = nextSeq; }
+    }
+
+    /**
+     * 单个笔记文件的内容：笔记本身，以及决定它在笔记库中位置的顺序号。
+     */
+    public static class ShardRecord {
+        private long seq;
+        private Note note;
+
+        public ShardRecord() {
+        }
+
+        ShardRecord(long seq, Note note) {
+            this.seq = seq;
+            this.note = note;
+        }
+
+        public long getSeq() { return seq; }
+        public void setSeq(long seq) { this.seq = seq; }
+        public Note getNote() { return note; }
+        public void setNote(Note note) { this.note = note; }
+    }
+
+    /**
+     * 默认构造方法，使用 "notes" 目录，并行度等于CPU核数。
+     */
+    public ShardedStorageService() {
+        this("notes");
+    }
+
+    /**
+     * @param rootDir 笔记库根目录。
+     */
+    public ShardedStorageService(String rootDir) {
+        this(rootDir, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param rootDir     笔记库根目录。
+     * @param parallelism 完整加载时并行读取笔记文件的线程数。
+     */
+    public ShardedStorageService(String rootDir, int parallelism) {
+        this.rootDir = Path.of(rootDir).toAbsolutePath();
+        this.manifestFile = this.rootDir.resolve(MANIFEST_FILE);
+        this.readPool = new ForkJoinPool(Math.max(1, parallelism));
+
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        refreshManifest();
+    }
+
+    // --- 读取 ---
+
+    /**
+     * 并行读取所有分片中的笔记文件，再按顺序号排序。
+     */
+    @Override
+    public synchronized List<Note> load() {
+        refreshManifest();
+        return readAll().stream()
+                .sorted(Comparator.comparingLong(ShardRecord::getSeq))
+                .map(ShardRecord::getNote)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * 由ID直接算出文件路径，只读取这一个小文件。
+     */
+    @Override
+    public synchronized Optional<Note> findById(String id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        refreshManifest();
+        ShardRecord record = readRecord(noteFile(id));
+        return record != null ? Optional.ofNullable(record.getNote()) : Optional.empty();
+    }
+
+    @Override
+    public synchronized long generation() {
+        refreshManifest();
+        return manifest.getGeneration();
+    }
+
+    // --- 写入 ---
+
+    /**
+     * 整库保存：只重写内容或位置真正发生变化的笔记文件，并删除列表中已不存在的笔记。
+     * 没有ID的笔记会被分配一个新的UUID，因为文件名需要由ID决定。
+     */
+    @Override
+    public synchronized void save(List<Note> notes) {
+        refreshManifest();
+        Set<Path> keep = new HashSet<>();
+        List<Path> targets = new ArrayList<>(notes.size());
+        List<byte[]> contents = new ArrayList<>(notes.size());
+        for (int i = 0; i < notes.size(); i++) {
+            Note note = notes.get(i);
+            if (note.getId() == null) {
+                note.setId(UUID.randomUUID().toString());
+            }
+            Path file = noteFile(note.getId());
+            keep.add(file);
+            targets.add(file);
+            contents.add(serialize(new ShardRecord(i, note)));
+        }
+
+        // 1. 并行比较并写入发生变化的笔记文件
+        runInReadPool(() -> IntStream.range(0, targets.size()).parallel().forEach(i -> {
+            Path file = targets.get(i);
+            byte[] content = contents.get(i);
+            try {
+                if (Files.exists(file) && Arrays.equals(Files.readAllBytes(file), content)) {
+                    return;
+                }
+                writeAtomically(file, content);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }), "保存笔记文件");
+
+        // 2. 删除列表中已经不存在的笔记
+        for (Path file : listNoteFiles()) {
+            if (!keep.contains(file)) {
+                deleteNoteFile(file);
+            }
+        }
+
+        manifest.setNextSeq(Math.max(manifest.getNextSeq(), notes.size()));
+        commitManifest();
+    }
+
+    /**
+     * 只重写这一篇笔记的文件：已有笔记保留原来的顺序号，新笔记排在末尾。
+     */
+    @Override
+    public synchronized void upsert(Note note) {
+        Objects.requireNonNull(note.getId(), "笔记ID不能为空");
+        refreshManifest();
+        Path file = noteFile(note.getId());
+        ShardRecord existing = readRecord(file);
+        long seq;
+        if (existing != null) {
+            seq = existing.getSeq();
+        } else {
+            seq = manifest.getNextSeq();
+            manifest.setNextSeq(seq + 1);
+        }
+        try {
+            writeAtomically(file, serialize(new ShardRecord(seq, note)));
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("保存笔记文件", file.toString(), e);
+        }
+        commitManifest();
+    }
+
+    @Override
+    public synchronized boolean delete(String id) {
+        if (id == null) {
+            return false;
+        }
+        refreshManifest();
+        Path file = noteFile(id);
+        try {
+            if (!Files.deleteIfExists(file)) {
+                return false;
+            }
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("删除笔记文件", file.toString(), e);
+        }
+        commitManifest();
+        return true;
+    }
+
+    @Override
+    public boolean supportsIncrementalWrites() {
+        return true;
+    }
+
+    /**
+     * @return 指定ID的笔记所对应的文件路径（无论文件是否存在）。
+     */
+    public Path noteFile(String id) {
+        String name = encodeFileName(id);
+        int prefixLength = manifest.getPrefixLength();
+        StringBuilder shard = new StringBuilder(name.length() >= prefixLength ? name.substring(0, prefixLength) : name);
+        while (shard.length() < prefixLength) {
+            shard.append('_');
+        }
+        return rootDir.resolve(shard.toString()).resolve(name + NOTE_SUFFIX);
+    }
+
+    // --- 内部实现 ---
+
+    private List<ShardRecord> readAll() {
+        List<Path> files = listNoteFiles();
+        return runInReadPool(() -> files.parallelStream()
+                .map(this::readRecord)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()), "加载笔记文件");
+    }
+
+    /**
+     * 列出所有分片目录中的笔记文件，忽略 manifest 和写入中途留下的临时文件。
+     */
+    private List<Path> listNoteFiles() {
+        if (!Files.isDirectory(rootDir)) {
+            return new ArrayList<>();
+        }
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> shards = Files.list(rootDir)) {
+            for (Path shard : (Iterable<Path>) shards.filter(Files::isDirectory)::iterator) {
+                try (Stream<Path> entries = Files.list(shard)) {
+                    entries.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.endsWith(NOTE_SUFFIX) && !name.startsWith(".");
+                    }).forEach(files::add);
+                }
+            }
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("列出笔记文件", rootDir.toString(), e);
+        }
+        return files;
+    }
+
+    /**
+     * @return 文件中的记录；文件不存在时返回 null。
+     */
+    private ShardRecord readRecord(Path file) {
+        try {
+            return objectMapper.readValue(Files.readAllBytes(file), ShardRecord.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw StorageErrors.serialization("读取笔记文件 " + file, e);
+        }
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw StorageErrors.serialization("序列化笔记文件", e);
+        }
+    }
+
+    /**
+     * 在专用线程池中执行并行任务，把其中的 I/O 失败转换为存储层统一的异常。
+     */
+    private <T> T runInReadPool(Callable<T> task, String operation) {
+        try {
+            return readPool.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw StorageErrors.fileOperation(operation, rootDir.toString(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IllegalStateException) {
+                throw (IllegalStateException) cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                cause = cause.getCause();
+            }
+            throw StorageErrors.fileOperation(operation, rootDir.toString(), cause);
+        }
+    }
+
+    private void runInReadPool(Runnable task, String operation) {
+        runInReadPool(() -> {
+            task.run();
+            return null;
+        }, operation);
+    }
+
+    /**
+     * 写入临时文件、fsync 后原子重命名，保证笔记文件要么是旧内容要么是新内容。
+     */
+    private void writeAtomically(Path target, byte[] content) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling("." + target.getFileName() + "." + Thread.currentThread().getId() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteNoteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("删除笔记文件", file.toString(), e);
+        }
+    }
+
+    /**
+     * 版本代数加一并写回 manifest。
+     */
+    private void commitManifest() {
+        manifest.setGeneration(manifest.getGeneration() + 1);
+        try {
+            writeAtomically(manifestFile, serialize(manifest));
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("保存 manifest", manifestFile.toString(), e);
+        }
+        rememberManifestAttributes();
+    }
+
+    /**
+     * manifest 的文件属性发生变化（被其他进程改写）时重新读取它。
+     */
+    private void refreshManifest() {
+        try {
+            if (!Files.exists(manifestFile)) {
+                if (manifest == null) {
+                    manifest = new Manifest();
+                }
+                return;
+            }
+            BasicFileAttributes attrs = Files.readAttributes(manifestFile, BasicFileAttributes.class);
+            if (manifest != null && Objects.equals(attrs.fileKey(), manifestFileKey)
+                    && attrs.lastModifiedTime().toMillis() == manifestModifiedMillis
+                    && attrs.size() == manifestSize) {
+                return;
+            }
+            Manifest loaded = objectMapper.readValue(Files.readAllBytes(manifestFile), Manifest.class);
+            if (loaded.getFormatVersion() != FORMAT_VERSION) {
+                throw new IOException("不支持的分片笔记库版本: " + loaded.getFormatVersion());
+            }
+            manifest = loaded;
+            manifestFileKey = attrs.fileKey();
+            manifestModifiedMillis = attrs.lastModifiedTime().toMillis();
+            manifestSize = attrs.size();
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("读取 manifest", manifestFile.toString(), e);
+        }
+    }
+
+    private void rememberManifestAttributes() {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(manifestFile, BasicFileAttributes.class);
+            manifestFileKey = attrs.fileKey();
+            manifestModifiedMillis = attrs.lastModifiedTime().toMillis();
+            manifestSize = attrs.size();
+        } catch (IOException e) {
+            throw StorageErrors.fileOperation("读取 manifest", manifestFile.toString(), e);
+        }
+    }
+
+    /**
+     * 把笔记ID转换为安全的文件名：小写字母、数字、'-' 和 '_' 原样保留，其余字节写成 %XX。
+     * 大写字母也会被转义，避免在大小写不敏感的文件系统上与小写ID冲突。
+     */
+    static String encodeFileName(String id) {
+        StringBuilder name = new StringBuilder(id.length());
+        for (byte b : id.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_') {
+                name.append(c);
+            } else {
+                name.append('%').append(String.format("%02X", b & 0xff));
+            }
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,35 @@
+package com.ZhangRuo.pkm.repository;
+
+import com.ZhangRuo.pkm.exception.FileOperationException;
+import com.ZhangRuo.pkm.exception.SerializationException;
+
+/**
+ * 存储层内部使用的异常构造工具。
+ * StorageService 接口的方法不声明受检异常，因此底层失败统一包装为 IllegalStateException 向上抛出，
+ * 项目自定义的 FileOperationException / SerializationException 作为其 cause 保留完整的异常链，
+ * 异常消息也直接沿用它们格式化好的中文描述。
+ */
+final class StorageErrors {
+
+    private StorageErrors() {
+    }
+
+    /**
+     * @param operation 正在执行的文件操作，例如"保存笔记数据"。
+     * @param filePath  操作失败的文件路径。
+     * @param cause     原始的底层异常。
+     */
+    static IllegalStateException fileOperation(String operation, String filePath, Throwable cause) {
+        FileOperationException exception = new FileOperationException(operation, filePath, cause);
+        return new IllegalStateException(exception.getMessage(), exception);
+    }
+
+    /**
+     * @param operation 正在执行的序列化/反序列化操作。
+     * @param cause     原始的底层异常。
+     */
+    static IllegalStateException serialization(String operation, Throwable cause) {
+        SerializationException exception = new SerializationException(operation, cause);
+        return new IllegalStateException(exception.getMessage(), exception);
+    }
+}
@@ -2,13 +2,20 @@ package com.ZhangRuo.pkm.repository;
 
 import com.ZhangRuo.pkm.entity.Note;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /*
 *定义了数据存储服务的统一接口（契约）
 * 任何具体的存储实现（如JSON，数据库）都必须实现此接口
+*
+* 除了整库读写的 save/load 之外，接口还提供按单篇笔记读写的方法（findById/upsert/delete/scan）
+* 它们的默认实现基于 save/load，因此旧的实现无需改动即可工作；
+* 能够做增量读写的存储引擎应覆盖这些方法，只读写受影响的那一篇笔记
 * */
 
-public interface StorageService {
+public interface StorageService extends AutoCloseable {
     /*
     * 保存笔记列表
     * @param notes 要保存的笔记列表
@@ -21,4 +28,93 @@ public interface StorageService {
     * */
     List<Note> load();
 
+    /*
+    * 根据ID查找一篇笔记
+    * @param id 笔记ID
+    * @return 包含该笔记的Optional，找不到时为空
+    * */
+    default Optional<Note> findById(String id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return load().stream()
+                .filter(note -> id.equals(note.getId()))
+                .findFirst();
+    }
+
+    /*
+    * 插入或更新一篇笔记：ID已存在时原位替换，否则追加到末尾
+    * @param note 要写入的笔记，ID不能为空
+    * */
+    default void upsert(Note note) {
+        Objects.requireNonNull(note.getId(), "笔记ID不能为空");
+        List<Note> notes = load();
+        boolean replaced = false;
+        for (int i = 0; i < notes.size(); i++) {
+            if (note.getId().equals(notes.get(i).getId())) {
+                notes.set(i, note);
+                replaced = true;
+                break;
+            }
+        }
+        if (!replaced) {
+            notes.add(note);
+        }
+        save(notes);
+    }
+
+    /*
+    * 根据ID删除一篇笔记
+    * @param id 要删除的笔记ID
+    * @return 如果确实删除了笔记则返回true
+    * */
+    default boolean delete(String id) {
+        if (id == null) {
+            return false;
+        }
+        List<Note> notes = load();
+        boolean removed = notes.removeIf(note -> id.equals(note.getId()));
+        if (removed) {
+            save(notes);
+        }
+        return removed;
+    }
+
+    /*
+    * 按存储顺序逐篇遍历所有笔记
+    * 返回的流可能持有文件等底层资源，调用方应使用 try-with-resources 关闭它
+    * @return 所有笔记组成的流
+    * */
+    default Stream<Note> scan() {
+        return load().stream();
+    }
+
+    /*
+    * 该实现的 upsert/delete 是否真正只写入受影响的那一篇笔记
+    * 返回 false 表示它们只是基于 load/save 的默认实现，
+    * 已经在内存中持有完整笔记列表的上层（如缓存）应直接调用 save，避免重复加载
+    * */
+    default boolean supportsIncrementalWrites() {
+        return false;
+    }
+
+    /*
+    * 获取存储的当前版本戳（代数）
+    * 只要底层数据发生变化（无论是本进程写入还是被外部修改），该值就必须随之改变，
+    * 上层的缓存和索引据此判断自己是否已经过期
+    *
+    * @return 当前版本戳；返回 -1 表示该实现不支持变更检测
+    * */
+    default long generation() {
+        return -1L;
+    }
+
+    /*
+    * 释放存储引擎持有的资源（打开的文件通道、后台线程等），进程退出前调用
+    * 不持有资源的实现什么也不做；关闭之后不应再使用该实例
+    * */
+    @Override
+    default void close() {
+    }
+
 }
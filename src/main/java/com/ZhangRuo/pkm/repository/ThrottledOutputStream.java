@@ -0,0 +1,53 @@
+package com.ZhangRuo.pkm.repository;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * [数据访问层] 按 I/O 预算写入的输出流：每写出一块（最多 IoBudget.CHUNK_BYTES 字节）之前先申请预算。
+ * 一般放在缓冲流的下面，缓冲区每次刷出都会先申请预算，再真正写入底层流。
+ *
+ * 等待预算时线程被中断，会抛出 InterruptedIOException 并保留线程的中断状态，
+ * 调用方可以像处理其他写入失败一样放弃这次写入。
+ */
+public class ThrottledOutputStream extends FilterOutputStream {
+
+    private final IoBudget budget;
+
+    /**
+     * @param out    真正写入的流。
+     * @param budget 每写一块之前申请的预算。
+     */
+    public ThrottledOutputStream(OutputStream out, IoBudget budget) {
+        super(out);
+        this.budget = budget;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        acquire(1);
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int chunk = Math.min(len, IoBudget.CHUNK_BYTES);
+            acquire(chunk);
+            out.write(b, off, chunk);
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+    private void acquire(int bytes) throws InterruptedIOException {
+        try {
+            budget.acquire(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待 I/O 预算时被中断");
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.ZhangRuo.pkm.repository;
+
+import com.ZhangRuo.pkm.entity.Note;
+
+import java.util.List;
+
+/**
+ * [数据访问层] 笔记库格式转换工具。
+ * 在现有的 notes.json 与二进制笔记库（notes.pkm）之间互相转换，
+ * 转换前后笔记的顺序、ID、标签和时间戳都保持不变。
+ */
+public final class VaultConverter {
+
+    private VaultConverter() {
+        // 工具类，禁止实例化
+    }
+
+    /**
+     * 把 JSON 笔记库转换为二进制笔记库。
+     * @param jsonPath   源 JSON 文件路径。
+     * @param binaryPath 目标二进制文件路径（已存在时会被覆盖）。
+     * @return 转换的笔记数量。
+     */
+    public static int jsonToBinary(String jsonPath, String binaryPath) {
+        try (BinaryStorageService target = new BinaryStorageService(binaryPath)) {
+            return copy(new JsonStorageService(jsonPath), target);
+        }
+    }
+
+    /**
+     * 把二进制笔记库转换回 JSON 笔记库。
+     * @param binaryPath 源二进制文件路径。
+     * @param jsonPath   目标 JSON 文件路径（已存在时会被覆盖）。
+     * @return 转换的笔记数量。
+     */
+    public static int binaryToJson(String binaryPath, String jsonPath) {
+        try (BinaryStorageService source = new BinaryStorageService(binaryPath)) {
+            return copy(source, new JsonStorageService(jsonPath));
+        }
+    }
+
+    /**
+     * 在任意两种存储之间复制全部笔记。
+     * @return 复制的笔记数量。
+     */
+    public static int copy(StorageService source, StorageService target) {
+        List<Note> notes = source.load();
+        target.save(notes);
+        return notes.size();
+    }
+}
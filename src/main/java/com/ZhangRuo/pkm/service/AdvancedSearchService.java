@@ -0,0 +1,203 @@
+package com.ZhangRuo.pkm.service;
+
+import com.ZhangRuo.pkm.entity.Note;
+import com.ZhangRuo.pkm.enums.TagMatchMode;
+import com.ZhangRuo.pkm.service.index.NoteIndex;
+import com.ZhangRuo.pkm.service.query.ScanEngine;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * [业务逻辑层]
+ * 封装多标签组合查询、标签云、标签模糊匹配等高级检索功能。
+ *
+ * 有两种用法：
+ * 1. 对调用方给出的笔记列表做查询（无参构造函数），每次查询临时为这批笔记建立标签倒排集合；
+ * 2. 绑定到与 NoteService/TagService 共享的 NoteIndex 上，直接使用随写入维护的
+ *    标签位图和计数器，查询代价与笔记库的大小无关。
+ */
+public class AdvancedSearchService {
+
+    private final NoteIndex noteIndex;
+    private final QueryCache queryCache;
+
+    /**
+     * 构造一个只对传入的笔记列表做查询的实例。
+     */
+    public AdvancedSearchService() {
+        this(null);
+    }
+
+    /**
+     * 构造函数，与 NoteService、TagService 共享同一个索引。
+     * @param noteIndex 笔记库的索引。
+     */
+    public AdvancedSearchService(NoteIndex noteIndex) {
+        this(noteIndex, null);
+    }
+
+    /**
+     * 构造函数，额外共享一个查询结果缓存（目前用于标签云）。
+     * @param noteIndex  笔记库的索引。
+     * @param queryCache 以同一个 noteIndex 的版本号为准的查询缓存，为 null 时不缓存。
+     */
+    public AdvancedSearchService(NoteIndex noteIndex, QueryCache queryCache) {
+        this.noteIndex = noteIndex;
+        this.queryCache = queryCache;
+    }
+
+    // --- 在给定的笔记列表上查询 ---
+
+    /**
+     * 找出同时包含所有指定标签的笔记（AND），结果保持原列表的顺序。
+     * 先为每个标签建立笔记下标集合，再从最稀有的标签开始求交。
+     *
+     * @param notes        要查询的笔记。
+     * @param requiredTags 必须同时包含的标签（区分大小写）。
+     */
+    public List<Note> searchByTags(List<Note> notes, List<String> requiredTags) {
+        if (requiredTags == null || requiredTags.isEmpty()) {
+            return new ArrayList<>(notes);
+        }
+        // 1.一次遍历，为每个要求的标签建立笔记下标集合
+        Map<String, BitSet> postings = new HashMap<>();
+        for (String tag : requiredTags) {
+            postings.put(tag, new BitSet(notes.size()));
+        }
+        for (int i = 0; i < notes.size(); i++) {
+            for (String tag : notes.get(i).getTags()) {
+                BitSet posting = postings.get(tag);
+                if (posting != null) {
+                    posting.set(i);
+                }
+            }
+        }
+
+        // 2.从最稀有的标签开始求交，中间结果变空时立即结束
+        List<BitSet> ordered = new ArrayList<>(postings.values());
+        ordered.sort(Comparator.comparingInt(BitSet::cardinality));
+        BitSet result = (BitSet) ordered.get(0).clone();
+        for (int i = 1; i < ordered.size() && !result.isEmpty(); i++) {
+            result.and(ordered.get(i));
+        }
+
+        List<Note> matched = new ArrayList<>(result.cardinality());
+        for (int i = result.nextSetBit(0); i >= 0; i = result.nextSetBit(i + 1)) {
+            matched.add(notes.get(i));
+        }
+        return matched;
+    }
+
+    /**
+     * 统计每个标签被多少篇笔记使用（标签云），按使用次数从多到少排列。
+     */
+    public Map<String, Long> generateTagCloud(List<Note> notes) {
+        Map<String, Long> counts = notes.stream()
+                .flatMap(note -> note.getTags().stream().distinct())
+                .collect(Collectors.groupingBy(tag -> tag, Collectors.counting()));
+        return sortByCount(counts);
+    }
+
+    /**
+     * 找出含有任意一个名称包含关键字的标签的笔记（标签名不区分大小写），结果保持原列表的顺序。
+     */
+    public List<Note> searchByTagKeyword(List<Note> notes, String keyword) {
+        if (keyword == null || keyword.isBlank()) {
+            return new ArrayList<>();
+        }
+        String lowerKeyword = keyword.toLowerCase();
+        // 没有索引可用，在 ForkJoinPool 上分块并行过滤，结果保持原列表的顺序
+        return ScanEngine.shared().filter(notes, note -> {
+            for (String tag : note.getTags()) {
+                if (tag.toLowerCase().contains(lowerKeyword)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    // --- 在共享索引上查询 ---
+
+    /**
+     * 在整个笔记库中找出同时包含所有指定标签的笔记（AND），结果按存储顺序排列。
+     * 标签位图从最稀有的标签开始求交。
+     */
+    public List<Note> searchByTags(List<String> requiredTags) {
+        return requireIndex().findByTags(requiredTags, TagMatchMode.AND, List.of());
+    }
+
+    /**
+     * 整个笔记库的标签云，直接读取在添加/移除标签时维护的计数器，不重新统计。
+     * 有查询缓存时，笔记库没有变化前直接返回上一次排好序的结果（不可修改）。
+     */
+    public Map<String, Long> generateTagCloud() {
+        NoteIndex index = requireIndex();
+        if (queryCache == null) {
+            return buildTagCloud(index);
+        }
+        return queryCache.get(List.of("tagCloud"), () -> Collections.unmodifiableMap(buildTagCloud(index)));
+    }
+
+    private static Map<String, Long> buildTagCloud(NoteIndex index) {
+        Map<String, Long> counts = new HashMap<>();
+        index.tagCounts().forEach((tag, count) -> counts.put(tag, count.longValue()));
+        return sortByCount(counts);
+    }
+
+    /**
+     * 在整个笔记库中按关键字模糊匹配标签，只遍历不重复的标签名，再合并它们的位图。
+     */
+    public List<Note> searchByTagKeyword(String keyword) {
+        if (keyword == null || keyword.isBlank()) {
+            return new ArrayList<>();
+        }
+        return requireIndex().findByTagKeyword(keyword);
+    }
+
+    /**
+     * 在整个笔记库中查找含有以 prefix 开头的标签的笔记（标签名不区分大小写）。
+     */
+    public List<Note> searchByTagPrefix(String prefix) {
+        if (prefix == null || prefix.isBlank()) {
+            return new ArrayList<>();
+        }
+        return requireIndex().findByTagPrefix(prefix);
+    }
+
+    /**
+     * 标签补全：在排序的标签字典上做前缀范围查询，返回标签及其笔记数量。
+     * @param prefix 已输入的前缀，为空时按字典顺序返回前 limit 个标签。
+     * @param limit  最多返回的标签数量。
+     */
+    public Map<String, Integer> completeTags(String prefix, int limit) {
+        return requireIndex().completeTags(prefix, limit);
+    }
+
+    private NoteIndex requireIndex() {
+        if (noteIndex == null) {
+            throw new IllegalStateException("AdvancedSearchService 未绑定笔记索引，只能对传入的笔记列表查询");
+        }
+        return noteIndex;
+    }
+
+    /**
+     * 按使用次数从多到少排列，次数相同时按标签名排列。
+     */
+    private static Map<String, Long> sortByCount(Map<String, Long> counts) {
+        Map<String, Long> sorted = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+}
@@ -7,6 +7,7 @@ import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
 import java.util.List;
 
 /*
@@ -23,21 +24,41 @@ public class ExportService {
     * @throws IOException 如果写入文件时发生错误
     * */
     public void exportNotes(List<Note> notes,String filePath, ExportFormat format) throws IOException {
+        exportNotes(notes.iterator(), filePath, format);
+    }
+
+    /*
+    * 逐篇导出笔记，不要求调用方先把所有笔记装进内存
+    * 可以直接传入 StorageService.scan() 得到的流的迭代器，导出任意大小的笔记库只占用常数级内存
+    * @param notes 要导出的笔记迭代器
+    * @param filePath 导出的文件路径
+    * @param format 导出的文件格式
+    * @return 实际导出的笔记篇数
+    * @throws IOException 如果写入文件时发生错误
+    * */
+    public int exportNotes(Iterator<Note> notes, String filePath, ExportFormat format) throws IOException {
         switch (format) {
             case TEXT:
-                exportToTextFile(notes,filePath);
-                break;
+                return exportToTextFile(notes,filePath);
             //之后可扩展case JSON等
 
         }
+        return 0;
     }
 
-    private void exportToTextFile(List<Note> notes,String filePath) throws IOException {
+    private int exportToTextFile(Iterator<Note> notes,String filePath) throws IOException {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
+        int exported = 0;
 
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(filePath))) {
-            for (int i = 0;i < notes.size();i++) {
-                Note note = notes.get(i);
+            while (notes.hasNext()) {
+                Note note = notes.next();
+
+                //分隔符写在每篇笔记之前（第一篇除外），这样不需要预先知道总篇数
+                if (exported > 0) {
+                    writer.write("---");
+                    writer.newLine();
+                }
 
                 writer.write("标题：" + note.getTitle());
                 writer.newLine();
@@ -51,12 +72,9 @@ public class ExportService {
                 writer.newLine();
                 writer.write(note.getContent());
                 writer.newLine();
-
-                if (i < notes.size() - 1) {
-                    writer.write("---");
-                    writer.newLine();
-                }
+                exported++;
             }
         }
+        return exported;
     }
 }
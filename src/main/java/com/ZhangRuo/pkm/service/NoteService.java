@@ -1,12 +1,18 @@
 package com.ZhangRuo.pkm.service;
 
 import com.ZhangRuo.pkm.entity.Note;
+import com.ZhangRuo.pkm.enums.DateField;
+import com.ZhangRuo.pkm.enums.TagMatchMode;
 import com.ZhangRuo.pkm.repository.StorageService;
+import com.ZhangRuo.pkm.service.index.NoteIndex;
 
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.TreeSet;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 /*
 * [业务逻辑层]
@@ -17,13 +23,38 @@ import java.util.stream.Collectors;
 public class NoteService {
     //依赖于StorageService 接口，而不是具体的实现类，这是”面向接口编程“
     private final StorageService storageService;
+    //笔记库的内存索引，写入笔记时同步更新，搜索时只访问相关词项的倒排列表
+    private final NoteIndex noteIndex;
+    //查询结果缓存，为null时每次查询都直接访问索引
+    private final QueryCache queryCache;
 
     /*
     * 构造函数，用于接受外部传入的StorageService实例（依赖注入）
     * @param storageService 一个实现了StorageService接口的对象
     * */
     public NoteService(StorageService storageService) {
+        this(storageService, new NoteIndex(storageService));
+    }
+
+    /*
+    * 构造函数，与其他服务（如TagService）共享同一个索引
+    * @param storageService 一个实现了StorageService接口的对象
+    * @param noteIndex 建立在同一个storageService之上的索引
+    * */
+    public NoteService(StorageService storageService, NoteIndex noteIndex) {
+        this(storageService, noteIndex, null);
+    }
+
+    /*
+    * 构造函数，额外共享一个查询结果缓存：重复的搜索和按标签列出直接返回缓存的结果，任何写入都会使其失效
+    * @param storageService 一个实现了StorageService接口的对象
+    * @param noteIndex 建立在同一个storageService之上的索引
+    * @param queryCache 以同一个noteIndex的版本号为准的查询缓存，为null时不缓存
+    * */
+    public NoteService(StorageService storageService, NoteIndex noteIndex, QueryCache queryCache) {
         this.storageService = storageService;
+        this.noteIndex = noteIndex;
+        this.queryCache = queryCache;
     }
 
     /*
@@ -40,18 +71,12 @@ public class NoteService {
             throw new IllegalArgumentException("标题不能为空");
         }
 
-        //2.加载当前所有笔记，为添加新笔记做准备
-        List<Note> notes = storageService.load();
-
-        //3.创建并设置新笔记的核心业务属性
+        //2.创建并设置新笔记的核心业务属性
         Note newNote = new Note(title, content);
         newNote.setId(UUID.randomUUID().toString());//在Service层生成唯一ID
 
-        //4.将新笔记添加到列表中
-        notes.add(newNote);
-
-        //5.将更新后的完整列表保存回去
-        storageService.save(notes);
+        //3.只写入这一篇新笔记，由存储引擎决定如何持久化，并同步更新索引
+        noteIndex.upsert(newNote);
 
         return newNote;
 
@@ -65,15 +90,21 @@ public class NoteService {
         return storageService.load();
     }
 
+    /*
+    * [业务逻辑] 统计笔记总数，直接读取索引中的笔记数量，不加载整个笔记库
+    * @return 笔记总数
+    * */
+    public int countNotes() {
+        return noteIndex.size();
+    }
+
     /*
     * [业务逻辑] 根据ID查找一篇笔记
     * @param id 要查找的笔记ID
     * @return 一个包含Note的Optional（如果找到），或一个空的Optional(如果没找到)
     * */
     public Optional<Note> findNoteById(String id) {
-        return storageService.load().stream()
-                .filter(note -> note.getId() != null && note.getId().equals(id))
-                .findFirst();
+        return storageService.findById(id);
     }
 
     /*
@@ -82,15 +113,8 @@ public class NoteService {
     * @return 如果成功删除则返回true，否则返回false
     * */
     public boolean deleteNote(String id) {
-        List<Note> notes = storageService.load();
-        //使用removeIf的方式高效删除
-        boolean removed = notes.removeIf(note -> note.getId() != null && note.getId().equals(id));
-
-        //如果真的删除了笔记，才需要执行保存操作
-        if (removed) {
-            storageService.save(notes);
-        }
-        return removed;
+        //按ID删除单篇笔记，存储引擎只在真的删除了笔记时才写盘，索引随之移除该笔记
+        return noteIndex.delete(id);
     }
 
     /*
@@ -102,13 +126,59 @@ public class NoteService {
         if (tagName == null || tagName.isBlank()){
             return getAllNotes();//如果标签为空，则返回所有笔记
         }
-        //使用Stream API进行过滤
-        return storageService.load().stream()
-                .filter(note -> note.hasTag(tagName))//只保留包含该标签的笔记
-                .collect(Collectors.toList());//将结果收集到列表中
+        //直接取该标签的位图，不再逐篇调用 Note.hasTag
+        return findNotesByTags(List.of(tagName), TagMatchMode.AND, List.of());
 
     }
 
+    /*
+    * [业务逻辑] findNotesByTag 的旧名称，保留以兼容已有的调用方
+    * */
+    public List<Note> findNoteByTag(String tagName) {
+        return findNotesByTag(tagName);
+    }
+
+    /*
+    * [业务逻辑] 按多个标签组合查找笔记
+    * @param tagNames 要匹配的标签，为空时匹配所有笔记
+    * @param mode 多个标签之间的组合方式：AND 要求全部包含，OR 只需包含任意一个
+    * @param excludedTagNames 含有其中任意一个标签的笔记会被排除
+    * @return 符合条件的笔记列表，按存储顺序排列
+    * */
+    public List<Note> findNotesByTags(List<String> tagNames, TagMatchMode mode, List<String> excludedTagNames) {
+        List<String> included = tagNames == null ? List.of() : tagNames;
+        List<String> excluded = excludedTagNames == null ? List.of() : excludedTagNames;
+        if (included.isEmpty() && excluded.isEmpty()) {
+            return getAllNotes();//没有任何过滤条件，返回所有笔记
+        }
+        TagMatchMode matchMode = mode == null ? TagMatchMode.AND : mode;
+        //标签的先后顺序和重复不影响结果，排序去重后作为缓存键
+        List<Object> key = List.of("tags", matchMode, List.copyOf(new TreeSet<>(included)), List.copyOf(new TreeSet<>(excluded)));
+        return cached(key, () -> List.copyOf(noteIndex.findByTags(included, matchMode, excluded)));
+    }
+
+    /*
+    * [业务逻辑] 按修改时间范围和标签过滤笔记，并可按时间从新到旧排序
+    * 范围查找和排序都在有序的时间索引上进行，不扫描整个笔记库
+    * @param tagNames 要匹配的标签，为空时不按标签过滤
+    * @param mode 多个标签之间的组合方式
+    * @param excludedTagNames 含有其中任意一个标签的笔记会被排除
+    * @param since 修改时间的下界（含），为null时不限
+    * @param until 修改时间的上界（不含），为null时不限
+    * @param sortBy 按创建时间或修改时间从新到旧排序，为null时按存储顺序排列
+    * @return 符合条件的笔记列表
+    * */
+    public List<Note> findNotesByTime(List<String> tagNames, TagMatchMode mode, List<String> excludedTagNames,
+                                      LocalDateTime since, LocalDateTime until, DateField sortBy) {
+        List<String> included = tagNames == null ? List.of() : tagNames;
+        List<String> excluded = excludedTagNames == null ? List.of() : excludedTagNames;
+        TagMatchMode matchMode = mode == null ? TagMatchMode.AND : mode;
+        //时间和排序字段可以为null，用允许null元素的Arrays.asList作为缓存键
+        List<Object> key = Arrays.asList("time", matchMode, List.copyOf(new TreeSet<>(included)),
+                List.copyOf(new TreeSet<>(excluded)), since, until, sortBy);
+        return cached(key, () -> List.copyOf(noteIndex.findByTime(included, matchMode, excluded, since, until, sortBy)));
+    }
+
     /*
     * [业务逻辑] 更新一篇已存在笔记的内容
     * 会自动更新笔记的‘update’ 时间戳
@@ -118,19 +188,15 @@ public class NoteService {
     * @return 如果更新成功，返回更新后的Note对象；如果笔记未找到，返回空的Optional
     * */
     public Optional<Note> updateNoteContent(String id, String newContent) {
-        List<Note> notes = storageService.load();
-
         //1.找到需要更新的笔记
-        Optional<Note> noteToUpdateOpt = notes.stream()
-                .filter(note -> note.getId() != null && note.getId().equals(id))
-                .findFirst();
+        Optional<Note> noteToUpdateOpt = storageService.findById(id);
 
         //2.如果找到了，就执行更新
         if (noteToUpdateOpt.isPresent()) {
             Note noteToUpdate = noteToUpdateOpt.get();
             //调用Note自身的setter方法，该方法会自动更新时间戳
             noteToUpdate.setContent(newContent);
-            storageService.save(notes);//保存整个更新后的列表
+            noteIndex.upsert(noteToUpdate);//只写回这一篇笔记，并重新索引它
             return Optional.of(noteToUpdate);
         }else {
             return Optional.empty();//如果没找到笔记，返回空
@@ -140,25 +206,60 @@ public class NoteService {
 
     /*
     * [业务逻辑] 根据关键词搜索笔记
-    * 搜索范围包括笔记的标题和内容
+    * 搜索范围包括笔记的标题和内容，结果按相关度（BM25，标题加权）从高到低排列
     *
     * @param keyword 要搜索的关键词
     *@return 包含该关键词的笔记列表
     * */
     public List<Note> searchNotesByKeyword(String keyword) {
+        return searchNotesByKeyword(keyword, Integer.MAX_VALUE);
+    }
+
+    /*
+    * [业务逻辑] 根据关键词搜索笔记，只返回相关度最高的 limit 篇
+    *
+    * @param keyword 要搜索的关键词
+    * @param limit 最多返回的笔记数量，必须为正数
+    * @return 按相关度从高到低排列的笔记列表
+    * */
+    public List<Note> searchNotesByKeyword(String keyword, int limit) {
         if (keyword == null || keyword.isBlank()){
             return List.of();//如果关键词为空，返回空列表
         }
-        String lowerKeyword = keyword.toLowerCase();//转换为小写以进行不区分大小写的搜索
-
-        return storageService.load().stream()
-                .filter(note ->
-                        //检查标题是否包含关键词
-                        (note.getTitle() != null && note.getTitle().toLowerCase().contains(lowerKeyword)) ||
-                        //或者检查内容是否包含关键词
-                        (note.getContent() != null && note.getContent().toLowerCase().contains(lowerKeyword))
-                )
-                .collect(Collectors.toList());
+        if (limit <= 0) {
+            throw new IllegalArgumentException("返回数量必须为正数: " + limit);
+        }
+        //通过索引查找：语义仍是不区分大小写的子串匹配，排序只读取索引中的词频，不扫描原文
+        //只有大小写不同的关键词归一化后相同，共用同一条缓存
+        List<Object> key = List.of("search", noteIndex.normalize(keyword), limit);
+        return cached(key, () -> List.copyOf(noteIndex.searchRanked(keyword, limit)));
+    }
+
+    /*
+    * [业务逻辑] 容忍拼写错误的关键词搜索，只返回相关度最高的 limit 篇
+    * 每个词允许的编辑次数随词长增加（3到5个字符1次，更长2次），匹配的是完整的词而不是子串
+    *
+    * @param keyword 要搜索的关键词，可以有拼写错误
+    * @param limit 最多返回的笔记数量，必须为正数
+    * @return 按相关度从高到低排列的笔记列表，拼写完全一致的笔记排在前面
+    * */
+    public List<Note> searchNotesFuzzy(String keyword, int limit) {
+        if (keyword == null || keyword.isBlank()){
+            return List.of();
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("返回数量必须为正数: " + limit);
+        }
+        //在排序的词项字典上用 Levenshtein 自动机找出拼写相近的词项，再只访问它们的倒排列表
+        List<Object> key = List.of("fuzzy", noteIndex.normalize(keyword), limit);
+        return cached(key, () -> List.copyOf(noteIndex.searchFuzzy(keyword, limit)));
+    }
+
+    /*
+    * 有查询缓存时先查缓存，否则直接计算
+    * */
+    private <T> T cached(Object key, Supplier<T> loader) {
+        return queryCache == null ? loader.get() : queryCache.get(key, loader);
     }
 
 
@@ -0,0 +1,150 @@
+package com.ZhangRuo.pkm.service;
+
+import com.ZhangRuo.pkm.service.index.NoteIndex;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * [业务逻辑层] 查询结果缓存，由 NoteService、QueryService、AdvancedSearchService 共享。
+ *
+ * 缓存键是调用方给出的归一化查询（例如 List.of("search", 归一化关键词, 数量)），
+ * 每个结果同时记下计算它时索引的版本号（NoteIndex.generation）：
+ * 1. 版本号单调递增，任何写入或外部修改之后旧结果都不会再被命中，不需要猜测哪些查询受到了影响；
+ * 2. 发现版本号变化时一次性清空所有旧结果，腾出空间给新版本的查询；
+ * 3. 条目数超过容量时淘汰最久未被访问的结果（LRU）。
+ * 缓存的结果会被多个调用方共享，必须是不可修改的对象。
+ */
+public class QueryCache {
+
+    /**
+     * 缓存的命中情况，用于调整容量。
+     */
+    public static class Stats {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long invalidations;
+        private final int size;
+        private final int capacity;
+
+        Stats(long hits, long misses, long evictions, long invalidations, int size, int capacity) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+            this.size = size;
+            this.capacity = capacity;
+        }
+
+        public long getHits() { return hits; }
+        public long getMisses() { return misses; }
+        /** @return 因超出容量而被淘汰的条目数。 */
+        public long getEvictions() { return evictions; }
+        /** @return 因笔记库发生变化而整体失效的次数。 */
+        public long getInvalidations() { return invalidations; }
+        public int getSize() { return size; }
+        public int getCapacity() { return capacity; }
+
+        /** @return 命中率（0 到 1）；还没有任何查询时为 0。 */
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+    }
+
+    private static final class Entry {
+        final long generation;
+        final Object value;
+
+        Entry(long generation, Object value) {
+            this.generation = generation;
+            this.value = value;
+        }
+    }
+
+    private final NoteIndex noteIndex;
+    private final int capacity;
+    private final Map<Object, Entry> entries;
+
+    private long currentGeneration = -1L;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    /**
+     * @param noteIndex 提供版本号的索引，与使用本缓存的服务共享。
+     * @param capacity  最多缓存的查询结果数，必须为正数。
+     */
+    public QueryCache(NoteIndex noteIndex, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("缓存容量必须为正数: " + capacity);
+        }
+        this.noteIndex = noteIndex;
+        this.capacity = capacity;
+        // accessOrder = true：每次命中都把条目移到末尾，最老的条目就是最久未被访问的
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                if (size() > QueryCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 取出当前版本的笔记库上这条查询的结果；没有缓存时调用 loader 计算并放入缓存。
+     * loader 在缓存的锁之外执行，慢查询不会阻塞其他查询命中缓存。
+     *
+     * @param key    归一化后的查询，必须正确实现 equals/hashCode，并能区分不同种类的查询。
+     * @param loader 计算查询结果，返回值必须不可修改。
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Supplier<T> loader) {
+        // 1. 版本号在计算之前读取：计算期间发生的写入会让版本号变大，这个结果之后不会再被命中
+        long generation = noteIndex.generation();
+        synchronized (this) {
+            if (generation != currentGeneration) {
+                if (!entries.isEmpty()) {
+                    invalidations++;
+                }
+                entries.clear();
+                currentGeneration = generation;
+            }
+            Entry entry = entries.get(key);
+            if (entry != null && entry.generation == generation) {
+                hits++;
+                return (T) entry.value;
+            }
+            misses++;
+        }
+
+        // 2. 未命中：计算结果，只在版本号仍是当前版本时放入缓存
+        T value = loader.get();
+        synchronized (this) {
+            if (generation == currentGeneration) {
+                entries.put(key, new Entry(generation, value));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 丢弃所有缓存的结果，计数器保持不变。
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return 当前的命中计数和容量使用情况。
+     */
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, invalidations, entries.size(), capacity);
+    }
+}
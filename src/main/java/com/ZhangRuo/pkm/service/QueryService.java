@@ -0,0 +1,92 @@
+package com.ZhangRuo.pkm.service;
+
+import com.ZhangRuo.pkm.entity.Note;
+import com.ZhangRuo.pkm.service.index.NoteIndex;
+import com.ZhangRuo.pkm.service.query.QueryNode;
+import com.ZhangRuo.pkm.service.query.QueryPlanner;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * [业务逻辑层]
+ * 执行结构化查询（tag:、created:、updated:、关键词、AND/OR/NOT），由 QueryPlanner 为每个条件选择访问路径。
+ */
+public class QueryService {
+
+    /**
+     * 一次查询的结果：命中总数、按相关度排列的前若干篇笔记，以及需要时的执行计划。
+     */
+    public static class QueryResult {
+        private final int totalMatches;
+        private final List<Note> notes;
+        private final List<String> plan;
+
+        QueryResult(int totalMatches, List<Note> notes, List<String> plan) {
+            this.totalMatches = totalMatches;
+            this.notes = notes;
+            this.plan = plan;
+        }
+
+        public int getTotalMatches() { return totalMatches; }
+        public List<Note> getNotes() { return notes; }
+        /** @return 执行计划的每一行；没有要求 explain 时为空列表。 */
+        public List<String> getPlan() { return plan; }
+    }
+
+    private final NoteIndex noteIndex;
+    private final QueryCache queryCache;
+
+    /**
+     * 构造函数，与 NoteService、TagService 共享同一个索引。
+     * @param noteIndex 笔记库的索引。
+     */
+    public QueryService(NoteIndex noteIndex) {
+        this(noteIndex, null);
+    }
+
+    /**
+     * 构造函数，额外共享一个查询结果缓存。
+     * @param noteIndex  笔记库的索引。
+     * @param queryCache 以同一个 noteIndex 的版本号为准的查询缓存，为 null 时不缓存。
+     */
+    public QueryService(NoteIndex noteIndex, QueryCache queryCache) {
+        this.noteIndex = noteIndex;
+        this.queryCache = queryCache;
+    }
+
+    /**
+     * 执行查询。查询中含有关键词时按这些关键词的 BM25 得分排序，否则按存储顺序排列。
+     * 有查询缓存时，相同的查询（按解析后的规范形式比较）在笔记库没有变化前直接返回上一次的结果；
+     * 要求 explain 的查询总是重新执行，执行计划反映的是本次的实际过程。
+     *
+     * @param query   已解析的查询。
+     * @param limit   最多返回的笔记数量，必须为正数。
+     * @param explain 是否记录执行计划。
+     */
+    public QueryResult search(QueryNode query, int limit, boolean explain) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("返回数量必须为正数: " + limit);
+        }
+        if (queryCache == null || explain) {
+            return execute(query, limit, explain);
+        }
+        return queryCache.get(List.of("query", query.toString(), limit), () -> execute(query, limit, false));
+    }
+
+    private QueryResult execute(QueryNode query, int limit, boolean explain) {
+        List<String> keywords = new ArrayList<>();
+        query.collectKeywords(keywords);
+
+        return noteIndex.read(view -> {
+            List<String> plan = explain ? new ArrayList<>() : null;
+            BitSet matches = QueryPlanner.execute(query, view, plan);
+            List<Note> notes = new ArrayList<>();
+            for (int ordinal : view.rank(matches, keywords, limit)) {
+                notes.add(view.note(ordinal));
+            }
+            return new QueryResult(matches.cardinality(), List.copyOf(notes), plan == null ? List.of() : plan);
+        });
+    }
+}
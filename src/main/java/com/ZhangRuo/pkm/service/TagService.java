@@ -2,8 +2,8 @@ package com.ZhangRuo.pkm.service;
 
 import com.ZhangRuo.pkm.entity.Note;
 import com.ZhangRuo.pkm.repository.StorageService;
+import com.ZhangRuo.pkm.service.index.NoteIndex;
 
-import java.util.List;
 import java.util.Optional;
 
 /**
@@ -13,13 +13,24 @@ import java.util.Optional;
 public class TagService {
 
     private final StorageService storageService;
+    private final NoteIndex noteIndex;
 
     /**
      * 构造函数，用于接收外部传入的 StorageService 实例（依赖注入）。
      * @param storageService 一个实现了 StorageService 接口的对象。
      */
     public TagService(StorageService storageService) {
+        this(storageService, new NoteIndex(storageService));
+    }
+
+    /**
+     * 构造函数，与 NoteService 共享同一个索引，标签的修改会同步反映到索引中。
+     * @param storageService 一个实现了 StorageService 接口的对象。
+     * @param noteIndex      建立在同一个 storageService 之上的索引。
+     */
+    public TagService(StorageService storageService, NoteIndex noteIndex) {
         this.storageService = storageService;
+        this.noteIndex = noteIndex;
     }
 
     /**
@@ -30,18 +41,14 @@ public class TagService {
      * @return 如果操作成功，返回更新后的 Note 对象；如果笔记未找到，返回空的 Optional。
      */
     public Optional<Note> addTagToNote(String noteId, String tagName) {
-        List<Note> notes = storageService.load();
-
         // 1. 找到需要修改的笔记
-        Optional<Note> noteToUpdateOpt = notes.stream()
-                .filter(note -> note.getId() != null && note.getId().equals(noteId))
-                .findFirst();
+        Optional<Note> noteToUpdateOpt = storageService.findById(noteId);
 
         // 2. 如果找到了，就执行修改
         if (noteToUpdateOpt.isPresent()) {
             Note noteToUpdate = noteToUpdateOpt.get();
             noteToUpdate.addTag(tagName); // 调用 Note 自身的 addTag 方法
-            storageService.save(notes); // 保存整个更新后的列表
+            noteIndex.upsert(noteToUpdate); // 只写回这一篇笔记，并同步更新索引
             return Optional.of(noteToUpdate);
         } else {
             return Optional.empty(); // 如果没找到笔记，返回空
@@ -56,16 +63,12 @@ public class TagService {
      * @return 如果操作成功，返回更新后的 Note 对象；如果笔记未找到，返回空的 Optional。
      */
     public Optional<Note> removeTagFromNote(String noteId, String tagName) {
-        List<Note> notes = storageService.load();
-
-        Optional<Note> noteToUpdateOpt = notes.stream()
-                .filter(note -> note.getId() != null && note.getId().equals(noteId))
-                .findFirst();
+        Optional<Note> noteToUpdateOpt = storageService.findById(noteId);
 
         if (noteToUpdateOpt.isPresent()) {
             Note noteToUpdate = noteToUpdateOpt.get();
             noteToUpdate.removeTag(tagName); // 调用 Note 自身的 removeTag 方法
-            storageService.save(notes);
+            noteIndex.upsert(noteToUpdate);
             return Optional.of(noteToUpdate);
         } else {
             return Optional.empty();
@@ -0,0 +1,55 @@
+package com.ZhangRuo.pkm.service.index;
+
+/*
+* 定义了把文本切分为索引词项的分析器接口
+* 建索引和解析查询必须使用同一个分析器，否则查询中的词项可能与索引中的词项对不上
+* */
+
+public interface Analyzer {
+
+    /*
+    * 接收分析器产出的词项
+    * */
+    interface TermConsumer {
+        /*
+        * @param term     词项（已归一化）
+        * @param position 词项在文本中的序号，从0开始
+        * */
+        void accept(String term, int position);
+    }
+
+    /*
+    * 把原始文本归一化（至少要转为小写），搜索的最终校验也在归一化后的文本上进行
+    * @param text 原始文本，可以为 null
+    * @return 归一化后的文本；输入为 null 时返回 null
+    * */
+    String normalize(String text);
+
+    /*
+    * 把已经归一化的文本切分为词项，按出现顺序逐个交给 consumer
+    * @param normalizedText normalize 的返回值
+    * @param consumer       词项的接收者
+    * */
+    void analyze(String normalizedText, TermConsumer consumer);
+
+    /*
+    * 判断原始文本归一化之后是否包含已归一化的关键词，等价于 normalize(text).contains(normalizedKeyword)
+    * 搜索的最终校验会对每篇候选笔记调用它，实现类应当避免为此复制全文
+    * @param text              原始文本，可以为 null
+    * @param normalizedKeyword normalize 的返回值
+    * */
+    default boolean containsNormalized(String text, String normalizedKeyword) {
+        String normalized = normalize(text);
+        return normalized != null && normalized.contains(normalizedKeyword);
+    }
+
+    /*
+    * 判断查询中的某个词项是否可以直接按词项精确查找，而不必在词项字典中做子串扩展
+    * 只有当文本中该词项的每一次出现都一定会被索引为同一个词项时，才能返回 true
+    * @param term analyze 产出的查询词项
+    * @return 默认返回 false，即总是做子串扩展
+    * */
+    default boolean isExactTerm(String term) {
+        return false;
+    }
+}
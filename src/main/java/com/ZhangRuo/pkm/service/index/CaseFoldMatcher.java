@@ -0,0 +1,81 @@
+package com.ZhangRuo.pkm.service.index;
+
+/**
+ * [业务逻辑层] 不分配内存的大小写折叠子串匹配。
+ *
+ * 原来的校验先对标题和正文调用 toLowerCase()，每次搜索都会为每篇候选笔记复制一份全文。
+ * 这里逐个字符地折叠后直接比较，不创建任何新字符串。
+ * 折叠规则与 Analyzer.normalize 逐字符一致（Character.toLowerCase，可选地先把全角 ASCII 折叠为半角），
+ * 因此 containsFolded(text, normalize(keyword)) 与 normalize(text).contains(normalize(keyword)) 等价。
+ */
+final class CaseFoldMatcher {
+
+    private CaseFoldMatcher() {
+    }
+
+    /**
+     * 折叠单个字符。
+     */
+    static char fold(char c, boolean foldFullWidth) {
+        if (foldFullWidth) {
+            c = CjkAnalyzer.foldFullWidth(c);
+        }
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;// ASCII 快速路径
+        }
+        return Character.toLowerCase(c);
+    }
+
+    /**
+     * 把整段文本逐字符折叠，长度保持不变。
+     * 文本中没有需要折叠的字符时直接返回原字符串，不复制。
+     */
+    static String foldAll(String text, boolean foldFullWidth) {
+        if (text == null) {
+            return null;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length && fold(text.charAt(i), foldFullWidth) == text.charAt(i)) {
+            i++;
+        }
+        if (i == length) {
+            return text;
+        }
+        char[] chars = text.toCharArray();
+        for (; i < length; i++) {
+            chars[i] = fold(chars[i], foldFullWidth);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @param text         原始文本（未折叠），可以为 null。
+     * @param foldedNeedle 已经折叠过的关键词。
+     * @return 折叠后的 text 是否包含 foldedNeedle。
+     */
+    static boolean containsFolded(String text, String foldedNeedle, boolean foldFullWidth) {
+        if (text == null) {
+            return false;
+        }
+        int needleLength = foldedNeedle.length();
+        if (needleLength == 0) {
+            return true;
+        }
+        int last = text.length() - needleLength;
+        char first = foldedNeedle.charAt(0);
+        for (int i = 0; i <= last; i++) {
+            if (fold(text.charAt(i), foldFullWidth) != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < needleLength && fold(text.charAt(i + j), foldFullWidth) == foldedNeedle.charAt(j)) {
+                j++;
+            }
+            if (j == needleLength) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
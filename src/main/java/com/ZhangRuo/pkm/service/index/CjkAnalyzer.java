@@ -0,0 +1,107 @@
+package com.ZhangRuo.pkm.service.index;
+
+/**
+ * [业务逻辑层] 面向中日韩（CJK）文本的分析器。
+ *
+ * 1. 归一化：全角 ASCII 字符（如 "ＪＡＶＡ"、"１２３"、全角空格）折叠为半角，再转为小写；
+ * 2. 连续的拉丁字母/数字仍然切分为一个词项，与 SimpleAnalyzer 相同；
+ * 3. 连续的 CJK 字符没有空格分隔，逐字产出单字词项，并为相邻的两个字产出二元词项，
+ *    例如 "设计模式" -> 设、设计、计、计模、模、模式、式。
+ *
+ * 因为 CJK 文本中的每一个单字和每一对相邻的字都被索引了，
+ * 一到两个字的 CJK 查询词项可以直接按词项精确查找（见 isExactTerm），不需要扫描词项字典。
+ */
+public class CjkAnalyzer implements Analyzer {
+
+    /**
+     * 逐字符折叠（全角转半角、再转小写），长度保持不变，与 containsNormalized 的折叠规则一致。
+     */
+    @Override
+    public String normalize(String text) {
+        return CaseFoldMatcher.foldAll(text, true);
+    }
+
+    @Override
+    public boolean containsNormalized(String text, String normalizedKeyword) {
+        return CaseFoldMatcher.containsFolded(text, normalizedKeyword, true);
+    }
+
+    @Override
+    public void analyze(String normalizedText, TermConsumer consumer) {
+        if (normalizedText == null) {
+            return;
+        }
+        int position = 0;
+        int latinStart = -1;
+        int previousCjk = -1;// 上一个 CJK 字符的起始下标，用来产出二元词项
+        int length = normalizedText.length();
+        for (int i = 0; i < length; ) {
+            int codePoint = normalizedText.codePointAt(i);
+            int next = i + Character.charCount(codePoint);
+            boolean cjk = isCjk(codePoint);
+
+            // 1.拉丁词项在遇到任何非拉丁字符时结束
+            if (latinStart >= 0 && (cjk || !Character.isLetterOrDigit(codePoint))) {
+                consumer.accept(normalizedText.substring(latinStart, i), position++);
+                latinStart = -1;
+            }
+
+            if (cjk) {
+                // 2.CJK 字符：先产出与前一个字组成的二元词项，再产出单字词项
+                if (previousCjk >= 0) {
+                    consumer.accept(normalizedText.substring(previousCjk, next), position - 1);
+                }
+                consumer.accept(normalizedText.substring(i, next), position++);
+                previousCjk = i;
+            } else {
+                previousCjk = -1;
+                if (Character.isLetterOrDigit(codePoint) && latinStart < 0) {
+                    latinStart = i;
+                }
+            }
+            i = next;
+        }
+        if (latinStart >= 0) {
+            consumer.accept(normalizedText.substring(latinStart), position);
+        }
+    }
+
+    /**
+     * 一到两个字的纯 CJK 词项在文本中的每一次出现都会被索引为同一个词项。
+     */
+    @Override
+    public boolean isExactTerm(String term) {
+        int count = 0;
+        for (int i = 0; i < term.length(); ) {
+            int codePoint = term.codePointAt(i);
+            if (!isCjk(codePoint)) {
+                return false;
+            }
+            count++;
+            i += Character.charCount(codePoint);
+        }
+        return count >= 1 && count <= 2;
+    }
+
+    /**
+     * 全角 ASCII（U+FF01 - U+FF5E）与半角 ASCII 一一对应，全角空格（U+3000）折叠为普通空格。
+     * 折叠前后都是单个 char，所以归一化不会改变文本长度。
+     */
+    static char foldFullWidth(char c) {
+        if (c >= '！' && c <= '～') {
+            return (char) (c - 0xFEE0);
+        }
+        if (c == '　') {
+            return ' ';
+        }
+        return c;
+    }
+
+    static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
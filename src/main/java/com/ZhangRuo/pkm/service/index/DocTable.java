@@ -0,0 +1,105 @@
+package com.ZhangRuo.pkm.service.index;
+
+import com.ZhangRuo.pkm.entity.Note;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * [业务逻辑层] 笔记ID与笔记序号（ordinal）之间的映射表。
+ * 序号按存储顺序分配，新笔记追加在末尾；删除的笔记只留下空位，
+ * 序号在下一次完整重建之前不会被重用，因此按序号升序输出结果即保持了存储顺序。
+ */
+class DocTable {
+
+    private final List<Note> notes = new ArrayList<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private int liveCount = 0;
+
+    /**
+     * 登记一篇笔记：已存在的ID沿用原来的序号（替换笔记对象），新ID追加到末尾。
+     * 没有ID的笔记（只可能来自完整重建）总是占用一个新的序号。
+     * @return 该笔记的序号。
+     */
+    int put(Note note) {
+        Integer existing = note.getId() != null ? ordinals.get(note.getId()) : null;
+        if (existing != null) {
+            notes.set(existing, note);
+            return existing;
+        }
+        int ordinal = notes.size();
+        notes.add(note);
+        if (note.getId() != null) {
+            ordinals.put(note.getId(), ordinal);
+        }
+        liveCount++;
+        return ordinal;
+    }
+
+    /**
+     * 预留序号直到 capacity（空位），之后 put 的新笔记追加在预留的序号之后。
+     * 从索引快照恢复时使用：快照中的序号先占好位置，再由 place 逐个填入笔记。
+     */
+    void reserve(int capacity) {
+        while (notes.size() < capacity) {
+            notes.add(null);
+        }
+    }
+
+    /**
+     * 把一篇笔记放到已预留的序号上。
+     */
+    void place(int ordinal, Note note) {
+        if (notes.set(ordinal, note) == null) {
+            liveCount++;
+        }
+        ordinals.put(note.getId(), ordinal);
+    }
+
+    /**
+     * @return 被删除笔记的序号；ID不存在时返回 -1。
+     */
+    int remove(String id) {
+        Integer ordinal = id != null ? ordinals.remove(id) : null;
+        if (ordinal == null) {
+            return -1;
+        }
+        notes.set(ordinal, null);
+        liveCount--;
+        return ordinal;
+    }
+
+    /**
+     * @return 序号对应的笔记；已删除时返回 null。
+     */
+    Note note(int ordinal) {
+        return notes.get(ordinal);
+    }
+
+    /**
+     * @return ID对应的序号；不存在时返回 -1。
+     */
+    int ordinalOf(String id) {
+        Integer ordinal = id != null ? ordinals.get(id) : null;
+        return ordinal != null ? ordinal : -1;
+    }
+
+    /**
+     * @return 已分配的序号总数（包括已删除的空位）。
+     */
+    int capacity() {
+        return notes.size();
+    }
+
+    int liveCount() {
+        return liveCount;
+    }
+
+    void clear() {
+        notes.clear();
+        ordinals.clear();
+        liveCount = 0;
+    }
+}
@@ -0,0 +1,361 @@
+package com.ZhangRuo.pkm.service.index;
+
+import com.ZhangRuo.pkm.entity.Note;
+import com.ZhangRuo.pkm.repository.IoBudget;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * [业务逻辑层] 持久化到磁盘的索引快照，让新启动的进程不必重新分析全部笔记。
+ *
+ * 文件布局（大端序）：
+ * <pre>
+ * [头部]       magic | version | 保留 | 存储版本戳 | 分析器类名 | 序号总数
+ * [笔记表]     每个序号一项：ID（已删除的空位记为 -1）| 指纹 | 标题词项数 | 正文词项数
+ * [标题词典]   词项数，之后按字典序：词项 | 列表长度 | 笔记序号[] | 词频[] | 每篇笔记的出现位置（个数即词频）
+ * [正文词典]   同上
+ * [标题三元组] 三元组数，之后按升序：三元组 | 列表长度 | 笔记序号[]
+ * [正文三元组] 同上
+ * [尾部]       magic，用来识别没有写完整的文件
+ * </pre>
+ * 每个字符串都是 长度(int) + UTF-8字节。
+ *
+ * 快照一经写出就不再修改：每次先在内存中编码，再按块写入临时文件后原子替换，读取时整体映射（MappedByteBuffer），
+ * 倒排列表用批量读取直接装入内存索引，不需要对笔记原文做任何分词。
+ * 标签位图不写入快照，恢复时由笔记对象直接重建，它本来就不需要分析原文。
+ */
+final class IndexSnapshot {
+
+    /** 文件魔数 "PKMI"。 */
+    private static final int MAGIC = 0x504B4D49;
+    private static final short FORMAT_VERSION = 4;
+
+    /** 写入快照时存储的版本戳。 */
+    final long generation;
+    /** 每个序号上的笔记ID，已删除的空位为 null。 */
+    final String[] ids;
+    /** 每个序号上的笔记写入快照时的指纹。 */
+    final long[] fingerprints;
+
+    private IndexSnapshot(long generation, String[] ids, long[] fingerprints) {
+        this.generation = generation;
+        this.ids = ids;
+        this.fingerprints = fingerprints;
+    }
+
+    /**
+     * ID、标题、修改时间和正文签名的 64 位 FNV-1a 指纹，用来判断一篇笔记在两次索引之间是否被修改过。
+     * 正文可能被外部程序直接编辑而不刷新修改时间，所以必须包含正文签名（见 Note.contentSignature）：
+     * 按需加载正文的存储引擎由元数据中的长度和哈希给出签名，不触发正文读取；其余引擎的正文本来就在内存中。
+     */
+    static long fingerprint(Note note) {
+        long hash = 0xcbf29ce484222325L;
+        hash = mix(hash, note.getId());
+        hash = mix(hash, note.getTitle());
+        hash = mix(hash, String.valueOf(note.getUpdatedAt()));
+        long signature = note.contentSignature();
+        for (int shift = 0; shift < Long.SIZE; shift += 8) {
+            hash = (hash ^ ((signature >>> shift) & 0xff)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, String text) {
+        if (text == null) {
+            return (hash ^ 0xFFFF) * 0x100000001b3L;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001b3L;
+        }
+        // 字段之间的分隔，避免 ("ab", "c") 与 ("a", "bc") 得到相同的指纹
+        return (hash ^ 0xFFFE) * 0x100000001b3L;
+    }
+
+    // --- 写入 ---
+
+    /**
+     * 把索引的当前状态编码为一份快照的完整字节。只在内存中进行，调用方持有索引的锁时也不会等待 I/O。
+     */
+    static byte[] encode(long generation, String analyzerName, DocTable docs, long[] fingerprints,
+                         InvertedIndex titleIndex, InvertedIndex contentIndex,
+                         TrigramIndex titleGrams, TrigramIndex contentGrams) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(1 << 16);
+        DataOutputStream out = new DataOutputStream(buffer);
+        // 1. 头部
+        out.writeInt(MAGIC);
+        out.writeShort(FORMAT_VERSION);
+        out.writeShort(0);
+        out.writeLong(generation);
+        writeString(out, analyzerName);
+
+        // 2. 笔记表
+        int capacity = docs.capacity();
+        out.writeInt(capacity);
+        for (int ordinal = 0; ordinal < capacity; ordinal++) {
+            Note note = docs.note(ordinal);
+            writeString(out, note != null ? note.getId() : null);
+            out.writeLong(note != null ? fingerprints[ordinal] : 0L);
+            out.writeInt(titleIndex.docLength(ordinal));
+            out.writeInt(contentIndex.docLength(ordinal));
+        }
+
+        // 3. 词项字典与倒排列表
+        writeTerms(out, titleIndex);
+        writeTerms(out, contentIndex);
+        writeGrams(out, titleGrams);
+        writeGrams(out, contentGrams);
+
+        out.writeInt(MAGIC);
+        out.flush();
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 把编码好的快照写入 path 旁边的临时文件并 fsync，每写一块之前向 budget 申请预算。
+     * 失败或被中断时临时文件会被删除。
+     * @return 临时文件的路径，之后由 publish 替换正式的快照。
+     */
+    static Path writeTemp(Path path, byte[] data, IoBudget budget) throws IOException, InterruptedException {
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, path.getFileName().toString() + ".", ".tmp");
+        boolean written = false;
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                for (int offset = 0; offset < data.length; offset += IoBudget.CHUNK_BYTES) {
+                    int chunk = Math.min(IoBudget.CHUNK_BYTES, data.length - offset);
+                    budget.acquire(chunk);
+                    ByteBuffer slice = ByteBuffer.wrap(data, offset, chunk);
+                    while (slice.hasRemaining()) {
+                        channel.write(slice);
+                    }
+                }
+                channel.force(true);
+            }
+            written = true;
+            return temp;
+        } finally {
+            if (!written) {
+                discard(temp);
+            }
+        }
+    }
+
+    /**
+     * 用写好的临时文件原子替换正式的快照。
+     */
+    static void publish(Path temp, Path path) throws IOException {
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            discard(temp);
+        }
+    }
+
+    /**
+     * 删除不再需要的临时文件；文件已被移走时什么也不做。
+     */
+    static void discard(Path temp) {
+        try {
+            Files.deleteIfExists(temp);
+        } catch (IOException ignored) {
+            // 临时文件清理失败不影响原快照
+        }
+    }
+
+    private static void writeTerms(DataOutputStream out, InvertedIndex field) throws IOException {
+        List<String> terms = field.sortedTerms();
+        out.writeInt(terms.size());
+        for (String term : terms) {
+            PostingList list = field.postings(term);
+            writeString(out, term);
+            out.writeInt(list.size());
+            for (int i = 0; i < list.size(); i++) {
+                out.writeInt(list.doc(i));
+            }
+            for (int i = 0; i < list.size(); i++) {
+                out.writeInt(list.freq(i));
+            }
+            for (int i = 0; i < list.size(); i++) {
+                for (int position : list.positions(i)) {
+                    out.writeInt(position);
+                }
+            }
+        }
+    }
+
+    private static void writeGrams(DataOutputStream out, TrigramIndex field) throws IOException {
+        long[] grams = field.sortedGrams();
+        out.writeInt(grams.length);
+        for (long gram : grams) {
+            PostingList list = field.postings(gram);
+            out.writeLong(gram);
+            out.writeInt(list.size());
+            for (int i = 0; i < list.size(); i++) {
+                out.writeInt(list.doc(i));
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // --- 读取 ---
+
+    /**
+     * 映射快照文件，把其中的倒排列表装入给定的（空的）索引结构。
+     *
+     * @return 快照的笔记表和版本戳；快照不存在或由其他分析器生成时返回 null（索引结构保持不变）。
+     * @throws IOException 快照已损坏或无法读取，此时索引结构可能只装入了一部分，调用方需要清空后重建。
+     */
+    static IndexSnapshot read(Path path, String analyzerName,
+                              InvertedIndex titleIndex, InvertedIndex contentIndex,
+                              TrigramIndex titleGrams, TrigramIndex contentGrams) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("索引快照过大，不能超过2GB");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            // 1. 头部
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("文件魔数不匹配，不是索引快照");
+            }
+            if (buffer.getShort() != FORMAT_VERSION) {
+                return null;// 旧版本的快照直接放弃，重建后会被覆盖
+            }
+            buffer.getShort();
+            long generation = buffer.getLong();
+            if (!analyzerName.equals(readString(buffer))) {
+                return null;// 分析器不同，词项不可复用
+            }
+            if (buffer.getInt(buffer.limit() - Integer.BYTES) != MAGIC) {
+                throw new IOException("索引快照不完整");
+            }
+
+            // 2. 笔记表
+            int capacity = buffer.getInt();
+            String[] ids = new String[capacity];
+            long[] fingerprints = new long[capacity];
+            for (int ordinal = 0; ordinal < capacity; ordinal++) {
+                ids[ordinal] = readString(buffer);
+                fingerprints[ordinal] = buffer.getLong();
+                int titleLength = buffer.getInt();
+                int contentLength = buffer.getInt();
+                if (ids[ordinal] != null) {
+                    titleIndex.restoreDocument(ordinal, titleLength);
+                    contentIndex.restoreDocument(ordinal, contentLength);
+                    titleGrams.restoreDocument(ordinal);
+                    contentGrams.restoreDocument(ordinal);
+                }
+            }
+
+            // 3. 词项字典与倒排列表
+            readTerms(buffer, titleIndex, ids);
+            readTerms(buffer, contentIndex, ids);
+            readGrams(buffer, titleGrams, ids);
+            readGrams(buffer, contentGrams, ids);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("索引快照的结尾标记不匹配");
+            }
+            return new IndexSnapshot(generation, ids, fingerprints);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("索引快照已损坏: " + e, e);
+        }
+    }
+
+    private static void readTerms(ByteBuffer buffer, InvertedIndex field, String[] ids) throws IOException {
+        int termCount = buffer.getInt();
+        for (int t = 0; t < termCount; t++) {
+            String term = readString(buffer);
+            int size = buffer.getInt();
+            int[] docs = readDocs(buffer, size, ids);
+            int[] freqs = readInts(buffer, size);
+            int[][] positions = new int[size][];
+            for (int i = 0; i < size; i++) {
+                positions[i] = readInts(buffer, freqs[i]);
+            }
+            field.restorePostings(term, new PostingList(docs, freqs, positions));
+        }
+        field.finishRestore();
+    }
+
+    private static void readGrams(ByteBuffer buffer, TrigramIndex field, String[] ids) throws IOException {
+        int gramCount = buffer.getInt();
+        for (int g = 0; g < gramCount; g++) {
+            long gram = buffer.getLong();
+            int size = buffer.getInt();
+            int[] docs = readDocs(buffer, size, ids);
+            int[] freqs = new int[size];
+            Arrays.fill(freqs, 1);
+            field.restorePostings(gram, new PostingList(docs, freqs, null));
+        }
+        field.finishRestore();
+    }
+
+    /**
+     * 读取一个倒排列表的笔记序号，并检查它们严格升序且都指向笔记表中存在的笔记。
+     */
+    private static int[] readDocs(ByteBuffer buffer, int size, String[] ids) throws IOException {
+        int[] docs = readInts(buffer, size);
+        int previous = -1;
+        for (int doc : docs) {
+            if (doc <= previous || doc >= ids.length || ids[doc] == null) {
+                throw new IOException("倒排列表中的序号无效: " + doc);
+            }
+            previous = doc;
+        }
+        return docs;
+    }
+
+    /**
+     * 从映射的缓冲区中批量读取 size 个 int。
+     */
+    private static int[] readInts(ByteBuffer buffer, int size) throws IOException {
+        if (size < 0 || size > buffer.remaining() / Integer.BYTES) {
+            throw new IOException("倒排列表长度无效: " + size);
+        }
+        int[] values = new int[size];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+        return values;
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IOException("字符串长度无效: " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
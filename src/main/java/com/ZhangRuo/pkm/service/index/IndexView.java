@@ -0,0 +1,112 @@
+package com.ZhangRuo.pkm.service.index;
+
+import com.ZhangRuo.pkm.entity.Note;
+import com.ZhangRuo.pkm.enums.DateField;
+
+import java.time.LocalDateTime;
+import java.util.BitSet;
+import java.util.List;
+
+/*
+* 索引在某一时刻的只读视图，供查询规划器（service.query）选择访问路径
+* 视图只在 NoteIndex.read 的回调内有效：回调期间索引不会被修改，笔记序号保持稳定
+* 返回的 BitSet 都是新对象，调用方可以随意修改
+* */
+
+public interface IndexView {
+
+    /*
+    * @return 笔记序号的上界（不含），序号范围是 [0, capacity)
+    * */
+    int capacity();
+
+    /*
+    * @return 当前索引中的笔记数量
+    * */
+    int liveCount();
+
+    /*
+    * @return 所有笔记的序号
+    * */
+    BitSet allDocs();
+
+    /*
+    * @return 该序号对应的笔记；已删除的序号返回 null
+    * */
+    Note note(int ordinal);
+
+    // --- 标签位图 ---
+
+    /*
+    * @return 含有该标签（区分大小写）的笔记序号
+    * */
+    BitSet tagDocs(String tag);
+
+    /*
+    * @return 含有该标签的笔记数量，直接读取计数器
+    * */
+    int tagCount(String tag);
+
+    // --- 时间索引 ---
+
+    /*
+    * @return 创建时间或修改时间落在 [from, to) 内的笔记序号，from/to 为 null 表示不限；时间为 null 的笔记不在任何范围内
+    * */
+    BitSet timeDocs(DateField field, LocalDateTime from, LocalDateTime to);
+
+    /*
+    * @return 时间落在 [from, to) 内的笔记数量，在有序的时间索引上两次二分查找求得
+    * */
+    int countTime(DateField field, LocalDateTime from, LocalDateTime to);
+
+    // --- 词项倒排 / 三元组索引 ---
+
+    /*
+    * @return 标题或正文包含该关键词（不区分大小写的子串）的笔记序号，已做最终校验
+    * */
+    BitSet keywordDocs(String keyword);
+
+    /*
+    * @return 该关键词在索引中的候选笔记数量（最终校验之前），用作代价估计
+    * */
+    int estimateKeyword(String keyword);
+
+    /*
+    * 对单篇笔记做关键词的子串校验，不使用索引
+    * */
+    boolean matchesKeyword(int ordinal, String keyword);
+
+    // --- 位置索引 ---
+
+    /*
+    * @return 标题或正文中含有该短语（短语的词项在同一字段中按原来的相对位置出现）的笔记序号
+    * 完全在位置倒排列表上求值；短语中没有可索引的词项时退化为 keywordDocs
+    * */
+    BitSet phraseDocs(String phrase);
+
+    /*
+    * @return 含有该短语所有词项的笔记数量的上界，用作代价估计
+    * */
+    int estimatePhrase(String phrase);
+
+    /*
+    * 用位置倒排列表判断单篇笔记是否含有该短语，不读取笔记原文
+    * */
+    boolean matchesPhrase(int ordinal, String phrase);
+
+    /*
+    * @return 同一字段中两个短语相隔不超过 distance 个词项（前后顺序不限）的笔记序号
+    * */
+    BitSet nearDocs(String left, String right, int distance);
+
+    /*
+    * 用位置倒排列表判断单篇笔记中两个短语是否相隔不超过 distance 个词项
+    * */
+    boolean matchesNear(int ordinal, String left, String right, int distance);
+
+    /*
+    * 在给定的笔记中按关键词的 BM25 得分排序，返回得分最高的 limit 篇的序号
+    * 没有关键词时按存储顺序返回前 limit 篇
+    * */
+    int[] rank(BitSet docs, List<String> keywords, int limit);
+}
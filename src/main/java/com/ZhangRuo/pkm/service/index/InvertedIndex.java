@@ -0,0 +1,257 @@
+package com.ZhangRuo.pkm.service.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * [业务逻辑层] 单个字段（标题或正文）的倒排索引：词项 -> 倒排列表。
+ * 同时记住每篇笔记包含哪些词项，删除或修改一篇笔记时只需要更新这些词项的倒排列表，
+ * 而不需要知道笔记修改前的原文（内存中的笔记对象可能已经被原地修改了）。
+ */
+class InvertedIndex {
+
+    private static final String[] NO_TERMS = new String[0];
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+    /** 按字典序排列的词项字典，随倒排列表的增删同步维护，模糊查询在它上面做有序查找。 */
+    private final TreeSet<String> dictionary = new TreeSet<>();
+    /** 每篇笔记（按序号）包含的不重复词项。 */
+    private String[][] docTerms = new String[16][];
+    /** 每篇笔记（按序号）的词项总数，BM25 用它做长度归一化。 */
+    private int[] docLengths = new int[16];
+    private long totalLength = 0;
+    private int docCount = 0;
+
+    /**
+     * 一段文本分析出的词项及其位置，按出现顺序排列。
+     */
+    static class Tokens implements Analyzer.TermConsumer {
+        private String[] terms = new String[16];
+        private int[] positions = new int[16];
+        private int size = 0;
+
+        @Override
+        public void accept(String term, int position) {
+            if (size == terms.length) {
+                terms = Arrays.copyOf(terms, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            terms[size] = term;
+            positions[size] = position;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        String term(int index) {
+            return terms[index];
+        }
+
+        int position(int index) {
+            return positions[index];
+        }
+    }
+
+    private static class PositionBuffer {
+        private int[] values = new int[2];
+        private int size = 0;
+
+        void add(int position) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = position;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * 索引一篇笔记，记录每个词项出现的位置。如果该序号已经被索引过，先移除旧的词项。
+     *
+     * @param doc    笔记序号。
+     * @param tokens 按出现顺序排列的词项及位置。
+     */
+    void add(int doc, Tokens tokens) {
+        remove(doc);
+        // 1. 按词项归集位置（分析器输出的位置是非递减的，归集后每个词项的位置仍然有序）
+        Map<String, PositionBuffer> positionsByTerm = new LinkedHashMap<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            positionsByTerm.computeIfAbsent(tokens.term(i), term -> new PositionBuffer()).add(tokens.position(i));
+        }
+
+        // 2. 写入倒排列表
+        String[] terms = new String[positionsByTerm.size()];
+        int i = 0;
+        for (Map.Entry<String, PositionBuffer> entry : positionsByTerm.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), term -> {
+                dictionary.add(term);
+                return new PostingList();
+            }).put(doc, entry.getValue().toArray());
+            terms[i++] = entry.getKey();
+        }
+        ensureCapacity(doc + 1);
+        docTerms[doc] = terms;
+        docLengths[doc] = tokens.size();
+        totalLength += tokens.size();
+        docCount++;
+    }
+
+    /**
+     * 从所有相关的倒排列表中移除一篇笔记；词项的倒排列表变空时一并删除该词项。
+     */
+    void remove(int doc) {
+        if (doc >= docTerms.length || docTerms[doc] == null) {
+            return;
+        }
+        for (String term : docTerms[doc]) {
+            PostingList list = postings.get(term);
+            if (list != null && list.remove(doc) && list.size() == 0) {
+                postings.remove(term);
+                dictionary.remove(term);
+            }
+        }
+        docTerms[doc] = null;
+        totalLength -= docLengths[doc];
+        docLengths[doc] = 0;
+        docCount--;
+    }
+
+    /**
+     * @return 该词项的倒排列表；词项不存在时返回 null。
+     */
+    PostingList postings(String term) {
+        return postings.get(term);
+    }
+
+    /**
+     * @return 所有包含 fragment 的词项的倒排列表（遍历的是不重复的词项，而不是笔记原文）。
+     */
+    List<PostingList> postingsContaining(String fragment) {
+        List<PostingList> result = new ArrayList<>();
+        for (Map.Entry<String, PostingList> entry : postings.entrySet()) {
+            if (entry.getKey().contains(fragment)) {
+                result.add(entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return 一篇笔记包含的不重复词项。
+     */
+    String[] termsOf(int doc) {
+        return doc < docTerms.length && docTerms[doc] != null ? docTerms[doc] : NO_TERMS;
+    }
+
+    Set<String> terms() {
+        return postings.keySet();
+    }
+
+    /**
+     * @return 按字典序排列的所有词项，写入索引快照时使用。
+     */
+    List<String> sortedTerms() {
+        return new ArrayList<>(dictionary);
+    }
+
+    /**
+     * @return 按字典序排列的词项字典的只读视图。
+     */
+    NavigableSet<String> dictionary() {
+        return Collections.unmodifiableNavigableSet(dictionary);
+    }
+
+    // --- 从索引快照恢复：先登记笔记，再装入倒排列表，最后反推每篇笔记的词项 ---
+
+    /**
+     * 登记一篇已被索引的笔记及其词项总数。
+     */
+    void restoreDocument(int doc, int length) {
+        ensureCapacity(doc + 1);
+        docTerms[doc] = NO_TERMS;
+        docLengths[doc] = length;
+        totalLength += length;
+        docCount++;
+    }
+
+    /**
+     * 装入一个词项的完整倒排列表，其中的笔记必须已经通过 restoreDocument 登记。
+     */
+    void restorePostings(String term, PostingList list) {
+        postings.put(term, list);
+        dictionary.add(term);
+    }
+
+    /**
+     * 所有倒排列表装入后，由倒排列表反推每篇笔记包含的词项，供之后的增量删除使用。
+     */
+    void finishRestore() {
+        int[] counts = new int[docTerms.length];
+        for (PostingList list : postings.values()) {
+            for (int i = 0; i < list.size(); i++) {
+                counts[list.doc(i)]++;
+            }
+        }
+        for (int doc = 0; doc < docTerms.length; doc++) {
+            if (docTerms[doc] != null && counts[doc] > 0) {
+                docTerms[doc] = new String[counts[doc]];
+                counts[doc] = 0;
+            }
+        }
+        for (Map.Entry<String, PostingList> entry : postings.entrySet()) {
+            PostingList list = entry.getValue();
+            for (int i = 0; i < list.size(); i++) {
+                int doc = list.doc(i);
+                docTerms[doc][counts[doc]++] = entry.getKey();
+            }
+        }
+    }
+
+    /**
+     * @return 一篇笔记在该字段中的词项总数（含重复）。
+     */
+    int docLength(int doc) {
+        return doc < docLengths.length ? docLengths[doc] : 0;
+    }
+
+    /**
+     * @return 该字段的平均长度；没有笔记时返回 0。
+     */
+    double averageLength() {
+        return docCount == 0 ? 0 : (double) totalLength / docCount;
+    }
+
+    int termCount() {
+        return postings.size();
+    }
+
+    void clear() {
+        postings.clear();
+        dictionary.clear();
+        docTerms = new String[16][];
+        docLengths = new int[16];
+        totalLength = 0;
+        docCount = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > docTerms.length) {
+            int newLength = Math.max(capacity, docTerms.length * 2);
+            docTerms = Arrays.copyOf(docTerms, newLength);
+            docLengths = Arrays.copyOf(docLengths, newLength);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.ZhangRuo.pkm.service.index;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+
+/**
+ * [业务逻辑层] 接受与给定词项的编辑距离（插入、删除、替换各计 1）不超过 maxEdits 的所有字符串的自动机，
+ * 以及它与排序词项字典的求交。
+ *
+ * 自动机的状态是编辑距离矩阵的一行：读入候选词项的前 i 个字符后，它与查询词项每个前缀的距离（超过
+ * maxEdits 的值都记为 maxEdits + 1）。一行中的最小值超过 maxEdits 时状态"死亡"：
+ * 以当前前缀开头的任何字符串都不可能被接受。
+ *
+ * 求交时按字典序遍历词项字典，相邻词项共享前缀的状态行，并且永远不逐个枚举死亡的子树：
+ * 1. 沿当前词项的字符推进自动机，状态死亡时，求出比这个前缀的所有扩展都大、且自动机仍可能接受的
+ *    最小字符串，在字典上 ceiling 查找跳到它；
+ * 2. 这个字符串由"上一个仍存活的状态 + 大于原字符的最小存活字符"构成：
+ *    当前状态还有富余的编辑次数时任意字符都存活，直接取下一个字符；
+ *    否则只有查询词项中出现的字符可能存活，逐个尝试；都不行时再回退一层。
+ * 因此查找的次数与自动机能接受的前缀数有关，而与字典的大小基本无关，每次查找是 O(log V)。
+ */
+final class LevenshteinAutomaton {
+
+    private final char[] pattern;
+    private final int maxEdits;
+    /** 查询词项中出现的不重复字符，升序。 */
+    private final char[] alphabet;
+
+    LevenshteinAutomaton(String term, int maxEdits) {
+        if (maxEdits < 0) {
+            throw new IllegalArgumentException("编辑距离不能为负数: " + maxEdits);
+        }
+        this.pattern = term.toCharArray();
+        this.maxEdits = maxEdits;
+        char[] chars = pattern.clone();
+        Arrays.sort(chars);
+        int n = 0;
+        for (int i = 0; i < chars.length; i++) {
+            if (i == 0 || chars[i] != chars[i - 1]) {
+                chars[n++] = chars[i];
+            }
+        }
+        this.alphabet = Arrays.copyOf(chars, n);
+    }
+
+    /**
+     * 按查询词项的长度选择允许的编辑距离：很短的词项改一个字符就成了另一个词，只做精确匹配。
+     * 1 到 2 个字符（包括所有中文单字和二元词项）为 0，3 到 5 个字符为 1，更长的为 2。
+     */
+    static int maxEditsFor(String term) {
+        int length = term.length();
+        return length <= 2 ? 0 : length <= 5 ? 1 : 2;
+    }
+
+    /**
+     * @return 字典中被自动机接受的所有词项及其与查询词项的编辑距离，按字典序排列。
+     */
+    Map<String, Integer> intersect(NavigableSet<String> dictionary) {
+        Map<String, Integer> matches = new LinkedHashMap<>();
+        if (dictionary.isEmpty()) {
+            return matches;
+        }
+        if (maxEdits == 0) {
+            String term = new String(pattern);
+            if (dictionary.contains(term)) {
+                matches.put(term, 0);
+            }
+            return matches;
+        }
+
+        // rows[d] 是读入 chars[0..d) 之后的状态，depth 是其中有效的层数
+        int[][] rows = new int[16][];
+        char[] chars = new char[16];
+        rows[0] = start();
+        int depth = 0;
+
+        String term = dictionary.first();
+        while (term != null) {
+            // 1. 复用与上一个前缀相同部分的状态
+            int d = 0;
+            while (d < depth && d < term.length() && chars[d] == term.charAt(d)) {
+                d++;
+            }
+
+            // 2. 沿词项推进，直到读完或状态死亡
+            boolean dead = false;
+            while (d < term.length()) {
+                if (d + 1 >= rows.length) {
+                    rows = Arrays.copyOf(rows, rows.length * 2);
+                    chars = Arrays.copyOf(chars, chars.length * 2);
+                }
+                chars[d] = term.charAt(d);
+                rows[d + 1] = step(rows[d], chars[d]);
+                d++;
+                if (!isLive(rows[d])) {
+                    dead = true;
+                    break;
+                }
+            }
+            depth = d;
+
+            if (!dead) {
+                int distance = rows[d][pattern.length];
+                if (distance <= maxEdits) {
+                    matches.put(term, distance);
+                }
+                term = dictionary.higher(term);
+                continue;
+            }
+
+            // 3. 前缀 chars[0..d) 已死亡：跳到下一个可能被接受的字符串
+            String next = null;
+            for (int i = d - 1; i >= 0 && next == null; i--) {
+                int c = nextLiveChar(rows[i], chars[i]);
+                if (c >= 0) {
+                    next = new String(chars, 0, i) + (char) c;
+                    depth = i;
+                }
+            }
+            term = next == null ? null : dictionary.ceiling(next);
+        }
+        return matches;
+    }
+
+    // --- 状态转移 ---
+
+    /**
+     * @return 还没有读入任何字符时的状态：与查询词项长度为 j 的前缀的距离就是 j。
+     */
+    private int[] start() {
+        int[] row = new int[pattern.length + 1];
+        for (int j = 0; j < row.length; j++) {
+            row[j] = Math.min(j, maxEdits + 1);
+        }
+        return row;
+    }
+
+    /**
+     * 读入一个字符后的状态，即编辑距离矩阵的下一行。
+     */
+    private int[] step(int[] row, char c) {
+        int[] next = new int[row.length];
+        next[0] = Math.min(row[0] + 1, maxEdits + 1);
+        for (int j = 1; j < row.length; j++) {
+            int substitute = row[j - 1] + (pattern[j - 1] == c ? 0 : 1);
+            int delete = row[j] + 1;
+            int insert = next[j - 1] + 1;
+            next[j] = Math.min(Math.min(substitute, delete), Math.min(insert, maxEdits + 1));
+        }
+        return next;
+    }
+
+    private boolean isLive(int[] row) {
+        for (int value : row) {
+            if (value <= maxEdits) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 大于 after 且从状态 row 读入后仍存活的最小字符；没有时返回 -1。
+     */
+    private int nextLiveChar(int[] row, char after) {
+        int min = Integer.MAX_VALUE;
+        for (int value : row) {
+            min = Math.min(min, value);
+        }
+        if (min < maxEdits) {
+            // 还有富余的编辑次数：即使替换或插入一次，状态也仍然存活
+            return after == Character.MAX_VALUE ? -1 : after + 1;
+        }
+        // 没有富余：只有与查询词项某个字符相同时才可能存活
+        for (char c : alphabet) {
+            if (c > after && isLive(step(row, c))) {
+                return c;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,1041 @@
+package com.ZhangRuo.pkm.service.index;
+
+import com.ZhangRuo.pkm.entity.Note;
+import com.ZhangRuo.pkm.enums.DateField;
+import com.ZhangRuo.pkm.enums.TagMatchMode;
+import com.ZhangRuo.pkm.repository.IoBudget;
+import com.ZhangRuo.pkm.repository.StorageService;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * [业务逻辑层] 笔记库的内存索引，由 NoteService 和 TagService 共享。
+ *
+ * 索引第一次被查询时从存储完整构建一次，之后：
+ * 1. 通过本类的 upsert/delete 进行的写入，在写入存储的同时增量地更新索引；
+ * 2. 存储的版本戳（generation）与索引同步时的版本戳不一致（例如文件被外部修改），
+ *    下一次查询前自动完整重建。
+ *
+ * 重建分两级进行：笔记表、标签位图和时间索引只需要元数据，每次重建立即完成，不分析任何正文
+ * （指纹中的正文签名由按需加载的存储引擎从元数据给出，不触发正文读取）；
+ * 标题和正文的文本索引要分析全文，推迟到第一次需要它的查询（关键词、模糊、结构化查询）时才建立。
+ * 这样 list --tag、--since 和标签云在笔记库被外部修改后也不会读取和分析全部正文。
+ *
+ * 关键词搜索保持与原来 toLowerCase().contains() 完全相同的语义：
+ * 1. 关键词不短于 3 个字符时，用三元组索引求出同时包含其所有三元组的笔记作为候选，
+ *    再对候选笔记做最终的子串校验；
+ * 2. 更短的关键词无法用三元组缩小范围，退回到词项字典：找出包含查询词项的词项，
+ *    取它们倒排列表的并集作为候选笔记，必要时同样做最终校验。
+ * searchRanked 在同样的候选上按 BM25（标题加权）排序，并用有界堆只保留前 K 篇。
+ * searchFuzzy 容忍拼写错误：用 Levenshtein 自动机在排序的词项字典上找出拼写相近的词项，
+ * 之后与精确查找一样只访问这些词项的倒排列表。
+ * 标签查询使用标签位图索引，AND/OR/NOT 组合都是逐字的位运算。
+ * 创建时间和修改时间各有一个有序的时间索引，按时间范围查找和按时间排序都不需要扫描全部笔记。
+ *
+ * 指定了快照路径时，索引还会持久化为磁盘上的快照（见 IndexSnapshot），新进程启动时：
+ * 1. 快照的版本戳与存储一致：直接装入快照，不分析任何笔记；
+ * 2. 不一致：装入快照后按指纹找出新增、修改和删除的笔记，只重新索引这些笔记；
+ * 3. 快照不存在、已损坏或笔记顺序发生了变化：完整重建。
+ * 重建或追赶之后立即写出新的快照；会话中的增量写入由 flushSnapshot 定期写出。
+ */
+public class NoteIndex {
+
+    /** BM25 的词频饱和参数和长度归一化参数，取常用的默认值。 */
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+    /** 标题中的命中比正文中的命中更能说明相关性。 */
+    private static final double TITLE_BOOST = 2.0;
+    /** 模糊查询中，每多一次编辑，该词项的得分乘以这个系数，精确命中总是排在拼写相近的词之前。 */
+    private static final double FUZZY_DECAY = 0.5;
+
+    private final StorageService storageService;
+    private final Analyzer analyzer;
+    /** 索引快照的路径；为 null 时不持久化。 */
+    private final Path snapshotPath;
+
+    private final DocTable docs = new DocTable();
+    private final InvertedIndex titleIndex = new InvertedIndex();
+    private final InvertedIndex contentIndex = new InvertedIndex();
+    private final TrigramIndex titleGrams = new TrigramIndex();
+    private final TrigramIndex contentGrams = new TrigramIndex();
+    private final TagBitmapIndex tagIndex = new TagBitmapIndex();
+    private final TimeIndex createdTimes = new TimeIndex();
+    private final TimeIndex updatedTimes = new TimeIndex();
+    private final View view = new View();
+
+    /** 每个序号上的笔记被索引时的指纹，写入快照后用来识别下次启动前被修改的笔记。 */
+    private long[] fingerprints = new long[16];
+    /** 元数据已经索引、但标题和正文尚未进入文本索引的笔记序号，见 ensureTextFresh。 */
+    private final BitSet pendingText = new BitSet();
+
+    private boolean built = false;
+    private long syncedGeneration = -1L;
+    /** 索引内容的版本号，每次写入或重建后加一，单调递增（与存储的版本戳不同，后者只保证变化可被检测）。 */
+    private long indexGeneration = 0L;
+    /** 内存索引中有尚未写入快照的变化。 */
+    private boolean snapshotDirty = false;
+    /** 每次编码快照时加一；写盘在索引的锁外进行，用它丢弃比已发布的快照更旧的写出。 */
+    private long snapshotSequence = 0L;
+    /** 只保护快照文件的替换，持有它时不会等待 I/O 预算。 */
+    private final Object snapshotFileLock = new Object();
+    private long publishedSequence = 0L;
+
+    /**
+     * 使用默认的 CjkAnalyzer：笔记以中文为主，同时兼容中英文混排。
+     * @param storageService 被索引的存储。
+     */
+    public NoteIndex(StorageService storageService) {
+        this(storageService, new CjkAnalyzer());
+    }
+
+    /**
+     * @param storageService 被索引的存储。
+     * @param analyzer       建索引和解析查询共用的分析器。
+     */
+    public NoteIndex(StorageService storageService, Analyzer analyzer) {
+        this(storageService, analyzer, null);
+    }
+
+    /**
+     * @param storageService 被索引的存储，它的版本戳必须跨进程稳定（内置的存储引擎都满足）。
+     * @param analyzer       建索引和解析查询共用的分析器。
+     * @param snapshotPath   索引快照的路径，通常放在笔记库文件旁边；为 null 时不持久化。
+     */
+    public NoteIndex(StorageService storageService, Analyzer analyzer, Path snapshotPath) {
+        this.storageService = storageService;
+        this.analyzer = analyzer;
+        this.snapshotPath = snapshotPath;
+    }
+
+    // --- 写入：同时写存储和索引 ---
+
+    /**
+     * 写入一篇笔记，并增量地更新索引。
+     * 只有写入前索引与存储同步时才做增量更新；否则留给下一次查询完整重建。
+     */
+    public synchronized void upsert(Note note) {
+        boolean fresh = isFresh();
+        storageService.upsert(note);
+        if (fresh) {
+            indexNote(note);
+            syncedGeneration = storageService.generation();
+            snapshotDirty = true;
+        }
+        indexGeneration++;
+    }
+
+    /**
+     * 删除一篇笔记，并从索引中移除它。
+     * @return 如果确实删除了笔记则返回 true。
+     */
+    public synchronized boolean delete(String id) {
+        boolean fresh = isFresh();
+        boolean deleted = storageService.delete(id);
+        if (fresh && deleted) {
+            unindexNote(id);
+            syncedGeneration = storageService.generation();
+            snapshotDirty = true;
+        }
+        if (deleted) {
+            indexGeneration++;
+        }
+        return deleted;
+    }
+
+    // --- 查询 ---
+
+    /**
+     * 按关键词搜索标题和内容（不区分大小写的子串匹配），结果按存储顺序排列。
+     */
+    public synchronized List<Note> searchKeyword(String keyword) {
+        ensureTextFresh();
+        String normalized = analyzer.normalize(keyword);
+        if (normalized == null) {
+            return new ArrayList<>();
+        }
+        Candidates candidates = findCandidates(normalized);
+        List<Note> result = new ArrayList<>();
+        for (int ordinal : candidates.docs) {
+            Note note = docs.note(ordinal);
+            if (note != null && (!candidates.verify || matches(note, normalized))) {
+                result.add(note);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按关键词搜索，并按 BM25 相关度从高到低排列，只返回得分最高的 limit 篇。
+     *
+     * 得分只依赖索引中的词频和字段长度，不需要读取原文；
+     * 需要最终校验的候选笔记，只有在得分足以进入前 limit 名时才会读取原文校验。
+     * 得分相同的笔记按存储顺序排列。
+     *
+     * @param keyword 关键词。
+     * @param limit   最多返回的笔记数量。
+     */
+    public synchronized List<Note> searchRanked(String keyword, int limit) {
+        ensureTextFresh();
+        String normalized = analyzer.normalize(keyword);
+        if (normalized == null || limit <= 0) {
+            return new ArrayList<>();
+        }
+        Candidates candidates = findCandidates(normalized);
+        if (candidates.docs.length == 0) {
+            return new ArrayList<>();
+        }
+
+        // 1.逐个查询词项累加 BM25 得分（term-at-a-time），标题中的命中乘以加权系数
+        double[] scores = scoreKeywords(List.of(normalized));
+
+        // 2.按序号遍历候选，只有可能进入前 limit 名的候选才做最终校验
+        TopKCollector collector = new TopKCollector(limit, candidates.docs.length);
+        for (int ordinal : candidates.docs) {
+            double score = scores[ordinal];
+            if (!collector.isCompetitive(ordinal, score)) {
+                continue;
+            }
+            Note note = docs.note(ordinal);
+            if (note != null && (!candidates.verify || matches(note, normalized))) {
+                collector.insert(ordinal, score);
+            }
+        }
+
+        // 3.按得分从高到低输出
+        List<Note> result = new ArrayList<>(collector.size());
+        for (int ordinal : collector.drainDescending()) {
+            result.add(docs.note(ordinal));
+        }
+        return result;
+    }
+
+    /**
+     * 容忍拼写错误的搜索：关键词中的每个查询词项都扩展为字典中编辑距离足够小的词项
+     * （1 到 2 个字符精确匹配，3 到 5 个字符允许 1 次编辑，更长的允许 2 次），
+     * 笔记必须对每个查询词项都至少命中一个扩展词项。与 searchKeyword 不同，匹配的是完整的词项而不是子串。
+     * 结果按 BM25 排序，扩展词项的得分按编辑次数衰减。
+     *
+     * @param keyword 要搜索的关键词。
+     * @param limit   最多返回的笔记数量。
+     */
+    public synchronized List<Note> searchFuzzy(String keyword, int limit) {
+        ensureTextFresh();
+        String normalized = analyzer.normalize(keyword);
+        if (normalized == null || limit <= 0) {
+            return new ArrayList<>();
+        }
+        List<String> tokens = tokenize(normalized);
+        if (tokens.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // 1. 每个查询词项在两个字段的词项字典上与自动机求交，候选为各词项命中笔记的交集
+        double[] scores = new double[docs.capacity()];
+        int[] candidates = null;
+        for (String token : tokens) {
+            LevenshteinAutomaton automaton = new LevenshteinAutomaton(token, LevenshteinAutomaton.maxEditsFor(token));
+            Map<String, Integer> titleTerms = automaton.intersect(titleIndex.dictionary());
+            Map<String, Integer> contentTerms = automaton.intersect(contentIndex.dictionary());
+            List<PostingList> lists = new ArrayList<>(titleTerms.size() + contentTerms.size());
+            titleTerms.forEach((term, distance) -> {
+                PostingList list = titleIndex.postings(term);
+                lists.add(list);
+                accumulate(scores, titleIndex, list, TITLE_BOOST * Math.pow(FUZZY_DECAY, distance));
+            });
+            contentTerms.forEach((term, distance) -> {
+                PostingList list = contentIndex.postings(term);
+                lists.add(list);
+                accumulate(scores, contentIndex, list, Math.pow(FUZZY_DECAY, distance));
+            });
+            int[] matches = PostingList.union(lists);
+            candidates = candidates == null ? matches : PostingList.intersect(candidates, matches);
+            if (candidates.length == 0) {
+                return new ArrayList<>();
+            }
+        }
+
+        // 2. 只保留得分最高的 limit 篇
+        TopKCollector collector = new TopKCollector(limit, candidates.length);
+        for (int ordinal : candidates) {
+            if (docs.note(ordinal) != null && collector.isCompetitive(ordinal, scores[ordinal])) {
+                collector.insert(ordinal, scores[ordinal]);
+            }
+        }
+        List<Note> result = new ArrayList<>(collector.size());
+        for (int ordinal : collector.drainDescending()) {
+            result.add(docs.note(ordinal));
+        }
+        return result;
+    }
+
+    /**
+     * 在索引的只读视图上执行一次读操作（例如一次结构化查询）。
+     * 回调期间持有索引的锁，索引不会被修改，笔记序号保持稳定。
+     * 视图可能被并行扫描的多个线程同时访问，不能在其中按需建立文本索引，所以调用前先补齐。
+     */
+    public synchronized <T> T read(Function<IndexView, T> reader) {
+        ensureTextFresh();
+        view.phrases.clear();
+        return reader.apply(view);
+    }
+
+    /**
+     * 查找含有指定标签的笔记（区分大小写），结果按存储顺序排列。
+     */
+    public List<Note> findByTag(String tagName) {
+        return findByTags(List.of(tagName), TagMatchMode.AND, List.of());
+    }
+
+    /**
+     * 多标签组合查询，结果按存储顺序排列。
+     *
+     * @param tags         要匹配的标签；为空时匹配所有笔记。
+     * @param mode         tags 之间的组合方式（AND 或 OR）。
+     * @param excludedTags 含有其中任意一个标签的笔记会被排除（NOT）。
+     */
+    public synchronized List<Note> findByTags(List<String> tags, TagMatchMode mode, List<String> excludedTags) {
+        ensureFresh();
+        BitSet matches = tagIndex.query(tags, mode == TagMatchMode.AND, excludedTags);
+        List<Note> result = new ArrayList<>(matches.cardinality());
+        for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+            Note note = docs.note(ordinal);
+            if (note != null) {
+                result.add(note);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按修改时间范围过滤并按时间排序列出笔记。
+     * 按某个时间排序且没有其他条件时，直接从该时间索引的区间末尾向前读取，O(log n + k)。
+     *
+     * @param tags         要匹配的标签；tags 和 excludedTags 都为空时不按标签过滤。
+     * @param mode         tags 之间的组合方式（AND 或 OR）。
+     * @param excludedTags 含有其中任意一个标签的笔记会被排除（NOT）。
+     * @param since        修改时间的下界（含），为 null 时不限。
+     * @param until        修改时间的上界（不含），为 null 时不限。
+     * @param sortBy       按哪个时间从新到旧排序；为 null 时按存储顺序排列。
+     */
+    public synchronized List<Note> findByTime(List<String> tags, TagMatchMode mode, List<String> excludedTags,
+                                              LocalDateTime since, LocalDateTime until, DateField sortBy) {
+        ensureFresh();
+        BitSet filter = tags.isEmpty() && excludedTags.isEmpty()
+                ? null
+                : tagIndex.query(tags, mode == TagMatchMode.AND, excludedTags);
+        boolean ranged = since != null || until != null;
+
+        // 1. 排序字段就是过滤字段，或者不限范围：沿排序字段的时间索引从新到旧读取
+        if (sortBy == DateField.UPDATED || (sortBy == DateField.CREATED && !ranged)) {
+            TimeIndex index = sortBy == DateField.UPDATED ? updatedTimes : createdTimes;
+            int[] ordinals = index.range(since, until);
+            List<Note> result = new ArrayList<>();
+            for (int i = ordinals.length - 1; i >= 0; i--) {
+                if (filter == null || filter.get(ordinals[i])) {
+                    result.add(docs.note(ordinals[i]));
+                }
+            }
+            if (!ranged) {
+                // 没有该时间的笔记排在最后
+                BitSet rest = filter != null ? filter : view.allDocs();
+                for (int ordinal = rest.nextSetBit(0); ordinal >= 0; ordinal = rest.nextSetBit(ordinal + 1)) {
+                    if (!index.contains(ordinal) && docs.note(ordinal) != null) {
+                        result.add(docs.note(ordinal));
+                    }
+                }
+            }
+            return result;
+        }
+
+        // 2. 先求出修改时间范围内的笔记，再按标签过滤
+        BitSet matches = ranged ? updatedTimes.docs(since, until) : view.allDocs();
+        if (filter != null) {
+            matches.and(filter);
+        }
+        List<Integer> ordinals = new ArrayList<>(matches.cardinality());
+        for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+            if (docs.note(ordinal) != null) {
+                ordinals.add(ordinal);
+            }
+        }
+        if (sortBy == DateField.CREATED) {
+            // 3. 范围内的 k 篇笔记按创建时间从新到旧排序，O(k log k)
+            ordinals.sort((a, b) -> Long.compare(createdTimes.millis(b), createdTimes.millis(a)));
+        }
+        List<Note> result = new ArrayList<>(ordinals.size());
+        for (int ordinal : ordinals) {
+            result.add(docs.note(ordinal));
+        }
+        return result;
+    }
+
+    /**
+     * 查找含有任意一个名称包含 fragment 的标签的笔记（标签名不区分大小写），结果按存储顺序排列。
+     */
+    public synchronized List<Note> findByTagKeyword(String fragment) {
+        ensureFresh();
+        List<String> tags = tagIndex.tagsContaining(fragment);
+        if (tags.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return findByTags(tags, TagMatchMode.OR, List.of());
+    }
+
+    /**
+     * 查找含有任意一个以 prefix 开头的标签的笔记（标签名不区分大小写），结果按存储顺序排列。
+     */
+    public synchronized List<Note> findByTagPrefix(String prefix) {
+        ensureFresh();
+        List<String> tags = tagIndex.tagsWithPrefix(prefix, Integer.MAX_VALUE);
+        if (tags.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return findByTags(tags, TagMatchMode.OR, List.of());
+    }
+
+    /**
+     * 标签补全：以 prefix 开头的标签及含有它的笔记数量，按标签名排序，最多 limit 个。
+     */
+    public synchronized Map<String, Integer> completeTags(String prefix, int limit) {
+        ensureFresh();
+        Map<String, Integer> completions = new LinkedHashMap<>();
+        for (String tag : tagIndex.tagsWithPrefix(prefix == null ? "" : prefix, limit)) {
+            completions.put(tag, tagIndex.count(tag));
+        }
+        return completions;
+    }
+
+    /**
+     * @return 每个标签及含有它的笔记数量，直接读取随写入维护的计数器。
+     */
+    public synchronized Map<String, Integer> tagCounts() {
+        ensureFresh();
+        return tagIndex.counts();
+    }
+
+    /**
+     * @return 当前索引中的笔记数量。
+     */
+    public synchronized int size() {
+        ensureFresh();
+        return docs.liveCount();
+    }
+
+    /**
+     * 索引内容的版本号：通过本类的每一次写入、以及检测到存储被外部修改后的每一次重建，都会使它加一。
+     * 版本号相同的两次查询看到的是完全相同的笔记库，上层可以据此缓存查询结果。
+     * 存储不支持变更检测时索引每次查询都会重建，版本号也随之每次变化。
+     */
+    public synchronized long generation() {
+        ensureFresh();
+        return indexGeneration;
+    }
+
+    /**
+     * 用与建索引相同的分析器归一化一个关键词，语义相同的关键词（如只有大小写不同）得到相同的结果。
+     * @return 归一化后的关键词；关键词为 null 时返回 null。
+     */
+    public String normalize(String keyword) {
+        return analyzer.normalize(keyword);
+    }
+
+    /**
+     * 丢弃索引，下一次查询时从存储完整重建。
+     */
+    public synchronized void invalidate() {
+        built = false;
+    }
+
+    /**
+     * 不限速地把尚未持久化的索引变化写成新的快照，见 flushSnapshot(IoBudget)。
+     */
+    public long flushSnapshot() throws IOException {
+        try {
+            return flushSnapshot(IoBudget.UNLIMITED);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+
+    /**
+     * 把尚未持久化的索引变化写成新的快照。没有指定快照路径、索引（包括文本索引）尚未建立或没有变化时什么也不做。
+     * 持锁时只在内存中编码快照，写盘在锁外按块进行，每一块之前向 budget 申请预算，
+     * 等待预算的后台任务不会挡住前台的查询和写入。
+     * 并发的多次写出中，只有最后编码的那一份会替换磁盘上的快照。
+     *
+     * @param budget 写入每一块之前申请的预算。
+     * @return 写入的字节数；没有写入时返回 0。
+     * @throws IOException 写入快照失败（原有的快照保持不变，下次会重新写出）。
+     * @throws InterruptedException 等待预算时被中断（原有的快照保持不变，下次会重新写出）。
+     */
+    public long flushSnapshot(IoBudget budget) throws IOException, InterruptedException {
+        // 1. 持锁编码
+        byte[] data;
+        long sequence;
+        synchronized (this) {
+            if (snapshotPath == null || !built || !snapshotDirty || syncedGeneration < 0 || !pendingText.isEmpty()) {
+                return 0;
+            }
+            data = IndexSnapshot.encode(syncedGeneration, analyzerName(), docs, fingerprints,
+                    titleIndex, contentIndex, titleGrams, contentGrams);
+            sequence = ++snapshotSequence;
+            snapshotDirty = false;
+        }
+
+        // 2. 锁外写盘，只有比已发布的更新的快照才替换正式文件
+        boolean written = false;
+        try {
+            Path temp = IndexSnapshot.writeTemp(snapshotPath, data, budget);
+            synchronized (snapshotFileLock) {
+                if (sequence > publishedSequence) {
+                    IndexSnapshot.publish(temp, snapshotPath);
+                    publishedSequence = sequence;
+                } else {
+                    IndexSnapshot.discard(temp);
+                }
+            }
+            written = true;
+            return data.length;
+        } finally {
+            if (!written) {
+                synchronized (this) {
+                    snapshotDirty = true;
+                }
+            }
+        }
+    }
+
+    // --- 内部实现 ---
+
+    private boolean isFresh() {
+        if (!built) {
+            return false;
+        }
+        long current = storageService.generation();
+        return current >= 0 && current == syncedGeneration;
+    }
+
+    /**
+     * 保证笔记表、标签位图和时间索引与存储同步；文本索引可能仍有待补齐的笔记。
+     */
+    private void ensureFresh() {
+        if (!isFresh()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * 在 ensureFresh 的基础上，把尚未进入文本索引的笔记补齐，只有这一步会读取正文。
+     */
+    private void ensureTextFresh() {
+        ensureFresh();
+        if (pendingText.isEmpty()) {
+            return;
+        }
+        for (int ordinal = pendingText.nextSetBit(0); ordinal >= 0; ordinal = pendingText.nextSetBit(ordinal + 1)) {
+            Note note = docs.note(ordinal);
+            if (note != null) {
+                indexText(ordinal, note);
+            }
+        }
+        pendingText.clear();
+        snapshotDirty = true;
+        writeSnapshotQuietly();
+    }
+
+    /**
+     * 从存储重建索引：能用快照时只追赶快照之后的变化，否则从元数据重建，文本索引留给 ensureTextFresh。
+     */
+    private void rebuild() {
+        clear();
+        long generation = storageService.generation();
+        if (snapshotPath == null || !restoreSnapshot(generation)) {
+            clear();
+            try (Stream<Note> notes = storageService.scan()) {
+                notes.forEach(this::indexMetadata);
+            }
+            snapshotDirty = true;
+        }
+        syncedGeneration = generation;
+        built = true;
+        indexGeneration++;
+
+        writeSnapshotQuietly();
+    }
+
+    private void writeSnapshotQuietly() {
+        try {
+            flushSnapshot();
+        } catch (IOException e) {
+            // 快照只是启动加速，写入失败不影响本次查询
+            System.err.println("⚠️ 写入索引快照失败: " + e.getMessage());
+        }
+    }
+
+    private void clear() {
+        docs.clear();
+        titleIndex.clear();
+        contentIndex.clear();
+        titleGrams.clear();
+        contentGrams.clear();
+        tagIndex.clear();
+        createdTimes.clear();
+        updatedTimes.clear();
+        fingerprints = new long[16];
+        pendingText.clear();
+    }
+
+    /**
+     * 装入快照并追赶快照之后存储中的变化。
+     *
+     * 快照中的序号按当时的存储顺序分配。按存储顺序遍历笔记时：
+     * 1. 快照中已有的笔记沿用原来的序号，指纹变化时丢弃它在快照中的文本索引，留待重新分析；
+     * 2. 新笔记追加到末尾，同样留待分析；
+     * 3. 遍历结束后仍未出现的序号即已删除的笔记，从索引中移除。
+     * 只有遍历到的序号始终递增，才能保证按序号输出仍是存储顺序；否则放弃快照。
+     *
+     * @return 成功时返回 true；返回 false 时索引处于不确定的状态，调用方需要清空后完整重建。
+     */
+    private boolean restoreSnapshot(long generation) {
+        IndexSnapshot snapshot;
+        try {
+            snapshot = IndexSnapshot.read(snapshotPath, analyzerName(),
+                    titleIndex, contentIndex, titleGrams, contentGrams);
+        } catch (IOException e) {
+            System.err.println("⚠️ 索引快照无法使用，将重新建立索引: " + e.getMessage());
+            return false;
+        }
+        if (snapshot == null) {
+            return false;
+        }
+        // 版本戳一致说明快照之后存储没有被修改过，可以不计算指纹
+        boolean unchanged = generation >= 0 && generation == snapshot.generation;
+
+        Map<String, Integer> stored = new HashMap<>(snapshot.ids.length * 2);
+        for (int ordinal = 0; ordinal < snapshot.ids.length; ordinal++) {
+            if (snapshot.ids[ordinal] != null) {
+                stored.put(snapshot.ids[ordinal], ordinal);
+            }
+        }
+        docs.reserve(snapshot.ids.length);
+        fingerprints = Arrays.copyOf(snapshot.fingerprints, Math.max(16, snapshot.ids.length));
+
+        BitSet seen = new BitSet(snapshot.ids.length);
+        int changed = 0;
+        int last = -1;
+        try (Stream<Note> notes = storageService.scan()) {
+            for (Iterator<Note> iterator = notes.iterator(); iterator.hasNext(); ) {
+                Note note = iterator.next();
+                if (note.getId() == null) {
+                    return false;
+                }
+                Integer ordinal = stored.get(note.getId());
+                if (ordinal == null) {
+                    ordinal = indexMetadata(note);
+                    changed++;
+                } else if (ordinal <= last) {
+                    return false;
+                } else {
+                    docs.place(ordinal, note);
+                    if (!unchanged && IndexSnapshot.fingerprint(note) != fingerprints[ordinal]) {
+                        removeText(ordinal);
+                        pendingText.set(ordinal);
+                        changed++;
+                    }
+                    indexAttributes(ordinal, note);
+                }
+                seen.set(ordinal);
+                last = ordinal;
+            }
+        }
+
+        for (int ordinal = 0; ordinal < snapshot.ids.length; ordinal++) {
+            if (snapshot.ids[ordinal] != null && !seen.get(ordinal)) {
+                removeText(ordinal);
+                changed++;
+            }
+        }
+        snapshotDirty = changed > 0 || !unchanged;
+        return true;
+    }
+
+    private String analyzerName() {
+        return analyzer.getClass().getName();
+    }
+
+    /**
+     * 分析并索引一篇笔记；已存在的ID沿用原来的序号。
+     * @return 笔记的序号。
+     */
+    private int indexNote(Note note) {
+        int ordinal = docs.put(note);
+        indexAttributes(ordinal, note);
+        indexText(ordinal, note);
+        pendingText.clear(ordinal);
+        return ordinal;
+    }
+
+    /**
+     * 只索引一篇笔记的元数据，标题和正文留给 ensureTextFresh；已存在的ID沿用原来的序号。
+     * @return 笔记的序号。
+     */
+    private int indexMetadata(Note note) {
+        int ordinal = docs.put(note);
+        indexAttributes(ordinal, note);
+        pendingText.set(ordinal);
+        return ordinal;
+    }
+
+    /**
+     * 索引不需要分析正文的属性（指纹、标签和时间），从快照恢复时也直接由笔记对象重建。
+     */
+    private void indexAttributes(int ordinal, Note note) {
+        if (ordinal >= fingerprints.length) {
+            fingerprints = Arrays.copyOf(fingerprints, Math.max(ordinal + 1, fingerprints.length * 2));
+        }
+        fingerprints[ordinal] = IndexSnapshot.fingerprint(note);
+        tagIndex.add(ordinal, note.getTags());
+        createdTimes.put(ordinal, note.getCreatedAt());
+        updatedTimes.put(ordinal, note.getUpdatedAt());
+    }
+
+    /**
+     * 分析标题和正文，写入文本索引。
+     */
+    private void indexText(int ordinal, Note note) {
+        String title = analyzer.normalize(note.getTitle());
+        String content = analyzer.normalize(note.getContent());
+        titleIndex.add(ordinal, analyzeWithPositions(title));
+        contentIndex.add(ordinal, analyzeWithPositions(content));
+        titleGrams.add(ordinal, title);
+        contentGrams.add(ordinal, content);
+    }
+
+    private void removeText(int ordinal) {
+        titleIndex.remove(ordinal);
+        contentIndex.remove(ordinal);
+        titleGrams.remove(ordinal);
+        contentGrams.remove(ordinal);
+    }
+
+    private void unindexNote(String id) {
+        int ordinal = docs.remove(id);
+        if (ordinal >= 0) {
+            removeText(ordinal);
+            pendingText.clear(ordinal);
+            tagIndex.remove(ordinal);
+            createdTimes.remove(ordinal);
+            updatedTimes.remove(ordinal);
+        }
+    }
+
+    private InvertedIndex.Tokens analyzeWithPositions(String normalizedText) {
+        InvertedIndex.Tokens tokens = new InvertedIndex.Tokens();
+        analyzer.analyze(normalizedText, tokens);
+        return tokens;
+    }
+
+    private List<String> tokenize(String normalizedText) {
+        List<String> tokens = new ArrayList<>();
+        analyzer.analyze(normalizedText, (term, position) -> tokens.add(term));
+        return tokens;
+    }
+
+    /**
+     * IndexView 的实现，直接访问本索引的内部结构；只在持有锁时使用。
+     */
+    private class View implements IndexView {
+
+        /** 本次读操作中已编译的短语；并行扫描时会被多个线程同时访问。 */
+        private final Map<String, Optional<PhraseQuery>> phrases = new ConcurrentHashMap<>();
+
+        private PhraseQuery phrase(String phrase) {
+            return phrases.computeIfAbsent(phrase,
+                    key -> Optional.ofNullable(PhraseQuery.compile(analyzer, analyzer.normalize(key)))).orElse(null);
+        }
+
+        @Override
+        public int capacity() {
+            return docs.capacity();
+        }
+
+        @Override
+        public int liveCount() {
+            return docs.liveCount();
+        }
+
+        @Override
+        public BitSet allDocs() {
+            return tagIndex.query(List.of(), true, List.of());
+        }
+
+        @Override
+        public Note note(int ordinal) {
+            return docs.note(ordinal);
+        }
+
+        @Override
+        public BitSet tagDocs(String tag) {
+            return tagIndex.query(List.of(tag), true, List.of());
+        }
+
+        @Override
+        public int tagCount(String tag) {
+            return tagIndex.count(tag);
+        }
+
+        @Override
+        public BitSet timeDocs(DateField field, LocalDateTime from, LocalDateTime to) {
+            return (field == DateField.CREATED ? createdTimes : updatedTimes).docs(from, to);
+        }
+
+        @Override
+        public int countTime(DateField field, LocalDateTime from, LocalDateTime to) {
+            return (field == DateField.CREATED ? createdTimes : updatedTimes).count(from, to);
+        }
+
+        @Override
+        public BitSet keywordDocs(String keyword) {
+            BitSet result = new BitSet();
+            String normalized = analyzer.normalize(keyword);
+            Candidates candidates = findCandidates(normalized);
+            for (int ordinal : candidates.docs) {
+                Note note = docs.note(ordinal);
+                if (note != null && (!candidates.verify || matches(note, normalized))) {
+                    result.set(ordinal);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public int estimateKeyword(String keyword) {
+            return findCandidates(analyzer.normalize(keyword)).docs.length;
+        }
+
+        @Override
+        public boolean matchesKeyword(int ordinal, String keyword) {
+            Note note = docs.note(ordinal);
+            return note != null && matches(note, analyzer.normalize(keyword));
+        }
+
+        @Override
+        public BitSet phraseDocs(String phrase) {
+            PhraseQuery query = phrase(phrase);
+            if (query == null) {
+                return keywordDocs(phrase);
+            }
+            BitSet result = new BitSet(docs.capacity());
+            for (int ordinal : PostingList.union(query.docs(titleIndex), query.docs(contentIndex))) {
+                result.set(ordinal);
+            }
+            return result;
+        }
+
+        @Override
+        public int estimatePhrase(String phrase) {
+            PhraseQuery query = phrase(phrase);
+            if (query == null) {
+                return estimateKeyword(phrase);
+            }
+            return Math.min(docs.liveCount(), query.estimate(titleIndex) + query.estimate(contentIndex));
+        }
+
+        @Override
+        public boolean matchesPhrase(int ordinal, String phrase) {
+            PhraseQuery query = phrase(phrase);
+            if (query == null) {
+                return matchesKeyword(ordinal, phrase);
+            }
+            return docs.note(ordinal) != null
+                    && (query.starts(titleIndex, ordinal).length > 0 || query.starts(contentIndex, ordinal).length > 0);
+        }
+
+        @Override
+        public BitSet nearDocs(String left, String right, int distance) {
+            BitSet result = new BitSet(docs.capacity());
+            PhraseQuery leftQuery = phrase(left);
+            PhraseQuery rightQuery = phrase(right);
+            if (leftQuery == null || rightQuery == null) {
+                return result;
+            }
+            // 两个短语都出现的笔记才可能命中，再在位置上比对距离
+            BitSet candidates = phraseDocs(left);
+            candidates.and(phraseDocs(right));
+            for (int ordinal = candidates.nextSetBit(0); ordinal >= 0; ordinal = candidates.nextSetBit(ordinal + 1)) {
+                if (matchesNear(ordinal, left, right, distance)) {
+                    result.set(ordinal);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public boolean matchesNear(int ordinal, String left, String right, int distance) {
+            PhraseQuery leftQuery = phrase(left);
+            PhraseQuery rightQuery = phrase(right);
+            if (leftQuery == null || rightQuery == null || docs.note(ordinal) == null) {
+                return false;
+            }
+            return PhraseQuery.near(leftQuery, rightQuery, distance, titleIndex, ordinal)
+                    || PhraseQuery.near(leftQuery, rightQuery, distance, contentIndex, ordinal);
+        }
+
+        @Override
+        public int[] rank(BitSet candidates, List<String> keywords, int limit) {
+            List<String> normalized = new ArrayList<>(keywords.size());
+            for (String keyword : keywords) {
+                normalized.add(analyzer.normalize(keyword));
+            }
+            double[] scores = scoreKeywords(normalized);
+            TopKCollector collector = new TopKCollector(limit, candidates.cardinality());
+            for (int ordinal = candidates.nextSetBit(0); ordinal >= 0; ordinal = candidates.nextSetBit(ordinal + 1)) {
+                double score = ordinal < scores.length ? scores[ordinal] : 0;
+                if (collector.isCompetitive(ordinal, score)) {
+                    collector.insert(ordinal, score);
+                }
+            }
+            return collector.drainDescending();
+        }
+    }
+
+    /**
+     * 把若干个已归一化的关键词的所有查询词项的 BM25 得分累加起来（term-at-a-time）。
+     * @return 按笔记序号索引的得分数组。
+     */
+    private double[] scoreKeywords(List<String> normalizedKeywords) {
+        double[] scores = new double[docs.capacity()];
+        for (String keyword : normalizedKeywords) {
+            for (String token : tokenize(keyword)) {
+                accumulate(scores, titleIndex, token, TITLE_BOOST);
+                accumulate(scores, contentIndex, token, 1.0);
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * 一次查询的候选笔记：升序排列的序号，以及这些候选是否还需要读取原文做最终校验。
+     */
+    private static class Candidates {
+        final int[] docs;
+        final boolean verify;
+
+        Candidates(int[] docs, boolean verify) {
+            this.docs = docs;
+            this.verify = verify;
+        }
+    }
+
+    /**
+     * 用索引求出可能命中的笔记。
+     */
+    private Candidates findCandidates(String normalized) {
+        if (normalized.length() >= TrigramIndex.GRAM_LENGTH) {
+            // 三元组只能缩小范围，候选笔记一律做最终校验
+            return new Candidates(PostingList.union(
+                    titleGrams.candidates(normalized), contentGrams.candidates(normalized)), true);
+        }
+
+        if (analyzer.isExactTerm(normalized)) {
+            // 关键词本身就是一个被完整索引的词项（如一到两个汉字），直接取它的倒排列表即为精确结果
+            return new Candidates(matchingDocs(normalized), false);
+        }
+
+        List<String> tokens = tokenize(normalized);
+        if (tokens.isEmpty()) {
+            // 关键词中没有任何可索引的字符（例如纯标点），只能逐篇校验
+            int[] all = new int[docs.capacity()];
+            for (int ordinal = 0; ordinal < all.length; ordinal++) {
+                all[ordinal] = ordinal;
+            }
+            return new Candidates(all, true);
+        }
+
+        int[] candidates = null;
+        for (String token : tokens) {
+            int[] matches = matchingDocs(token);
+            candidates = candidates == null ? matches : PostingList.intersect(candidates, matches);
+            if (candidates.length == 0) {
+                return new Candidates(candidates, false);
+            }
+        }
+
+        // 关键词本身就是单个词项时，候选集合即精确结果，无需再读原文校验
+        boolean needsVerification = !(tokens.size() == 1 && tokens.get(0).equals(normalized));
+        return new Candidates(candidates, needsVerification);
+    }
+
+    /**
+     * @return 标题或正文中含有该查询词项的笔记序号（升序）。
+     */
+    private int[] matchingDocs(String token) {
+        return PostingList.union(
+                PostingList.union(expand(titleIndex, token)),
+                PostingList.union(expand(contentIndex, token)));
+    }
+
+    /**
+     * 把查询词项扩展为字段中实际存在的词项：可以精确查找的词项直接取倒排列表，
+     * 否则取所有包含它的词项的倒排列表。
+     */
+    private List<PostingList> expand(InvertedIndex field, String token) {
+        if (analyzer.isExactTerm(token)) {
+            PostingList list = field.postings(token);
+            return list == null ? List.of() : List.of(list);
+        }
+        return field.postingsContaining(token);
+    }
+
+    /**
+     * 把一个查询词项在某个字段上的 BM25 得分累加到 scores 中。
+     */
+    private void accumulate(double[] scores, InvertedIndex field, String token, double boost) {
+        for (PostingList list : expand(field, token)) {
+            accumulate(scores, field, list, boost);
+        }
+    }
+
+    /**
+     * 把字段中一个词项的倒排列表的 BM25 得分累加到 scores 中。
+     */
+    private void accumulate(double[] scores, InvertedIndex field, PostingList list, double boost) {
+        double averageLength = field.averageLength();
+        if (averageLength == 0) {
+            return;
+        }
+        int total = docs.liveCount();
+        int df = list.size();
+        double idf = Math.log(1 + (total - df + 0.5) / (df + 0.5));
+        for (int i = 0; i < df; i++) {
+            int doc = list.doc(i);
+            int tf = list.freq(i);
+            double norm = BM25_K1 * (1 - BM25_B + BM25_B * field.docLength(doc) / averageLength);
+            scores[doc] += boost * idf * tf * (BM25_K1 + 1) / (tf + norm);
+        }
+    }
+
+    /**
+     * 最终校验：与原来的实现相同，在归一化后的标题和内容上做子串匹配。
+     * 由分析器逐字符折叠比较，不再为每篇候选笔记复制一份小写全文。
+     */
+    private boolean matches(Note note, String normalized) {
+        return analyzer.containsNormalized(note.getTitle(), normalized)
+                || analyzer.containsNormalized(note.getContent(), normalized);
+    }
+}
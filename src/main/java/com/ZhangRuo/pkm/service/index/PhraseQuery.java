@@ -0,0 +1,179 @@
+package com.ZhangRuo.pkm.service.index;
+
+import java.util.Arrays;
+
+/**
+ * [业务逻辑层] 用位置倒排列表求值的短语：短语中的词项必须在同一字段中按原来的相对位置出现。
+ *
+ * 短语本身用建索引时的分析器分析，得到的每个 (词项, 相对位置) 都必须在笔记中出现在
+ * "起始位置 + 相对位置" 上。中文的单字和二元词项都参与比较，所以 "设计模式" 只会命中连续的四个字。
+ * 求值完全在倒排列表上进行：先对各词项的笔记求交，再在位置上逐篇比对，不读取笔记原文。
+ */
+final class PhraseQuery {
+
+    private static final int[] NO_DOCS = new int[0];
+
+    private final String[] terms;
+    private final int[] offsets;
+    /** 短语覆盖的位置个数（最后一个词项的相对位置 + 1）。 */
+    private final int span;
+
+    private PhraseQuery(String[] terms, int[] offsets) {
+        this.terms = terms;
+        this.offsets = offsets;
+        int last = 0;
+        for (int offset : offsets) {
+            last = Math.max(last, offset);
+        }
+        this.span = last + 1;
+    }
+
+    /**
+     * @param normalizedPhrase 已归一化的短语。
+     * @return 短语中没有任何可索引的词项时返回 null。
+     */
+    static PhraseQuery compile(Analyzer analyzer, String normalizedPhrase) {
+        InvertedIndex.Tokens tokens = new InvertedIndex.Tokens();
+        analyzer.analyze(normalizedPhrase, tokens);
+        if (tokens.size() == 0) {
+            return null;
+        }
+        String[] terms = new String[tokens.size()];
+        int[] offsets = new int[tokens.size()];
+        int first = tokens.position(0);
+        for (int i = 0; i < tokens.size(); i++) {
+            terms[i] = tokens.term(i);
+            offsets[i] = tokens.position(i) - first;
+        }
+        return new PhraseQuery(terms, offsets);
+    }
+
+    int span() {
+        return span;
+    }
+
+    /**
+     * @return 候选笔记数的上界：最短的倒排列表的长度。
+     */
+    int estimate(InvertedIndex field) {
+        int estimate = Integer.MAX_VALUE;
+        for (String term : terms) {
+            PostingList list = field.postings(term);
+            if (list == null) {
+                return 0;
+            }
+            estimate = Math.min(estimate, list.size());
+        }
+        return estimate;
+    }
+
+    /**
+     * @return 该字段中含有此短语的笔记序号（升序）。
+     */
+    int[] docs(InvertedIndex field) {
+        PostingList[] lists = lists(field);
+        if (lists == null) {
+            return NO_DOCS;
+        }
+        // 1. 从最短的倒排列表出发，原地与其余列表求交
+        PostingList rarest = lists[0];
+        for (PostingList list : lists) {
+            if (list.size() < rarest.size()) {
+                rarest = list;
+            }
+        }
+        int[] candidates = rarest.docs();
+        int length = candidates.length;
+        for (int i = 0; i < lists.length && length > 0; i++) {
+            if (lists[i] != rarest) {
+                length = lists[i].retainInto(candidates, length);
+            }
+        }
+
+        // 2. 在位置上逐篇比对
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            if (starts(lists, candidates[i]).length > 0) {
+                candidates[n++] = candidates[i];
+            }
+        }
+        return Arrays.copyOf(candidates, n);
+    }
+
+    /**
+     * @return 短语在该字段的这篇笔记中每一次出现的起始位置（升序）；没有出现时返回空数组。
+     */
+    int[] starts(InvertedIndex field, int doc) {
+        PostingList[] lists = lists(field);
+        return lists == null ? NO_DOCS : starts(lists, doc);
+    }
+
+    private int[] starts(PostingList[] lists, int doc) {
+        // 1. 取出每个词项在这篇笔记中的位置，选出现次数最少的词项作为锚点
+        int[][] positions = new int[lists.length][];
+        int anchor = 0;
+        for (int i = 0; i < lists.length; i++) {
+            int index = lists[i].indexOf(doc);
+            if (index < 0 || lists[i].positions(index) == null) {
+                return NO_DOCS;
+            }
+            positions[i] = lists[i].positions(index);
+            if (positions[i].length < positions[anchor].length) {
+                anchor = i;
+            }
+        }
+
+        // 2. 锚点的每一次出现确定一个起始位置，其余词项必须出现在起始位置 + 相对位置上
+        int[] starts = new int[positions[anchor].length];
+        int n = 0;
+        for (int position : positions[anchor]) {
+            int start = position - offsets[anchor];
+            boolean matched = start >= 0;
+            for (int i = 0; i < lists.length && matched; i++) {
+                matched = i == anchor || Arrays.binarySearch(positions[i], start + offsets[i]) >= 0;
+            }
+            if (matched) {
+                starts[n++] = start;
+            }
+        }
+        return n == starts.length ? starts : Arrays.copyOf(starts, n);
+    }
+
+    /**
+     * @return 各词项在该字段中的倒排列表；有任何一个词项不存在时返回 null。
+     */
+    private PostingList[] lists(InvertedIndex field) {
+        PostingList[] lists = new PostingList[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            lists[i] = field.postings(terms[i]);
+            if (lists[i] == null) {
+                return null;
+            }
+        }
+        return lists;
+    }
+
+    /**
+     * 判断两个短语在同一字段的同一篇笔记中是否相隔不超过 distance 个词项（前后顺序不限）。
+     * 两个短语之间的间隔是前一个短语结束之后、后一个短语开始之前的位置个数，相邻时为 0。
+     */
+    static boolean near(PhraseQuery left, PhraseQuery right, int distance, InvertedIndex field, int doc) {
+        int[] leftStarts = left.starts(field, doc);
+        if (leftStarts.length == 0) {
+            return false;
+        }
+        int[] rightStarts = right.starts(field, doc);
+        for (int start : leftStarts) {
+            // right 在 left 之前：right 的结束位置 >= start - distance - 1；
+            // right 在 left 之后：right 的起始位置 <= left 的结束位置 + distance + 1
+            int lowest = start - distance - right.span;
+            int highest = start + left.span + distance;
+            int index = Arrays.binarySearch(rightStarts, lowest);
+            int insertion = index >= 0 ? index : -index - 1;
+            if (insertion < rightStarts.length && rightStarts[insertion] <= highest) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
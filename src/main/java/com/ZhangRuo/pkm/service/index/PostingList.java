@@ -0,0 +1,239 @@
+package com.ZhangRuo.pkm.service.index;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * [业务逻辑层] 一个词项的倒排列表：按笔记序号（ordinal）升序排列的笔记序号和词频。
+ * 笔记序号按存储顺序分配，所以新笔记总是追加在末尾，删除则原地移除。
+ * 词项倒排列表还记录词项在每篇笔记中出现的位置（升序），短语和邻近查询直接在位置上求值；
+ * 三元组的倒排列表不需要位置，位置数组不会被分配。
+ */
+class PostingList {
+
+    private int[] docs = new int[4];
+    private int[] freqs = new int[4];
+    /** 与 docs 平行的位置数组；没有任何位置时为 null。 */
+    private int[][] positions;
+    private int size = 0;
+
+    PostingList() {
+    }
+
+    /**
+     * 直接采用已经按序号升序排列的数组（例如从索引快照中读出的倒排列表），不做复制。
+     * @param positions 与 docs 平行的位置数组，可以为 null。
+     */
+    PostingList(int[] docs, int[] freqs, int[][] positions) {
+        this.docs = docs;
+        this.freqs = freqs;
+        this.positions = positions;
+        this.size = docs.length;
+    }
+
+    /**
+     * 插入或更新一篇笔记的词频。
+     */
+    void put(int doc, int freq) {
+        put(doc, freq, null);
+    }
+
+    /**
+     * 插入或更新一篇笔记的出现位置，词频即位置的个数。
+     * @param docPositions 升序排列的位置。
+     */
+    void put(int doc, int[] docPositions) {
+        put(doc, docPositions.length, docPositions);
+    }
+
+    private void put(int doc, int freq, int[] docPositions) {
+        if (docPositions != null && positions == null) {
+            positions = new int[docs.length][];
+        }
+        int index = size == 0 || docs[size - 1] < doc ? -size - 1 : Arrays.binarySearch(docs, 0, size, doc);
+        if (index >= 0) {
+            freqs[index] = freq;
+            if (positions != null) {
+                positions[index] = docPositions;
+            }
+            return;
+        }
+        int insertAt = -index - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(docs, insertAt, docs, insertAt + 1, size - insertAt);
+        System.arraycopy(freqs, insertAt, freqs, insertAt + 1, size - insertAt);
+        if (positions != null) {
+            System.arraycopy(positions, insertAt, positions, insertAt + 1, size - insertAt);
+            positions[insertAt] = docPositions;
+        }
+        docs[insertAt] = doc;
+        freqs[insertAt] = freq;
+        size++;
+    }
+
+    /**
+     * @return 如果列表中确实有这篇笔记并已移除，返回 true。
+     */
+    boolean remove(int doc) {
+        int index = Arrays.binarySearch(docs, 0, size, doc);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(docs, index + 1, docs, index, size - index - 1);
+        System.arraycopy(freqs, index + 1, freqs, index, size - index - 1);
+        if (positions != null) {
+            System.arraycopy(positions, index + 1, positions, index, size - index - 1);
+            positions[size - 1] = null;
+        }
+        size--;
+        return true;
+    }
+
+    /**
+     * @return 笔记在列表中的下标；不在列表中时返回负数。
+     */
+    int indexOf(int doc) {
+        return Arrays.binarySearch(docs, 0, size, doc);
+    }
+
+    /**
+     * @return 词项在第 index 篇笔记中出现的位置（升序）；没有记录位置时返回 null。
+     */
+    int[] positions(int index) {
+        return positions != null ? positions[index] : null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int doc(int index) {
+        return docs[index];
+    }
+
+    int freq(int index) {
+        return freqs[index];
+    }
+
+    /**
+     * @return 笔记序号的升序副本。
+     */
+    int[] docs() {
+        return Arrays.copyOf(docs, size);
+    }
+
+    /**
+     * 原地求交：只保留 sorted 前 length 个元素中同样出现在本列表里的序号，不复制本列表。
+     *
+     * @param sorted 升序数组，会被改写。
+     * @return 交集的长度，结果位于 sorted 的前若干个位置。
+     */
+    int retainInto(int[] sorted, int length) {
+        int i = 0, j = 0, n = 0;
+        while (i < length && j < size) {
+            if (sorted[i] < docs[j]) {
+                i++;
+            } else if (sorted[i] > docs[j]) {
+                j++;
+            } else {
+                sorted[n++] = sorted[i++];
+                j++;
+            }
+        }
+        return n;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > docs.length) {
+            int newLength = Math.max(capacity, docs.length * 2);
+            docs = Arrays.copyOf(docs, newLength);
+            freqs = Arrays.copyOf(freqs, newLength);
+            if (positions != null) {
+                positions = Arrays.copyOf(positions, newLength);
+            }
+        }
+    }
+
+    // --- 有序序号数组的集合运算 ---
+
+    /**
+     * 多个倒排列表的并集，结果升序且无重复。
+     */
+    static int[] union(List<PostingList> lists) {
+        if (lists.isEmpty()) {
+            return new int[0];
+        }
+        if (lists.size() == 1) {
+            return lists.get(0).docs();
+        }
+        int total = 0;
+        for (PostingList list : lists) {
+            total += list.size;
+        }
+        int[] merged = new int[total];
+        int offset = 0;
+        for (PostingList list : lists) {
+            System.arraycopy(list.docs, 0, merged, offset, list.size);
+            offset += list.size;
+        }
+        Arrays.sort(merged);
+        return dedupe(merged);
+    }
+
+    /**
+     * 两个升序数组的并集。
+     */
+    static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                result[n++] = a[i++];
+            } else if (a[i] > b[j]) {
+                result[n++] = b[j++];
+            } else {
+                result[n++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) {
+            result[n++] = a[i++];
+        }
+        while (j < b.length) {
+            result[n++] = b[j++];
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /**
+     * 两个升序数组的交集。
+     */
+    static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    private static int[] dedupe(int[] sorted) {
+        if (sorted.length == 0) {
+            return sorted;
+        }
+        int n = 1;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] != sorted[n - 1]) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, n);
+    }
+}
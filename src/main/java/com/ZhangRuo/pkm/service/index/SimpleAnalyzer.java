@@ -0,0 +1,49 @@
+package com.ZhangRuo.pkm.service.index;
+
+/**
+ * [业务逻辑层] 最简单的分析器：转为小写后，把连续的字母/数字切分为一个词项。
+ *
+ * 与 NoteService 原来的 toLowerCase().contains() 语义对齐：
+ * 只由字母和数字组成的关键词如果出现在文本中，必然完整地落在某一个词项内部，
+ * 因此"包含该关键词的词项"的倒排列表之并，恰好就是所有命中的笔记。
+ */
+public class SimpleAnalyzer implements Analyzer {
+
+    /**
+     * 逐字符转为小写，长度保持不变，与 containsNormalized 的折叠规则一致。
+     */
+    @Override
+    public String normalize(String text) {
+        return CaseFoldMatcher.foldAll(text, false);
+    }
+
+    @Override
+    public boolean containsNormalized(String text, String normalizedKeyword) {
+        return CaseFoldMatcher.containsFolded(text, normalizedKeyword, false);
+    }
+
+    @Override
+    public void analyze(String normalizedText, TermConsumer consumer) {
+        if (normalizedText == null) {
+            return;
+        }
+        int position = 0;
+        int start = -1;
+        int length = normalizedText.length();
+        for (int i = 0; i < length; ) {
+            int codePoint = normalizedText.codePointAt(i);
+            if (Character.isLetterOrDigit(codePoint)) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                consumer.accept(normalizedText.substring(start, i), position++);
+                start = -1;
+            }
+            i += Character.charCount(codePoint);
+        }
+        if (start >= 0) {
+            consumer.accept(normalizedText.substring(start), position);
+        }
+    }
+}
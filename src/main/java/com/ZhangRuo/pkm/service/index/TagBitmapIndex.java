@@ -0,0 +1,209 @@
+package com.ZhangRuo.pkm.service.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * [业务逻辑层] 标签位图索引：标签名 -> 含有该标签的笔记序号位图。
+ *
+ * 位图按 64 位的字（word）存储，多个标签的 AND/OR/NOT 组合就是逐字的位运算，
+ * 不需要逐篇读取笔记再调用 Note.hasTag。与 Note.hasTag 相同，标签名区分大小写。
+ */
+class TagBitmapIndex {
+
+    private static final String[] NO_TAGS = new String[0];
+
+    /**
+     * 一个标签的位图，以及含有该标签的笔记数量。
+     * 数量在设置和清除位时同步维护，标签云和 AND 查询的排序都不需要重新统计位图。
+     */
+    private static class TagEntry {
+        final BitSet bitmap = new BitSet();
+        int count;
+    }
+
+    private final Map<String, TagEntry> entries = new HashMap<>();
+    /**
+     * 去重并排序的标签字典：小写的标签名 -> 该名称的所有大小写写法。
+     * 前缀查找是字典上的一次范围查询，子串查找只遍历不重复的标签名。
+     */
+    private final TreeMap<String, TreeSet<String>> dictionary = new TreeMap<>();
+    /** 当前被索引的所有笔记，NOT 查询以它为全集。 */
+    private final BitSet live = new BitSet();
+    /** 每篇笔记（按序号）被索引时的标签，用来在修改或删除时清除旧的位。 */
+    private String[][] docTags = new String[16][];
+
+    /**
+     * 索引一篇笔记的标签。如果该序号已经被索引过，先清除旧的标签。
+     */
+    void add(int doc, List<String> tags) {
+        remove(doc);
+        String[] copy = tags == null ? NO_TAGS : tags.toArray(new String[0]);
+        for (String tag : copy) {
+            TagEntry entry = entries.computeIfAbsent(tag, this::newEntry);
+            if (!entry.bitmap.get(doc)) {
+                entry.bitmap.set(doc);
+                entry.count++;
+            }
+        }
+        ensureCapacity(doc + 1);
+        docTags[doc] = copy;
+        live.set(doc);
+    }
+
+    /**
+     * 清除一篇笔记的所有标签位；位图变空时一并删除该标签。
+     */
+    void remove(int doc) {
+        if (doc >= docTags.length || docTags[doc] == null) {
+            return;
+        }
+        for (String tag : docTags[doc]) {
+            TagEntry entry = entries.get(tag);
+            if (entry != null && entry.bitmap.get(doc)) {
+                entry.bitmap.clear(doc);
+                if (--entry.count == 0) {
+                    entries.remove(tag);
+                    removeFromDictionary(tag);
+                }
+            }
+        }
+        docTags[doc] = null;
+        live.clear(doc);
+    }
+
+    /**
+     * 组合查询：included 按 AND 或 OR 组合，再减去含有任意一个 excluded 标签的笔记。
+     * included 为空时以所有笔记为起点（即只做 NOT）。
+     * AND 从最稀有的标签开始求交，中间结果一开始就尽可能小，变空时立即结束。
+     *
+     * @return 命中的笔记序号位图（新对象，调用方可以随意修改）。
+     */
+    BitSet query(List<String> included, boolean matchAll, List<String> excluded) {
+        BitSet result;
+        if (included.isEmpty()) {
+            result = (BitSet) live.clone();
+        } else if (matchAll) {
+            List<TagEntry> required = new ArrayList<>(included.size());
+            for (String tag : included) {
+                TagEntry entry = entries.get(tag);
+                if (entry == null) {
+                    return new BitSet();// 有一个标签不存在，AND 的结果必然为空
+                }
+                required.add(entry);
+            }
+            required.sort(Comparator.comparingInt(entry -> entry.count));
+            result = (BitSet) required.get(0).bitmap.clone();
+            for (int i = 1; i < required.size() && !result.isEmpty(); i++) {
+                result.and(required.get(i).bitmap);
+            }
+        } else {
+            result = new BitSet();
+            for (String tag : included) {
+                TagEntry entry = entries.get(tag);
+                if (entry != null) {
+                    result.or(entry.bitmap);
+                }
+            }
+        }
+        for (String tag : excluded) {
+            TagEntry entry = entries.get(tag);
+            if (entry != null) {
+                result.andNot(entry.bitmap);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return 含有该标签的笔记数量。
+     */
+    int count(String tag) {
+        TagEntry entry = entries.get(tag);
+        return entry == null ? 0 : entry.count;
+    }
+
+    /**
+     * @return 每个标签及含有它的笔记数量（新对象）。
+     */
+    Map<String, Integer> counts() {
+        Map<String, Integer> counts = new HashMap<>(entries.size() * 2);
+        for (Map.Entry<String, TagEntry> entry : entries.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().count);
+        }
+        return counts;
+    }
+
+    /**
+     * @return 名称中包含 fragment 的标签（不区分大小写），按字典顺序排列。
+     *         遍历的是不重复的标签名，而不是笔记。
+     */
+    List<String> tagsContaining(String fragment) {
+        String lowerFragment = fragment.toLowerCase();
+        List<String> tags = new ArrayList<>();
+        for (Map.Entry<String, TreeSet<String>> entry : dictionary.entrySet()) {
+            if (entry.getKey().contains(lowerFragment)) {
+                tags.addAll(entry.getValue());
+            }
+        }
+        return tags;
+    }
+
+    /**
+     * @return 以 prefix 开头的标签（不区分大小写），按字典顺序排列，最多 limit 个。
+     *         在排序的字典上做范围查询，只访问命中的标签。
+     */
+    List<String> tagsWithPrefix(String prefix, int limit) {
+        String lowerPrefix = prefix.toLowerCase();
+        List<String> tags = new ArrayList<>();
+        for (Map.Entry<String, TreeSet<String>> entry : dictionary.tailMap(lowerPrefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(lowerPrefix)) {
+                break;// 字典有序，第一个不匹配的键之后不会再有匹配的键
+            }
+            for (String tag : entry.getValue()) {
+                if (tags.size() >= limit) {
+                    return tags;
+                }
+                tags.add(tag);
+            }
+        }
+        return tags;
+    }
+
+    int tagCount() {
+        return entries.size();
+    }
+
+    void clear() {
+        entries.clear();
+        dictionary.clear();
+        live.clear();
+        docTags = new String[16][];
+    }
+
+    private TagEntry newEntry(String tag) {
+        dictionary.computeIfAbsent(tag.toLowerCase(), key -> new TreeSet<>()).add(tag);
+        return new TagEntry();
+    }
+
+    private void removeFromDictionary(String tag) {
+        String key = tag.toLowerCase();
+        TreeSet<String> variants = dictionary.get(key);
+        if (variants != null && variants.remove(tag) && variants.isEmpty()) {
+            dictionary.remove(key);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > docTags.length) {
+            docTags = Arrays.copyOf(docTags, Math.max(capacity, docTags.length * 2));
+        }
+    }
+}
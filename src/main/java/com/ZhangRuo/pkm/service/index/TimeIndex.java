@@ -0,0 +1,255 @@
+package com.ZhangRuo.pkm.service.index;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * [业务逻辑层] 时间索引：按 (时间, 笔记序号) 升序排列的两个平行数组，用于按时间范围查找和按时间排序。
+ *
+ * 时间以毫秒为单位存储：LocalDateTime 按 UTC 换算为毫秒，只用来保持先后顺序，不涉及时区。
+ * 一次范围查询是两次二分查找加上区间内的 k 个条目，O(log n + k)。
+ *
+ * 写入时新条目总是追加在数组末尾：
+ * 1. 按时间顺序追加（例如刚修改的笔记、按创建顺序重建）时数组仍然有序，不需要额外的工作；
+ * 2. 否则末尾形成一段无序区，下一次查询前先对这一段排序，再与前面的有序区归并一次。
+ * 这样完整重建是 O(n log n)，而不是逐条插入的 O(n²)。
+ * 时间为 null 的笔记不进入索引，任何范围都不包含它们。
+ */
+final class TimeIndex {
+
+    private long[] times = new long[16];
+    private int[] ordinals = new int[16];
+    private int size = 0;
+    /** [0, sorted) 按 (时间, 序号) 升序；[sorted, size) 是尚未归并的新条目。 */
+    private int sorted = 0;
+
+    /** 每个序号被索引时的时间，用来在修改或删除时找到旧的条目。 */
+    private long[] timeOf = new long[16];
+    private final BitSet present = new BitSet();
+
+    /**
+     * 登记或更新一篇笔记的时间；time 为 null 时从索引中移除它。
+     */
+    void put(int ordinal, LocalDateTime time) {
+        if (time == null) {
+            remove(ordinal);
+            return;
+        }
+        long millis = toMillis(time);
+        if (present.get(ordinal)) {
+            if (timeOf[ordinal] == millis) {
+                return;// 时间没有变化（例如只修改了内容时的创建时间）
+            }
+            remove(ordinal);
+        }
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            ordinals = Arrays.copyOf(ordinals, size * 2);
+        }
+        times[size] = millis;
+        ordinals[size] = ordinal;
+        size++;
+        if (sorted == size - 1 && (size == 1 || compare(times[size - 2], ordinals[size - 2], millis, ordinal) < 0)) {
+            sorted = size;
+        }
+        if (ordinal >= timeOf.length) {
+            timeOf = Arrays.copyOf(timeOf, Math.max(ordinal + 1, timeOf.length * 2));
+        }
+        timeOf[ordinal] = millis;
+        present.set(ordinal);
+    }
+
+    /**
+     * 从索引中移除一篇笔记；不在索引中时什么也不做。
+     */
+    void remove(int ordinal) {
+        if (!present.get(ordinal)) {
+            return;
+        }
+        present.clear(ordinal);
+        int slot = find(timeOf[ordinal], ordinal);
+        if (slot < sorted) {
+            // 有序区内的条目：后面的条目整体前移一位，有序区仍然有序
+            System.arraycopy(times, slot + 1, times, slot, size - slot - 1);
+            System.arraycopy(ordinals, slot + 1, ordinals, slot, size - slot - 1);
+            sorted--;
+            size--;
+        } else {
+            // 无序区内的条目：用最后一个条目填补空位
+            size--;
+            times[slot] = times[size];
+            ordinals[slot] = ordinals[size];
+        }
+    }
+
+    void clear() {
+        size = 0;
+        sorted = 0;
+        present.clear();
+    }
+
+    /**
+     * @return 该序号是否在索引中（即笔记的时间不为 null）。
+     */
+    boolean contains(int ordinal) {
+        return present.get(ordinal);
+    }
+
+    /**
+     * @return 该序号被索引的时间（毫秒），不在索引中时返回 Long.MIN_VALUE。
+     */
+    long millis(int ordinal) {
+        return present.get(ordinal) ? timeOf[ordinal] : Long.MIN_VALUE;
+    }
+
+    /**
+     * @return 时间落在 [from, to) 内的笔记数量；from/to 为 null 表示不限。
+     */
+    int count(LocalDateTime from, LocalDateTime to) {
+        ensureSorted();
+        return Math.max(0, upper(to) - lower(from));
+    }
+
+    /**
+     * @return 时间落在 [from, to) 内的笔记序号，按时间升序（时间相同时按序号升序）。
+     */
+    int[] range(LocalDateTime from, LocalDateTime to) {
+        ensureSorted();
+        int start = lower(from);
+        int end = upper(to);
+        return start >= end ? new int[0] : Arrays.copyOfRange(ordinals, start, end);
+    }
+
+    /**
+     * @return 时间落在 [from, to) 内的笔记序号位图。
+     */
+    BitSet docs(LocalDateTime from, LocalDateTime to) {
+        ensureSorted();
+        BitSet result = new BitSet();
+        for (int i = lower(from), end = upper(to); i < end; i++) {
+            result.set(ordinals[i]);
+        }
+        return result;
+    }
+
+    // --- 内部实现 ---
+
+    /**
+     * LocalDateTime 按 UTC 换算为毫秒（向下取整），与 LocalDateTime 本身的先后顺序一致。
+     */
+    static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private int lower(LocalDateTime from) {
+        return from == null ? 0 : lowerBound(toMillis(from), Integer.MIN_VALUE, size);
+    }
+
+    private int upper(LocalDateTime to) {
+        return to == null ? size : lowerBound(toMillis(to), Integer.MIN_VALUE, size);
+    }
+
+    /**
+     * @return [0, end) 中第一个不小于 (time, ordinal) 的位置。
+     */
+    private int lowerBound(long time, int ordinal, int end) {
+        int low = 0;
+        int high = end;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(times[mid], ordinals[mid], time, ordinal) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int find(long time, int ordinal) {
+        int slot = lowerBound(time, ordinal, sorted);
+        if (slot < sorted && times[slot] == time && ordinals[slot] == ordinal) {
+            return slot;
+        }
+        for (int i = sorted; i < size; i++) {
+            if (ordinals[i] == ordinal) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("时间索引中找不到序号 " + ordinal);
+    }
+
+    /**
+     * 把末尾的无序区排序后与有序区归并。
+     */
+    private void ensureSorted() {
+        if (sorted == size) {
+            return;
+        }
+        // 1. 对无序区排序
+        sort(sorted, size - 1);
+
+        // 2. 与有序区归并到新数组
+        long[] mergedTimes = new long[times.length];
+        int[] mergedOrdinals = new int[ordinals.length];
+        int left = 0;
+        int right = sorted;
+        for (int n = 0; n < size; n++) {
+            boolean takeLeft = right >= size
+                    || (left < sorted && compare(times[left], ordinals[left], times[right], ordinals[right]) <= 0);
+            int from = takeLeft ? left++ : right++;
+            mergedTimes[n] = times[from];
+            mergedOrdinals[n] = ordinals[from];
+        }
+        times = mergedTimes;
+        ordinals = mergedOrdinals;
+        sorted = size;
+    }
+
+    /**
+     * 对 [low, high] 内的条目按 (时间, 序号) 原地快速排序，总是先处理较短的一侧以限制递归深度。
+     */
+    private void sort(int low, int high) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            long pivotTime = times[mid];
+            int pivotOrdinal = ordinals[mid];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compare(times[i], ordinals[i], pivotTime, pivotOrdinal) < 0) {
+                    i++;
+                }
+                while (compare(times[j], ordinals[j], pivotTime, pivotOrdinal) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (j - low < high - i) {
+                sort(low, j);
+                low = i;
+            } else {
+                sort(i, high);
+                high = j;
+            }
+        }
+    }
+
+    private void swap(int a, int b) {
+        long time = times[a];
+        times[a] = times[b];
+        times[b] = time;
+        int ordinal = ordinals[a];
+        ordinals[a] = ordinals[b];
+        ordinals[b] = ordinal;
+    }
+
+    private static int compare(long timeA, int ordinalA, long timeB, int ordinalB) {
+        int byTime = Long.compare(timeA, timeB);
+        return byTime != 0 ? byTime : Integer.compare(ordinalA, ordinalB);
+    }
+}
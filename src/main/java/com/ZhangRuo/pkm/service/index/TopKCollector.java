@@ -0,0 +1,119 @@
+package com.ZhangRuo.pkm.service.index;
+
+/**
+ * [业务逻辑层] 有界的 Top-K 收集器：一个按得分排序的最小堆，最多保留 K 篇笔记。
+ *
+ * 调用方先用 isCompetitive 判断一个候选是否有机会进入前 K 名，
+ * 只有有机会的候选才需要读取原文做最终校验，然后再 insert。
+ * 得分相同时序号小（存储顺序靠前）的笔记排在前面。
+ */
+class TopKCollector {
+
+    private final int capacity;
+    private final int[] docs;
+    private final double[] scores;
+    private int size = 0;
+
+    /**
+     * @param k         最多保留的笔记数量。
+     * @param maxSize   候选笔记总数的上界，用来避免为很大的 K 分配过大的数组。
+     */
+    TopKCollector(int k, int maxSize) {
+        this.capacity = Math.max(0, Math.min(k, maxSize));
+        this.docs = new int[capacity];
+        this.scores = new double[capacity];
+    }
+
+    /**
+     * @return 该得分的候选能否进入当前的前 K 名。
+     */
+    boolean isCompetitive(int doc, double score) {
+        if (size < capacity) {
+            return true;
+        }
+        return capacity > 0 && worseThan(0, doc, score);
+    }
+
+    /**
+     * 插入一个候选；堆已满时替换掉当前最差的一个。调用前应先确认 isCompetitive。
+     */
+    void insert(int doc, double score) {
+        if (size < capacity) {
+            docs[size] = doc;
+            scores[size] = score;
+            siftUp(size++);
+        } else {
+            docs[0] = doc;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * @return 按得分从高到低排列的笔记序号。调用后收集器被清空。
+     */
+    int[] drainDescending() {
+        int[] result = new int[size];
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = docs[0];
+            size--;
+            docs[0] = docs[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return result;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 堆中位置 i 的候选是否比 (doc, score) 更差。
+     */
+    private boolean worseThan(int i, int doc, double score) {
+        if (scores[i] != score) {
+            return scores[i] < score;
+        }
+        return docs[i] > doc;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (!worseThan(i, docs[parent], scores[parent])) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            int right = left + 1;
+            int worst = i;
+            if (left < size && worseThan(left, docs[worst], scores[worst])) {
+                worst = left;
+            }
+            if (right < size && worseThan(right, docs[worst], scores[worst])) {
+                worst = right;
+            }
+            if (worst == i) {
+                return;
+            }
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int doc = docs[a];
+        docs[a] = docs[b];
+        docs[b] = doc;
+        double score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
@@ -0,0 +1,177 @@
+package com.ZhangRuo.pkm.service.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * [业务逻辑层] 单个字段（标题或正文）的三元组（trigram）索引：连续 3 个字符 -> 倒排列表。
+ *
+ * 与按词项建立的倒排索引不同，三元组取自归一化后的完整原文（包括空格和标点），
+ * 所以任意子串（哪怕落在单词中间、跨越多个单词）都能被索引：
+ * 一篇笔记包含长度不小于 3 的子串 s，它就一定包含 s 的每一个三元组。
+ * 反过来不一定成立，因此三元组索引只负责缩小候选范围，最终仍需对候选笔记做子串校验。
+ */
+class TrigramIndex {
+
+    /** 可以用三元组缩小范围的最短子串长度。 */
+    static final int GRAM_LENGTH = 3;
+
+    private static final long[] NO_GRAMS = new long[0];
+
+    private final Map<Long, PostingList> postings = new HashMap<>();
+    /** 每篇笔记（按序号）包含的不重复三元组，删除或修改时用来找到需要更新的倒排列表。 */
+    private long[][] docGrams = new long[16][];
+
+    /**
+     * 索引一篇笔记的归一化文本。如果该序号已经被索引过，先移除旧的三元组。
+     */
+    void add(int doc, String normalizedText) {
+        remove(doc);
+        long[] grams = gramsOf(normalizedText);
+        for (long gram : grams) {
+            postings.computeIfAbsent(gram, key -> new PostingList()).put(doc, 1);
+        }
+        ensureCapacity(doc + 1);
+        docGrams[doc] = grams;
+    }
+
+    /**
+     * 从所有相关的倒排列表中移除一篇笔记；倒排列表变空时一并删除该三元组。
+     */
+    void remove(int doc) {
+        if (doc >= docGrams.length || docGrams[doc] == null) {
+            return;
+        }
+        for (long gram : docGrams[doc]) {
+            PostingList list = postings.get(gram);
+            if (list != null && list.remove(doc) && list.size() == 0) {
+                postings.remove(gram);
+            }
+        }
+        docGrams[doc] = null;
+    }
+
+    /**
+     * 找出可能包含该子串的笔记：子串所有三元组的倒排列表的交集，按最短的列表优先求交。
+     *
+     * @param normalizedFragment 归一化后的子串，长度至少为 {@link #GRAM_LENGTH}。
+     * @return 升序排列的候选笔记序号。
+     */
+    int[] candidates(String normalizedFragment) {
+        long[] grams = gramsOf(normalizedFragment);
+        List<PostingList> lists = new ArrayList<>(grams.length);
+        for (long gram : grams) {
+            PostingList list = postings.get(gram);
+            if (list == null) {
+                return new int[0];// 有一个三元组从未出现过，不可能有笔记包含该子串
+            }
+            lists.add(list);
+        }
+        if (lists.isEmpty()) {
+            return new int[0];
+        }
+        lists.sort(Comparator.comparingInt(PostingList::size));
+
+        // 只复制最短的列表，其余列表在它上面原地求交，避免为每个三元组复制一份倒排列表
+        int[] result = lists.get(0).docs();
+        int length = result.length;
+        for (int i = 1; i < lists.size() && length > 0; i++) {
+            length = lists.get(i).retainInto(result, length);
+        }
+        return length == result.length ? result : Arrays.copyOf(result, length);
+    }
+
+    int gramCount() {
+        return postings.size();
+    }
+
+    /**
+     * @return 升序排列的所有三元组，写入索引快照时使用。
+     */
+    long[] sortedGrams() {
+        long[] grams = new long[postings.size()];
+        int i = 0;
+        for (long gram : postings.keySet()) {
+            grams[i++] = gram;
+        }
+        Arrays.sort(grams);
+        return grams;
+    }
+
+    PostingList postings(long gram) {
+        return postings.get(gram);
+    }
+
+    // --- 从索引快照恢复：先登记笔记，再装入倒排列表，最后反推每篇笔记的三元组 ---
+
+    void restoreDocument(int doc) {
+        ensureCapacity(doc + 1);
+        docGrams[doc] = NO_GRAMS;
+    }
+
+    void restorePostings(long gram, PostingList list) {
+        postings.put(gram, list);
+    }
+
+    void finishRestore() {
+        int[] counts = new int[docGrams.length];
+        for (PostingList list : postings.values()) {
+            for (int i = 0; i < list.size(); i++) {
+                counts[list.doc(i)]++;
+            }
+        }
+        for (int doc = 0; doc < docGrams.length; doc++) {
+            if (docGrams[doc] != null && counts[doc] > 0) {
+                docGrams[doc] = new long[counts[doc]];
+                counts[doc] = 0;
+            }
+        }
+        for (Map.Entry<Long, PostingList> entry : postings.entrySet()) {
+            PostingList list = entry.getValue();
+            for (int i = 0; i < list.size(); i++) {
+                int doc = list.doc(i);
+                docGrams[doc][counts[doc]++] = entry.getKey();
+            }
+        }
+    }
+
+    void clear() {
+        postings.clear();
+        docGrams = new long[16][];
+    }
+
+    /**
+     * @return 文本中不重复的三元组，每个三元组的 3 个 char 打包成一个 long。
+     */
+    private static long[] gramsOf(String text) {
+        if (text == null || text.length() < GRAM_LENGTH) {
+            return NO_GRAMS;
+        }
+        Set<Long> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            grams.add(pack(text.charAt(i), text.charAt(i + 1), text.charAt(i + 2)));
+        }
+        long[] result = new long[grams.size()];
+        int i = 0;
+        for (long gram : grams) {
+            result[i++] = gram;
+        }
+        return result;
+    }
+
+    private static long pack(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > docGrams.length) {
+            docGrams = Arrays.copyOf(docGrams, Math.max(capacity, docGrams.length * 2));
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.ZhangRuo.pkm.service.maintenance;
+
+import com.ZhangRuo.pkm.entity.Note;
+import com.ZhangRuo.pkm.exception.FileOperationException;
+import com.ZhangRuo.pkm.repository.JsonStorageService;
+import com.ZhangRuo.pkm.repository.StorageService;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * [业务逻辑层] 备份轮换任务：把当前笔记库导出为一份带时间戳的 JSON 快照，只保留最近的若干份。
+ * 快照统一使用 notes.json 格式，无论底层是哪一种存储引擎都可以直接恢复
+ * （必要时配合 convert 命令转换回其他格式）。
+ *
+ * 备份直接遍历底层存储引擎，并在前台命令之间逐篇复制笔记：前台正在修改的笔记不会被写到一半，
+ * 延迟加载的正文也只读进副本，不会常驻在缓存层的笔记对象中。
+ */
+public class BackupRotationJob implements MaintenanceJob {
+
+    private static final String BACKUP_PREFIX = "notes-";
+    private static final String BACKUP_SUFFIX = ".json";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final StorageService storage;
+    private final File backupDir;
+    private final int keep;
+    private final long intervalMillis;
+
+    /**
+     * @param storage        要备份的底层存储引擎（不应是缓存层，否则会读到前台共享的笔记对象）。
+     * @param backupDir      备份目录。
+     * @param keep           保留的备份份数。
+     * @param intervalMillis 两次自动备份之间的间隔（毫秒）。
+     */
+    public BackupRotationJob(StorageService storage, String backupDir, int keep, long intervalMillis) {
+        if (keep <= 0) {
+            throw new IllegalArgumentException("保留的备份份数必须大于0");
+        }
+        this.storage = storage;
+        this.backupDir = new File(backupDir);
+        this.keep = keep;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public String getName() {
+        return "backup";
+    }
+
+    @Override
+    public String getDescription() {
+        return "备份笔记库并只保留最近 " + keep + " 份";
+    }
+
+    @Override
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    @Override
+    public String run(IoThrottle throttle) throws FileOperationException, InterruptedException {
+        // 1. 逐篇复制笔记，每次复制都在两条前台命令之间完成
+        List<Note> notes = new ArrayList<>();
+        try (Stream<Note> stream = storage.scan()) {
+            Iterator<Note> iterator = stream.iterator();
+            Note copy;
+            while ((copy = throttle.callUnpaused(() -> iterator.hasNext() ? iterator.next().detachedCopy() : null)) != null) {
+                notes.add(copy);
+            }
+        }
+
+        // 2. 按预算写入新的备份文件：每写出一块之前申请预算，延迟加载的正文在序列化时才读进副本
+        if (!backupDir.exists() && !backupDir.mkdirs()) {
+            throw new IllegalStateException("无法创建备份目录: " + backupDir.getPath());
+        }
+        File target = new File(backupDir, BACKUP_PREFIX + LocalDateTime.now().format(TIMESTAMP) + BACKUP_SUFFIX);
+        new JsonStorageService(target.getPath()).export(notes, throttle);
+
+        // 3. 删除超出保留份数的旧备份（文件名中的时间戳保证按名称排序即按时间排序）
+        File[] backups = backupDir.listFiles((dir, name) -> name.startsWith(BACKUP_PREFIX) && name.endsWith(BACKUP_SUFFIX));
+        int removed = 0;
+        if (backups != null && backups.length > keep) {
+            Arrays.sort(backups);
+            for (int i = 0; i < backups.length - keep; i++) {
+                if (backups[i].delete()) {
+                    removed++;
+                }
+            }
+        }
+        return "已备份 " + notes.size() + " 篇笔记到 " + target.getName() + (removed > 0 ? "，清理了 " + removed + " 份旧备份" : "");
+    }
+}
@@ -0,0 +1,74 @@
+package com.ZhangRuo.pkm.service.maintenance;
+
+import com.ZhangRuo.pkm.entity.Note;
+import com.ZhangRuo.pkm.repository.SegmentedStorageService;
+import com.ZhangRuo.pkm.repository.StorageService;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * [业务逻辑层] 校验任务：完整读一遍底层存储，尽早发现损坏的数据。
+ * 每篇笔记（包括延迟加载的正文）都会被真正读取和解码；
+ * 对分段存储，还会报告校验和不匹配而被隔离的段。
+ * 有的引擎（如日志型存储）遍历时返回的就是前台正在使用的笔记对象，
+ * 所以每篇笔记都先在前台命令之间复制一份，之后只读取副本。
+ */
+public class ChecksumScrubJob implements MaintenanceJob {
+
+    private final StorageService storage;
+    private final long intervalMillis;
+
+    /**
+     * @param storage        需要校验的底层存储引擎（不应是缓存层，否则只会读到内存副本）。
+     * @param intervalMillis 两次自动校验之间的间隔（毫秒）。
+     */
+    public ChecksumScrubJob(StorageService storage, long intervalMillis) {
+        this.storage = storage;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public String getName() {
+        return "scrub";
+    }
+
+    @Override
+    public String getDescription() {
+        return "读取并校验全部笔记数据";
+    }
+
+    @Override
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    @Override
+    public String run(IoThrottle throttle) throws InterruptedException {
+        int count = 0;
+        try (Stream<Note> notes = storage.scan()) {
+            Iterator<Note> iterator = notes.iterator();
+            Note note;
+            while ((note = throttle.callUnpaused(() -> iterator.hasNext() ? iterator.next().detachedCopy() : null)) != null) {
+                throttle.acquire(estimateBytes(note));
+                count++;
+            }
+        }
+
+        if (storage instanceof SegmentedStorageService) {
+            List<String> corrupt = ((SegmentedStorageService) storage).getCorruptSegments();
+            if (!corrupt.isEmpty()) {
+                throw new IllegalStateException("发现损坏的段: " + String.join(", ", corrupt));
+            }
+        }
+        return "已校验 " + count + " 篇笔记";
+    }
+
+    private long estimateBytes(Note note) {
+        long bytes = 64;
+        bytes += note.getTitle() != null ? note.getTitle().length() : 0;
+        bytes += note.getContent() != null ? note.getContent().length() : 0;
+        return bytes;
+    }
+}
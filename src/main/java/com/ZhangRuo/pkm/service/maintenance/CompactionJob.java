@@ -0,0 +1,46 @@
+package com.ZhangRuo.pkm.service.maintenance;
+
+import com.ZhangRuo.pkm.repository.Compactable;
+
+/**
+ * [业务逻辑层] 压缩任务：回收追加型存储引擎中被覆盖或删除的记录所占的空间。
+ */
+public class CompactionJob implements MaintenanceJob {
+
+    private final Compactable storage;
+    private final long intervalMillis;
+
+    /**
+     * @param storage        需要定期压缩的存储引擎。
+     * @param intervalMillis 两次自动压缩之间的间隔（毫秒）。
+     */
+    public CompactionJob(Compactable storage, long intervalMillis) {
+        this.storage = storage;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public String getName() {
+        return "compaction";
+    }
+
+    @Override
+    public String getDescription() {
+        return "回收存储文件中的失效空间";
+    }
+
+    @Override
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    @Override
+    public String run(IoThrottle throttle) throws InterruptedException {
+        long bytes = storage.estimateCompactionBytes();
+        if (bytes == 0) {
+            return "无需压缩";
+        }
+        // 压缩按块申请预算，前台命令执行期间会停在两块数据之间
+        return storage.compactNow(throttle) ? "已压缩，约处理 " + bytes + " 字节" : "另一次压缩正在进行，已跳过";
+    }
+}
@@ -0,0 +1,49 @@
+package com.ZhangRuo.pkm.service.maintenance;
+
+import com.ZhangRuo.pkm.service.index.NoteIndex;
+
+import java.io.IOException;
+
+/**
+ * [业务逻辑层] 索引快照任务：把会话中增量写入索引的变化写成新的磁盘快照，
+ * 下一次启动（包括单条命令模式）即可直接装入，而不必重新分析这些笔记。
+ */
+public class IndexSnapshotJob implements MaintenanceJob {
+
+    private final NoteIndex noteIndex;
+    private final long intervalMillis;
+
+    /**
+     * @param noteIndex      需要定期持久化的索引。
+     * @param intervalMillis 两次自动写出之间的间隔（毫秒）。
+     */
+    public IndexSnapshotJob(NoteIndex noteIndex, long intervalMillis) {
+        this.noteIndex = noteIndex;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public String getName() {
+        return "index-snapshot";
+    }
+
+    @Override
+    public String getDescription() {
+        return "把内存索引的变化写入磁盘快照";
+    }
+
+    @Override
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    @Override
+    public String run(IoThrottle throttle) throws IOException, InterruptedException {
+        // 快照在内存中编码后按块写盘，每一块之前申请预算
+        long bytes = noteIndex.flushSnapshot(throttle);
+        if (bytes == 0) {
+            return "索引没有变化";
+        }
+        return "已写入索引快照，共 " + bytes + " 字节";
+    }
+}
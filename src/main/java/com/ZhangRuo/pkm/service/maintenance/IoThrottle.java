@@ -0,0 +1,120 @@
+package com.ZhangRuo.pkm.service.maintenance;
+
+import com.ZhangRuo.pkm.repository.IoBudget;
+
+import java.util.function.Supplier;
+
+/**
+ * [业务逻辑层] 维护任务的 I/O 预算（令牌桶）。
+ *
+ * 维护任务在每读写一块数据（最多 IoBudget.CHUNK_BYTES 字节）之前调用 acquire 申请相应的字节数；
+ * 预算按固定速率补充，最多积攒一秒的额度，不够这一块时调用方会被阻塞，直到预算补足为止。
+ * 超过桶容量的申请按桶容量分段等待，不会透支。
+ *
+ * 暂停期间预算为零：所有 acquire 调用都会阻塞到 resume 为止，
+ * 这样前台命令执行时，正在进行的维护任务会停在下一个 I/O 检查点上。
+ *
+ * 维护任务需要读取前台也在使用的对象（例如缓存中的笔记）时，通过 callUnpaused 执行这一小段读取：
+ * 它与 pause 互斥，前台命令开始之后不会再有维护任务读到正在被修改的对象。
+ */
+public class IoThrottle implements IoBudget {
+
+    private final long bytesPerSecond;
+
+    private double tokens;
+    private long lastRefillNanos;
+    private boolean paused = false;
+    private long throttledMillis = 0L;
+
+    /**
+     * @param bytesPerSecond 每秒允许维护任务读写的字节数。
+     */
+    public IoThrottle(long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("I/O 预算必须大于0");
+        }
+        this.bytesPerSecond = bytesPerSecond;
+        this.tokens = bytesPerSecond;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * 申请读写指定字节数的预算，必要时阻塞；预算足够这一段之前不会放行，每一段之前都会检查暂停。
+     *
+     * @param bytes 即将读写的字节数。
+     * @throws InterruptedException 等待期间线程被中断（例如调度器关闭）。
+     */
+    @Override
+    public synchronized void acquire(long bytes) throws InterruptedException {
+        long remaining = bytes;
+        while (remaining > 0) {
+            while (paused) {
+                wait();
+            }
+            refill();
+            long chunk = Math.min(remaining, bytesPerSecond);
+            if (tokens >= chunk) {
+                tokens -= chunk;
+                remaining -= chunk;
+                continue;
+            }
+            long waitMillis = Math.max(1L, (long) Math.ceil((chunk - tokens) * 1000.0 / bytesPerSecond));
+            long start = System.currentTimeMillis();
+            wait(waitMillis);
+            throttledMillis += System.currentTimeMillis() - start;
+        }
+    }
+
+    /**
+     * 在未暂停时执行一小段读取共享对象的操作（例如复制一篇笔记），暂停期间先等待 resume。
+     * 执行期间持有本对象的锁，pause() 要等它执行完才能返回，所以操作必须很短，且不能申请预算。
+     *
+     * @param action 要执行的操作。
+     * @return 操作的返回值。
+     * @throws InterruptedException 等待 resume 期间线程被中断。
+     */
+    public synchronized <T> T callUnpaused(Supplier<T> action) throws InterruptedException {
+        while (paused) {
+            wait();
+        }
+        return action.get();
+    }
+
+    /**
+     * 暂停：之后所有的 acquire 调用都会阻塞，直到 resume。
+     * 正在 callUnpaused 中执行的操作会先执行完。
+     */
+    public synchronized void pause() {
+        paused = true;
+    }
+
+    /**
+     * 恢复发放预算，唤醒所有等待中的维护任务。
+     */
+    public synchronized void resume() {
+        paused = false;
+        lastRefillNanos = System.nanoTime();
+        notifyAll();
+    }
+
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * @return 维护任务因预算不足而累计等待的毫秒数（不含暂停时间）。
+     */
+    public synchronized long getThrottledMillis() {
+        return throttledMillis;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(bytesPerSecond, tokens + (now - lastRefillNanos) / 1e9 * bytesPerSecond);
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,33 @@
+package com.ZhangRuo.pkm.service.maintenance;
+
+/*
+* 定义了一个后台维护任务的统一接口
+* 任务由 MaintenanceScheduler 在低优先级的后台线程上按固定间隔执行，
+* 每次读写磁盘之前都应通过 IoThrottle 申请预算
+* */
+
+public interface MaintenanceJob {
+
+    /*
+    * @return 任务名称，用于 maintenance 命令中指定任务
+    * */
+    String getName();
+
+    /*
+    * @return 任务的简短描述
+    * */
+    String getDescription();
+
+    /*
+    * @return 两次自动执行之间的间隔（毫秒）
+    * */
+    long getIntervalMillis();
+
+    /*
+    * 执行一次任务
+    * @param throttle 维护任务共享的 I/O 预算
+    * @return 本次执行结果的简短描述，显示在 maintenance 命令的输出中
+    * @throws InterruptedException 等待 I/O 预算时线程被中断
+    * */
+    String run(IoThrottle throttle) throws Exception;
+}
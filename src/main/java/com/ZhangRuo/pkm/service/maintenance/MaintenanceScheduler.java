@@ -0,0 +1,304 @@
+package com.ZhangRuo.pkm.service.maintenance;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * [业务逻辑层] 后台维护任务调度器。
+ *
+ * 所有维护任务（压缩、校验、备份轮换等）在同一个最低优先级的守护线程上依次执行，
+ * 共享一个 IoThrottle 作为 I/O 预算。前台命令执行期间调度器处于暂停状态：
+ * 不会开始新的任务，正在执行的任务也会停在它的下一个 I/O 检查点上，直到命令结束。
+ */
+public class MaintenanceScheduler {
+
+    /**
+     * 任务的运行状态。
+     */
+    public enum State {
+        IDLE("等待中"),
+        RUNNING("运行中"),
+        PAUSED("已暂停");
+
+        private final String displayName;
+
+        State(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    /**
+     * 某个任务在某一时刻的状态快照，供 maintenance 命令展示。
+     */
+    public static class JobStatus {
+        private final String name;
+        private final String description;
+        private final State state;
+        private final LocalDateTime lastRun;
+        private final long lastDurationMillis;
+        private final String lastResult;
+        private final boolean lastFailed;
+        private final LocalDateTime nextRun;
+        private final int runCount;
+        private final int failureCount;
+
+        JobStatus(ScheduledJob job, State state) {
+            this.name = job.job.getName();
+            this.description = job.job.getDescription();
+            this.state = state;
+            this.lastRun = job.lastRun;
+            this.lastDurationMillis = job.lastDurationMillis;
+            this.lastResult = job.lastResult;
+            this.lastFailed = job.lastFailed;
+            this.nextRun = job.nextRun;
+            this.runCount = job.runCount;
+            this.failureCount = job.failureCount;
+        }
+
+        public String getName() { return name; }
+        public String getDescription() { return description; }
+        public State getState() { return state; }
+        public LocalDateTime getLastRun() { return lastRun; }
+        public long getLastDurationMillis() { return lastDurationMillis; }
+        public String getLastResult() { return lastResult; }
+        public boolean isLastFailed() { return lastFailed; }
+        public LocalDateTime getNextRun() { return nextRun; }
+        public int getRunCount() { return runCount; }
+        public int getFailureCount() { return failureCount; }
+    }
+
+    /**
+     * 调度器内部对任务的登记信息。
+     */
+    private static class ScheduledJob {
+        final MaintenanceJob job;
+        LocalDateTime nextRun;
+        LocalDateTime lastRun;
+        long lastDurationMillis;
+        String lastResult;
+        boolean lastFailed;
+        int runCount;
+        int failureCount;
+
+        ScheduledJob(MaintenanceJob job, LocalDateTime nextRun) {
+            this.job = job;
+            this.nextRun = nextRun;
+        }
+    }
+
+    private final IoThrottle throttle;
+    private final Map<String, ScheduledJob> jobs = new LinkedHashMap<>();
+
+    private Thread worker;
+    private boolean running = false;
+    private boolean paused = false;
+    private ScheduledJob current;
+
+    /**
+     * @param throttle 所有维护任务共享的 I/O 预算。
+     */
+    public MaintenanceScheduler(IoThrottle throttle) {
+        this.throttle = throttle;
+    }
+
+    /**
+     * 登记一个任务，它的第一次自动执行安排在一个间隔之后，避免与启动时的加载争抢磁盘。
+     */
+    public synchronized void register(MaintenanceJob job) {
+        jobs.put(job.getName().toLowerCase(), new ScheduledJob(job,
+                LocalDateTime.now().plusNanos(job.getIntervalMillis() * 1_000_000L)));
+        notifyAll();
+    }
+
+    /**
+     * 启动后台线程。重复调用没有副作用。
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::runLoop, "pkm-maintenance");
+        worker.setDaemon(true);
+        worker.setPriority(Thread.MIN_PRIORITY);
+        worker.start();
+    }
+
+    /**
+     * 停止后台线程，并等待正在执行的任务结束（最多等待 timeoutMillis 毫秒）。
+     */
+    public void shutdown(long timeoutMillis) {
+        Thread toJoin;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            toJoin = worker;
+            notifyAll();
+        }
+        // 任务可能阻塞在暂停或预算不足上，恢复并中断它，让它尽快退出
+        throttle.resume();
+        toJoin.interrupt();
+        try {
+            toJoin.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 暂停：不再开始新的任务，正在执行的任务停在下一个 I/O 检查点上。
+     * 由 CommandParser 在每条命令执行之前调用。
+     */
+    public void pause() {
+        synchronized (this) {
+            paused = true;
+        }
+        throttle.pause();
+    }
+
+    /**
+     * 恢复执行被暂停的任务。由 CommandParser 在每条命令执行之后调用。
+     */
+    public void resume() {
+        synchronized (this) {
+            paused = false;
+            notifyAll();
+        }
+        throttle.resume();
+    }
+
+    /**
+     * 把指定任务安排为立即执行（调度器暂停时会在恢复后执行）。
+     * @return 找不到该任务时返回 false。
+     */
+    public synchronized boolean runNow(String name) {
+        ScheduledJob job = name != null ? jobs.get(name.toLowerCase()) : null;
+        if (job == null) {
+            return false;
+        }
+        job.nextRun = LocalDateTime.now();
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * @return 所有任务的状态快照，按登记顺序排列。
+     */
+    public synchronized List<JobStatus> getStatuses() {
+        List<JobStatus> statuses = new ArrayList<>();
+        for (ScheduledJob job : jobs.values()) {
+            State state;
+            if (job == current) {
+                state = paused ? State.PAUSED : State.RUNNING;
+            } else {
+                state = State.IDLE;
+            }
+            statuses.add(new JobStatus(job, state));
+        }
+        return statuses;
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    public IoThrottle getThrottle() {
+        return throttle;
+    }
+
+    // --- 后台线程 ---
+
+    private void runLoop() {
+        while (true) {
+            ScheduledJob job;
+            try {
+                job = awaitNextJob();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (job == null) {
+                return;
+            }
+            if (!execute(job)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 等待到下一个任务到期且调度器未暂停。
+     * @return 要执行的任务；调度器被关闭时返回 null。
+     */
+    private synchronized ScheduledJob awaitNextJob() throws InterruptedException {
+        while (running) {
+            ScheduledJob due = null;
+            for (ScheduledJob job : jobs.values()) {
+                if (due == null || job.nextRun.isBefore(due.nextRun)) {
+                    due = job;
+                }
+            }
+            if (due == null) {
+                wait();
+                continue;
+            }
+            long waitMillis = Duration.between(LocalDateTime.now(), due.nextRun).toMillis();
+            if (paused || waitMillis > 0) {
+                wait(paused ? 0 : waitMillis);
+                continue;
+            }
+            current = due;
+            return due;
+        }
+        return null;
+    }
+
+    /**
+     * 执行一个任务并记录结果。
+     * @return 如果线程在执行期间被中断（调度器关闭），返回 false。
+     */
+    private boolean execute(ScheduledJob job) {
+        long start = System.currentTimeMillis();
+        String result;
+        boolean failed = false;
+        boolean interrupted = false;
+        try {
+            result = job.job.run(throttle);
+        } catch (InterruptedException e) {
+            result = "已中断";
+            interrupted = true;
+        } catch (Exception e) {
+            result = e.getMessage();
+            failed = true;
+        }
+
+        synchronized (this) {
+            job.lastRun = LocalDateTime.ofInstant(Instant.ofEpochMilli(start), ZoneId.systemDefault());
+            job.lastDurationMillis = System.currentTimeMillis() - start;
+            job.lastResult = result;
+            job.lastFailed = failed;
+            job.runCount++;
+            if (failed) {
+                job.failureCount++;
+            }
+            job.nextRun = LocalDateTime.now().plusNanos(job.job.getIntervalMillis() * 1_000_000L);
+            current = null;
+        }
+        return !interrupted && !Thread.currentThread().isInterrupted();
+    }
+}
@@ -0,0 +1,52 @@
+package com.ZhangRuo.pkm.service.query;
+
+/*
+* 定义了查询规划器可以为一个条件选择的访问路径
+* */
+
+public enum AccessPath {
+    /*
+    * 标签位图：直接取标签的位图，多个标签之间做位运算
+    * */
+    TAG_BITMAP("标签位图"),
+
+    /*
+    * 词项倒排列表/三元组索引求出候选，再对候选做最终校验
+    * */
+    TERM_POSTINGS("倒排索引"),
+
+    /*
+    * 短语和邻近查询：对各词项的倒排列表求交，再比对词项在笔记中的位置
+    * */
+    POSITIONS("位置索引"),
+
+    /*
+    * 日期条件：在按时间排序的时间索引上二分查找区间的两端
+    * */
+    DATE_INDEX("时间索引"),
+
+    /*
+    * 对若干个子条件的结果做位图合并（AND 求交、OR 求并、NOT 求差）
+    * */
+    BITMAP_MERGE("位图合并"),
+
+    /*
+    * 在已经求出的候选笔记上逐篇判断
+    * */
+    FILTER("候选过滤"),
+
+    /*
+    * 没有可用的索引，在多个线程上逐篇判断所有笔记
+    * */
+    PARALLEL_SCAN("并行全量扫描");
+
+    private final String displayName;
+
+    AccessPath(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,75 @@
+package com.ZhangRuo.pkm.service.query;
+
+import com.ZhangRuo.pkm.service.index.IndexView;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * [业务逻辑层] 条件1 AND 条件2 ... —— 同时满足所有子条件（相邻的条件之间省略 AND 也表示 AND）。
+ * 子条件的求值顺序和方式由 QueryPlanner 决定。
+ */
+public class AndNode extends QueryNode {
+
+    private final List<QueryNode> children;
+
+    public AndNode(List<QueryNode> children) {
+        this.children = List.copyOf(children);
+    }
+
+    public List<QueryNode> getChildren() {
+        return children;
+    }
+
+    /**
+     * 只要有一个非 NOT 的子条件可以用索引求值，就能先用它缩小范围，再处理其余子条件。
+     */
+    @Override
+    public boolean isIndexable() {
+        for (QueryNode child : children) {
+            if (!(child instanceof NotNode) && child.isIndexable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int estimate(IndexView view) {
+        int estimate = view.liveCount();
+        for (QueryNode child : children) {
+            if (!(child instanceof NotNode)) {
+                estimate = Math.min(estimate, child.estimate(view));
+            }
+        }
+        return estimate;
+    }
+
+    @Override
+    public BitSet evaluate(IndexView view) {
+        return QueryPlanner.evaluateAnd(this, view, null, 0);
+    }
+
+    @Override
+    public boolean matches(IndexView view, int ordinal) {
+        for (QueryNode child : children) {
+            if (!child.matches(view, ordinal)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void collectKeywords(List<String> keywords) {
+        for (QueryNode child : children) {
+            child.collectKeywords(keywords);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return children.stream().map(QueryNode::toString).collect(Collectors.joining(" AND ", "(", ")"));
+    }
+}
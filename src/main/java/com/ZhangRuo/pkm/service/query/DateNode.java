@@ -0,0 +1,138 @@
+package com.ZhangRuo.pkm.service.query;
+
+import com.ZhangRuo.pkm.entity.Note;
+import com.ZhangRuo.pkm.enums.DateField;
+import com.ZhangRuo.pkm.service.index.IndexView;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.BitSet;
+
+/**
+ * [业务逻辑层] created:/updated: 日期条件，例如 created:>2024-01-01、updated:<=2024-06-30、created:2024-03-15。
+ * 条件被换算为半开区间 [from, to)，任一端为 null 表示不限。
+ * 求值是有序时间索引上的一次范围查找，命中数在代价估计时就已精确求出。
+ */
+public class DateNode extends QueryNode {
+
+    /**
+     * 日期条件作用的字段。
+     */
+    public enum Field {
+        CREATED("created", DateField.CREATED),
+        UPDATED("updated", DateField.UPDATED);
+
+        private final String keyword;
+        private final DateField dateField;
+
+        Field(String keyword, DateField dateField) {
+            this.keyword = keyword;
+            this.dateField = dateField;
+        }
+
+        public String getKeyword() {
+            return keyword;
+        }
+
+        /**
+         * @return 对应的笔记时间字段，用于访问时间索引。
+         */
+        public DateField getDateField() {
+            return dateField;
+        }
+    }
+
+    private final Field field;
+    private final String operator;
+    private final LocalDate date;
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+
+    /**
+     * @param field    作用的字段。
+     * @param operator 比较符：">"、">="、"<"、"<=" 或 "="。
+     * @param date     比较的日期。
+     */
+    public DateNode(Field field, String operator, LocalDate date) {
+        this.field = field;
+        this.operator = operator;
+        this.date = date;
+        LocalDateTime dayStart = date.atStartOfDay();
+        LocalDateTime nextDayStart = date.plusDays(1).atStartOfDay();
+        switch (operator) {
+            case ">":
+                from = nextDayStart;
+                to = null;
+                break;
+            case ">=":
+                from = dayStart;
+                to = null;
+                break;
+            case "<":
+                from = null;
+                to = dayStart;
+                break;
+            case "<=":
+                from = null;
+                to = nextDayStart;
+                break;
+            case "=":
+                from = dayStart;
+                to = nextDayStart;
+                break;
+            default:
+                throw new IllegalArgumentException("不支持的日期比较符: " + operator);
+        }
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * @return 区间下界（含），不限时为 null。
+     */
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    /**
+     * @return 区间上界（不含），不限时为 null。
+     */
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    @Override
+    public boolean isIndexable() {
+        return true;
+    }
+
+    @Override
+    public int estimate(IndexView view) {
+        return view.countTime(field.getDateField(), from, to);
+    }
+
+    @Override
+    public BitSet evaluate(IndexView view) {
+        return view.timeDocs(field.getDateField(), from, to);
+    }
+
+    @Override
+    public boolean matches(IndexView view, int ordinal) {
+        Note note = view.note(ordinal);
+        if (note == null) {
+            return false;
+        }
+        LocalDateTime value = field == Field.CREATED ? note.getCreatedAt() : note.getUpdatedAt();
+        if (value == null) {
+            return false;
+        }
+        return (from == null || !value.isBefore(from)) && (to == null || value.isBefore(to));
+    }
+
+    @Override
+    public String toString() {
+        return field.getKeyword() + ":" + ("=".equals(operator) ? "" : operator) + date;
+    }
+}
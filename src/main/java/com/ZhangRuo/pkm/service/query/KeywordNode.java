@@ -0,0 +1,53 @@
+package com.ZhangRuo.pkm.service.query;
+
+import com.ZhangRuo.pkm.service.index.IndexView;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * [业务逻辑层] 关键词或带引号的短语 —— 标题或正文包含它（不区分大小写的子串）。
+ * 通过词项倒排/三元组索引求出候选，再做最终校验。
+ */
+public class KeywordNode extends QueryNode {
+
+    private final String keyword;
+
+    public KeywordNode(String keyword) {
+        this.keyword = keyword;
+    }
+
+    public String getKeyword() {
+        return keyword;
+    }
+
+    @Override
+    public boolean isIndexable() {
+        return true;
+    }
+
+    @Override
+    public int estimate(IndexView view) {
+        return view.estimateKeyword(keyword);
+    }
+
+    @Override
+    public BitSet evaluate(IndexView view) {
+        return view.keywordDocs(keyword);
+    }
+
+    @Override
+    public boolean matches(IndexView view, int ordinal) {
+        return view.matchesKeyword(ordinal, keyword);
+    }
+
+    @Override
+    public void collectKeywords(List<String> keywords) {
+        keywords.add(keyword);
+    }
+
+    @Override
+    public String toString() {
+        return "\"" + keyword + "\"";
+    }
+}
@@ -0,0 +1,69 @@
+package com.ZhangRuo.pkm.service.query;
+
+import com.ZhangRuo.pkm.service.index.IndexView;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * [业务逻辑层] 左 NEAR/k 右 —— 两个关键词或短语出现在同一字段中，且相隔不超过 k 个词项（前后顺序不限）。
+ * 相邻时间隔为 0；中文按字计算位置。通过位置倒排列表求值和校验。
+ */
+public class NearNode extends QueryNode {
+
+    private final String left;
+    private final String right;
+    private final int distance;
+
+    public NearNode(String left, String right, int distance) {
+        if (distance < 0) {
+            throw new IllegalArgumentException("NEAR 的距离不能为负数: " + distance);
+        }
+        this.left = left;
+        this.right = right;
+        this.distance = distance;
+    }
+
+    public String getLeft() {
+        return left;
+    }
+
+    public String getRight() {
+        return right;
+    }
+
+    public int getDistance() {
+        return distance;
+    }
+
+    @Override
+    public boolean isIndexable() {
+        return true;
+    }
+
+    @Override
+    public int estimate(IndexView view) {
+        return Math.min(view.estimatePhrase(left), view.estimatePhrase(right));
+    }
+
+    @Override
+    public BitSet evaluate(IndexView view) {
+        return view.nearDocs(left, right, distance);
+    }
+
+    @Override
+    public boolean matches(IndexView view, int ordinal) {
+        return view.matchesNear(ordinal, left, right, distance);
+    }
+
+    @Override
+    public void collectKeywords(List<String> keywords) {
+        keywords.add(left);
+        keywords.add(right);
+    }
+
+    @Override
+    public String toString() {
+        return "\"" + left + "\" NEAR/" + distance + " \"" + right + "\"";
+    }
+}
@@ -0,0 +1,49 @@
+package com.ZhangRuo.pkm.service.query;
+
+import com.ZhangRuo.pkm.service.index.IndexView;
+
+import java.util.BitSet;
+
+/**
+ * [业务逻辑层] -条件 或 NOT 条件 —— 不满足子条件的笔记。
+ * 在 AND 之下时由 QueryPlanner 直接做差集；单独出现时以所有笔记为全集。
+ */
+public class NotNode extends QueryNode {
+
+    private final QueryNode child;
+
+    public NotNode(QueryNode child) {
+        this.child = child;
+    }
+
+    public QueryNode getChild() {
+        return child;
+    }
+
+    @Override
+    public boolean isIndexable() {
+        return child.isIndexable();
+    }
+
+    @Override
+    public int estimate(IndexView view) {
+        return Math.max(0, view.liveCount() - child.estimate(view));
+    }
+
+    @Override
+    public BitSet evaluate(IndexView view) {
+        BitSet result = view.allDocs();
+        result.andNot(child.evaluate(view));
+        return result;
+    }
+
+    @Override
+    public boolean matches(IndexView view, int ordinal) {
+        return view.note(ordinal) != null && !child.matches(view, ordinal);
+    }
+
+    @Override
+    public String toString() {
+        return "-" + child;
+    }
+}
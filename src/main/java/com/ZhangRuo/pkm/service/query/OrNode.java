@@ -0,0 +1,74 @@
+package com.ZhangRuo.pkm.service.query;
+
+import com.ZhangRuo.pkm.service.index.IndexView;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * [业务逻辑层] 条件1 OR 条件2 ... —— 满足任意一个子条件。
+ * 所有子条件都能用索引求值时取并集，否则只能逐篇判断。
+ */
+public class OrNode extends QueryNode {
+
+    private final List<QueryNode> children;
+
+    public OrNode(List<QueryNode> children) {
+        this.children = List.copyOf(children);
+    }
+
+    public List<QueryNode> getChildren() {
+        return children;
+    }
+
+    @Override
+    public boolean isIndexable() {
+        for (QueryNode child : children) {
+            if (!child.isIndexable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int estimate(IndexView view) {
+        long sum = 0;
+        for (QueryNode child : children) {
+            sum += child.estimate(view);
+        }
+        return (int) Math.min(sum, view.liveCount());
+    }
+
+    @Override
+    public BitSet evaluate(IndexView view) {
+        BitSet result = new BitSet();
+        for (QueryNode child : children) {
+            result.or(child.evaluate(view));
+        }
+        return result;
+    }
+
+    @Override
+    public boolean matches(IndexView view, int ordinal) {
+        for (QueryNode child : children) {
+            if (child.matches(view, ordinal)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void collectKeywords(List<String> keywords) {
+        for (QueryNode child : children) {
+            child.collectKeywords(keywords);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return children.stream().map(QueryNode::toString).collect(Collectors.joining(" OR ", "(", ")"));
+    }
+}
@@ -0,0 +1,53 @@
+package com.ZhangRuo.pkm.service.query;
+
+import com.ZhangRuo.pkm.service.index.IndexView;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * [业务逻辑层] 带引号的多词短语 —— 短语的词项在标题或正文中按原来的顺序相邻出现。
+ * 通过位置倒排列表求值和校验，不读取笔记原文。
+ */
+public class PhraseNode extends QueryNode {
+
+    private final String phrase;
+
+    public PhraseNode(String phrase) {
+        this.phrase = phrase;
+    }
+
+    public String getPhrase() {
+        return phrase;
+    }
+
+    @Override
+    public boolean isIndexable() {
+        return true;
+    }
+
+    @Override
+    public int estimate(IndexView view) {
+        return view.estimatePhrase(phrase);
+    }
+
+    @Override
+    public BitSet evaluate(IndexView view) {
+        return view.phraseDocs(phrase);
+    }
+
+    @Override
+    public boolean matches(IndexView view, int ordinal) {
+        return view.matchesPhrase(ordinal, phrase);
+    }
+
+    @Override
+    public void collectKeywords(List<String> keywords) {
+        keywords.add(phrase);
+    }
+
+    @Override
+    public String toString() {
+        return "\"" + phrase + "\"";
+    }
+}
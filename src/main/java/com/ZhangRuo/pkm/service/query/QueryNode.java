@@ -0,0 +1,52 @@
+package com.ZhangRuo.pkm.service.query;
+
+import com.ZhangRuo.pkm.service.index.IndexView;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * [业务逻辑层] 结构化查询的语法树节点。
+ *
+ * 每个节点都能用两种方式求值，由 QueryPlanner 根据代价估计选择：
+ * 1. evaluate：通过索引（标签位图、词项倒排/三元组索引）一次求出所有命中的笔记；
+ * 2. matches：对单篇笔记逐篇判断，用于在已经很小的候选集合上过滤，或在没有可用索引时做全量扫描。
+ */
+public abstract class QueryNode {
+
+    /**
+     * @return 该节点能否直接通过索引求值。
+     */
+    public abstract boolean isIndexable();
+
+    /**
+     * 估计命中的笔记数量。只读取计数器和倒排列表的长度，不读取笔记原文。
+     */
+    public abstract int estimate(IndexView view);
+
+    /**
+     * 求出所有命中的笔记序号。可索引的节点覆盖它，通过索引一次求出；
+     * 默认实现在全部笔记上逐篇调用 matches（由 ScanEngine 并行执行），
+     * 不可索引的节点出现在 OR 或 NOT 之下时也能被求值。
+     */
+    public BitSet evaluate(IndexView view) {
+        return ScanEngine.shared().scan(view.allDocs(), ordinal -> matches(view, ordinal));
+    }
+
+    /**
+     * 判断单篇笔记是否命中，不使用索引。
+     */
+    public abstract boolean matches(IndexView view, int ordinal);
+
+    /**
+     * 收集节点中所有不在 NOT 之下的关键词，用于结果的相关度排序。
+     */
+    public void collectKeywords(List<String> keywords) {
+    }
+
+    /**
+     * @return 节点的查询语句形式，用于 --explain 的输出。
+     */
+    @Override
+    public abstract String toString();
+}
@@ -0,0 +1,346 @@
+package com.ZhangRuo.pkm.service.query;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * [业务逻辑层] 结构化查询语句的解析器。
+ *
+ * 语法（关键字 AND/OR/NOT 不区分大小写）：
+ * <pre>
+ *   查询   := 或条件
+ *   或条件 := 与条件 ( OR 与条件 )*
+ *   与条件 := 邻近 ( [AND] 邻近 )*          相邻的条件之间省略 AND 也表示 AND
+ *   邻近   := 一元 [ NEAR/k 一元 ]            两侧必须是关键词或短语
+ *   一元   := ( "-" | NOT ) 一元 | "(" 查询 ")" | 原子
+ *   原子   := tag:名称 | created:[比较符]日期 | updated:[比较符]日期 | re:正则 | 关键词 | "带引号的短语"
+ * </pre>
+ * 比较符为 &gt;、&gt;=、&lt;、&lt;=，省略时表示当天；日期格式为 yyyy-MM-dd。
+ * 带引号且含有空白的内容是短语（词项按顺序相邻出现），不含空白时仍是不区分大小写的子串。
+ * 命令行参数已经去掉了引号：只有一个参数时，它即使含有空白也按原来的子串语义搜索（"ips an" 能命中 "tips and"），
+ * 需要短语时把引号本身也传进来（search '"event sourcing"'）；多个参数组成的查询中，含空白的参数才是短语。
+ * 例如：tag:java AND "设计模式" created:&gt;2024-01-01 -tag:draft
+ *      "event sourcing" OR cqrs NEAR/3 "read model"
+ */
+public class QueryParser {
+
+    private static final Pattern NEAR = Pattern.compile("(?i)NEAR/(\\d+)");
+
+    private final List<String> tokens;
+    private final List<Boolean> quoted;
+    private int position = 0;
+
+    private QueryParser(List<String> tokens, List<Boolean> quoted) {
+        this.tokens = tokens;
+        this.quoted = quoted;
+    }
+
+    /**
+     * 解析一条完整的查询语句，双引号内的内容作为一个短语。
+     *
+     * @throws IllegalArgumentException 语法错误时抛出，消息说明错误的位置。
+     */
+    public static QueryNode parse(String query) {
+        List<String> tokens = new ArrayList<>();
+        List<Boolean> quoted = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (c == '"') {
+                int end = query.indexOf('"', i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("引号没有闭合: " + query.substring(i));
+                }
+                if (current.length() > 0) {
+                    // 形如 tag:"设计 模式" 的写法，引号内容是前缀的值
+                    current.append(query, i + 1, end);
+                    tokens.add(current.toString());
+                    quoted.add(false);
+                    current.setLength(0);
+                } else {
+                    tokens.add(query.substring(i + 1, end));
+                    quoted.add(true);
+                }
+                i = end + 1;
+            } else if (Character.isWhitespace(c) || ((c == '(' || c == ')') && !isRegexToken(current))) {
+                if (current.length() > 0) {
+                    tokens.add(current.toString());
+                    quoted.add(false);
+                    current.setLength(0);
+                }
+                if (c == '(' || c == ')') {
+                    tokens.add(String.valueOf(c));
+                    quoted.add(false);
+                }
+                i++;
+            } else {
+                current.append(c);
+                i++;
+            }
+        }
+        if (current.length() > 0) {
+            tokens.add(current.toString());
+            quoted.add(false);
+        }
+        return new QueryParser(tokens, quoted).parseQuery();
+    }
+
+    /**
+     * 解析已经由命令行切分好的参数（命令行解析时已经去掉了引号）：
+     * 1. 仍然带着一对双引号的参数是短语；
+     * 2. 只有一个含空白的参数时，它是子串关键词，与普通搜索的语义一致；
+     * 3. 多个参数中含有空白的参数视为带引号的短语，其余参数再按括号切分。
+     */
+    public static QueryNode parse(List<String> args) {
+        if (args.size() == 1 && isPlainText(args.get(0))) {
+            return new KeywordNode(args.get(0));
+        }
+        List<String> tokens = new ArrayList<>();
+        List<Boolean> quoted = new ArrayList<>();
+        for (int index = 0; index < args.size(); index++) {
+            String arg = args.get(index);
+            if (isLiteralQuoted(arg)) {
+                tokens.add(arg.substring(1, arg.length() - 1));
+                quoted.add(true);
+                continue;
+            }
+            if (arg.endsWith(":") && index + 1 < args.size()) {
+                // 命令行把 tag:"设计 模式" 切成了 "tag:" 和 "设计 模式" 两个参数，这里拼回去
+                tokens.add(arg + args.get(++index));
+                quoted.add(false);
+                continue;
+            }
+            if (arg.chars().anyMatch(Character::isWhitespace)) {
+                tokens.add(arg);
+                quoted.add(true);
+                continue;
+            }
+            if (isRegexToken(arg)) {
+                // 正则中的括号属于正则本身
+                tokens.add(arg);
+                quoted.add(false);
+                continue;
+            }
+            int start = 0;
+            int end = arg.length();
+            while (start < end && arg.charAt(start) == '(') {
+                tokens.add("(");
+                quoted.add(false);
+                start++;
+            }
+            int closing = 0;
+            while (end > start && arg.charAt(end - 1) == ')') {
+                closing++;
+                end--;
+            }
+            if (start < end) {
+                tokens.add(arg.substring(start, end));
+                quoted.add(false);
+            }
+            for (int i = 0; i < closing; i++) {
+                tokens.add(")");
+                quoted.add(false);
+            }
+        }
+        return new QueryParser(tokens, quoted).parseQuery();
+    }
+
+    /**
+     * 判断命令行参数是否使用了结构化查询语法（字段前缀、布尔运算符、括号、否定或多词短语）。
+     * 不是结构化查询的参数按原来的方式作为一个普通关键词搜索。
+     */
+    public static boolean isStructured(List<String> args) {
+        if (args.size() > 1) {
+            return true;
+        }
+        for (String arg : args) {
+            if (isLiteralQuoted(arg)) {
+                return true;// 引号本身也传了进来，明确要求短语
+            }
+            if (isPlainText(arg)) {
+                return false;// 单独一个含空白的参数仍是子串搜索
+            }
+            String lower = arg.toLowerCase();
+            if (lower.startsWith("tag:") || lower.startsWith("created:") || lower.startsWith("updated:")
+                    || lower.startsWith("re:") || lower.startsWith("-") || lower.startsWith("(")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isPlainText(String arg) {
+        return arg.chars().anyMatch(Character::isWhitespace) && !arg.isBlank() && !isLiteralQuoted(arg);
+    }
+
+    private static boolean isLiteralQuoted(String arg) {
+        return arg.length() >= 2 && arg.startsWith("\"") && arg.endsWith("\"");
+    }
+
+    private static boolean isRegexToken(CharSequence token) {
+        return token.length() >= 3 && token.subSequence(0, 3).toString().equalsIgnoreCase("re:");
+    }
+
+    // --- 递归下降 ---
+
+    private QueryNode parseQuery() {
+        if (tokens.isEmpty()) {
+            throw new IllegalArgumentException("查询语句为空");
+        }
+        QueryNode node = parseOr();
+        if (position < tokens.size()) {
+            throw new IllegalArgumentException("无法识别的内容: '" + tokens.get(position) + "'");
+        }
+        return node;
+    }
+
+    private QueryNode parseOr() {
+        List<QueryNode> children = new ArrayList<>();
+        children.add(parseAnd());
+        while (isKeyword("OR")) {
+            position++;
+            children.add(parseAnd());
+        }
+        return children.size() == 1 ? children.get(0) : new OrNode(children);
+    }
+
+    private QueryNode parseAnd() {
+        List<QueryNode> children = new ArrayList<>();
+        children.add(parseNear());
+        while (position < tokens.size() && !isKeyword("OR") && !isSymbol(")")) {
+            if (isKeyword("AND")) {
+                position++;
+            }
+            children.add(parseNear());
+        }
+        return children.size() == 1 ? children.get(0) : new AndNode(children);
+    }
+
+    private QueryNode parseNear() {
+        QueryNode left = parseUnary();
+        if (!isNear()) {
+            return left;
+        }
+        Matcher matcher = NEAR.matcher(tokens.get(position));
+        matcher.matches();
+        int distance;
+        try {
+            distance = Integer.parseInt(matcher.group(1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("NEAR 的距离过大: " + matcher.group(1));
+        }
+        position++;
+        QueryNode right = parseUnary();
+        if (isNear()) {
+            throw new IllegalArgumentException("不支持连续的 NEAR，请用 AND 连接多个 NEAR 条件");
+        }
+        return new NearNode(textOf(left), textOf(right), distance);
+    }
+
+    /**
+     * @return NEAR 一侧的关键词或短语。
+     */
+    private static String textOf(QueryNode node) {
+        if (node instanceof KeywordNode) {
+            return ((KeywordNode) node).getKeyword();
+        }
+        if (node instanceof PhraseNode) {
+            return ((PhraseNode) node).getPhrase();
+        }
+        throw new IllegalArgumentException("NEAR 两侧必须是关键词或短语: " + node);
+    }
+
+    private QueryNode parseUnary() {
+        if (position >= tokens.size()) {
+            throw new IllegalArgumentException("查询语句不完整，缺少条件");
+        }
+        if (isKeyword("NOT")) {
+            position++;
+            return new NotNode(parseUnary());
+        }
+        if (isSymbol("(")) {
+            position++;
+            QueryNode inner = parseOr();
+            if (!isSymbol(")")) {
+                throw new IllegalArgumentException("括号没有闭合");
+            }
+            position++;
+            return inner;
+        }
+        String token = tokens.get(position);
+        boolean isQuoted = quoted.get(position);
+        if (!isQuoted && (isKeyword("AND") || isKeyword("OR") || isSymbol(")") || isNear())) {
+            throw new IllegalArgumentException("'" + token + "' 之前缺少条件");
+        }
+        position++;
+        if (isQuoted) {
+            return token.chars().anyMatch(Character::isWhitespace) && !token.isBlank()
+                    ? new PhraseNode(token.trim())
+                    : new KeywordNode(token);
+        }
+        if (token.startsWith("-") && token.length() > 1) {
+            return new NotNode(parseAtom(token.substring(1)));
+        }
+        return parseAtom(token);
+    }
+
+    private QueryNode parseAtom(String token) {
+        int colon = token.indexOf(':');
+        if (colon > 0) {
+            String field = token.substring(0, colon).toLowerCase();
+            String value = token.substring(colon + 1);
+            switch (field) {
+                case "tag":
+                    if (value.isBlank()) {
+                        throw new IllegalArgumentException("tag: 后面缺少标签名");
+                    }
+                    return new TagNode(value);
+                case "created":
+                    return parseDate(DateNode.Field.CREATED, value);
+                case "updated":
+                    return parseDate(DateNode.Field.UPDATED, value);
+                case "re":
+                    if (value.isEmpty()) {
+                        throw new IllegalArgumentException("re: 后面缺少正则表达式");
+                    }
+                    return new RegexNode(value);
+                default:
+                    break;// 不认识的前缀按普通关键词处理，例如 "http://..."
+            }
+        }
+        return new KeywordNode(token);
+    }
+
+    private QueryNode parseDate(DateNode.Field field, String value) {
+        String operator = "=";
+        for (String candidate : new String[]{">=", "<=", ">", "<"}) {
+            if (value.startsWith(candidate)) {
+                operator = candidate;
+                value = value.substring(candidate.length());
+                break;
+            }
+        }
+        try {
+            return new DateNode(field, operator, LocalDate.parse(value));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("无效的日期 '" + value + "'，格式应为 yyyy-MM-dd");
+        }
+    }
+
+    private boolean isKeyword(String keyword) {
+        return position < tokens.size() && !quoted.get(position) && tokens.get(position).equalsIgnoreCase(keyword);
+    }
+
+    private boolean isNear() {
+        return position < tokens.size() && !quoted.get(position) && NEAR.matcher(tokens.get(position)).matches();
+    }
+
+    private boolean isSymbol(String symbol) {
+        return position < tokens.size() && !quoted.get(position) && tokens.get(position).equals(symbol);
+    }
+}
@@ -0,0 +1,214 @@
+package com.ZhangRuo.pkm.service.query;
+
+import com.ZhangRuo.pkm.service.index.IndexView;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * [业务逻辑层] 基于代价的查询规划器：为查询中的每个条件选择代价最低的访问路径，并执行查询。
+ *
+ * 代价模型（都只读取计数器和倒排列表的长度，不读原文）：
+ * 1. 标签条件的命中数就是计数器的值，位图运算的代价与笔记数量无关，总是走标签位图；
+ * 2. 关键词条件通过索引求值要校验全部候选，逐篇过滤要校验当前的每一个候选，
+ *    所以只有索引候选数少于当前候选数时才走倒排索引，否则在当前候选上过滤；
+ * 3. AND 先求估计命中数最少的可索引条件，得到尽可能小的候选集合，再依次处理其余条件，
+ *    候选集合变空时立即结束；没有任何可索引的条件时，才在多个线程上做全量扫描；
+ * 4. NOT 条件在 AND 之下时从候选集合中做差集，不会展开成"所有笔记"。
+ */
+public class QueryPlanner {
+
+    private QueryPlanner() {
+    }
+
+    /**
+     * 执行查询。
+     *
+     * @param root    查询语法树。
+     * @param view    索引视图。
+     * @param explain 不为 null 时，把每一步的访问路径、估计命中数和实际命中数追加到这里。
+     * @return 命中的笔记序号。
+     */
+    public static BitSet execute(QueryNode root, IndexView view, List<String> explain) {
+        return evaluate(root, view, explain, 0);
+    }
+
+    static BitSet evaluate(QueryNode node, IndexView view, List<String> explain, int depth) {
+        if (node instanceof AndNode) {
+            return evaluateAnd((AndNode) node, view, explain, depth);
+        }
+        if (node instanceof NotNode) {
+            // 单独出现的 NOT：以所有笔记为全集做差集
+            return evaluateAnd(new AndNode(List.of(node)), view, explain, depth);
+        }
+        int estimate = node.estimate(view);
+        if (node instanceof OrNode && node.isIndexable()) {
+            int line = log(explain, depth, "OR", AccessPath.BITMAP_MERGE, estimate);
+            BitSet result = new BitSet();
+            for (QueryNode child : ((OrNode) node).getChildren()) {
+                result.or(evaluate(child, view, explain, depth + 1));
+            }
+            finish(explain, line, result);
+            return result;
+        }
+        if (node.isIndexable()) {
+            int line = log(explain, depth, node.toString(), pathOf(node), estimate);
+            BitSet result = node.evaluate(view);
+            finish(explain, line, result);
+            return result;
+        }
+        int line = log(explain, depth, node.toString(), AccessPath.PARALLEL_SCAN, estimate);
+        BitSet result = filter(view.allDocs(), view, List.of(node), List.of());
+        finish(explain, line, result);
+        return result;
+    }
+
+    static BitSet evaluateAnd(AndNode and, IndexView view, List<String> explain, int depth) {
+        List<QueryNode> positives = new ArrayList<>();
+        List<QueryNode> negatives = new ArrayList<>();
+        for (QueryNode child : and.getChildren()) {
+            if (child instanceof NotNode) {
+                negatives.add(((NotNode) child).getChild());
+            } else {
+                positives.add(child);
+            }
+        }
+        int line = log(explain, depth, "AND", AccessPath.BITMAP_MERGE, and.estimate(view));
+
+        // 1.可索引的条件按估计命中数从少到多排列，不可索引的条件只能留作过滤
+        List<QueryNode> indexable = new ArrayList<>();
+        List<QueryNode> residual = new ArrayList<>();
+        for (QueryNode child : positives) {
+            (child.isIndexable() ? indexable : residual).add(child);
+        }
+        // 关键词的估计需要求一次候选，每个条件只估计一次
+        Map<QueryNode, Integer> estimates = new IdentityHashMap<>();
+        for (QueryNode child : indexable) {
+            estimates.put(child, child.estimate(view));
+        }
+        indexable.sort(Comparator.comparingInt(estimates::get));
+
+        // 2.用最稀有的可索引条件求出初始候选；一个都没有时以所有笔记为候选
+        BitSet candidates;
+        int next = 0;
+        if (!indexable.isEmpty()) {
+            candidates = evaluate(indexable.get(0), view, explain, depth + 1);
+            next = 1;
+        } else {
+            candidates = view.allDocs();
+        }
+
+        // 3.其余可索引的条件：索引比在候选上过滤更便宜时求交，否则留作过滤
+        for (int i = next; i < indexable.size() && !candidates.isEmpty(); i++) {
+            QueryNode child = indexable.get(i);
+            if (preferIndex(child, estimates.get(child), candidates)) {
+                candidates.and(evaluate(child, view, explain, depth + 1));
+            } else {
+                residual.add(child);
+            }
+        }
+
+        // 4.NOT 条件：可以用索引时直接做差集，否则留作过滤
+        List<QueryNode> residualNegatives = new ArrayList<>();
+        for (QueryNode child : negatives) {
+            if (candidates.isEmpty()) {
+                break;
+            }
+            int estimate = child.isIndexable() ? child.estimate(view) : Integer.MAX_VALUE;
+            if (child.isIndexable() && preferIndex(child, estimate, candidates)) {
+                int notLine = log(explain, depth + 1, "NOT", AccessPath.BITMAP_MERGE, estimate);
+                BitSet excluded = evaluate(child, view, explain, depth + 2);
+                candidates.andNot(excluded);
+                finish(explain, notLine, excluded);
+            } else {
+                residualNegatives.add(child);
+            }
+        }
+
+        // 5.剩下的条件在候选上逐篇判断；候选是全部笔记时就是一次全量扫描
+        if (!candidates.isEmpty() && (!residual.isEmpty() || !residualNegatives.isEmpty())) {
+            AccessPath path = indexable.isEmpty() ? AccessPath.PARALLEL_SCAN : AccessPath.FILTER;
+            for (QueryNode child : residual) {
+                log(explain, depth + 1, child.toString(), path, candidates.cardinality());
+            }
+            for (QueryNode child : residualNegatives) {
+                log(explain, depth + 1, "-" + child, path, candidates.cardinality());
+            }
+            candidates = filter(candidates, view, residual, residualNegatives);
+        }
+
+        finish(explain, line, candidates);
+        return candidates;
+    }
+
+    /**
+     * 标签位图的运算代价与候选数量无关，总是走索引；
+     * 其他条件只有索引候选数少于当前候选数时，通过索引求值才比逐篇过滤便宜。
+     */
+    private static boolean preferIndex(QueryNode child, int estimate, BitSet candidates) {
+        return child instanceof TagNode || estimate < candidates.cardinality();
+    }
+
+    /**
+     * 在候选上逐篇判断：必须满足所有 required，且不满足任何一个 excluded。
+     * 由 ScanEngine 在 ForkJoinPool 上分块并行执行，结果保持序号顺序。
+     */
+    static BitSet filter(BitSet candidates, IndexView view, List<QueryNode> required, List<QueryNode> excluded) {
+        QueryNode[] requiredNodes = required.toArray(new QueryNode[0]);
+        QueryNode[] excludedNodes = excluded.toArray(new QueryNode[0]);
+        return ScanEngine.shared().scan(candidates, ordinal -> {
+            if (view.note(ordinal) == null) {
+                return false;
+            }
+            for (QueryNode node : requiredNodes) {
+                if (!node.matches(view, ordinal)) {
+                    return false;
+                }
+            }
+            for (QueryNode node : excludedNodes) {
+                if (node.matches(view, ordinal)) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    private static AccessPath pathOf(QueryNode node) {
+        if (node instanceof TagNode) {
+            return AccessPath.TAG_BITMAP;
+        }
+        if (node instanceof KeywordNode) {
+            return AccessPath.TERM_POSTINGS;
+        }
+        if (node instanceof PhraseNode || node instanceof NearNode) {
+            return AccessPath.POSITIONS;
+        }
+        if (node instanceof DateNode) {
+            return AccessPath.DATE_INDEX;
+        }
+        return AccessPath.BITMAP_MERGE;
+    }
+
+    /**
+     * 追加一行执行计划。
+     * @return 该行的下标，执行完后用 finish 补上实际命中数；explain 为 null 时返回 -1。
+     */
+    private static int log(List<String> explain, int depth, String what, AccessPath path, int estimate) {
+        if (explain == null) {
+            return -1;
+        }
+        explain.add("  ".repeat(depth) + what + "  [" + path.getDisplayName() + "] 估计 " + estimate);
+        return explain.size() - 1;
+    }
+
+    private static void finish(List<String> explain, int line, BitSet result) {
+        if (explain != null && line >= 0) {
+            explain.set(line, explain.get(line) + "，实际 " + result.cardinality());
+        }
+    }
+}
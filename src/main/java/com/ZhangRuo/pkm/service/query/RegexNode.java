@@ -0,0 +1,59 @@
+package com.ZhangRuo.pkm.service.query;
+
+import com.ZhangRuo.pkm.entity.Note;
+import com.ZhangRuo.pkm.service.index.IndexView;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * [业务逻辑层] re:正则表达式 —— 标题或正文中能找到匹配（不区分大小写）。
+ * 正则没有可用的索引，总是逐篇判断（evaluate 使用 QueryNode 的全量扫描）；每个扫描线程复用自己的 Matcher，判断时不分配对象。
+ */
+public class RegexNode extends QueryNode {
+
+    private final Pattern pattern;
+    private final ThreadLocal<Matcher> matchers;
+
+    /**
+     * @throws IllegalArgumentException 正则表达式无效时抛出。
+     */
+    public RegexNode(String regex) {
+        try {
+            this.pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("无效的正则表达式 '" + regex + "': " + e.getDescription());
+        }
+        this.matchers = ThreadLocal.withInitial(() -> pattern.matcher(""));
+    }
+
+    @Override
+    public boolean isIndexable() {
+        return false;
+    }
+
+    @Override
+    public int estimate(IndexView view) {
+        return view.liveCount();
+    }
+
+    @Override
+    public boolean matches(IndexView view, int ordinal) {
+        Note note = view.note(ordinal);
+        if (note == null) {
+            return false;
+        }
+        Matcher matcher = matchers.get();
+        return find(matcher, note.getTitle()) || find(matcher, note.getContent());
+    }
+
+    private static boolean find(Matcher matcher, String text) {
+        return text != null && matcher.reset(text).find();
+    }
+
+    @Override
+    public String toString() {
+        return "re:" + pattern.pattern();
+    }
+}
@@ -0,0 +1,136 @@
+package com.ZhangRuo.pkm.service.query;
+
+import com.ZhangRuo.pkm.entity.Note;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * [业务逻辑层] 并行的全量扫描引擎，用于没有可用索引的条件（正则、任意谓词等）。
+ *
+ * 待扫描的笔记序号按 64 个一组（位图的一个字）切分成若干块，在 ForkJoinPool 上分治执行：
+ * 1. 每一块只写结果位图中属于自己的那几个字，块之间没有共享的可变状态，也不需要加锁；
+ * 2. 扫描过程中不为命中的笔记分配任何对象，结果直接是一个位图；
+ * 3. 结果按序号（即存储顺序）排列，与单线程扫描完全一致。
+ */
+public class ScanEngine {
+
+    /** 默认每一块包含的字数：32 个字即 2048 篇笔记，小于它的扫描直接在当前线程完成。 */
+    static final int DEFAULT_CHUNK_WORDS = 32;
+
+    private static final ScanEngine SHARED = new ScanEngine(ForkJoinPool.commonPool(), DEFAULT_CHUNK_WORDS);
+
+    private final ForkJoinPool pool;
+    private final int chunkWords;
+
+    /**
+     * @param pool       执行扫描的线程池。
+     * @param chunkWords 每一块包含的字数（每个字 64 篇笔记），不能小于 1。
+     */
+    public ScanEngine(ForkJoinPool pool, int chunkWords) {
+        if (chunkWords < 1) {
+            throw new IllegalArgumentException("每块的字数必须大于0");
+        }
+        this.pool = pool;
+        this.chunkWords = chunkWords;
+    }
+
+    /**
+     * @return 使用公共 ForkJoinPool 的共享实例。
+     */
+    public static ScanEngine shared() {
+        return SHARED;
+    }
+
+    /**
+     * 对 candidates 中的每一个序号求值 predicate，返回命中的序号。
+     * predicate 会在多个线程上并发调用，必须是线程安全的。
+     */
+    public BitSet scan(BitSet candidates, IntPredicate predicate) {
+        long[] input = candidates.toLongArray();
+        long[] output = new long[input.length];
+        if (input.length <= chunkWords) {
+            scanWords(input, output, 0, input.length, predicate);
+        } else {
+            pool.invoke(new ScanTask(input, output, 0, input.length, predicate));
+        }
+        return BitSet.valueOf(output);
+    }
+
+    /**
+     * 对 [0, size) 内的每一个序号求值 predicate，返回命中的序号。
+     */
+    public BitSet scan(int size, IntPredicate predicate) {
+        BitSet all = new BitSet(size);
+        all.set(0, size);
+        return scan(all, predicate);
+    }
+
+    /**
+     * 在笔记列表上并行过滤，结果保持原列表的顺序。
+     */
+    public List<Note> filter(List<Note> notes, Predicate<Note> predicate) {
+        BitSet matched = scan(notes.size(), index -> predicate.test(notes.get(index)));
+        List<Note> result = new ArrayList<>(matched.cardinality());
+        for (int index = matched.nextSetBit(0); index >= 0; index = matched.nextSetBit(index + 1)) {
+            result.add(notes.get(index));
+        }
+        return result;
+    }
+
+    /**
+     * 扫描 [fromWord, toWord) 这几个字：逐个取出候选位，命中时写入结果字。
+     */
+    private static void scanWords(long[] input, long[] output, int fromWord, int toWord, IntPredicate predicate) {
+        for (int word = fromWord; word < toWord; word++) {
+            long bits = input[word];
+            long hits = 0L;
+            while (bits != 0) {
+                long lowest = bits & -bits;
+                int ordinal = (word << 6) + Long.numberOfTrailingZeros(bits);
+                if (predicate.test(ordinal)) {
+                    hits |= lowest;
+                }
+                bits ^= lowest;
+            }
+            output[word] = hits;
+        }
+    }
+
+    /**
+     * 把一段字区间二分，区间不超过 chunkWords 时直接扫描。
+     */
+    private class ScanTask extends RecursiveAction {
+        private final long[] input;
+        private final long[] output;
+        private final int fromWord;
+        private final int toWord;
+        private final IntPredicate predicate;
+
+        ScanTask(long[] input, long[] output, int fromWord, int toWord, IntPredicate predicate) {
+            this.input = input;
+            this.output = output;
+            this.fromWord = fromWord;
+            this.toWord = toWord;
+            this.predicate = predicate;
+        }
+
+        @Override
+        protected void compute() {
+            if (toWord - fromWord <= chunkWords) {
+                scanWords(input, output, fromWord, toWord, predicate);
+                return;
+            }
+            int middle = (fromWord + toWord) >>> 1;
+            ScanTask left = new ScanTask(input, output, fromWord, middle, predicate);
+            left.fork();
+            new ScanTask(input, output, middle, toWord, predicate).compute();
+            left.join();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.ZhangRuo.pkm.service.query;
+
+import com.ZhangRuo.pkm.service.index.IndexView;
+
+import java.util.BitSet;
+
+/**
+ * [业务逻辑层] tag:名称 —— 笔记含有该标签（区分大小写）。通过标签位图求值。
+ */
+public class TagNode extends QueryNode {
+
+    private final String tag;
+
+    public TagNode(String tag) {
+        this.tag = tag;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    @Override
+    public boolean isIndexable() {
+        return true;
+    }
+
+    @Override
+    public int estimate(IndexView view) {
+        return view.tagCount(tag);// 计数器是精确值
+    }
+
+    @Override
+    public BitSet evaluate(IndexView view) {
+        return view.tagDocs(tag);
+    }
+
+    @Override
+    public boolean matches(IndexView view, int ordinal) {
+        return view.note(ordinal) != null && view.note(ordinal).hasTag(tag);
+    }
+
+    @Override
+    public String toString() {
+        return "tag:" + tag;
+    }
+}
@@ -0,0 +1,162 @@
+package com.ZhangRuo.pkm.benchmark;
+
+import com.ZhangRuo.pkm.entity.Note;
+import com.ZhangRuo.pkm.repository.StorageService;
+import com.ZhangRuo.pkm.service.index.NoteIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * [基准测试] 关键词搜索的最终校验开销。
+ *
+ * 查询的关键词跨越多个词项，索引只能给出候选集，每篇候选笔记都要在标题和正文上做不区分大小写的子串校验。
+ * 配合 GC 分析器运行，看 gc.alloc.rate.norm（每次操作分配的字节数）即可知道校验是否还在复制全文：
+ *
+ *     mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *     java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *         com.ZhangRuo.pkm.benchmark.KeywordSearchBenchmark
+ *
+ * JMH 需要以独立 JVM 运行被测方法，不能用 exec:java 启动；也可以直接在 IDE 中运行 main 方法。
+ * 类名不以 Test 结尾，不会在 mvn test 中执行。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeywordSearchBenchmark {
+
+    private static final String[] WORDS = {
+            "Java", "Stream", "Pattern", "Matching", "Record", "Sealed", "Generic", "Lambda",
+            "设计", "模式", "并发", "集合", "索引", "查询", "缓存", "笔记"
+    };
+
+    @Param({"10000"})
+    public int noteCount;
+
+    private NoteIndex noteIndex;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        List<Note> notes = new ArrayList<>(noteCount);
+        for (int i = 0; i < noteCount; i++) {
+            Note note = new Note(sentence(random, 4), sentence(random, 200));
+            note.setId(String.valueOf(i));
+            notes.add(note);
+        }
+        noteIndex = new NoteIndex(new InMemoryStorage(notes));
+        noteIndex.searchKeyword("warm");// 触发首次构建，不计入测量
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 跨越两个词项的关键词：候选来自三元组索引，几乎每篇笔记都需要校验。
+     */
+    @Benchmark
+    public List<Note> verifiedPhrase() {
+        return noteIndex.searchKeyword("pattern matching");
+    }
+
+    /**
+     * 关键词带大写字母，同样走校验路径。
+     */
+    @Benchmark
+    public List<Note> verifiedMixedCase() {
+        return noteIndex.searchKeyword("Stream Record");
+    }
+
+    /**
+     * 候选很多但几乎都会被校验淘汰：测量的主要就是校验本身。
+     */
+    @Benchmark
+    public List<Note> verifiedRejected() {
+        return noteIndex.searchKeyword("lambda java sealed");
+    }
+
+    /**
+     * 拼写错误的关键词（"Pattern" 交换了两个字母）走模糊搜索：与字典求交后合并两个编辑距离内的词项。
+     */
+    @Benchmark
+    public List<Note> fuzzyTypo() {
+        return noteIndex.searchFuzzy("pattren", 20);
+    }
+
+    /**
+     * 拼写正确的关键词走模糊搜索，与 fuzzyTypo 对比可以看出字典求交本身的开销。
+     */
+    @Benchmark
+    public List<Note> fuzzyExact() {
+        return noteIndex.searchFuzzy("pattern", 20);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(KeywordSearchBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+    /**
+     * 只在内存中保存笔记的存储，避免基准测试受磁盘 I/O 影响。
+     */
+    private static class InMemoryStorage implements StorageService {
+
+        private List<Note> notes;
+        private long generation;
+
+        InMemoryStorage(List<Note> notes) {
+            this.notes = notes;
+        }
+
+        @Override
+        public void save(List<Note> notes) {
+            this.notes = new ArrayList<>(notes);
+            generation++;
+        }
+
+        @Override
+        public List<Note> load() {
+            return new ArrayList<>(notes);
+        }
+
+        /**
+         * 必须返回非负的版本号，否则索引会认为存储状态未知，每次查询都完整重建。
+         */
+        @Override
+        public long generation() {
+            return generation;
+        }
+    }
+}
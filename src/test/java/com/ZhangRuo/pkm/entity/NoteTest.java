@@ -6,6 +6,13 @@ package com.ZhangRuo.pkm.entity; // 请确保这里的包名和你自己的一
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @DisplayName("Note 实体类测试 (混合模式)")
@@ -67,4 +74,53 @@ class NoteTest {
 
         assertEquals(1, note.getTags().size(), "不应添加重复的标签");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("✅ 多个线程同时第一次读取正文时只加载一次，且都能读到正文")
+    void testConcurrentLazyLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        note.attachContentLoader(() -> {
+            loads.incrementAndGet();
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "Lazy Content";
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(note::getContent);
+            entered.await();// 第一个线程正在加载
+            Future<String> second = executor.submit(note::getContent);
+            release.countDown();
+
+            assertEquals("Lazy Content", first.get());
+            assertEquals("Lazy Content", second.get());
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("⚠️ 加载正文失败时应保留加载句柄，下次访问再重试")
+    void testFailedLazyLoadIsRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        note.attachContentLoader(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("读取失败");
+            }
+            return "Lazy Content";
+        });
+
+        assertThrows(IllegalStateException.class, note::getContent);
+        assertNotNull(note.getContentLoader());
+        assertEquals("Lazy Content", note.getContent());
+        assertNull(note.getContentLoader());
+    }
+}
@@ -0,0 +1,172 @@
+package com.ZhangRuo.pkm.repository;
+
+import com.ZhangRuo.pkm.entity.Note;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("BinaryStorageService 二进制存储测试")
+class BinaryStorageServiceTest {
+
+    private static final String TEST_BINARY_FILE = "test_notes.pkm";
+    private static final String TEST_JSON_FILE = "test_notes_convert.json";
+    private BinaryStorageService storageService;
+
+    @BeforeEach
+    void setUp() {
+        storageService = new BinaryStorageService(TEST_BINARY_FILE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        storageService.close();
+        new File(TEST_BINARY_FILE).delete();
+        new File(TEST_JSON_FILE).delete();
+    }
+
+    private Note newNote(String id, String title) {
+        Note note = new Note(title, "内容 " + title);
+        note.setId(id);
+        note.addTag("tag-" + id);
+        return note;
+    }
+
+    @Test
+    @DisplayName("✅ 文件不存在时应视为空笔记库")
+    void testEmptyVault() {
+        assertEquals(0, storageService.size());
+        assertTrue(storageService.load().isEmpty());
+        assertTrue(storageService.findById("missing").isEmpty());
+    }
+
+    @Test
+    @DisplayName("✅ 保存后重新打开应保留所有字段和存储顺序")
+    void testSaveAndReopen() {
+        Note note = newNote("z-last", "中文标题");
+        LocalDateTime created = LocalDateTime.of(2024, 1, 2, 3, 4, 5);
+        note.setCreatedAt(created);
+        storageService.save(new ArrayList<>(List.of(note, newNote("a-first", "Second"))));
+        storageService.close();
+
+        BinaryStorageService reopened = new BinaryStorageService(TEST_BINARY_FILE);
+        List<Note> loaded = reopened.load();
+        reopened.close();
+
+        assertEquals(2, loaded.size());
+        assertEquals("z-last", loaded.get(0).getId(), "应按保存时的顺序返回，而不是按索引排序");
+        assertEquals("中文标题", loaded.get(0).getTitle());
+        assertEquals("内容 中文标题", loaded.get(0).getContent());
+        assertEquals(List.of("tag-z-last"), loaded.get(0).getTags());
+        assertEquals(created, loaded.get(0).getCreatedAt());
+        assertEquals(note.getUpdatedAt(), loaded.get(0).getUpdatedAt());
+    }
+
+    @Test
+    @DisplayName("✅ 按ID查找应通过索引命中任意一篇笔记")
+    void testFindById() {
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            notes.add(newNote("id-" + i, "Note " + i));
+        }
+        storageService.save(notes);
+
+        for (int i = 0; i < 200; i += 37) {
+            assertEquals("Note " + i, storageService.findById("id-" + i).get().getTitle());
+        }
+        assertTrue(storageService.findById("id-200").isEmpty());
+        assertTrue(storageService.findById("x".repeat(BinaryStorageService.ID_WIDTH + 1)).isEmpty());
+    }
+
+    @Test
+    @DisplayName("✅ 每次保存后版本代数应递增")
+    void testGenerationIncreases() {
+        long before = storageService.generation();
+        storageService.save(List.of(newNote("a", "A")));
+        long after = storageService.generation();
+
+        assertTrue(after > before);
+        storageService.upsert(newNote("b", "B"));
+        assertTrue(storageService.generation() > after);
+        assertEquals(2, storageService.size());
+    }
+
+    @Test
+    @DisplayName("⚠️ 重新创建的文件不应沿用旧文件的版本代数，否则旧的索引快照会被误用")
+    void testRecreatedFileGetsFreshGeneration() {
+        storageService.save(List.of(newNote("a", "A")));
+        long first = storageService.generation();
+        storageService.close();
+        new File(TEST_BINARY_FILE).delete();
+
+        storageService = new BinaryStorageService(TEST_BINARY_FILE);
+        storageService.save(List.of(newNote("b", "B")));
+        long recreated = storageService.generation();
+        assertTrue(recreated >= 0);
+        assertNotEquals(first, recreated);
+        storageService.save(List.of(newNote("c", "C")));
+        assertEquals(recreated + 1, storageService.generation());
+    }
+
+    @Test
+    @DisplayName("✅ scan 应按存储顺序逐篇解码")
+    void testScan() {
+        storageService.save(List.of(newNote("b", "B"), newNote("a", "A")));
+
+        try (Stream<Note> notes = storageService.scan()) {
+            assertEquals(List.of("b", "a"), notes.map(Note::getId).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    @DisplayName("✅ 遍历未结束时保存应替换文件，遍历继续读取旧的那一份")
+    void testSaveWhileScanning() {
+        storageService.save(List.of(newNote("a", "A"), newNote("b", "B")));
+        assertTrue(storageService.findById("a").isPresent());
+
+        try (Stream<Note> notes = storageService.scan()) {
+            var iterator = notes.iterator();
+            assertEquals("a", iterator.next().getId());
+
+            storageService.save(List.of(newNote("c", "C")));
+            storageService.save(List.of(newNote("c", "C"), newNote("d", "D")));
+
+            assertEquals("b", iterator.next().getId());
+            assertFalse(iterator.hasNext());
+        }
+        assertTrue(storageService.findById("d").isPresent());
+        assertFalse(storageService.findById("a").isPresent());
+        assertEquals(2, storageService.load().size());
+    }
+
+    @Test
+    @DisplayName("⚠️ 超过索引宽度的ID应被拒绝")
+    void testIdTooLong() {
+        Note note = newNote("x".repeat(BinaryStorageService.ID_WIDTH + 1), "Too long");
+        assertThrows(IllegalStateException.class, () -> storageService.save(List.of(note)));
+    }
+
+    @Test
+    @DisplayName("✅ JSON 与二进制笔记库之间应能无损互转")
+    void testConvertRoundTrip() {
+        new JsonStorageService(TEST_JSON_FILE).save(List.of(newNote("a", "A"), newNote("b", "B")));
+
+        assertEquals(2, VaultConverter.jsonToBinary(TEST_JSON_FILE, TEST_BINARY_FILE));
+        assertEquals("B", storageService.findById("b").get().getTitle());
+
+        new File(TEST_JSON_FILE).delete();
+        assertEquals(2, VaultConverter.binaryToJson(TEST_BINARY_FILE, TEST_JSON_FILE));
+        List<Note> roundTrip = new JsonStorageService(TEST_JSON_FILE).load();
+        assertEquals(List.of("a", "b"), roundTrip.stream().map(Note::getId).collect(Collectors.toList()));
+        assertEquals(List.of("tag-b"), roundTrip.get(1).getTags());
+    }
+}
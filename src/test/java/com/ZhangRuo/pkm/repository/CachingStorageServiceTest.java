@@ -0,0 +1,174 @@
+package com.ZhangRuo.pkm.repository;
+
+import com.ZhangRuo.pkm.entity.Note;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CachingStorageService 内存缓存层测试")
+class CachingStorageServiceTest {
+
+    private static final String TEST_JSON_FILE = "test_notes_caching.json";
+
+    private CountingStorageService countingStorage;
+    private CachingStorageService cachingStorage;
+
+    /**
+     * 记录 load 调用次数的 JSON 存储，用于验证缓存是否真的避免了重复解析。
+     */
+    private static class CountingStorageService extends JsonStorageService {
+        int loadCount = 0;
+        /** 为 true 时模拟写盘失败。 */
+        boolean failWrites = false;
+
+        CountingStorageService(String filePath) {
+            super(filePath);
+        }
+
+        @Override
+        public List<Note> load() {
+            loadCount++;
+            return super.load();
+        }
+
+        @Override
+        public void save(List<Note> notes) {
+            if (failWrites) {
+                throw new IllegalStateException("模拟的写盘失败");
+            }
+            super.save(notes);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        countingStorage = new CountingStorageService(TEST_JSON_FILE);
+        cachingStorage = new CachingStorageService(countingStorage);
+    }
+
+    @AfterEach
+    void tearDown() {
+        new File(TEST_JSON_FILE).delete();
+    }
+
+    @Test
+    @DisplayName("⚠️ 修改读到的笔记后写入失败，缓存应仍与磁盘一致")
+    void testFailedWriteDoesNotLeakIntoCache() {
+        Note note = new Note("Original", "v1");
+        note.setId("id-1");
+        note.addTag("java");
+        cachingStorage.save(List.of(note));
+
+        Note edited = cachingStorage.findById("id-1").orElseThrow();
+        edited.setContent("v2");
+        edited.addTag("draft");
+        countingStorage.failWrites = true;
+        assertThrows(IllegalStateException.class, () -> cachingStorage.upsert(edited));
+
+        Note cached = cachingStorage.findById("id-1").orElseThrow();
+        assertEquals("v1", cached.getContent());
+        assertEquals(List.of("java"), cached.getTags());
+        assertEquals("v1", cachingStorage.load().get(0).getContent());
+    }
+
+    @Test
+    @DisplayName("✅ 关闭缓存层应关闭被装饰的存储引擎")
+    void testCloseClosesDelegate() {
+        boolean[] closed = {false};
+        StorageService engine = new JsonStorageService(TEST_JSON_FILE) {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        new CachingStorageService(engine).close();
+        assertTrue(closed[0]);
+    }
+
+    @Test
+    @DisplayName("✅ 多次读取只应解析一次底层文件")
+    void testLoadOnlyOnce() {
+        Note note = new Note("Cached", "Content");
+        note.setId("id-1");
+        countingStorage.save(List.of(note));
+
+        cachingStorage.load();
+        cachingStorage.load();
+        List<Note> notes = cachingStorage.load();
+
+        assertEquals(1, countingStorage.loadCount);
+        assertEquals(1, notes.size());
+        assertEquals("Cached", notes.get(0).getTitle());
+    }
+
+    @Test
+    @DisplayName("✅ 通过缓存层写入后，读取应直接返回最新数据且写入磁盘")
+    void testSaveThroughCache() {
+        Note note = new Note("Written", "Content");
+        note.setId("id-2");
+
+        cachingStorage.save(List.of(note));
+        List<Note> notes = cachingStorage.load();
+
+        assertEquals(0, countingStorage.loadCount, "自己写入的数据不需要重新解析文件");
+        assertEquals(1, notes.size());
+        assertEquals(1, new JsonStorageService(TEST_JSON_FILE).load().size());
+    }
+
+    @Test
+    @DisplayName("✅ 文件被外部修改后应自动重新加载")
+    void testReloadWhenFileChanged() {
+        Note first = new Note("First", "");
+        first.setId("id-3");
+        cachingStorage.save(List.of(first));
+
+        Note second = new Note("Second", "");
+        second.setId("id-4");
+        List<Note> external = new ArrayList<>(List.of(first, second));
+        new JsonStorageService(TEST_JSON_FILE).save(external);
+
+        assertEquals(2, cachingStorage.load().size());
+    }
+
+    @Test
+    @DisplayName("✅ 返回的列表被修改时不应影响缓存")
+    void testReturnedListIsACopy() {
+        Note note = new Note("Copy", "");
+        note.setId("id-5");
+        cachingStorage.save(List.of(note));
+
+        cachingStorage.load().clear();
+
+        assertEquals(1, cachingStorage.load().size());
+    }
+
+    @Test
+    @DisplayName("✅ 单篇写入和按ID查找不应重新解析底层文件")
+    void testRecordOperationsStayInMemory() {
+        Note first = new Note("First", "");
+        first.setId("id-6");
+        cachingStorage.save(List.of(first));
+
+        Note second = new Note("Second", "");
+        second.setId("id-7");
+        cachingStorage.upsert(second);
+        first.setContent("edited");
+        cachingStorage.upsert(first);
+
+        assertEquals(0, countingStorage.loadCount);
+        assertEquals("Second", cachingStorage.findById("id-7").get().getTitle());
+        assertTrue(cachingStorage.delete("id-7"));
+        assertEquals(0, countingStorage.loadCount);
+
+        List<Note> onDisk = new JsonStorageService(TEST_JSON_FILE).load();
+        assertEquals(1, onDisk.size());
+        assertEquals("edited", onDisk.get(0).getContent());
+    }
+}
@@ -0,0 +1,168 @@
+package com.ZhangRuo.pkm.repository;
+
+import com.ZhangRuo.pkm.entity.Note;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("IndexedStorageService 元数据与正文分离存储测试")
+class IndexedStorageServiceTest {
+
+    private static final String TEST_BASE_PATH = "test_notes_indexed";
+    private IndexedStorageService storageService;
+
+    @BeforeEach
+    void setUp() {
+        storageService = new IndexedStorageService(TEST_BASE_PATH);
+    }
+
+    @AfterEach
+    void tearDown() {
+        storageService.close();
+        File[] files = new File(".").listFiles((dir, name) -> name.startsWith(TEST_BASE_PATH + "."));
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    private Note newNote(String id, String title, String content) {
+        Note note = new Note(title, content);
+        note.setId(id);
+        return note;
+    }
+
+    @Test
+    @DisplayName("✅ 正文签名应直接取自元数据，不触发正文读取，且与读取正文后计算的签名一致")
+    void testContentSignatureWithoutLoading() {
+        storageService.save(List.of(newNote("a", "Signed", "正文内容 body")));
+
+        Note loaded = new IndexedStorageService(TEST_BASE_PATH).load().get(0);
+        long signature = loaded.contentSignature();
+        assertNotNull(loaded.getContentLoader(), "计算签名不应读取正文");
+
+        loaded.getContent();
+        assertNull(loaded.getContentLoader());
+        assertEquals(signature, loaded.contentSignature());
+        assertEquals(signature, newNote("b", "Other", "正文内容 body").contentSignature());
+    }
+
+    @Test
+    @DisplayName("✅ 加载时正文应延迟到第一次访问才读取")
+    void testContentIsLoadedLazily() {
+        Note note = newNote("a", "Lazy", "正文内容");
+        note.addTag("java");
+        storageService.save(List.of(note));
+
+        Note loaded = new IndexedStorageService(TEST_BASE_PATH).load().get(0);
+
+        assertNotNull(loaded.getContentLoader(), "只加载元数据时正文应挂着延迟加载句柄");
+        assertEquals("Lazy", loaded.getTitle());
+        assertEquals(List.of("java"), loaded.getTags());
+        assertEquals(note.getUpdatedAt(), loaded.getUpdatedAt());
+        assertEquals("正文内容", loaded.getContent());
+        assertNull(loaded.getContentLoader());
+    }
+
+    @Test
+    @DisplayName("✅ 只修改元数据时不应追加正文")
+    void testMetadataOnlyChangeKeepsBody() throws IOException {
+        storageService.save(List.of(newNote("a", "Title", "x".repeat(10_000))));
+        long bodySize = Files.size(storageService.getBodyFile());
+
+        Note loaded = storageService.findById("a").get();
+        loaded.addTag("new-tag");
+        storageService.upsert(loaded);
+
+        assertEquals(bodySize, Files.size(storageService.getBodyFile()));
+        Note reloaded = storageService.findById("a").get();
+        assertTrue(reloaded.hasTag("new-tag"));
+        assertEquals(10_000, reloaded.getContent().length());
+    }
+
+    @Test
+    @DisplayName("✅ 修改正文后应读到新内容，删除后不再出现")
+    void testUpdateAndDelete() {
+        storageService.save(new ArrayList<>(List.of(newNote("a", "A", "old"), newNote("b", "B", null))));
+
+        Note a = storageService.findById("a").get();
+        a.setContent("new");
+        storageService.upsert(a);
+
+        assertEquals("new", storageService.findById("a").get().getContent());
+        assertNull(storageService.findById("b").get().getContent());
+        assertTrue(storageService.delete("b"));
+        assertEquals(1, storageService.load().size());
+    }
+
+    @Test
+    @DisplayName("✅ 压缩正文文件后，压缩前加载的笔记仍能读到正文")
+    void testCompactionKeepsHandlesValid() {
+        storageService.save(List.of(newNote("a", "A", "first body"), newNote("b", "B", "second body")));
+        Note loadedBefore = storageService.findById("b").get();
+        File oldBodyFile = storageService.getBodyFile().toFile();
+
+        storageService.compactNow();
+
+        assertFalse(oldBodyFile.exists());
+        assertEquals("second body", loadedBefore.getContent());
+        assertEquals("first body", new IndexedStorageService(TEST_BASE_PATH).findById("a").get().getContent());
+    }
+
+    @Test
+    @DisplayName("✅ 压缩应按块申请预算，等待预算期间前台读写不受阻塞，且压缩期间的修改不会丢失")
+    void testThrottledCompactionDoesNotBlockWrites() throws Exception {
+        String large = "x".repeat(3 * IoBudget.CHUNK_BYTES);
+        storageService.save(List.of(newNote("a", "A", large), newNote("b", "B", "old body")));
+        List<Long> requests = new ArrayList<>();
+        CountDownLatch waiting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IoBudget budget = bytes -> {
+            synchronized (requests) {
+                requests.add(bytes);
+            }
+            waiting.countDown();
+            release.await();
+        };
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> compaction = executor.submit(() -> storageService.compactNow(budget));
+            assertTrue(waiting.await(5, TimeUnit.SECONDS));
+
+            // 1. 压缩停在预算上：前台照常读写
+            storageService.upsert(newNote("b", "B", "new body"));
+            storageService.upsert(newNote("c", "C", "added during compaction"));
+            assertEquals(large, storageService.findById("a").get().getContent());
+
+            // 2. 放行后压缩完成，补上压缩期间的写入
+            release.countDown();
+            assertTrue(compaction.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(requests.size() >= 3, "大正文应分块申请预算");
+        assertTrue(requests.stream().allMatch(bytes -> bytes <= 2L * IoBudget.CHUNK_BYTES));
+        IndexedStorageService reopened = new IndexedStorageService(TEST_BASE_PATH);
+        assertEquals(large, reopened.findById("a").get().getContent());
+        assertEquals("new body", reopened.findById("b").get().getContent());
+        assertEquals("added during compaction", reopened.findById("c").get().getContent());
+        reopened.close();
+    }
+}
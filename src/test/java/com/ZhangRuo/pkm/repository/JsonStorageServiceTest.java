@@ -1,15 +1,24 @@
 package com.ZhangRuo.pkm.repository;
 
 import com.ZhangRuo.pkm.entity.Note;
+import com.ZhangRuo.pkm.exception.FileOperationException;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import static org.junit.jupiter.api.Assertions.*;
 
 
@@ -87,4 +96,143 @@ class JsonStorageServiceTest {
         assertTrue(content.equals("[]") || content.equals("[ ]"));
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("✅ 默认的 upsert/findById/delete 应基于整库读写正确工作")
+    void testDefaultRecordOperations() {
+        Note note = new Note("Original", "Content");
+        note.setId("record-1");
+        storageService.upsert(note);
+
+        Note changed = new Note("Changed", "Content");
+        changed.setId("record-1");
+        storageService.upsert(changed);
+
+        assertEquals(1, storageService.load().size());
+        assertEquals("Changed", storageService.findById("record-1").get().getTitle());
+
+        assertTrue(storageService.delete("record-1"));
+        assertFalse(storageService.delete("record-1"));
+        assertTrue(storageService.findById("record-1").isEmpty());
+    }
+
+    @Test
+    @DisplayName("✅ 保存后不应残留临时文件，且覆盖写入保持完整")
+    void testAtomicSaveLeavesNoTempFiles() throws Exception {
+        Note note = new Note("Atomic", "Content");
+        storageService.save(List.of(note));
+        storageService.save(List.of(note, new Note("Second", "")));
+
+        assertEquals(2, storageService.load().size());
+        try (Stream<Path> files = Files.list(Path.of(TEST_JSON_FILE).toAbsolutePath().getParent())) {
+            assertTrue(files.noneMatch(path -> path.getFileName().toString().startsWith(TEST_JSON_FILE + ".")),
+                    "原子写入完成后不应留下临时文件");
+        }
+    }
+
+    @Test
+    @DisplayName("⚠️ 写入失败时应以 FileOperationException 作为原因抛出")
+    void testSaveFailureSurfacesFileOperationException() {
+        StorageService broken = new JsonStorageService("no_such_dir/test_notes.json");
+
+        IllegalStateException ex = assertThrows(IllegalStateException.class, () -> broken.save(new ArrayList<>()));
+        assertInstanceOf(FileOperationException.class, ex.getCause());
+        assertTrue(ex.getMessage().contains("no_such_dir/test_notes.json"));
+    }
+
+    @Test
+    @DisplayName("✅ 并发保存应合并为更少的组提交")
+    void testConcurrentSavesAreGroupCommitted() throws Exception {
+        JsonStorageService grouped = new JsonStorageService(TEST_JSON_FILE, 50);
+        int writers = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            Note note = new Note("Writer " + i, "");
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    grouped.save(List.of(note));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(grouped.getCommitCount() < writers, "并发保存应被合并，实际提交次数: " + grouped.getCommitCount());
+        assertEquals(1, grouped.load().size());
+    }
+
+    @Test
+    @DisplayName("✅ scan 应按存储顺序逐篇流式读取笔记")
+    void testScanStreamsNotes() {
+        List<Note> notesToSave = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            notesToSave.add(new Note("Streamed " + i, "Content " + i));
+        }
+        storageService.save(notesToSave);
+
+        try (Stream<Note> notes = storageService.scan()) {
+            List<String> titles = notes.map(Note::getTitle).collect(Collectors.toList());
+            assertEquals(List.of("Streamed 0", "Streamed 1", "Streamed 2", "Streamed 3", "Streamed 4"), titles);
+        }
+        try (Stream<Note> notes = storageService.scan()) {
+            assertEquals("Streamed 0", notes.findFirst().get().getTitle(), "只消费第一篇时不需要读完整个文件");
+        }
+    }
+
+    @Test
+    @DisplayName("✅ 文件不存在时 scan 应返回空流")
+    void testScanWhenDoesNotExist() {
+        try (Stream<Note> notes = storageService.scan()) {
+            assertEquals(0, notes.count());
+        }
+    }
+
+    @Test
+    @DisplayName("⚠️ 文件无法解析时 load 应抛出异常，而不是返回空列表让下一次保存覆盖原文件")
+    void testLoadCorruptFileThrows() throws Exception {
+        Path path = Path.of(TEST_JSON_FILE);
+        Files.writeString(path, "[{\"id\":\"1\",\"title\":");
+
+        assertThrows(IllegalStateException.class, () -> storageService.load());
+        assertEquals("[{\"id\":\"1\",\"title\":", Files.readString(path), "原文件不应被修改");
+    }
+
+    @Test
+    @DisplayName("✅ 原子替换应保留原文件的权限，而不是变成临时文件的 0600")
+    void testSavePreservesPermissions() throws Exception {
+        Path path = Path.of(TEST_JSON_FILE);
+        Assumptions.assumeTrue(Files.getFileAttributeView(path.toAbsolutePath().getParent(),
+                PosixFileAttributeView.class) != null, "只在支持 POSIX 权限的文件系统上验证");
+        storageService.save(List.of(new Note("First", "v1")));
+        Set<PosixFilePermission> shared = PosixFilePermissions.fromString("rw-rw-r--");
+        Files.setPosixFilePermissions(path, shared);
+
+        storageService.save(List.of(new Note("Second", "v2")));
+
+        assertEquals(shared, Files.getPosixFilePermissions(path));
+        assertEquals("Second", storageService.load().get(0).getTitle());
+    }
+
+    @Test
+    @DisplayName("✅ 第一次保存新建的文件应使用默认权限（受 umask 约束），而不是临时文件的 0600")
+    void testNewFileUsesDefaultPermissions() throws Exception {
+        Path path = Path.of(TEST_JSON_FILE);
+        Assumptions.assumeTrue(Files.getFileAttributeView(path.toAbsolutePath().getParent(),
+                PosixFileAttributeView.class) != null, "只在支持 POSIX 权限的文件系统上验证");
+        Path reference = Files.createFile(Path.of(TEST_JSON_FILE + ".reference"));
+        try {
+            storageService.save(List.of(new Note("First", "v1")));
+            assertEquals(Files.getPosixFilePermissions(reference), Files.getPosixFilePermissions(path));
+        } finally {
+            Files.delete(reference);
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.ZhangRuo.pkm.repository;
+
+import com.ZhangRuo.pkm.entity.Note;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("LogStructuredStorageService 追加日志存储测试")
+class LogStructuredStorageServiceTest {
+
+    private static final String TEST_LOG_FILE = "test_notes.log";
+    private LogStructuredStorageService storageService;
+
+    @BeforeEach
+    void setUp() {
+        storageService = new LogStructuredStorageService(TEST_LOG_FILE, 1_000_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        storageService.close();
+        new File(TEST_LOG_FILE).delete();
+        new File(TEST_LOG_FILE + ".compact").delete();
+    }
+
+    private Note newNote(String id, String title) {
+        Note note = new Note(title, "Content of " + title);
+        note.setId(id);
+        return note;
+    }
+
+    @Test
+    @DisplayName("✅ 重新打开日志后应能通过重放恢复所有笔记")
+    void testSaveAndReplay() {
+        List<Note> notes = new ArrayList<>(List.of(newNote("a", "First"), newNote("b", "Second")));
+        storageService.save(notes);
+        storageService.close();
+
+        LogStructuredStorageService reopened = new LogStructuredStorageService(TEST_LOG_FILE);
+        List<Note> loaded = reopened.load();
+        reopened.close();
+
+        assertEquals(2, loaded.size());
+        assertEquals("First", loaded.get(0).getTitle());
+        assertEquals("Second", loaded.get(1).getTitle());
+    }
+
+    @Test
+    @DisplayName("✅ 修改单篇笔记只应追加一条记录，而不是重写整个文件")
+    void testSingleEditAppendsOneRecord() {
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            notes.add(newNote("id-" + i, "Note " + i));
+        }
+        storageService.save(notes);
+        long lengthBefore = storageService.getLogLength();
+
+        List<Note> loaded = storageService.load();
+        loaded.get(10).addTag("edited");
+        storageService.save(loaded);
+
+        long appended = storageService.getLogLength() - lengthBefore;
+        assertTrue(appended > 0);
+        assertTrue(appended < lengthBefore / 10, "一次单篇修改追加的字节数应远小于整个笔记库");
+        assertEquals(1, storageService.getDeadRecordCount());
+    }
+
+    @Test
+    @DisplayName("✅ 从列表中移除的笔记应被记录为删除")
+    void testDeleteIsReplayed() {
+        storageService.save(new ArrayList<>(List.of(newNote("a", "Keep"), newNote("b", "Drop"))));
+        storageService.save(new ArrayList<>(List.of(storageService.load().get(0))));
+        storageService.close();
+
+        LogStructuredStorageService reopened = new LogStructuredStorageService(TEST_LOG_FILE);
+        List<Note> loaded = reopened.load();
+        reopened.close();
+
+        assertEquals(1, loaded.size());
+        assertEquals("a", loaded.get(0).getId());
+    }
+
+    @Test
+    @DisplayName("✅ 压缩后日志应变小且内容保持不变")
+    void testCompaction() {
+        List<Note> notes = new ArrayList<>(List.of(newNote("a", "Busy")));
+        storageService.save(notes);
+        for (int i = 0; i < 20; i++) {
+            Note note = storageService.load().get(0);
+            note.setContent("Revision " + i);
+            storageService.save(List.of(note));
+        }
+        long lengthBefore = storageService.getLogLength();
+
+        assertTrue(storageService.compactNow());
+
+        assertTrue(storageService.getLogLength() < lengthBefore);
+        assertEquals(0, storageService.getDeadRecordCount());
+        storageService.close();
+
+        LogStructuredStorageService reopened = new LogStructuredStorageService(TEST_LOG_FILE);
+        assertEquals("Revision 19", reopened.load().get(0).getContent());
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("✅ 末尾不完整的记录应被忽略并截断")
+    void testTornTailIsIgnored() throws IOException {
+        storageService.save(new ArrayList<>(List.of(newNote("a", "Intact"))));
+        storageService.close();
+        long intactLength = new File(TEST_LOG_FILE).length();
+
+        try (FileOutputStream out = new FileOutputStream(TEST_LOG_FILE, true)) {
+            out.write("{\"seq\":2,\"op\":\"PUT\",\"note\":{\"id\":\"b\",\"tit".getBytes(StandardCharsets.UTF_8));
+        }
+
+        LogStructuredStorageService reopened = new LogStructuredStorageService(TEST_LOG_FILE);
+        assertEquals(1, reopened.load().size());
+        assertEquals(intactLength, new File(TEST_LOG_FILE).length());
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("⚠️ 中间的记录损坏时应报错且不修改日志，不能截断其后的有效记录")
+    void testCorruptMiddleRecordIsNotTruncated() throws IOException {
+        storageService.save(new ArrayList<>(List.of(newNote("a", "First"))));
+        storageService.close();
+        try (FileOutputStream out = new FileOutputStream(TEST_LOG_FILE, true)) {
+            out.write("{\"seq\":2,\"op\":\"PUT\",\"note\":{\"id\":\n".getBytes(StandardCharsets.UTF_8));
+        }
+        LogStructuredStorageService writer = new LogStructuredStorageService(TEST_LOG_FILE + ".valid");
+        writer.upsert(newNote("c", "Third"));
+        writer.close();
+        byte[] validRecord = Files.readAllBytes(new File(TEST_LOG_FILE + ".valid").toPath());
+        new File(TEST_LOG_FILE + ".valid").delete();
+        try (FileOutputStream out = new FileOutputStream(TEST_LOG_FILE, true)) {
+            out.write(validRecord);
+        }
+        long corruptedLength = new File(TEST_LOG_FILE).length();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> new LogStructuredStorageService(TEST_LOG_FILE).load());
+        assertTrue(e.getMessage().contains("第 2 行"), e.getMessage());
+        assertEquals(corruptedLength, new File(TEST_LOG_FILE).length(), "损坏的日志不应被截断");
+    }
+
+    @Test
+    @DisplayName("✅ 最后一条记录缺少换行符时应补上换行符，之后的追加不受影响")
+    void testMissingTrailingNewlineIsRepaired() throws IOException {
+        storageService.save(new ArrayList<>(List.of(newNote("a", "First"))));
+        storageService.upsert(newNote("b", "Second"));
+        storageService.close();
+        try (RandomAccessFile file = new RandomAccessFile(TEST_LOG_FILE, "rw")) {
+            file.setLength(file.length() - 1);// 崩溃发生在写换行符之前
+        }
+
+        LogStructuredStorageService reopened = new LogStructuredStorageService(TEST_LOG_FILE);
+        assertEquals(2, reopened.load().size());
+        reopened.upsert(newNote("c", "Third"));
+        reopened.close();
+
+        LogStructuredStorageService again = new LogStructuredStorageService(TEST_LOG_FILE);
+        assertEquals(3, again.load().size());
+        assertEquals(new File(TEST_LOG_FILE).length(), again.getLogLength());
+        again.close();
+    }
+
+    @Test
+    @DisplayName("✅ upsert 与 delete 应只追加单条记录")
+    void testRecordOperations() {
+        storageService.upsert(newNote("a", "First"));
+        long lengthAfterFirst = storageService.getLogLength();
+        Note unchanged = storageService.findById("a").get();
+        storageService.upsert(unchanged);
+        assertEquals(lengthAfterFirst, storageService.getLogLength(), "内容未变化时不应写盘");
+
+        assertTrue(storageService.delete("a"));
+        assertFalse(storageService.delete("a"));
+        assertTrue(storageService.findById("a").isEmpty());
+        assertEquals(2, storageService.generation());
+    }
+}
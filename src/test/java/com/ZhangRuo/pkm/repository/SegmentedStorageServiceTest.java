@@ -0,0 +1,119 @@
+package com.ZhangRuo.pkm.repository;
+
+import com.ZhangRuo.pkm.entity.Note;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("SegmentedStorageService 分段并行加载测试")
+class SegmentedStorageServiceTest {
+
+    private static final String TEST_ROOT_DIR = "test_notes_segments";
+    private SegmentedStorageService storageService;
+
+    @BeforeEach
+    void setUp() {
+        storageService = new SegmentedStorageService(TEST_ROOT_DIR, 4, 4);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Path root = Path.of(TEST_ROOT_DIR);
+        if (Files.exists(root)) {
+            try (Stream<Path> paths = Files.walk(root)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    private List<Note> newNotes(int count) {
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Note note = new Note("Note " + i, "Content " + i);
+            note.setId("id-" + i);
+            notes.add(note);
+        }
+        return notes;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of(TEST_ROOT_DIR))) {
+            return files.filter(path -> path.getFileName().toString().startsWith("segment-")
+                    && path.getFileName().toString().endsWith(".json")).collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    @DisplayName("✅ 并行加载后应保持原有的存储顺序")
+    void testSaveAndParallelLoad() throws IOException {
+        storageService.save(newNotes(200));
+
+        List<Note> loaded = new SegmentedStorageService(TEST_ROOT_DIR).load();
+
+        assertEquals(4, segmentFiles().size());
+        assertEquals(200, loaded.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals("id-" + i, loaded.get(i).getId());
+        }
+    }
+
+    @Test
+    @DisplayName("✅ 修改单篇笔记只应重写它所在的那一段")
+    void testUpsertRewritesOneSegment() throws IOException {
+        storageService.save(newNotes(40));
+        List<Path> before = segmentFiles();
+
+        Note note = storageService.findById("id-7").get();
+        note.setContent("edited");
+        storageService.upsert(note);
+
+        List<Path> after = segmentFiles();
+        assertEquals(before.size(), after.size());
+        after.retainAll(before);
+        assertEquals(before.size() - 1, after.size(), "只有一个段文件应被替换");
+        assertEquals("edited", storageService.findById("id-7").get().getContent());
+        assertTrue(storageService.delete("id-7"));
+        assertEquals(39, storageService.load().size());
+    }
+
+    @Test
+    @DisplayName("⚠️ 损坏的段应被隔离，其余笔记照常加载")
+    void testCorruptSegmentIsIsolated() throws IOException {
+        storageService.save(newNotes(100));
+        Path victim = segmentFiles().get(0);
+        Files.write(victim, "[{\"seq\":0,\"note\":{\"id\":\"broken\"".getBytes(StandardCharsets.UTF_8));
+
+        SegmentedStorageService reopened = new SegmentedStorageService(TEST_ROOT_DIR);
+        List<Note> loaded = reopened.load();
+
+        assertTrue(loaded.size() > 0 && loaded.size() < 100);
+        assertEquals(List.of(victim.getFileName().toString()), reopened.getCorruptSegments());
+
+        reopened.save(loaded);
+        assertTrue(Files.exists(victim.resolveSibling(victim.getFileName() + ".corrupt")), "损坏的段文件应被保留以便人工恢复");
+        assertEquals(loaded.size(), new SegmentedStorageService(TEST_ROOT_DIR).load().size());
+    }
+
+    @Test
+    @DisplayName("✅ 每次写入后版本代数应递增")
+    void testGeneration() {
+        long before = storageService.generation();
+        storageService.save(newNotes(3));
+        assertTrue(storageService.generation() > before);
+    }
+}
@@ -0,0 +1,124 @@
+package com.ZhangRuo.pkm.repository;
+
+import com.ZhangRuo.pkm.entity.Note;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ShardedStorageService 分片目录存储测试")
+class ShardedStorageServiceTest {
+
+    private static final String TEST_ROOT_DIR = "test_notes_sharded";
+    private ShardedStorageService storageService;
+
+    @BeforeEach
+    void setUp() {
+        storageService = new ShardedStorageService(TEST_ROOT_DIR, 4);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Path root = Path.of(TEST_ROOT_DIR);
+        if (Files.exists(root)) {
+            try (Stream<Path> paths = Files.walk(root)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+
+    private Note newNote(String id, String title) {
+        Note note = new Note(title, "Content of " + title);
+        note.setId(id);
+        return note;
+    }
+
+    @Test
+    @DisplayName("✅ 保存后重新打开应按原顺序恢复所有笔记")
+    void testSaveAndReload() {
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            notes.add(newNote("id-" + (99 - i), "Note " + i));
+        }
+        storageService.save(notes);
+
+        List<Note> loaded = new ShardedStorageService(TEST_ROOT_DIR).load();
+
+        assertEquals(100, loaded.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("Note " + i, loaded.get(i).getTitle());
+        }
+    }
+
+    @Test
+    @DisplayName("✅ 修改单篇笔记只应重写它自己的文件")
+    void testUpsertRewritesOneFile() throws IOException {
+        storageService.save(new ArrayList<>(List.of(newNote("aa-1", "First"), newNote("bb-2", "Second"))));
+        Path first = storageService.noteFile("aa-1");
+        Path second = storageService.noteFile("bb-2");
+        FileTime old = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(first, old);
+        Files.setLastModifiedTime(second, old);
+
+        Note edited = storageService.findById("bb-2").get();
+        edited.setContent("edited");
+        storageService.upsert(edited);
+
+        assertEquals(old, Files.getLastModifiedTime(first), "未修改的笔记文件不应被重写");
+        assertNotEquals(old, Files.getLastModifiedTime(second));
+        List<Note> loaded = storageService.load();
+        assertEquals(List.of("aa-1", "bb-2"), loaded.stream().map(Note::getId).collect(Collectors.toList()));
+        assertEquals("edited", loaded.get(1).getContent());
+    }
+
+    @Test
+    @DisplayName("✅ 新笔记应追加到末尾，删除后不再出现")
+    void testUpsertAndDelete() {
+        storageService.upsert(newNote("b", "B"));
+        storageService.upsert(newNote("a", "A"));
+
+        assertEquals(List.of("b", "a"), storageService.load().stream().map(Note::getId).collect(Collectors.toList()));
+        assertTrue(storageService.delete("b"));
+        assertFalse(storageService.delete("b"));
+        assertTrue(storageService.findById("b").isEmpty());
+        assertEquals(1, storageService.load().size());
+    }
+
+    @Test
+    @DisplayName("✅ 每次写入后版本代数应递增，且能被其他实例看到")
+    void testGenerationVisibleAcrossInstances() {
+        storageService.upsert(newNote("a", "A"));
+        ShardedStorageService other = new ShardedStorageService(TEST_ROOT_DIR);
+        long before = other.generation();
+
+        storageService.upsert(newNote("b", "B"));
+
+        assertTrue(other.generation() > before);
+        assertEquals(2, other.load().size());
+    }
+
+    @Test
+    @DisplayName("✅ 特殊字符ID应被编码为安全的文件名")
+    void testEncodeFileName() {
+        assertEquals("abc-1_2", ShardedStorageService.encodeFileName("abc-1_2"));
+        assertEquals("%2F%2E%2E%41", ShardedStorageService.encodeFileName("/..A"));
+
+        storageService.upsert(newNote("../Evil", "Evil"));
+        assertEquals("Evil", storageService.findById("../Evil").get().getTitle());
+        assertTrue(storageService.noteFile("../Evil").startsWith(Path.of(TEST_ROOT_DIR).toAbsolutePath()));
+    }
+}
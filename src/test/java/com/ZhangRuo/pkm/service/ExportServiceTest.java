@@ -137,4 +137,24 @@ class ExportServiceTest {
         String actualContent = Files.readString(Path.of(TEST_FILE_PATH));
         assertEquals(expectedContent, actualContent);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("✅ exportNotes 应能直接消费迭代器逐篇导出")
+    void testExportNotes_FromIterator() throws IOException {
+        Note note1 = new Note("First", "one");
+        note1.setCreatedAt(LocalDateTime.of(2023, 1, 1, 10, 0));
+        note1.setUpdatedAt(LocalDateTime.of(2023, 1, 1, 11, 0));
+        Note note2 = new Note("Second", "two");
+        note2.setCreatedAt(LocalDateTime.of(2023, 1, 2, 10, 0));
+        note2.setUpdatedAt(LocalDateTime.of(2023, 1, 2, 11, 0));
+
+        int exported = exportService.exportNotes(List.of(note1, note2).iterator(), TEST_FILE_PATH, ExportFormat.TEXT);
+
+        // 迭代器版本的输出应与列表版本完全一致
+        String fromIterator = Files.readString(Path.of(TEST_FILE_PATH));
+        exportService.exportNotes(List.of(note1, note2), TEST_FILE_PATH, ExportFormat.TEXT);
+        assertEquals(2, exported);
+        assertEquals(Files.readString(Path.of(TEST_FILE_PATH)), fromIterator);
+        assertEquals(1, fromIterator.split("---").length - 1, "两篇笔记之间应只有一个分隔符");
+    }
+}
@@ -0,0 +1,131 @@
+package com.ZhangRuo.pkm.service;
+
+import com.ZhangRuo.pkm.entity.Note;
+import com.ZhangRuo.pkm.enums.TagMatchMode;
+import com.ZhangRuo.pkm.repository.JsonStorageService;
+import com.ZhangRuo.pkm.repository.StorageService;
+import com.ZhangRuo.pkm.service.index.NoteIndex;
+import com.ZhangRuo.pkm.service.query.QueryParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("QueryCache 查询结果缓存测试")
+class QueryCacheTest {
+
+    private static final String TEST_FILE_PATH = "test_notes_query_cache.json";
+    private NoteIndex noteIndex;
+    private QueryCache queryCache;
+    private NoteService noteService;
+    private TagService tagService;
+
+    @BeforeEach
+    void setUp() {
+        StorageService storageService = new JsonStorageService(TEST_FILE_PATH);
+        noteIndex = new NoteIndex(storageService);
+        queryCache = new QueryCache(noteIndex, 2);
+        noteService = new NoteService(storageService, noteIndex, queryCache);
+        tagService = new TagService(storageService, noteIndex);
+    }
+
+    @AfterEach
+    void tearDown() {
+        new File(TEST_FILE_PATH).delete();
+    }
+
+    @Test
+    @DisplayName("✅ 重复的搜索应命中缓存，只有大小写不同的关键词共用一条结果")
+    void testRepeatedSearchHits() {
+        noteService.createNote("Learning Java", "Java is an object-oriented language.");
+
+        List<Note> first = noteService.searchNotesByKeyword("java");
+        List<Note> second = noteService.searchNotesByKeyword("JAVA");
+
+        assertSame(first, second);
+        assertEquals(1, queryCache.stats().getHits());
+        assertEquals(1, queryCache.stats().getMisses());
+        assertThrows(UnsupportedOperationException.class, () -> second.add(second.get(0)), "缓存的结果应不可修改");
+    }
+
+    @Test
+    @DisplayName("✅ 任何写入都应使缓存失效，之后的查询看到最新的笔记库")
+    void testWritesInvalidate() {
+        Note note = noteService.createNote("Learning Java", "content");
+        assertEquals(1, noteService.searchNotesByKeyword("java").size());
+        assertTrue(noteService.findNotesByTag("java").isEmpty());
+        long generation = noteIndex.generation();
+
+        // 1. 新增笔记
+        noteService.createNote("Java Streams", "content");
+        assertTrue(noteIndex.generation() > generation);
+        assertEquals(2, noteService.searchNotesByKeyword("java").size());
+
+        // 2. 打标签
+        tagService.addTagToNote(note.getId(), "java");
+        assertEquals(1, noteService.findNotesByTag("java").size());
+
+        // 3. 删除笔记
+        noteService.deleteNote(note.getId());
+        assertEquals(1, noteService.searchNotesByKeyword("java").size());
+        assertTrue(noteService.findNotesByTag("java").isEmpty());
+
+        assertEquals(0, queryCache.stats().getHits());
+        assertTrue(queryCache.stats().getInvalidations() >= 3);
+    }
+
+    @Test
+    @DisplayName("✅ 标签的先后顺序不影响缓存键，超出容量时淘汰最久未访问的结果")
+    void testNormalizedKeysAndEviction() {
+        Note note = noteService.createNote("Note", "content");
+        tagService.addTagToNote(note.getId(), "a");
+        tagService.addTagToNote(note.getId(), "b");
+
+        noteService.findNotesByTags(List.of("a", "b"), TagMatchMode.AND, List.of());
+        noteService.findNotesByTags(List.of("b", "a"), TagMatchMode.AND, List.of());
+        assertEquals(1, queryCache.stats().getHits());
+
+        noteService.searchNotesByKeyword("note");
+        noteService.findNotesByTags(List.of("a", "b"), TagMatchMode.AND, List.of());// 刚访问过，不会被淘汰
+        noteService.searchNotesByKeyword("content");// 容量为 2，淘汰 "note"
+        assertEquals(1, queryCache.stats().getEvictions());
+        assertEquals(2, queryCache.stats().getSize());
+
+        noteService.findNotesByTags(List.of("a", "b"), TagMatchMode.AND, List.of());
+        assertEquals(3, queryCache.stats().getHits());
+        noteService.searchNotesByKeyword("note");
+        assertEquals(3, queryCache.stats().getHits());
+    }
+
+    @Test
+    @DisplayName("✅ 结构化查询和标签云也应使用缓存，explain 查询总是重新执行")
+    void testQueryServiceAndTagCloud() {
+        Note note = noteService.createNote("设计模式", "单例");
+        tagService.addTagToNote(note.getId(), "java");
+        QueryService queryService = new QueryService(noteIndex, queryCache);
+        AdvancedSearchService advancedSearchService = new AdvancedSearchService(noteIndex, queryCache);
+
+        QueryService.QueryResult first = queryService.search(QueryParser.parse("tag:java 设计"), 10, false);
+        assertSame(first, queryService.search(QueryParser.parse("tag:java AND 设计"), 10, false));
+        assertFalse(queryService.search(QueryParser.parse("tag:java 设计"), 10, true).getPlan().isEmpty());
+
+        Map<String, Long> cloud = advancedSearchService.generateTagCloud();
+        assertSame(cloud, advancedSearchService.generateTagCloud());
+        assertEquals(Map.of("java", 1L), cloud);
+
+        tagService.addTagToNote(note.getId(), "设计");
+        assertEquals(2, advancedSearchService.generateTagCloud().size());
+    }
+
+    @Test
+    @DisplayName("⚠️ 容量必须为正数")
+    void testInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new QueryCache(noteIndex, 0));
+    }
+}
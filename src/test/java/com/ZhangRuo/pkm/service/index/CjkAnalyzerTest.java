@@ -0,0 +1,80 @@
+package com.ZhangRuo.pkm.service.index;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CjkAnalyzer 中文分析器测试")
+class CjkAnalyzerTest {
+
+    private final CjkAnalyzer analyzer = new CjkAnalyzer();
+
+    private List<String> terms(String text) {
+        List<String> terms = new ArrayList<>();
+        analyzer.analyze(analyzer.normalize(text), (term, position) -> terms.add(term + "@" + position));
+        return terms;
+    }
+
+    @Test
+    @DisplayName("✅ 连续的汉字应产出单字和相邻二元词项")
+    void testCjkUnigramsAndBigrams() {
+        assertEquals(List.of("设@0", "设计@0", "计@1", "计模@1", "模@2", "模式@2", "式@3"), terms("设计模式"));
+    }
+
+    @Test
+    @DisplayName("✅ 中英文混排时拉丁词项整体保留，汉字按单字和二元切分")
+    void testMixedLatinAndCjk() {
+        assertEquals(List.of("java@0", "并@1", "并发@1", "发@2", "v2@3"), terms("Java并发 v2"));
+    }
+
+    @Test
+    @DisplayName("✅ 全角字符应折叠为半角并转为小写，且不改变文本长度")
+    void testFullWidthNormalization() {
+        String normalized = analyzer.normalize("ＪＡＶＡ　１２３！");
+        assertEquals("java 123!", normalized);
+        assertEquals("ＪＡＶＡ　１２３！".length(), normalized.length());
+        assertNull(analyzer.normalize(null));
+    }
+
+    @Test
+    @DisplayName("✅ 折叠匹配应与先归一化再 contains 的结果一致")
+    void testContainsNormalized() {
+        String text = "学习ＪＡＶＡ设计模式 Java Streams";
+        for (String keyword : List.of("java", "Java", "ｊａｖａ", "设计模式", "a s", "streams", "学习j")) {
+            String normalized = analyzer.normalize(keyword);
+            assertEquals(analyzer.normalize(text).contains(normalized),
+                    analyzer.containsNormalized(text, normalized), keyword);
+            assertTrue(analyzer.containsNormalized(text, normalized), keyword);
+        }
+    }
+
+    @Test
+    @DisplayName("⚠️ 不包含关键词、文本过短或为 null 时折叠匹配应返回 false")
+    void testContainsNormalizedNoMatch() {
+        assertFalse(analyzer.containsNormalized("设计模式", "模式设计"));
+        assertFalse(analyzer.containsNormalized("jav", "java"));
+        assertFalse(analyzer.containsNormalized(null, "java"));
+        assertTrue(analyzer.containsNormalized("任意文本", ""));
+    }
+
+    @Test
+    @DisplayName("⚠️ 已经是小写半角的文本归一化时不应复制")
+    void testNormalizeReturnsSameInstanceWhenAlreadyFolded() {
+        String text = "java 设计模式";
+        assertSame(text, analyzer.normalize(text));
+    }
+
+    @Test
+    @DisplayName("⚠️ 只有一到两个汉字的词项可以精确查找")
+    void testIsExactTerm() {
+        assertTrue(analyzer.isExactTerm("设"));
+        assertTrue(analyzer.isExactTerm("设计"));
+        assertFalse(analyzer.isExactTerm("设计模"));
+        assertFalse(analyzer.isExactTerm("java"));
+        assertFalse(analyzer.isExactTerm("设a"));
+    }
+}
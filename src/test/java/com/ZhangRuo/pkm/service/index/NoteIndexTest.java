@@ -0,0 +1,576 @@
+package com.ZhangRuo.pkm.service.index;
+
+import com.ZhangRuo.pkm.entity.Note;
+import com.ZhangRuo.pkm.enums.DateField;
+import com.ZhangRuo.pkm.enums.TagMatchMode;
+import com.ZhangRuo.pkm.repository.JsonStorageService;
+import com.ZhangRuo.pkm.repository.StorageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("NoteIndex 倒排索引测试")
+class NoteIndexTest {
+
+    private static final String TEST_FILE_PATH = "test_notes_index.json";
+    private static final String TEST_SNAPSHOT_PATH = "test_notes_index.idx";
+    private StorageService storageService;
+    private NoteIndex noteIndex;
+
+    @BeforeEach
+    void setUp() {
+        storageService = new JsonStorageService(TEST_FILE_PATH);
+        noteIndex = new NoteIndex(storageService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        new File(TEST_FILE_PATH).delete();
+        new File(TEST_SNAPSHOT_PATH).delete();
+    }
+
+    /**
+     * 记录分析过多少个字段的分析器，用来确认哪些笔记被重新索引了。
+     */
+    private static class CountingAnalyzer extends CjkAnalyzer {
+        int analyzed = 0;
+
+        @Override
+        public void analyze(String normalizedText, TermConsumer consumer) {
+            analyzed++;
+            super.analyze(normalizedText, consumer);
+        }
+    }
+
+    private NoteIndex newPersistentIndex(CountingAnalyzer analyzer) {
+        return new NoteIndex(storageService, analyzer, Path.of(TEST_SNAPSHOT_PATH));
+    }
+
+    private Note newNote(String id, String title, String content) {
+        Note note = new Note(title, content);
+        note.setId(id);
+        return note;
+    }
+
+    private List<String> idsOf(List<Note> notes) {
+        return notes.stream().map(Note::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("✅ 关键词为词项的一部分时也应命中（子串语义），且不区分大小写")
+    void testSubstringInsideTerm() {
+        noteIndex.upsert(newNote("1", "Java Programming", "Learn generics"));
+        noteIndex.upsert(newNote("2", "Python", "Scripting language"));
+
+        assertEquals(List.of("1"), idsOf(noteIndex.searchKeyword("GRAM")));
+        assertEquals(List.of("1"), idsOf(noteIndex.searchKeyword("generic")));
+        assertEquals(List.of("1", "2"), idsOf(noteIndex.searchKeyword("n")));
+    }
+
+    @Test
+    @DisplayName("✅ 跨越多个词项的关键词应做最终子串校验")
+    void testMultiTermKeywordIsVerified() {
+        noteIndex.upsert(newNote("1", "a", "design patterns, in depth"));
+        noteIndex.upsert(newNote("2", "b", "patterns of design"));
+
+        assertEquals(List.of("1"), idsOf(noteIndex.searchKeyword("design pattern")));
+        assertEquals(List.of("1"), idsOf(noteIndex.searchKeyword("patterns, in")));
+        assertTrue(noteIndex.searchKeyword("design  pattern").isEmpty());
+    }
+
+    @Test
+    @DisplayName("✅ 创建、修改、删除笔记应增量地反映到索引中")
+    void testIncrementalUpdates() {
+        Note note = newNote("1", "Draft", "first version");
+        noteIndex.upsert(note);
+        assertEquals(1, noteIndex.searchKeyword("first").size());
+
+        note.setContent("second version");
+        noteIndex.upsert(note);
+        assertTrue(noteIndex.searchKeyword("first").isEmpty());
+        assertEquals(1, noteIndex.searchKeyword("second").size());
+
+        assertTrue(noteIndex.delete("1"));
+        assertTrue(noteIndex.searchKeyword("second").isEmpty());
+        assertEquals(0, noteIndex.size());
+        assertEquals(0, storageService.load().size());
+    }
+
+    @Test
+    @DisplayName("⚠️ 存储被绕过索引直接修改后，下一次查询应自动重建")
+    void testRebuildAfterExternalWrite() {
+        noteIndex.upsert(newNote("1", "Alpha", "one"));
+        assertEquals(1, noteIndex.searchKeyword("alpha").size());
+
+        List<Note> notes = storageService.load();
+        notes.add(newNote("2", "Alphabet", "two"));
+        storageService.save(notes);
+
+        assertEquals(List.of("1", "2"), idsOf(noteIndex.searchKeyword("alpha")));
+    }
+
+    @Test
+    @DisplayName("✅ 存储被外部修改后，按标签、按时间列出和标签计数只重建元数据，不分析任何正文")
+    void testAttributeQueriesSkipTextIndex() {
+        CountingAnalyzer analyzer = new CountingAnalyzer();
+        NoteIndex index = new NoteIndex(storageService, analyzer);
+        Note java = newNote("1", "Java", "generics");
+        java.addTag("lang");
+        index.upsert(java);
+        assertEquals(1, index.findByTag("lang").size());
+
+        List<Note> notes = storageService.load();
+        Note rust = newNote("2", "Rust", "ownership");
+        rust.addTag("lang");
+        notes.add(rust);
+        storageService.save(notes);
+
+        analyzer.analyzed = 0;
+        assertEquals(List.of("1", "2"), idsOf(index.findByTag("lang")));
+        assertEquals(Map.of("lang", 2), index.tagCounts());
+        assertEquals(2, index.findByTime(List.of(), TagMatchMode.AND, List.of(),
+                LocalDateTime.now().minusDays(1), null, DateField.UPDATED).size());
+        assertEquals(0, analyzer.analyzed);
+
+        // 第一次关键词查询时才补齐文本索引
+        assertEquals(List.of("2"), idsOf(index.searchKeyword("owner")));
+        assertEquals(4, analyzer.analyzed);
+    }
+
+    @Test
+    @DisplayName("⚠️ 纯标点的关键词没有可索引的词项，应退化为逐篇校验")
+    void testPunctuationOnlyKeyword() {
+        noteIndex.upsert(newNote("1", "Q&A", "what?"));
+        noteIndex.upsert(newNote("2", "Notes", "plain"));
+
+        assertEquals(List.of("1"), idsOf(noteIndex.searchKeyword("&")));
+        assertEquals(List.of("1"), idsOf(noteIndex.searchKeyword("?")));
+    }
+
+    @Test
+    @DisplayName("✅ 三元组路径：跨越单词边界和标点的子串应精确命中")
+    void testTrigramSubstringAcrossWords() {
+        noteIndex.upsert(newNote("1", "HashMap internals", "buckets, load factor"));
+        noteIndex.upsert(newNote("2", "Hash", "map of buckets"));
+
+        assertEquals(List.of("1"), idsOf(noteIndex.searchKeyword("shmap int")));
+        assertEquals(List.of("1"), idsOf(noteIndex.searchKeyword("ts, lo")));
+        assertEquals(List.of("1", "2"), idsOf(noteIndex.searchKeyword("bucket")));
+    }
+
+    @Test
+    @DisplayName("⚠️ 三元组全部出现但子串本身不存在时，最终校验应过滤掉候选")
+    void testTrigramFalsePositiveIsVerified() {
+        // "abcd" 和 "bcde" 合起来包含 "abcde" 的所有三元组，但没有一篇包含 "abcde"
+        noteIndex.upsert(newNote("1", "abcd", "xx bcde"));
+        noteIndex.upsert(newNote("2", "abcde", ""));
+
+        assertEquals(List.of("2"), idsOf(noteIndex.searchKeyword("abcde")));
+    }
+
+    @Test
+    @DisplayName("✅ 三元组索引只返回包含全部三元组的少量候选")
+    void testTrigramIndexNarrowsCandidates() {
+        TrigramIndex index = new TrigramIndex();
+        for (int doc = 0; doc < 1000; doc++) {
+            index.add(doc, "note number " + doc + (doc % 100 == 7 ? " rare-word" : ""));
+        }
+
+        assertArrayEquals(new int[]{7, 107, 207, 307, 407, 507, 607, 707, 807, 907},
+                index.candidates("rare-w"));
+        assertEquals(0, index.candidates("zzz").length);
+
+        index.remove(107);
+        assertEquals(9, index.candidates("rare-w").length);
+    }
+
+    @Test
+    @DisplayName("✅ 中文关键词应通过单字/二元词项和三元组命中，并兼容全角字符")
+    void testChineseKeywordSearch() {
+        noteIndex.upsert(newNote("1", "设计模式笔记", "单例模式与工厂模式"));
+        noteIndex.upsert(newNote("2", "Ｊａｖａ并发", "线程池的设计"));
+        noteIndex.upsert(newNote("3", "读书", "模型与式样"));
+
+        assertEquals(List.of("1"), idsOf(noteIndex.searchKeyword("模式")));
+        assertEquals(List.of("1", "2"), idsOf(noteIndex.searchKeyword("设计")));
+        assertEquals(List.of("1"), idsOf(noteIndex.searchKeyword("工厂模式")));
+        assertEquals(List.of("2"), idsOf(noteIndex.searchKeyword("java并")));
+        assertEquals(List.of("2"), idsOf(noteIndex.searchKeyword("ＪＡＶＡ")));
+        assertTrue(noteIndex.searchKeyword("式模").isEmpty());
+    }
+
+    @Test
+    @DisplayName("✅ 排序搜索：标题命中应排在正文命中之前，词频高的排在前面")
+    void testRankedSearchOrdersByRelevance() {
+        noteIndex.upsert(newNote("1", "Misc", "a note that mentions java once among many other words here"));
+        noteIndex.upsert(newNote("2", "Java", "introduction"));
+        noteIndex.upsert(newNote("3", "Other", "java java java"));
+        noteIndex.upsert(newNote("4", "Unrelated", "python"));
+
+        assertEquals(List.of("2", "3", "1"), idsOf(noteIndex.searchRanked("java", 10)));
+    }
+
+    @Test
+    @DisplayName("✅ 排序搜索：limit 应只返回得分最高的前 K 篇，且与完整排序的前 K 篇一致")
+    void testRankedSearchTopK() {
+        for (int i = 0; i < 50; i++) {
+            String content = "java ".repeat(1 + i % 7) + "filler text number " + i;
+            noteIndex.upsert(newNote("n" + i, "Note " + i, content));
+        }
+
+        List<String> all = idsOf(noteIndex.searchRanked("java", Integer.MAX_VALUE));
+        assertEquals(50, all.size());
+        assertEquals(all.subList(0, 5), idsOf(noteIndex.searchRanked("java", 5)));
+        assertTrue(noteIndex.searchRanked("java", 0).isEmpty());
+    }
+
+    @Test
+    @DisplayName("⚠️ 排序搜索：需要校验的候选即使得分很高也不能出现在结果中")
+    void testRankedSearchStillVerifies() {
+        noteIndex.upsert(newNote("1", "abcd bcde", "abcd bcde abcd bcde"));
+        noteIndex.upsert(newNote("2", "x", "abcde"));
+
+        assertEquals(List.of("2"), idsOf(noteIndex.searchRanked("abcde", 1)));
+    }
+
+    @Test
+    @DisplayName("✅ 标签位图：AND/OR/NOT 组合应返回正确的笔记，且按存储顺序排列")
+    void testTagBitmapQueries() {
+        Note a = newNote("1", "A", "");
+        a.addTag("java");
+        a.addTag("draft");
+        Note b = newNote("2", "B", "");
+        b.addTag("java");
+        b.addTag("设计模式");
+        Note c = newNote("3", "C", "");
+        c.addTag("python");
+        noteIndex.upsert(a);
+        noteIndex.upsert(b);
+        noteIndex.upsert(c);
+
+        assertEquals(List.of("1", "2"), idsOf(noteIndex.findByTag("java")));
+        assertTrue(noteIndex.findByTag("Java").isEmpty());
+        assertEquals(List.of("2"), idsOf(noteIndex.findByTags(List.of("java", "设计模式"), TagMatchMode.AND, List.of())));
+        assertEquals(List.of("1", "2", "3"), idsOf(noteIndex.findByTags(List.of("java", "python"), TagMatchMode.OR, List.of())));
+        assertEquals(List.of("2", "3"), idsOf(noteIndex.findByTags(List.of("java", "python"), TagMatchMode.OR, List.of("draft"))));
+        assertEquals(List.of("2", "3"), idsOf(noteIndex.findByTags(List.of(), TagMatchMode.AND, List.of("draft"))));
+        assertTrue(noteIndex.findByTags(List.of("java", "missing"), TagMatchMode.AND, List.of()).isEmpty());
+    }
+
+    @Test
+    @DisplayName("✅ 标签位图：增删标签和删除笔记应增量地反映到位图中")
+    void testTagBitmapIncrementalUpdates() {
+        Note note = newNote("1", "A", "");
+        noteIndex.upsert(note);
+        assertTrue(noteIndex.findByTag("java").isEmpty());
+
+        note.addTag("java");
+        noteIndex.upsert(note);
+        assertEquals(1, noteIndex.findByTag("java").size());
+
+        note.removeTag("java");
+        note.addTag("python");
+        noteIndex.upsert(note);
+        assertTrue(noteIndex.findByTag("java").isEmpty());
+        assertEquals(1, noteIndex.findByTag("python").size());
+
+        noteIndex.delete("1");
+        assertTrue(noteIndex.findByTag("python").isEmpty());
+        assertTrue(noteIndex.findByTags(List.of(), TagMatchMode.AND, List.of("x")).isEmpty());
+    }
+
+    @Test
+    @DisplayName("✅ 标签计数器应随打标签、去标签和删除笔记同步更新")
+    void testTagCountsFollowTagChanges() {
+        Note a = newNote("1", "A", "");
+        a.addTag("Java");
+        a.addTag("Programming");
+        Note b = newNote("2", "B", "");
+        b.addTag("Java");
+        noteIndex.upsert(a);
+        noteIndex.upsert(b);
+        assertEquals(Map.of("Java", 2, "Programming", 1), noteIndex.tagCounts());
+
+        b.removeTag("Java");
+        b.addTag("OOP");
+        noteIndex.upsert(b);
+        assertEquals(Map.of("Java", 1, "Programming", 1, "OOP", 1), noteIndex.tagCounts());
+
+        noteIndex.delete("1");
+        assertEquals(Map.of("OOP", 1), noteIndex.tagCounts());
+        assertEquals(List.of("2"), idsOf(noteIndex.findByTagKeyword("oo")));
+    }
+
+    @Test
+    @DisplayName("✅ 标签字典：前缀补全应不区分大小写、按字典顺序返回，并遵守数量上限")
+    void testTagPrefixCompletion() {
+        String[][] tagsById = {{"Java", "javascript"}, {"JAVA", "jvm"}, {"python"}, {"java"}};
+        for (int i = 0; i < tagsById.length; i++) {
+            Note note = newNote(String.valueOf(i + 1), "N" + i, "");
+            for (String tag : tagsById[i]) {
+                note.addTag(tag);
+            }
+            noteIndex.upsert(note);
+        }
+
+        assertEquals(List.of("JAVA", "Java", "java", "javascript"),
+                List.copyOf(noteIndex.completeTags("Ja", 10).keySet()));
+        assertEquals(List.of("JAVA", "Java"), List.copyOf(noteIndex.completeTags("ja", 2).keySet()));
+        assertEquals(1, noteIndex.completeTags("jv", 10).get("jvm"));
+        assertTrue(noteIndex.completeTags("rust", 10).isEmpty());
+        assertEquals(List.of("1", "2", "4"), idsOf(noteIndex.findByTagPrefix("JAV")));
+    }
+
+    @Test
+    @DisplayName("⚠️ 标签字典：最后一篇使用某标签的笔记去掉该标签后，标签应从字典中消失")
+    void testTagDictionaryDropsUnusedTags() {
+        Note note = newNote("1", "A", "");
+        note.addTag("draft");
+        noteIndex.upsert(note);
+        assertEquals(List.of("draft"), List.copyOf(noteIndex.completeTags("d", 10).keySet()));
+
+        note.removeTag("draft");
+        noteIndex.upsert(note);
+        assertTrue(noteIndex.completeTags("d", 10).isEmpty());
+        assertTrue(noteIndex.findByTagKeyword("raf").isEmpty());
+    }
+
+    @Test
+    @DisplayName("✅ 索引快照：存储未变化时新的索引应直接装入快照，不重新分析任何笔记")
+    void testWarmStartFromSnapshot() {
+        storageService.upsert(newNote("1", "Java 并发", "线程池与锁"));
+        storageService.upsert(newNote("2", "Python", "Scripting language"));
+        NoteIndex first = newPersistentIndex(new CountingAnalyzer());
+        assertEquals(List.of("1"), idsOf(first.searchKeyword("并发")));
+        assertTrue(new File(TEST_SNAPSHOT_PATH).exists());
+
+        CountingAnalyzer analyzer = new CountingAnalyzer();
+        NoteIndex second = newPersistentIndex(analyzer);
+        assertEquals(2, second.size());
+        assertEquals(0, analyzer.analyzed);
+        assertEquals(List.of("1"), idsOf(second.searchKeyword("线程池")));
+        assertEquals(List.of("2"), idsOf(second.searchRanked("script", 10)));
+        assertEquals(List.of("1", "2"), idsOf(second.searchKeyword("a")));
+        // 位置信息也应随快照恢复，短语仍在位置索引上求值
+        assertEquals(Integer.valueOf(1), second.read(view -> view.phraseDocs("scripting language").cardinality()));
+        assertEquals(Integer.valueOf(0), second.read(view -> view.phraseDocs("language scripting").cardinality()));
+    }
+
+    @Test
+    @DisplayName("⚠️ 索引快照：正文被外部直接编辑、修改时间未变时，也应重新索引这篇笔记")
+    void testExternalBodyEditIsDetected() {
+        storageService.upsert(newNote("1", "Ops", "docker compose"));
+        assertEquals(List.of("1"), idsOf(newPersistentIndex(new CountingAnalyzer()).searchKeyword("docker")));
+
+        // 外部程序直接改写了 notes.json 中的正文，没有更新 updatedAt
+        List<Note> notes = storageService.load();
+        Note edited = notes.get(0);
+        LocalDateTime updatedAt = edited.getUpdatedAt();
+        edited.setContent("kubernetes");
+        edited.setUpdatedAt(updatedAt);
+        storageService.save(notes);
+
+        NoteIndex index = newPersistentIndex(new CountingAnalyzer());
+        assertEquals(List.of("1"), idsOf(index.searchKeyword("kubernetes")));
+        assertTrue(index.searchKeyword("docker").isEmpty());
+    }
+
+    @Test
+    @DisplayName("✅ 索引快照：存储在快照之后被修改时，只重新索引新增和修改的笔记")
+    void testIncrementalCatchUpFromSnapshot() {
+        storageService.upsert(newNote("1", "Java", "generics"));
+        storageService.upsert(newNote("2", "Python", "scripting"));
+        storageService.upsert(newNote("3", "Rust", "ownership"));
+        newPersistentIndex(new CountingAnalyzer()).searchKeyword("java");
+
+        // 另一个进程修改了笔记库：改一篇、删一篇、加一篇
+        storageService.upsert(newNote("2", "Python", "data science notebooks"));
+        storageService.delete("3");
+        storageService.upsert(newNote("4", "Go", "goroutines"));
+
+        CountingAnalyzer analyzer = new CountingAnalyzer();
+        NoteIndex index = newPersistentIndex(analyzer);
+        assertEquals(3, index.size());
+        assertEquals(0, analyzer.analyzed);// 只按元数据追赶，文本索引留到关键词查询
+        assertTrue(index.searchKeyword("scripting").isEmpty());
+        assertEquals(4, analyzer.analyzed);// 两篇笔记 × 标题和正文
+        assertEquals(List.of("2"), idsOf(index.searchKeyword("notebook")));
+        assertTrue(index.searchKeyword("ownership").isEmpty());
+        assertEquals(List.of("1", "2", "4"), idsOf(index.searchKeyword("n")));
+
+        // 追赶之后写出的新快照，让再下一次启动不再需要重新分析
+        CountingAnalyzer next = new CountingAnalyzer();
+        assertEquals(List.of("4"), idsOf(newPersistentIndex(next).searchKeyword("goroutine")));
+        assertEquals(0, next.analyzed);
+    }
+
+    @Test
+    @DisplayName("⚠️ 索引快照损坏时应放弃快照并完整重建")
+    void testCorruptSnapshotFallsBackToRebuild() throws IOException {
+        storageService.upsert(newNote("1", "Java", "generics"));
+        Files.write(Path.of(TEST_SNAPSHOT_PATH), new byte[]{'P', 'K', 'M', 'I', 0, 1});
+
+        NoteIndex index = newPersistentIndex(new CountingAnalyzer());
+        assertEquals(List.of("1"), idsOf(index.searchKeyword("generic")));
+
+        CountingAnalyzer analyzer = new CountingAnalyzer();
+        assertEquals(1, newPersistentIndex(analyzer).size());
+        assertEquals(0, analyzer.analyzed);
+    }
+
+    @Test
+    @DisplayName("✅ 索引快照：会话中的增量写入应在 flushSnapshot 后对新的索引可见")
+    void testFlushSnapshotPersistsIncrementalWrites() throws IOException {
+        NoteIndex index = newPersistentIndex(new CountingAnalyzer());
+        index.upsert(newNote("1", "Java", "generics"));
+        assertEquals(1, index.searchKeyword("generic").size());
+        index.upsert(newNote("2", "Kotlin", "coroutines"));
+        assertTrue(index.flushSnapshot() > 0);
+        assertEquals(0, index.flushSnapshot());
+
+        CountingAnalyzer analyzer = new CountingAnalyzer();
+        assertEquals(List.of("2"), idsOf(newPersistentIndex(analyzer).searchKeyword("corout")));
+        assertEquals(0, analyzer.analyzed);
+    }
+
+    @Test
+    @DisplayName("✅ 按修改时间范围列出笔记应与逐篇判断的结果一致，并随修改和删除更新")
+    void testFindByTimeMatchesScan() {
+        // 1. 时间乱序写入，覆盖时间索引的排序和归并
+        Random random = new Random(42);
+        LocalDateTime base = LocalDateTime.parse("2024-01-01T00:00:00");
+        for (int i = 0; i < 300; i++) {
+            Note note = newNote("n" + i, "title " + i, "content");
+            note.setCreatedAt(base.plusHours(i));
+            note.setUpdatedAt(base.plusMinutes(random.nextInt(60 * 24 * 30)));
+            if (i % 3 == 0) {
+                note.addTag("java");
+            }
+            noteIndex.upsert(note);
+        }
+        // 2. 修改和删除一部分笔记，其中包括查询之后的写入
+        LocalDateTime since = base.plusDays(10);
+        LocalDateTime until = base.plusDays(20);
+        noteIndex.findByTime(List.of(), TagMatchMode.AND, List.of(), since, until, DateField.UPDATED);
+        for (int i = 0; i < 300; i += 7) {
+            Note note = storageService.findById("n" + i).orElseThrow();
+            note.setUpdatedAt(base.plusMinutes(random.nextInt(60 * 24 * 30)));
+            noteIndex.upsert(note);
+        }
+        for (int i = 1; i < 300; i += 11) {
+            noteIndex.delete("n" + i);
+        }
+
+        List<Note> expected = new ArrayList<>();
+        for (Note note : storageService.load()) {
+            if (!note.getUpdatedAt().isBefore(since) && note.getUpdatedAt().isBefore(until)) {
+                expected.add(note);
+            }
+        }
+        expected.sort(Comparator.comparing(Note::getUpdatedAt).reversed());
+        assertEquals(idsOf(expected), idsOf(noteIndex.findByTime(List.of(), TagMatchMode.AND, List.of(), since, until, DateField.UPDATED)));
+
+        // 3. 按标签过滤、按创建时间排序、不排序（存储顺序）
+        List<Note> javaNotes = noteIndex.findByTime(List.of("java"), TagMatchMode.AND, List.of(), since, until, DateField.CREATED);
+        List<Note> expectedJava = expected.stream().filter(note -> note.hasTag("java"))
+                .sorted(Comparator.comparing(Note::getCreatedAt).reversed()).collect(Collectors.toList());
+        assertEquals(idsOf(expectedJava), idsOf(javaNotes));
+        assertEquals(idsOf(expected).stream().sorted(Comparator.comparingInt(id -> Integer.parseInt(id.substring(1))))
+                        .collect(Collectors.toList()),
+                idsOf(noteIndex.findByTime(List.of(), TagMatchMode.AND, List.of(), since, until, null)));
+
+        // 4. 不限范围时按创建时间列出全部笔记
+        List<Note> all = noteIndex.findByTime(List.of(), TagMatchMode.AND, List.of(), null, null, DateField.CREATED);
+        assertEquals(storageService.load().size(), all.size());
+        assertEquals("n299", all.get(0).getId());
+    }
+
+    @Test
+    @DisplayName("✅ Levenshtein 自动机与排序字典求交的结果应与逐个计算编辑距离一致")
+    void testLevenshteinAutomatonMatchesBruteForce() {
+        Random random = new Random(7);
+        TreeSet<String> dictionary = new TreeSet<>();
+        for (int i = 0; i < 3000; i++) {
+            StringBuilder term = new StringBuilder();
+            for (int length = 1 + random.nextInt(9); term.length() < length; ) {
+                term.append("abcdeé".charAt(random.nextInt(6)));
+            }
+            dictionary.add(term.toString());
+        }
+        for (String query : List.of("abcde", "badcab", "eeee", "a", "ccccccccc")) {
+            for (int maxEdits = 0; maxEdits <= 2; maxEdits++) {
+                Map<String, Integer> expected = new TreeMap<>();
+                for (String term : dictionary) {
+                    int distance = editDistance(query, term);
+                    if (distance <= maxEdits) {
+                        expected.put(term, distance);
+                    }
+                }
+                assertEquals(expected, new TreeMap<>(new LevenshteinAutomaton(query, maxEdits).intersect(dictionary)),
+                        query + " / " + maxEdits);
+            }
+        }
+    }
+
+    private static int editDistance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int[] current = new int[b.length() + 1];
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                current[j] = Math.min(Math.min(current[j - 1], previous[j]) + 1,
+                        previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1));
+            }
+            previous = current;
+        }
+        return previous[b.length()];
+    }
+
+    @Test
+    @DisplayName("✅ 模糊搜索应容忍拼写错误，精确命中排在前面，并随写入和快照恢复更新词项字典")
+    void testSearchFuzzy() throws IOException {
+        CountingAnalyzer analyzer = new CountingAnalyzer();
+        NoteIndex index = newPersistentIndex(analyzer);
+        index.upsert(newNote("1", "Python Basics", "learn the basics"));
+        index.upsert(newNote("2", "Notes", "pythons are snakes"));
+        index.upsert(newNote("3", "Java", "generics and streams"));
+        index.upsert(newNote("4", "Pyhton", "typo in the title"));
+
+        // "pythons" 与 "pyhton" 相差 3 处，超出了 6 个字符的词允许的 2 处
+        assertEquals(List.of("4", "1"), idsOf(index.searchFuzzy("pyhton", 10)));
+        List<String> python = idsOf(index.searchFuzzy("PYTHON", 10));
+        assertEquals("1", python.get(0));
+        assertEquals(List.of("1", "2", "4"), python.stream().sorted().collect(Collectors.toList()));
+        assertEquals(List.of("3"), idsOf(index.searchFuzzy("genrics strams", 10)));
+        assertEquals(List.of(), idsOf(index.searchFuzzy("jv", 10)), "很短的词只做精确匹配");
+        assertEquals(List.of("4"), idsOf(index.searchFuzzy("pyhton", 1)));
+
+        index.delete("4");
+        assertEquals(List.of("1"), idsOf(index.searchFuzzy("pyhton", 10)));
+        index.flushSnapshot();
+
+        NoteIndex restored = newPersistentIndex(analyzer);
+        assertEquals(List.of("1"), idsOf(restored.searchFuzzy("pyhton", 10)));
+        assertEquals(List.of("1", "2"), idsOf(restored.searchFuzzy("pythonss", 10)).stream().sorted().collect(Collectors.toList()));
+    }
+}
@@ -0,0 +1,290 @@
+package com.ZhangRuo.pkm.service.maintenance;
+
+import com.ZhangRuo.pkm.entity.Note;
+import com.ZhangRuo.pkm.repository.IoBudget;
+import com.ZhangRuo.pkm.repository.JsonStorageService;
+import com.ZhangRuo.pkm.repository.LogStructuredStorageService;
+import com.ZhangRuo.pkm.repository.StorageService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("MaintenanceScheduler 后台维护调度测试")
+class MaintenanceSchedulerTest {
+
+    private static final String TEST_LOG_FILE = "test_maintenance.log";
+    private static final String TEST_BACKUP_DIR = "test_backups";
+
+    private MaintenanceScheduler scheduler;
+
+    /**
+     * 每次运行先申请一次 I/O 预算，再计数的测试任务。
+     */
+    private static class CountingJob implements MaintenanceJob {
+        final AtomicInteger runs = new AtomicInteger();
+        final CountDownLatch finished = new CountDownLatch(1);
+        final boolean fail;
+
+        CountingJob(boolean fail) {
+            this.fail = fail;
+        }
+
+        @Override
+        public String getName() { return fail ? "failing" : "counting"; }
+
+        @Override
+        public String getDescription() { return "测试任务"; }
+
+        @Override
+        public long getIntervalMillis() { return 60_000L; }
+
+        @Override
+        public String run(IoThrottle throttle) throws InterruptedException {
+            throttle.acquire(1);
+            runs.incrementAndGet();
+            finished.countDown();
+            if (fail) {
+                throw new IllegalStateException("模拟失败");
+            }
+            return "完成";
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new MaintenanceScheduler(new IoThrottle(1024 * 1024));
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown(1000);
+        new File(TEST_LOG_FILE).delete();
+        new File(TEST_LOG_FILE + ".compact").delete();
+        File[] backups = new File(TEST_BACKUP_DIR).listFiles();
+        if (backups != null) {
+            for (File backup : backups) {
+                backup.delete();
+            }
+        }
+        new File(TEST_BACKUP_DIR).delete();
+    }
+
+    @Test
+    @DisplayName("✅ runNow 应立即执行任务并记录运行结果")
+    void testRunNowRecordsStatus() throws InterruptedException {
+        CountingJob job = new CountingJob(false);
+        scheduler.register(job);
+        scheduler.start();
+
+        assertTrue(scheduler.runNow("counting"));
+        assertTrue(job.finished.await(5, TimeUnit.SECONDS));
+        waitUntilRecorded();
+
+        MaintenanceScheduler.JobStatus status = scheduler.getStatuses().get(0);
+        assertEquals(1, status.getRunCount());
+        assertEquals("完成", status.getLastResult());
+        assertNotNull(status.getLastRun());
+        assertFalse(scheduler.runNow("no-such-job"));
+    }
+
+    @Test
+    @DisplayName("✅ 暂停期间任务不应执行，恢复后继续")
+    void testPauseBlocksJobs() throws InterruptedException {
+        CountingJob job = new CountingJob(false);
+        scheduler.register(job);
+        scheduler.start();
+
+        scheduler.pause();
+        scheduler.runNow("counting");
+        assertFalse(job.finished.await(200, TimeUnit.MILLISECONDS), "暂停期间不应执行任务");
+
+        scheduler.resume();
+        assertTrue(job.finished.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("⚠️ 任务抛出异常时应记录失败，调度器继续运行")
+    void testFailureIsRecorded() throws InterruptedException {
+        CountingJob job = new CountingJob(true);
+        scheduler.register(job);
+        scheduler.start();
+
+        scheduler.runNow("failing");
+        assertTrue(job.finished.await(5, TimeUnit.SECONDS));
+        waitUntilRecorded();
+
+        MaintenanceScheduler.JobStatus status = scheduler.getStatuses().get(0);
+        assertTrue(status.isLastFailed());
+        assertEquals(1, status.getFailureCount());
+        assertEquals("模拟失败", status.getLastResult());
+        assertTrue(scheduler.isRunning());
+    }
+
+    @Test
+    @DisplayName("✅ I/O 预算用完后应限流等待")
+    void testThrottleLimitsRate() throws InterruptedException {
+        IoThrottle throttle = new IoThrottle(1000);
+        long start = System.currentTimeMillis();
+        throttle.acquire(1200);
+        throttle.acquire(1);
+        assertTrue(System.currentTimeMillis() - start >= 150, "超过桶容量的申请应分段等待，不能透支");
+    }
+
+    @Test
+    @DisplayName("✅ 压缩与备份任务应直接作用于存储")
+    void testCompactionAndBackupJobs() throws Exception {
+        LogStructuredStorageService storage = new LogStructuredStorageService(TEST_LOG_FILE, 1_000_000);
+        Note note = new Note("Title", "v0");
+        note.setId("a");
+        storage.upsert(note);
+        note.setContent("v1");
+        storage.upsert(note);
+        IoThrottle throttle = new IoThrottle(1024 * 1024);
+
+        CompactionJob compaction = new CompactionJob(storage, 60_000L);
+        assertTrue(compaction.run(throttle).startsWith("已压缩"));
+        assertEquals(0, storage.getDeadRecordCount());
+        assertEquals("无需压缩", compaction.run(throttle));
+
+        BackupRotationJob backup = new BackupRotationJob(storage, TEST_BACKUP_DIR, 1, 60_000L);
+        backup.run(throttle);
+        assertEquals(1, new File(TEST_BACKUP_DIR).listFiles().length);
+        assertEquals("已校验 1 篇笔记", new ChecksumScrubJob(storage, 60_000L).run(throttle));
+        storage.close();
+    }
+
+    @Test
+    @DisplayName("✅ 备份应只读取笔记的副本，不应把正文加载进存储返回的共享对象")
+    void testBackupReadsDetachedCopies() throws Exception {
+        Note shared = new Note();
+        shared.setId("a");
+        shared.setTitle("Title");
+        shared.attachContentLoader(() -> "lazy body");
+        StorageService storage = new StorageService() {
+            @Override
+            public void save(List<Note> notes) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public List<Note> load() {
+                return List.of(shared);
+            }
+        };
+
+        new BackupRotationJob(storage, TEST_BACKUP_DIR, 1, 60_000L).run(new IoThrottle(1024 * 1024));
+
+        assertNotNull(shared.getContentLoader(), "共享对象的正文不应被加载");
+        File[] backups = new File(TEST_BACKUP_DIR).listFiles();
+        assertEquals(1, backups.length);
+        assertEquals("lazy body", new JsonStorageService(backups[0].getPath()).load().get(0).getContent());
+    }
+
+    @Test
+    @DisplayName("✅ 暂停期间 callUnpaused 应等待，pause 应等正在执行的读取完成")
+    void testCallUnpausedExcludesPause() throws Exception {
+        IoThrottle throttle = new IoThrottle(1024);
+        CountDownLatch inside = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread reader = new Thread(() -> {
+            try {
+                throttle.callUnpaused(() -> {
+                    inside.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return null;
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        reader.start();
+        assertTrue(inside.await(5, TimeUnit.SECONDS));
+
+        // 1. 读取进行中：pause 要等它结束
+        Thread pauser = new Thread(throttle::pause);
+        pauser.start();
+        pauser.join(200);
+        assertTrue(pauser.isAlive(), "读取完成之前 pause 不应返回");
+        release.countDown();
+        pauser.join(5000);
+        reader.join(5000);
+        assertTrue(throttle.isPaused());
+
+        // 2. 暂停期间：新的读取要等到 resume
+        AtomicBoolean ran = new AtomicBoolean();
+        Thread blocked = new Thread(() -> {
+            try {
+                throttle.callUnpaused(() -> {
+                    ran.set(true);
+                    return null;
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        blocked.start();
+        blocked.join(200);
+        assertFalse(ran.get(), "暂停期间不应执行读取");
+        throttle.resume();
+        blocked.join(5000);
+        assertTrue(ran.get());
+    }
+
+    @Test
+    @DisplayName("✅ 暂停时压缩应停在两块数据之间，恢复后继续完成")
+    void testPauseStopsCompactionMidway() throws Exception {
+        LogStructuredStorageService storage = new LogStructuredStorageService(TEST_LOG_FILE, 1_000_000);
+        for (int i = 0; i < 4; i++) {
+            Note note = new Note("Title " + i, "x".repeat(IoBudget.CHUNK_BYTES));
+            note.setId("n" + i);
+            storage.upsert(note);
+            note.setContent("y".repeat(IoBudget.CHUNK_BYTES));
+            storage.upsert(note);
+        }
+        IoThrottle throttle = new IoThrottle(1024L * 1024 * 1024);
+        CompactionJob compaction = new CompactionJob(storage, 60_000L);
+
+        throttle.pause();
+        Thread worker = new Thread(() -> {
+            try {
+                compaction.run(throttle);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        worker.start();
+        worker.join(300);
+        assertTrue(worker.isAlive(), "暂停期间压缩不应完成");
+        assertTrue(storage.getDeadRecordCount() > 0);
+
+        throttle.resume();
+        worker.join(5000);
+        assertFalse(worker.isAlive());
+        assertEquals(0, storage.getDeadRecordCount());
+        storage.close();
+    }
+
+    private void waitUntilRecorded() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            List<MaintenanceScheduler.JobStatus> statuses = scheduler.getStatuses();
+            if (statuses.get(0).getRunCount() > 0) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+    }
+}
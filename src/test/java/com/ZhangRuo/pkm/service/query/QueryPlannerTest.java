@@ -0,0 +1,222 @@
+package com.ZhangRuo.pkm.service.query;
+
+import com.ZhangRuo.pkm.entity.Note;
+import com.ZhangRuo.pkm.repository.JsonStorageService;
+import com.ZhangRuo.pkm.service.QueryService;
+import com.ZhangRuo.pkm.service.index.NoteIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("结构化查询与查询规划器测试")
+class QueryPlannerTest {
+
+    private static final String TEST_FILE_PATH = "test_notes_query.json";
+    private NoteIndex noteIndex;
+    private QueryService queryService;
+
+    @BeforeEach
+    void setUp() {
+        noteIndex = new NoteIndex(new JsonStorageService(TEST_FILE_PATH));
+        queryService = new QueryService(noteIndex);
+
+        add("1", "设计模式入门", "单例与工厂", "2023-06-01", "java");
+        add("2", "Java 设计模式", "观察者模式", "2024-03-10", "java");
+        add("3", "设计模式草稿", "未完成", "2024-05-20", "java", "draft");
+        add("4", "Python 笔记", "装饰器也是一种设计模式", "2024-07-01", "python");
+        add("5", "随笔", "与编程无关", "2024-08-15");
+    }
+
+    @AfterEach
+    void tearDown() {
+        new File(TEST_FILE_PATH).delete();
+    }
+
+    private void add(String id, String title, String content, String created, String... tags) {
+        Note note = new Note(title, content);
+        note.setId(id);
+        note.setCreatedAt(LocalDateTime.parse(created + "T10:00:00"));
+        for (String tag : tags) {
+            note.addTag(tag);
+        }
+        noteIndex.upsert(note);
+    }
+
+    private List<String> ids(String query) {
+        return queryService.search(QueryParser.parse(query), Integer.MAX_VALUE, false).getNotes().stream()
+                .map(Note::getId).sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("✅ 请求中的示例查询应返回正确的笔记")
+    void testExampleQuery() {
+        assertEquals(List.of("2"), ids("tag:java AND \"设计模式\" created:>2024-01-01 -tag:draft"));
+    }
+
+    @Test
+    @DisplayName("✅ OR、NOT、括号和日期比较符应按语法组合")
+    void testBooleanOperatorsAndDates() {
+        assertEquals(List.of("1", "2", "3", "4"), ids("tag:java OR tag:python"));
+        assertEquals(List.of("4", "5"), ids("NOT tag:java"));
+        assertEquals(List.of("2", "4"), ids("(tag:java OR tag:python) -tag:draft created:>=2024-01-01"));
+        assertEquals(List.of("1"), ids("created:<2024-01-01"));
+        assertEquals(List.of("2"), ids("created:2024-03-10"));
+        assertEquals(List.of("3", "4", "5"), ids("created:>2024-03-10"));
+        assertEquals(List.of("4"), ids("设计模式 -tag:java"));
+    }
+
+    @Test
+    @DisplayName("✅ 结果中含有关键词时应按相关度排序，并遵守 limit")
+    void testRankingAndLimit() {
+        QueryService.QueryResult result = queryService.search(QueryParser.parse("tag:java 设计模式"), 2, false);
+        assertEquals(3, result.getTotalMatches());
+        assertEquals(2, result.getNotes().size());
+    }
+
+    @Test
+    @DisplayName("✅ 执行计划应先用最稀有的可索引条件，日期条件只在候选上过滤")
+    void testPlanChoosesCheapestAccessPath() {
+        QueryService.QueryResult result = queryService.search(
+                QueryParser.parse("tag:java AND tag:draft created:>2024-01-01"), 10, true);
+        List<String> plan = result.getPlan();
+
+        assertTrue(plan.get(0).startsWith("AND"));
+        assertTrue(plan.get(1).contains("tag:draft") && plan.get(1).contains("标签位图"), plan.toString());
+        assertTrue(plan.get(2).contains("tag:java"), plan.toString());
+        assertTrue(plan.get(3).contains("created:>2024-01-01") && plan.get(3).contains("候选过滤"), plan.toString());
+        assertEquals(1, result.getTotalMatches());
+    }
+
+    @Test
+    @DisplayName("⚠️ 没有可索引的条件时应退化为全量扫描")
+    void testScanWhenNothingIsIndexable() {
+        QueryService.QueryResult result = queryService.search(QueryParser.parse("re:模式 -re:草稿"), 10, true);
+        assertEquals(3, result.getTotalMatches());
+        assertTrue(result.getPlan().stream().anyMatch(line -> line.contains("并行全量扫描")), result.getPlan().toString());
+    }
+
+    @Test
+    @DisplayName("✅ 日期条件应在时间索引上做范围查找，并随笔记的修改更新")
+    void testDateConditionsUseTimeIndex() {
+        QueryService.QueryResult result = queryService.search(QueryParser.parse("updated:>2000-01-01 -created:<2024-01-01"), 10, true);
+        assertEquals(4, result.getTotalMatches());
+        assertTrue(result.getPlan().stream().anyMatch(line -> line.contains("created:<2024-01-01") && line.contains("时间索引")),
+                result.getPlan().toString());
+        assertFalse(result.getPlan().stream().anyMatch(line -> line.contains("并行全量扫描")), result.getPlan().toString());
+
+        // 修改创建时间后重新写入，旧的时间不应再被命中
+        Note note = noteIndex.read(view -> view.note(0));
+        note.setCreatedAt(LocalDateTime.parse("2024-12-31T23:59:59.999999"));
+        noteIndex.upsert(note);
+        assertEquals(List.of(), ids("created:<2024-01-01"));
+        assertEquals(List.of("1"), ids("created:2024-12-31"));
+        assertEquals(List.of(), ids("created:>2024-12-31"));
+    }
+
+    @Test
+    @DisplayName("⚠️ 语法错误应抛出带说明的 IllegalArgumentException")
+    void testSyntaxErrors() {
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("tag:java AND"));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("(tag:java"));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("created:>2024-13-01"));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("\"unterminated"));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("OR tag:java"));
+    }
+
+    @Test
+    @DisplayName("✅ 单独一个含空格的命令行参数应保持不区分大小写的子串语义，带着引号传入时才是短语")
+    void testSingleArgumentWithSpacesIsSubstring() {
+        add("6", "Tips", "Tips and tricks", "2024-09-01");
+        add("7", "Event Sourcing", "store every change as an event", "2024-09-02");
+
+        assertEquals(List.of("6"), ids(List.of("IPS AN")));
+        assertEquals(List.of("7"), ids(List.of("ent sourc")));
+        assertTrue(ids(List.of("\"ent sourc\"")).isEmpty(), "短语要求完整的词项相邻");
+        assertEquals(List.of("7"), ids(List.of("\"event sourcing\"")));
+    }
+
+    @Test
+    @DisplayName("✅ 带引号的多词短语应要求词项按顺序相邻出现，而不是子串匹配")
+    void testPhraseQuery() {
+        add("6", "Event Sourcing", "store every change as an event", "2024-09-01");
+        add("7", "Sourcing events", "event-driven sourcing of data", "2024-09-02");
+        add("8", "CQRS", "Commands and queries; event sourcing is optional", "2024-09-03");
+
+        assertEquals(List.of("6", "8"), ids("\"event sourcing\""));
+        assertEquals(List.of("7"), ids("\"driven sourcing\""));
+        assertEquals(List.of("6", "7", "8"), ids("\"event sourcing\" OR \"sourcing events\" OR \"driven sourcing\""));
+        // 中文短语中的空白不影响相邻关系
+        assertEquals(List.of("1", "2", "3", "4"), ids("\"设计 模式\""));
+        assertTrue(ids("\"模式 设计\"").isEmpty());
+
+        List<String> plan = queryService.search(QueryParser.parse("\"event sourcing\""), 10, true).getPlan();
+        assertTrue(plan.get(0).contains("[位置索引]"), plan.toString());
+    }
+
+    @Test
+    @DisplayName("✅ NEAR/k 应匹配同一字段中相隔不超过 k 个词项的两个关键词或短语，前后顺序不限")
+    void testNearQuery() {
+        add("6", "Notes", "event store with one projection per read model", "2024-09-01");
+        add("7", "Notes", "read model built from the event log", "2024-09-02");
+        add("8", "event", "read model", "2024-09-03");
+
+        assertEquals(List.of("6"), ids("store NEAR/3 projection"));
+        assertTrue(ids("store NEAR/1 projection").isEmpty());
+        assertEquals(List.of("7"), ids("\"read model\" NEAR/3 event"));
+        assertEquals(List.of("6", "7"), ids("event NEAR/6 \"read model\""));
+        assertEquals(List.of("7"), ids("event NEAR/6 \"read model\" -store"));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("a NEAR/1 b NEAR/1 c"));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("tag:java NEAR/2 event"));
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("NEAR/2 event"));
+    }
+
+    @Test
+    @DisplayName("✅ 命令行参数形式：只有单个普通关键词时不视为结构化查询")
+    void testIsStructured() {
+        assertFalse(QueryParser.isStructured(List.of("设计模式")));
+        // 单独一个含空格的参数仍是子串搜索；连同引号一起传入时才是短语
+        assertFalse(QueryParser.isStructured(List.of("design - pattern")));
+        assertTrue(QueryParser.isStructured(List.of("\"design pattern\"")));
+        assertTrue(QueryParser.isStructured(List.of("tag:java")));
+        assertTrue(QueryParser.isStructured(List.of("-tag:draft")));
+        assertTrue(QueryParser.isStructured(List.of("java", "OR", "python")));
+        assertEquals(List.of("2", "3"), queryService.search(QueryParser.parse(List.of("tag:java", "created:>2024-01-01")),
+                10, false).getNotes().stream().map(Note::getId).sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("✅ re: 正则条件应不区分大小写，并与可索引条件组合时只在候选上过滤")
+    void testRegexClause() {
+        assertEquals(List.of("1", "2"), ids("re:\"单例|观察者\""));
+        assertEquals(List.of("2", "4"), ids("re:^(java|python)\\s"));
+        assertEquals(List.of("1"), ids("tag:java re:工厂$"));
+        assertEquals(List.of("2", "4"), ids(List.of("re:^(JAVA|python)\\s")));
+
+        List<String> plan = queryService.search(QueryParser.parse("tag:java re:工厂"), 10, true).getPlan();
+        assertTrue(plan.stream().anyMatch(line -> line.contains("re:工厂") && line.contains("候选过滤")), plan.toString());
+        assertThrows(IllegalArgumentException.class, () -> QueryParser.parse("re:\"[unclosed\""));
+    }
+
+    @Test
+    @DisplayName("✅ 不可索引的节点直接求值时应退化为全量扫描，而不是抛出异常")
+    void testEvaluateFallsBackToScan() {
+        BitSet expected = new BitSet();
+        expected.set(0);// 笔记 1
+        expected.set(1);// 笔记 2
+        assertEquals(expected, noteIndex.read(view -> new RegexNode("单例|观察者").evaluate(view)));
+    }
+
+    private List<String> ids(List<String> args) {
+        return queryService.search(QueryParser.parse(args), Integer.MAX_VALUE, false).getNotes().stream()
+                .map(Note::getId).sorted().collect(Collectors.toList());
+    }
+}
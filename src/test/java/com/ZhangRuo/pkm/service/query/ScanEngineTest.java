@@ -0,0 +1,84 @@
+package com.ZhangRuo.pkm.service.query;
+
+import com.ZhangRuo.pkm.entity.Note;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ScanEngine 并行扫描测试")
+class ScanEngineTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("✅ 分成很多块并行扫描的结果应与单线程扫描完全一致")
+    void testParallelScanMatchesSequential() {
+        ScanEngine engine = new ScanEngine(pool, 1);// 每块只有 64 个序号，强制切分成很多块
+        BitSet candidates = new BitSet();
+        for (int i = 0; i < 100_000; i += 3) {
+            candidates.set(i);
+        }
+
+        BitSet result = engine.scan(candidates, ordinal -> ordinal % 7 == 0);
+
+        BitSet expected = new BitSet();
+        candidates.stream().filter(ordinal -> ordinal % 7 == 0).forEach(expected::set);
+        assertEquals(expected, result);
+    }
+
+    @Test
+    @DisplayName("✅ 谓词应在多个线程上执行，且每个候选只被求值一次")
+    void testScanUsesMultipleThreadsAndVisitsEachOnce() {
+        ScanEngine engine = new ScanEngine(pool, 1);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        Set<Integer> visited = ConcurrentHashMap.newKeySet();
+        BitSet result = engine.scan(50_000, ordinal -> {
+            threads.add(Thread.currentThread().getName());
+            assertTrue(visited.add(ordinal), "序号 " + ordinal + " 被求值了两次");
+            return true;
+        });
+
+        assertEquals(50_000, result.cardinality());
+        assertEquals(50_000, visited.size());
+        assertTrue(threads.size() > 1, "应在多个线程上执行: " + threads);
+    }
+
+    @Test
+    @DisplayName("✅ 过滤笔记列表时应保持原列表的顺序")
+    void testFilterPreservesOrder() {
+        List<Note> notes = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            Note note = new Note("Note " + i, "");
+            note.setId(String.valueOf(i));
+            notes.add(note);
+        }
+
+        List<Note> result = new ScanEngine(pool, 2).filter(notes, note -> note.getTitle().endsWith("7"));
+
+        List<String> expected = notes.stream().filter(note -> note.getTitle().endsWith("7"))
+                .map(Note::getId).collect(Collectors.toList());
+        assertEquals(expected, result.stream().map(Note::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("⚠️ 空的候选集合应返回空结果")
+    void testEmptyCandidates() {
+        assertTrue(new ScanEngine(pool, 1).scan(new BitSet(), ordinal -> true).isEmpty());
+        assertTrue(new ScanEngine(pool, 1).scan(0, ordinal -> true).isEmpty());
+    }
+}